@@ -31,6 +31,7 @@ public final class ContentObjectFields {
 	public static final String SYS_CONTENT = "sys_content";
 	public static final String SYS_CONTENT_CONTENT_TYPE = "sys_content_content-type";
 	public static final String SYS_TAGS = "sys_tags";
+	public static final String SYS_CONTENT_HASH = "sys_content_hash";
 	public static final String TAGS = "tags";
 	public static final String SYS_COMMENTS = "sys_comments";
 	public static final String SYS_RATING_AVG = "sys_rating_avg";
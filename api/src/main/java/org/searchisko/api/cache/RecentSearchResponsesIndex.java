@@ -0,0 +1,153 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.searchisko.api.cache;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Time windowed in-memory index of recently returned search responses and ids of hits returned in them. Used to
+ * validate "search hit used" statistics records without search in statistics cluster. Only hashes of hit ids are
+ * stored to keep memory footprint small.
+ * <p>
+ * Index is split into two generations. New responses are put into current generation, which replaces previous one
+ * when it is older than <code>window</code> or contains <code>maxSize</code> responses. So response is available at
+ * least for <code>window</code> if index is not full.
+ *
+ * @author Vlastimil Elias (velias at redhat dot com)
+ * @see org.searchisko.api.service.StatsClientService#checkStatisticsRecordExists(org.searchisko.api.service.StatsRecordType, java.util.Map)
+ */
+public class RecentSearchResponsesIndex {
+
+	private static final int[] EMPTY = new int[0];
+
+	protected long window;
+
+	protected int maxSize;
+
+	private Map<String, int[]> current = new HashMap<>();
+	private Map<String, int[]> previous = new HashMap<>();
+	private long currentStart;
+
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+
+	/**
+	 * Create index.
+	 *
+	 * @param window time window responses are kept in index for [ms]
+	 * @param maxSize max number of responses in one generation of index
+	 */
+	public RecentSearchResponsesIndex(long window, int maxSize) {
+		this.window = window;
+		this.maxSize = maxSize;
+		this.currentStart = System.currentTimeMillis();
+	}
+
+	/**
+	 * Put response into index.
+	 *
+	 * @param responseUuid uuid of search response
+	 * @param hitIds ids of hits returned in response, can be null
+	 */
+	public void put(String responseUuid, Collection<String> hitIds) {
+		if (responseUuid == null)
+			return;
+		int[] hashes = EMPTY;
+		if (hitIds != null && !hitIds.isEmpty()) {
+			hashes = new int[hitIds.size()];
+			int i = 0;
+			for (String id : hitIds) {
+				hashes[i++] = id != null ? id.hashCode() : 0;
+			}
+			Arrays.sort(hashes);
+		}
+		synchronized (this) {
+			rotate(System.currentTimeMillis());
+			if (current.size() >= maxSize) {
+				previous = current;
+				current = new HashMap<>();
+				currentStart = System.currentTimeMillis();
+			}
+			current.put(responseUuid, hashes);
+		}
+	}
+
+	/**
+	 * Remove response from index, eg. if its statistics record is not written finally.
+	 *
+	 * @param responseUuid uuid of search response
+	 */
+	public void remove(String responseUuid) {
+		if (responseUuid == null)
+			return;
+		synchronized (this) {
+			current.remove(responseUuid);
+			previous.remove(responseUuid);
+		}
+	}
+
+	/**
+	 * Check if hit was returned in search response.
+	 *
+	 * @param responseUuid uuid of search response
+	 * @param hitId id of hit to check
+	 * @return true if hit was returned in response, false if it was not, null if response is not known to this index
+	 *         (it is older than window or it was returned by another cluster node), so check must be performed
+	 *         elsewhere.
+	 */
+	public Boolean containsHit(String responseUuid, String hitId) {
+		if (responseUuid == null || hitId == null)
+			return null;
+		int[] hashes;
+		synchronized (this) {
+			rotate(System.currentTimeMillis());
+			hashes = current.get(responseUuid);
+			if (hashes == null)
+				hashes = previous.get(responseUuid);
+		}
+		if (hashes == null) {
+			missCount.incrementAndGet();
+			return null;
+		}
+		hitCount.incrementAndGet();
+		return Arrays.binarySearch(hashes, hitId.hashCode()) >= 0;
+	}
+
+	private void rotate(long now) {
+		if (now - currentStart >= window) {
+			if (now - currentStart >= 2 * window) {
+				previous = new HashMap<>();
+			} else {
+				previous = current;
+			}
+			current = new HashMap<>();
+			currentStart = now;
+		}
+	}
+
+	/**
+	 * Get statistics of this index usage.
+	 *
+	 * @return map with statistics
+	 */
+	public Map<String, Object> getStatistics() {
+		Map<String, Object> ret = new LinkedHashMap<>();
+		ret.put("window", window);
+		ret.put("max_size", maxSize);
+		synchronized (this) {
+			ret.put("size", current.size() + previous.size());
+		}
+		ret.put("hit_count", hitCount.get());
+		ret.put("miss_count", missCount.get());
+		return ret;
+	}
+
+}
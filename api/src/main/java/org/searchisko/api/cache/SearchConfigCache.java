@@ -0,0 +1,131 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.searchisko.api.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.ejb.Lock;
+import javax.ejb.LockType;
+import javax.ejb.Singleton;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.searchisko.api.model.SearchConfigSnapshot;
+import org.searchisko.api.service.ConfigService;
+
+/**
+ * Cache holding {@link SearchConfigSnapshot} used inside {@link org.searchisko.api.service.SearchService} so search
+ * requests do not need to read configuration documents from persistence.
+ * <p>
+ * Snapshot is replaced atomically. It is flushed by {@link ConfigService} when any configuration document is changed
+ * and it expires after <code>ttl</code> so changes made on other cluster nodes are loaded too.
+ *
+ * @author Vlastimil Elias (velias at redhat dot com)
+ */
+@ApplicationScoped
+@Singleton
+@Lock(LockType.READ)
+public class SearchConfigCache {
+
+	/**
+	 * Names of configuration documents stored in snapshot.
+	 */
+	public static final String[] SNAPSHOT_DOCUMENTS = { ConfigService.CFGNAME_SEARCH_FULLTEXT_QUERY_FIELDS,
+			ConfigService.CFGNAME_SEARCH_FULLTEXT_HIGHLIGHT_FIELDS, ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS,
+			ConfigService.CFGNAME_SEARCH_FULLTEXT_FILTER_FIELDS, ConfigService.CFGNAME_SEARCH_FULLTEXT_AGGREGATIONS_FIELDS };
+
+	@Inject
+	protected Logger log;
+
+	@Inject
+	protected ConfigService configService;
+
+	/**
+	 * Time to Live for snapshot [ms].
+	 */
+	protected long ttl = 30L * 1000L;
+
+	private final AtomicLong versionCounter = new AtomicLong();
+
+	// increased on each flush so snapshot loaded before it is not cached
+	private final AtomicLong flushStamp = new AtomicLong();
+
+	private final Object loadLock = new Object();
+
+	private volatile CacheItem current;
+
+	/**
+	 * Get actual snapshot of search configuration. Loads it from {@link ConfigService} if not available or expired.
+	 *
+	 * @return snapshot, never null
+	 */
+	public SearchConfigSnapshot getSnapshot() {
+		CacheItem ci = current;
+		if (ci != null && ci.validTo > System.currentTimeMillis()) {
+			return ci.value;
+		}
+		synchronized (loadLock) {
+			ci = current;
+			if (ci != null && ci.validTo > System.currentTimeMillis()) {
+				return ci.value;
+			}
+			long stamp = flushStamp.get();
+			ci = new CacheItem(loadSnapshot());
+			if (stamp == flushStamp.get())
+				current = ci;
+			return ci.value;
+		}
+	}
+
+	/**
+	 * Flush actual snapshot, so new one is loaded next time it is requested.
+	 */
+	public void flush() {
+		flushStamp.incrementAndGet();
+		current = null;
+	}
+
+	/**
+	 * Check if configuration document of given name is stored in snapshot.
+	 *
+	 * @param documentName to check
+	 * @return true if document is stored in snapshot
+	 */
+	public static boolean isSnapshotDocument(String documentName) {
+		for (String d : SNAPSHOT_DOCUMENTS) {
+			if (d.equals(documentName))
+				return true;
+		}
+		return false;
+	}
+
+	protected SearchConfigSnapshot loadSnapshot() {
+		Map<String, Map<String, Object>> documents = new HashMap<>();
+		for (String documentName : SNAPSHOT_DOCUMENTS) {
+			documents.put(documentName, configService.get(documentName));
+		}
+		SearchConfigSnapshot ret = new SearchConfigSnapshot(versionCounter.incrementAndGet(), documents);
+		if (log.isLoggable(Level.FINE)) {
+			log.log(Level.FINE, "Search configuration snapshot version {0} loaded", ret.getVersion());
+		}
+		return ret;
+	}
+
+	private class CacheItem {
+		protected final long validTo;
+		protected final SearchConfigSnapshot value;
+
+		protected CacheItem(SearchConfigSnapshot value) {
+			this.value = value;
+			this.validTo = System.currentTimeMillis() + ttl;
+		}
+	}
+
+}
@@ -0,0 +1,225 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.searchisko.api.cache;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.ejb.Lock;
+import javax.ejb.LockType;
+import javax.ejb.Singleton;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+
+import org.elasticsearch.action.search.SearchResponse;
+import org.searchisko.api.model.AppConfiguration;
+import org.searchisko.api.service.AppConfigurationService;
+
+/**
+ * Size bounded cache of search responses used by {@link org.searchisko.api.service.SearchService} for requests of not
+ * authenticated users. Key is canonical form of query settings (see
+ * {@link org.searchisko.api.model.QuerySettings#toCanonicalString()}). Least recently used entries are evicted when
+ * cache is full, entries expire after <code>ttl</code>. Entries are invalidated also when content stored in any of
+ * search indices used for the response is changed.
+ * <p>
+ * Cache is configured in {@link AppConfigurationService#FILENAME}, it is disabled by default.
+ *
+ * @author Vlastimil Elias (velias at redhat dot com)
+ */
+@ApplicationScoped
+@Singleton
+@Lock(LockType.READ)
+public class SearchResultCache {
+
+	@Inject
+	protected Logger log;
+
+	@Inject
+	protected AppConfigurationService appConfigurationService;
+
+	protected boolean enabled = false;
+
+	/**
+	 * Max number of cached responses.
+	 */
+	protected int maxSize = 500;
+
+	/**
+	 * Time to Live for cached response [ms].
+	 */
+	protected long ttl = 60L * 1000L;
+
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+	private final AtomicLong evictionCount = new AtomicLong();
+	private final AtomicLong invalidationCount = new AtomicLong();
+
+	// increased on each invalidation so responses obtained before it are not cached
+	private volatile long invalidationStamp = 0;
+
+	// access ordered so least recently used entry is evicted first
+	private final Map<String, CacheItem> cache = new LinkedHashMap<String, CacheItem>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, CacheItem> eldest) {
+			if (size() > maxSize) {
+				evictionCount.incrementAndGet();
+				return true;
+			}
+			return false;
+		}
+	};
+
+	@PostConstruct
+	public void init() {
+		AppConfiguration.SearchResultCacheConfig config = appConfigurationService.getAppConfiguration()
+				.getSearchResultCacheConfig();
+		if (config != null) {
+			enabled = config.isEnabled() && config.getSize() > 0;
+			maxSize = config.getSize();
+			ttl = config.getTtl() * 1000L;
+		}
+		log.log(Level.INFO, "Search result cache enabled: {0}", enabled);
+	}
+
+	/**
+	 * @return true if cache is enabled so it can be used
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Get cached search response.
+	 *
+	 * @param key canonical form of query settings
+	 * @return cached response or null if not cached or expired
+	 */
+	public SearchResponse get(String key) {
+		synchronized (cache) {
+			CacheItem ci = cache.get(key);
+			if (ci != null) {
+				if (ci.validTo > System.currentTimeMillis()) {
+					hitCount.incrementAndGet();
+					return ci.value;
+				}
+				cache.remove(key);
+			}
+		}
+		missCount.incrementAndGet();
+		return null;
+	}
+
+	/**
+	 * Get actual invalidation stamp. Must be obtained before search is performed and then passed to
+	 * {@link #put(String, SearchResponse, String[], long)}, so response is not cached if content changed during search.
+	 *
+	 * @return actual invalidation stamp
+	 */
+	public long getInvalidationStamp() {
+		return invalidationStamp;
+	}
+
+	/**
+	 * Put search response into cache.
+	 *
+	 * @param key canonical form of query settings
+	 * @param value search response to cache
+	 * @param indices names of search indices response was obtained from
+	 * @param stamp invalidation stamp obtained by {@link #getInvalidationStamp()} before search was performed
+	 */
+	public void put(String key, SearchResponse value, String[] indices, long stamp) {
+		if (value == null || indices == null)
+			return;
+		CacheItem ci = new CacheItem(value, new HashSet<>(Arrays.asList(indices)));
+		synchronized (cache) {
+			if (stamp == invalidationStamp)
+				cache.put(key, ci);
+		}
+	}
+
+	/**
+	 * Invalidate all cached responses obtained from any of given search indices. Called when content in these indices
+	 * changes.
+	 *
+	 * @param indices names of changed search indices
+	 */
+	public void invalidate(Collection<String> indices) {
+		if (!enabled || indices == null || indices.isEmpty())
+			return;
+		int count = 0;
+		synchronized (cache) {
+			invalidationStamp++;
+			for (Iterator<CacheItem> it = cache.values().iterator(); it.hasNext();) {
+				CacheItem ci = it.next();
+				for (String index : indices) {
+					if (ci.indices.contains(index)) {
+						it.remove();
+						count++;
+						break;
+					}
+				}
+			}
+		}
+		invalidationCount.addAndGet(count);
+		if (count > 0 && log.isLoggable(Level.FINE)) {
+			log.log(Level.FINE, "{0} cached search responses invalidated for indices {1}", new Object[] { count, indices });
+		}
+	}
+
+	/**
+	 * Flush all cached responses.
+	 */
+	public void flush() {
+		synchronized (cache) {
+			invalidationStamp++;
+			cache.clear();
+		}
+	}
+
+	/**
+	 * Get statistics of this cache usage.
+	 *
+	 * @return map with statistics
+	 */
+	public Map<String, Object> getStatistics() {
+		Map<String, Object> ret = new LinkedHashMap<>();
+		ret.put("enabled", enabled);
+		ret.put("max_size", maxSize);
+		ret.put("ttl", ttl);
+		synchronized (cache) {
+			ret.put("size", cache.size());
+		}
+		ret.put("hit_count", hitCount.get());
+		ret.put("miss_count", missCount.get());
+		ret.put("eviction_count", evictionCount.get());
+		ret.put("invalidation_count", invalidationCount.get());
+		return ret;
+	}
+
+	private class CacheItem {
+		protected final long validTo;
+		protected final SearchResponse value;
+		protected final Set<String> indices;
+
+		protected CacheItem(SearchResponse value, Set<String> indices) {
+			this.value = value;
+			this.indices = indices;
+			this.validTo = System.currentTimeMillis() + ttl;
+		}
+	}
+
+}
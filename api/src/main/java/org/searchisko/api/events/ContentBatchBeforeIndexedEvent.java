@@ -0,0 +1,46 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.searchisko.api.events;
+
+import java.util.Map;
+
+import org.searchisko.api.ContentObjectFields;
+
+/**
+ * CDI Event emitted just before batch of Content objects is stored into search index, e.g. all content objects from
+ * one bulk push or one page of reindexing. So it is possible to add some data into them by Searchisko extensions with
+ * one set based operation instead of one operation per content object.
+ * <p>
+ * It is emitted for each content object emitted by {@link ContentBeforeIndexedEvent} also (in batch with one content
+ * object if it is pushed alone), and before it, so extension should observe only one of these events.
+ * 
+ * @author Vlastimil Elias (velias at redhat dot com)
+ */
+public class ContentBatchBeforeIndexedEvent {
+
+	private Map<String, Map<String, Object>> contents;
+
+	/**
+	 * Create event.
+	 * 
+	 * @param contents content data objects, key is Searchisko wide unique identifier of content - from field
+	 *          {@link ContentObjectFields#SYS_ID}
+	 */
+	public ContentBatchBeforeIndexedEvent(Map<String, Map<String, Object>> contents) {
+		super();
+		this.contents = contents;
+	}
+
+	public Map<String, Map<String, Object>> getContents() {
+		return contents;
+	}
+
+	@Override
+	public String toString() {
+		return "ContentBatchBeforeIndexedEvent [contentIds=" + contents.keySet() + "]";
+	}
+
+}
@@ -0,0 +1,46 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.searchisko.api.events;
+
+import java.util.Map;
+
+import org.searchisko.api.ContentObjectFields;
+
+/**
+ * CDI Event emitted when batch of Content objects is stored (it means created or updated) in Searchisko, e.g. all
+ * content objects from one bulk push. Event is emmited after content is stored into search indexes and persistence
+ * store.
+ * <p>
+ * It is emitted for each content object emitted by {@link ContentStoredEvent} also (in batch with one content object
+ * if it is pushed alone), and before it, so extension should observe only one of these events.
+ * 
+ * @author Vlastimil Elias (velias at redhat dot com)
+ */
+public class ContentBatchStoredEvent {
+
+	private Map<String, Map<String, Object>> contents;
+
+	/**
+	 * Create event.
+	 * 
+	 * @param contents stored content data objects, key is Searchisko wide unique identifier of content - from field
+	 *          {@link ContentObjectFields#SYS_ID}
+	 */
+	public ContentBatchStoredEvent(Map<String, Map<String, Object>> contents) {
+		super();
+		this.contents = contents;
+	}
+
+	public Map<String, Map<String, Object>> getContents() {
+		return contents;
+	}
+
+	@Override
+	public String toString() {
+		return "ContentBatchStoredEvent [contentIds=" + contents.keySet() + "]";
+	}
+
+}
@@ -21,7 +21,8 @@ import javax.servlet.http.HttpServletRequest;
  */
 @WebFilter(
         urlPatterns = "/*",
-        dispatcherTypes = {DispatcherType.REQUEST, DispatcherType.FORWARD}
+        dispatcherTypes = {DispatcherType.REQUEST, DispatcherType.FORWARD},
+        asyncSupported = true
 )
 public class CDIServletRequestProducingListener implements Filter {
 
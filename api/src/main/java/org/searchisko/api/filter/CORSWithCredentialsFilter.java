@@ -37,6 +37,7 @@ public class CORSWithCredentialsFilter implements Filter {
 	public static final String POST = "POST";
 	public static final String PUT = "PUT";
 	public static final String DELETE = "DELETE";
+	public static final String PATCH = "PATCH";
 
 	/**
 	 * CORS headers
@@ -103,6 +104,7 @@ public class CORSWithCredentialsFilter implements Filter {
 					httpResponse.addHeader(ACCESS_CONTROL_ALLOW_METHODS, POST);
 					httpResponse.addHeader(ACCESS_CONTROL_ALLOW_METHODS, PUT);
 					httpResponse.addHeader(ACCESS_CONTROL_ALLOW_METHODS, DELETE);
+					httpResponse.addHeader(ACCESS_CONTROL_ALLOW_METHODS, PATCH);
 
 					// OPTION request handling is done, do not call chain
 					httpResponse.setStatus(HttpServletResponse.SC_OK);
@@ -47,6 +47,65 @@ public class AppConfiguration implements Serializable {
 	 */
 	private CasConfig casConfig;
 
+	/**
+	 * Configuration of search result cache for anonymous users
+	 */
+	private SearchResultCacheConfig searchResultCacheConfig;
+
+	/**
+	 * Flag if identical concurrent search requests are coalesced into one
+	 */
+	private boolean searchCoalescingEnabled;
+
+	/**
+	 * Flag if persisted content is stored in compressed form
+	 */
+	private boolean contentPersistenceCompressionEnabled;
+
+	/**
+	 * Max number of content objects waiting in asynchronous ingest queue. Asynchronous push is refused if queue is full.
+	 */
+	private int ingestQueueMaxSize;
+
+	/**
+	 * Number of content objects processed in one batch from asynchronous ingest queue.
+	 */
+	private int ingestQueueBatchSize;
+
+	/**
+	 * Number of content objects of one bulk push preprocessed in parallel. Parallel preprocessing is switched off if
+	 * lower than 2.
+	 */
+	private int contentPushBulkPreprocessingThreads;
+
+	/**
+	 * Interval of full reload of in-memory index of custom tags in seconds. In-memory index is switched off if lower
+	 * than 1.
+	 */
+	private int customTagsIndexReloadInterval;
+
+	/**
+	 * Max number of cached contributor lookups performed during content preprocessing. Cache is switched off if lower
+	 * than 1.
+	 */
+	private int contributorLookupCacheSize;
+
+	/**
+	 * Time to live of cached contributor lookup in seconds.
+	 */
+	private int contributorLookupCacheTtl;
+
+	/**
+	 * Interval of reload of in-memory snapshot of projects in seconds. Snapshot is switched off if lower than 1.
+	 */
+	private int projectsSnapshotReloadInterval;
+
+	/**
+	 * Number of parallel scrolls (each over subset of index shards) used by reindexing tasks to process content in search
+	 * indices. Content is processed by one scroll if lower than 2.
+	 */
+	private int reindexingParallelism;
+
 	public AppConfiguration(String appDataPath) {
 		this.appDataPath = appDataPath;
 	}
@@ -99,6 +158,94 @@ public class AppConfiguration implements Serializable {
 		this.casConfig = casConfig;
 	}
 
+	public SearchResultCacheConfig getSearchResultCacheConfig() {
+		return searchResultCacheConfig;
+	}
+
+	public void setSearchResultCacheConfig(SearchResultCacheConfig searchResultCacheConfig) {
+		this.searchResultCacheConfig = searchResultCacheConfig;
+	}
+
+	public boolean isSearchCoalescingEnabled() {
+		return searchCoalescingEnabled;
+	}
+
+	public void setSearchCoalescingEnabled(boolean searchCoalescingEnabled) {
+		this.searchCoalescingEnabled = searchCoalescingEnabled;
+	}
+
+	public boolean isContentPersistenceCompressionEnabled() {
+		return contentPersistenceCompressionEnabled;
+	}
+
+	public void setContentPersistenceCompressionEnabled(boolean contentPersistenceCompressionEnabled) {
+		this.contentPersistenceCompressionEnabled = contentPersistenceCompressionEnabled;
+	}
+
+	public int getIngestQueueMaxSize() {
+		return ingestQueueMaxSize;
+	}
+
+	public void setIngestQueueMaxSize(int ingestQueueMaxSize) {
+		this.ingestQueueMaxSize = ingestQueueMaxSize;
+	}
+
+	public int getIngestQueueBatchSize() {
+		return ingestQueueBatchSize;
+	}
+
+	public void setIngestQueueBatchSize(int ingestQueueBatchSize) {
+		this.ingestQueueBatchSize = ingestQueueBatchSize;
+	}
+
+	public int getContentPushBulkPreprocessingThreads() {
+		return contentPushBulkPreprocessingThreads;
+	}
+
+	public void setContentPushBulkPreprocessingThreads(int contentPushBulkPreprocessingThreads) {
+		this.contentPushBulkPreprocessingThreads = contentPushBulkPreprocessingThreads;
+	}
+
+	public int getCustomTagsIndexReloadInterval() {
+		return customTagsIndexReloadInterval;
+	}
+
+	public void setCustomTagsIndexReloadInterval(int customTagsIndexReloadInterval) {
+		this.customTagsIndexReloadInterval = customTagsIndexReloadInterval;
+	}
+
+	public int getContributorLookupCacheSize() {
+		return contributorLookupCacheSize;
+	}
+
+	public void setContributorLookupCacheSize(int contributorLookupCacheSize) {
+		this.contributorLookupCacheSize = contributorLookupCacheSize;
+	}
+
+	public int getContributorLookupCacheTtl() {
+		return contributorLookupCacheTtl;
+	}
+
+	public void setContributorLookupCacheTtl(int contributorLookupCacheTtl) {
+		this.contributorLookupCacheTtl = contributorLookupCacheTtl;
+	}
+
+	public int getProjectsSnapshotReloadInterval() {
+		return projectsSnapshotReloadInterval;
+	}
+
+	public void setProjectsSnapshotReloadInterval(int projectsSnapshotReloadInterval) {
+		this.projectsSnapshotReloadInterval = projectsSnapshotReloadInterval;
+	}
+
+	public int getReindexingParallelism() {
+		return reindexingParallelism;
+	}
+
+	public void setReindexingParallelism(int reindexingParallelism) {
+		this.reindexingParallelism = reindexingParallelism;
+	}
+
 	public static class ContributorProfileProviderConfig {
 		protected String urlbase;
 		protected String username;
@@ -182,6 +329,57 @@ public class AppConfiguration implements Serializable {
 		}
 	}
 
+	public static class SearchResultCacheConfig {
+		protected boolean enabled;
+		/**
+		 * Max number of cached search responses
+		 */
+		protected int size;
+		/**
+		 * Time to live of cached search response (in seconds)
+		 */
+		protected int ttl;
+
+		public SearchResultCacheConfig(boolean enabled, int size, int ttl) {
+			this.enabled = enabled;
+			this.size = size;
+			this.ttl = ttl;
+		}
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+
+		public int getSize() {
+			return size;
+		}
+
+		public void setSize(int size) {
+			this.size = size;
+		}
+
+		public int getTtl() {
+			return ttl;
+		}
+
+		public void setTtl(int ttl) {
+			this.ttl = ttl;
+		}
+
+		@Override
+		public String toString() {
+			return "SearchResultCacheConfig{" +
+					"enabled=" + enabled +
+					", size=" + size +
+					", ttl=" + ttl +
+					'}';
+		}
+	}
+
 	@Override
 	public String toString() {
 		return "AppConfiguration{" +
@@ -191,6 +389,17 @@ public class AppConfiguration implements Serializable {
 				", contributorProfileUpdateThreshold=" + contributorProfileUpdateThreshold +
 				", contributorProfileProviderConfig=" + contributorProfileProviderConfig +
 				", casConfig=" + casConfig +
+				", searchResultCacheConfig=" + searchResultCacheConfig +
+				", searchCoalescingEnabled=" + searchCoalescingEnabled +
+				", contentPersistenceCompressionEnabled=" + contentPersistenceCompressionEnabled +
+				", ingestQueueMaxSize=" + ingestQueueMaxSize +
+				", ingestQueueBatchSize=" + ingestQueueBatchSize +
+				", contentPushBulkPreprocessingThreads=" + contentPushBulkPreprocessingThreads +
+				", customTagsIndexReloadInterval=" + customTagsIndexReloadInterval +
+				", contributorLookupCacheSize=" + contributorLookupCacheSize +
+				", contributorLookupCacheTtl=" + contributorLookupCacheTtl +
+				", projectsSnapshotReloadInterval=" + projectsSnapshotReloadInterval +
+				", reindexingParallelism=" + reindexingParallelism +
 				'}';
 	}
 }
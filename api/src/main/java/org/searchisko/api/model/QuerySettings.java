@@ -112,6 +112,20 @@ public class QuerySettings {
 			sb.append("]");
 			return sb.toString();
 		}
+
+		/**
+		 * Append canonical form of filters into builder. Filter names are sorted, order of values is kept because it is
+		 * significant for some filter types.
+		 *
+		 * @param sb to append canonical form into
+		 * @see QuerySettings#toCanonicalString()
+		 */
+		protected void appendCanonicalString(StringBuilder sb) {
+			for (String key : new TreeSet<>(acknowledgedFilterCandidates.keySet())) {
+				appendCanonicalValue(sb, key);
+				appendCanonicalValue(sb, acknowledgedFilterCandidates.get(key));
+			}
+		}
 	}
 
 	private Filters filters = null;
@@ -259,6 +273,54 @@ public class QuerySettings {
 			fields.clear();
 	}
 
+	/**
+	 * Create canonical form of these settings. Settings which lead to the same search request have the same canonical
+	 * form, so it can be used as a key for caching of search responses. Order of filter names and aggregations is not
+	 * significant, order of filter values and fields is kept.
+	 *
+	 * @return canonical form of these settings, never null
+	 */
+	public String toCanonicalString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append("q");
+		appendCanonicalValue(sb, query);
+		sb.append(queryHighlight ? "h1" : "h0");
+		sb.append("f");
+		appendCanonicalValue(sb, fields);
+		sb.append("a");
+		appendCanonicalValue(sb, aggregations != null ? new ArrayList<>(new TreeSet<>(aggregations)) : null);
+		sb.append("s");
+		appendCanonicalValue(sb, sortBy != null ? sortBy.name() : null);
+		sb.append("p").append(from).append(",").append(size);
+		sb.append("F");
+		if (filters != null)
+			filters.appendCanonicalString(sb);
+		return sb.toString();
+	}
+
+	/**
+	 * Append value prefixed by its length so values containing separators can't produce same canonical form.
+	 */
+	private static void appendCanonicalValue(StringBuilder sb, String value) {
+		if (value == null) {
+			sb.append("-;");
+		} else {
+			sb.append(value.length()).append(":").append(value).append(";");
+		}
+	}
+
+	private static void appendCanonicalValue(StringBuilder sb, List<String> values) {
+		if (values == null) {
+			sb.append("-;");
+		} else {
+			sb.append(values.size()).append("[");
+			for (String value : values) {
+				appendCanonicalValue(sb, value);
+			}
+			sb.append("]");
+		}
+	}
+
 	@Override
 	public String toString() {
 		return "QuerySettings [filters=" + filters + ", query=" + query + ", queryHighlight=" + queryHighlight + ", field="
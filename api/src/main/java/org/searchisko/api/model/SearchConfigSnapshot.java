@@ -0,0 +1,198 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.searchisko.api.model;
+
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.searchisko.api.ContentObjectFields;
+import org.searchisko.api.rest.search.ConfigParseUtil;
+import org.searchisko.api.rest.search.SemiParsedAggregationConfig;
+import org.searchisko.api.rest.search.SemiParsedFilterConfig;
+import org.searchisko.api.service.ConfigService;
+
+/**
+ * Immutable snapshot of configuration documents used by search. Instances are held by
+ * {@link org.searchisko.api.cache.SearchConfigCache} and replaced as a whole when configuration changes, so all values
+ * read from one snapshot are consistent.
+ * <p>
+ * Returned configuration maps are shared between requests so they MUST NOT be modified by callers.
+ *
+ * @author Vlastimil Elias (velias at redhat dot com)
+ * @see org.searchisko.api.cache.SearchConfigCache
+ */
+public class SearchConfigSnapshot {
+
+	private final long version;
+
+	private final Map<String, Object> queryFields;
+	private final Map<String, Object> highlightFields;
+	private final Map<String, Object> responseFields;
+	private final Map<String, Object> filterFields;
+	private final Map<String, Object> aggregationsFields;
+
+	// parsed lazily because configuration errors have to be reported to the search request which uses them
+	private volatile Map<String, SemiParsedAggregationConfig> parsedAggregations;
+
+	// <filter name, config> parsed lazily on first use of filter
+	private final ConcurrentMap<String, SemiParsedFilterConfig> parsedFilters = new ConcurrentHashMap<>();
+
+	// <processor class name, parse method> for range filters
+	private final ConcurrentMap<String, Method> rangeFilterProcessors = new ConcurrentHashMap<>();
+
+	/**
+	 * Create snapshot.
+	 *
+	 * @param version of snapshot, increased each time new snapshot is created
+	 * @param configDocuments map with configuration documents, key is document name
+	 *          (<code>ConfigService.CFGNAME_xx</code> constants)
+	 */
+	public SearchConfigSnapshot(long version, Map<String, Map<String, Object>> configDocuments) {
+		this.version = version;
+		queryFields = unmodifiable(configDocuments.get(ConfigService.CFGNAME_SEARCH_FULLTEXT_QUERY_FIELDS));
+		highlightFields = unmodifiable(configDocuments.get(ConfigService.CFGNAME_SEARCH_FULLTEXT_HIGHLIGHT_FIELDS));
+		responseFields = unmodifiable(configDocuments.get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS));
+		filterFields = unmodifiable(configDocuments.get(ConfigService.CFGNAME_SEARCH_FULLTEXT_FILTER_FIELDS));
+		aggregationsFields = unmodifiable(configDocuments.get(ConfigService.CFGNAME_SEARCH_FULLTEXT_AGGREGATIONS_FIELDS));
+	}
+
+	private static Map<String, Object> unmodifiable(Map<String, Object> cfg) {
+		if (cfg == null)
+			return null;
+		return Collections.unmodifiableMap(cfg);
+	}
+
+	/**
+	 * @return version of this snapshot
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	/**
+	 * @return content of {@link ConfigService#CFGNAME_SEARCH_FULLTEXT_QUERY_FIELDS} document, can be null
+	 */
+	public Map<String, Object> getQueryFields() {
+		return queryFields;
+	}
+
+	/**
+	 * @return content of {@link ConfigService#CFGNAME_SEARCH_FULLTEXT_HIGHLIGHT_FIELDS} document, can be null
+	 */
+	public Map<String, Object> getHighlightFields() {
+		return highlightFields;
+	}
+
+	/**
+	 * @return content of {@link ConfigService#CFGNAME_SEARCH_RESPONSE_FIELDS} document, can be null
+	 */
+	public Map<String, Object> getResponseFields() {
+		return responseFields;
+	}
+
+	/**
+	 * @return content of {@link ConfigService#CFGNAME_SEARCH_FULLTEXT_FILTER_FIELDS} document, can be null
+	 */
+	public Map<String, Object> getFilterFields() {
+		return filterFields;
+	}
+
+	/**
+	 * @return content of {@link ConfigService#CFGNAME_SEARCH_FULLTEXT_AGGREGATIONS_FIELDS} document, can be null
+	 */
+	public Map<String, Object> getAggregationsFields() {
+		return aggregationsFields;
+	}
+
+	/**
+	 * Get parsed configuration of all aggregations. Parsing is performed only once for this snapshot.
+	 *
+	 * @return map of parsed aggregations, key is aggregation name. Never null.
+	 * @throws org.elasticsearch.common.settings.SettingsException if configuration is invalid
+	 */
+	public Map<String, SemiParsedAggregationConfig> getParsedAggregations() {
+		Map<String, SemiParsedAggregationConfig> ret = parsedAggregations;
+		if (ret == null) {
+			ret = new LinkedHashMap<>();
+			if (aggregationsFields != null) {
+				for (String aggregationName : aggregationsFields.keySet()) {
+					Object aggregationConfig = aggregationsFields.get(aggregationName);
+					if (aggregationConfig != null) {
+						ret.put(aggregationName, ConfigParseUtil.parseAggregationType(aggregationConfig, aggregationName));
+					}
+				}
+			}
+			ret = Collections.unmodifiableMap(ret);
+			parsedAggregations = ret;
+		}
+		return ret;
+	}
+
+	/**
+	 * Get parsed configuration of filter from {@link ConfigService#CFGNAME_SEARCH_FULLTEXT_FILTER_FIELDS} document.
+	 * Parsing is performed only once for this snapshot, returned object is shared so MUST NOT be modified.
+	 *
+	 * @param filterName name of filter to get configuration for
+	 * @return parsed filter configuration or null if filter is not configured
+	 * @throws org.elasticsearch.common.settings.SettingsException if configuration is invalid
+	 */
+	public SemiParsedFilterConfig getParsedFilter(String filterName) {
+		if (filterFields == null || filterName == null)
+			return null;
+		SemiParsedFilterConfig ret = parsedFilters.get(filterName);
+		if (ret == null) {
+			Object filterConfig = filterFields.get(filterName);
+			if (filterConfig == null)
+				return null;
+			ret = ConfigParseUtil.parseFilterType(filterConfig, filterName);
+			SemiParsedFilterConfig prev = parsedFilters.putIfAbsent(filterName, ret);
+			if (prev != null)
+				ret = prev;
+		}
+		return ret;
+	}
+
+	/**
+	 * Get <code>parseRequestParameterValue(String)</code> method of range filter <code>_processor</code> enum.
+	 * Reflective lookup is performed only once for this snapshot.
+	 *
+	 * @param processorClassName name of processor enum class
+	 * @return static method returning {@link ParsableIntervalConfig}
+	 * @throws ReflectiveOperationException if class or method is not found
+	 */
+	public Method getRangeFilterProcessorMethod(String processorClassName) throws ReflectiveOperationException {
+		Method ret = rangeFilterProcessors.get(processorClassName);
+		if (ret == null) {
+			Class<?> processorClass = Class.forName(processorClassName);
+			if (!processorClass.isEnum()) {
+				throw new RuntimeException("Class [" + processorClassName + "] is not an enum type.");
+			}
+			// TODO: improve ParsableIntervalConfig design to make sure this method has to be implemented
+			ret = processorClass.getMethod("parseRequestParameterValue", String.class);
+			rangeFilterProcessors.putIfAbsent(processorClassName, ret);
+		}
+		return ret;
+	}
+
+	/**
+	 * Return (the first) name of aggregation that is built on top of "sys_type" field.
+	 *
+	 * @return name of aggregation or empty string if not configured
+	 */
+	public String getAggregationNameUsingSysTypeField() {
+		for (SemiParsedAggregationConfig config : getParsedAggregations().values()) {
+			if (ContentObjectFields.SYS_TYPE.equals(config.getFieldName())) {
+				return config.getAggregationName();
+			}
+		}
+		return "";
+	}
+
+}
@@ -39,8 +39,38 @@ public class StatsConfiguration {
 
 	protected boolean async;
 
+	protected boolean bulk;
+
+	protected int bulkQueueSize = 10000;
+
+	protected int bulkActions = 500;
+
+	protected long bulkSizeBytes = 5L * 1024L * 1024L;
+
+	protected long bulkFlushInterval = 5000L;
+
+	protected DropPolicy bulkDropPolicy = DropPolicy.DROP_NEWEST;
+
+	protected long recentResponsesWindow = 600L;
+
+	protected int recentResponsesMaxSize = 100000;
+
 	protected Properties settingsProps = null;
 
+	/**
+	 * Policy used when queue of statistics records waiting for bulk write is full.
+	 */
+	public static enum DropPolicy {
+		/**
+		 * New record is dropped.
+		 */
+		DROP_NEWEST,
+		/**
+		 * Oldest record in queue is dropped to make space for new one.
+		 */
+		DROP_OLDEST;
+	}
+
 	/**
 	 * Default constructor.
 	 */
@@ -89,6 +119,68 @@ public class StatsConfiguration {
 		this.async = async;
 	}
 
+	/**
+	 * @return true if asynchronously written records are written in bulk requests by
+	 *         {@link org.searchisko.api.service.StatsBulkWriter}
+	 */
+	public boolean isBulk() {
+		return bulk;
+	}
+
+	public void setBulk(boolean bulk) {
+		this.bulk = bulk;
+	}
+
+	/**
+	 * @return max number of records waiting for bulk write
+	 */
+	public int getBulkQueueSize() {
+		return bulkQueueSize;
+	}
+
+	/**
+	 * @return max number of records in one bulk request, flush is started when this number of records is queued
+	 */
+	public int getBulkActions() {
+		return bulkActions;
+	}
+
+	/**
+	 * @return max size of records in one bulk request [bytes], flush is started when records of this size are queued
+	 */
+	public long getBulkSizeBytes() {
+		return bulkSizeBytes;
+	}
+
+	/**
+	 * @return interval of flushes of queued records [ms]
+	 */
+	public long getBulkFlushInterval() {
+		return bulkFlushInterval;
+	}
+
+	/**
+	 * @return policy used when queue is full
+	 */
+	public DropPolicy getBulkDropPolicy() {
+		return bulkDropPolicy;
+	}
+
+	/**
+	 * @return time window search responses are kept in-memory for validation of "search hit used" records [s], 0 means
+	 *         in-memory validation is not used
+	 */
+	public long getRecentResponsesWindow() {
+		return recentResponsesWindow;
+	}
+
+	/**
+	 * @return max number of search responses kept in-memory in one generation of index
+	 */
+	public int getRecentResponsesMaxSize() {
+		return recentResponsesMaxSize;
+	}
+
 	public Properties getSettingsProps() {
 		return settingsProps;
 	}
@@ -99,6 +191,19 @@ public class StatsConfiguration {
 		enabled = Boolean.parseBoolean(settingsProps.getProperty("stats.enabled", "true"));
 		useSearchCluster = Boolean.parseBoolean(settingsProps.getProperty("stats.useSearchCluster", "true"));
 		async = Boolean.parseBoolean(settingsProps.getProperty("stats.async", "true"));
+		bulk = Boolean.parseBoolean(settingsProps.getProperty("stats.bulk.enabled", "false"));
+		bulkQueueSize = Integer.parseInt(settingsProps.getProperty("stats.bulk.queueSize", "10000").trim());
+		bulkActions = Integer.parseInt(settingsProps.getProperty("stats.bulk.actions", "500").trim());
+		bulkSizeBytes = Long.parseLong(settingsProps.getProperty("stats.bulk.sizeBytes", "5242880").trim());
+		bulkFlushInterval = Long.parseLong(settingsProps.getProperty("stats.bulk.flushInterval", "5000").trim());
+		bulkDropPolicy = DropPolicy.valueOf(settingsProps.getProperty("stats.bulk.dropPolicy", "DROP_NEWEST").trim()
+				.toUpperCase());
+		recentResponsesWindow = Long.parseLong(settingsProps.getProperty("stats.recentResponses.window", "600").trim());
+		recentResponsesMaxSize = Integer.parseInt(settingsProps.getProperty("stats.recentResponses.maxSize", "100000")
+				.trim());
+		if (bulkQueueSize < 1 || bulkActions < 1 || bulkSizeBytes < 1 || bulkFlushInterval < 1) {
+			throw new IllegalArgumentException("stats.bulk.* values in " + FILE + " must be positive numbers");
+		}
 	}
 
 }
@@ -0,0 +1,215 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.searchisko.api.reindexer;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.elasticsearch.indices.IndexMissingException;
+import org.searchisko.api.rest.ContentRestService;
+import org.searchisko.api.service.ContentManipulationLockService;
+import org.searchisko.api.service.ContentPushService;
+import org.searchisko.api.service.ProviderService;
+import org.searchisko.api.service.ProviderService.ProviderContentTypeInfo;
+import org.searchisko.api.service.SearchClientService;
+import org.searchisko.api.tasker.Task;
+import org.searchisko.persistence.service.JdbcIngestQueueService;
+
+/**
+ * Task used to process content pushed asynchronously - it reads content from ingest queue in batches and pushes each
+ * batch same way as bulk push does. Processed content is removed from queue, so task continues with unprocessed content
+ * after failover. Whole queue is removed when task finishes in any other way (canceled, finished with error), as
+ * content left in it is never processed then. Queues of jobs cancelled before they started are removed by
+ * {@link ContentRestService#removeOrphanedIngestQueues()}.
+ * <p>
+ * If push of whole batch fails, content objects from it are pushed one by one, so one bad content object can't block
+ * the job. If all of them fail then search cluster and database health is checked - task ends with failover if some
+ * of them is not available, otherwise failures are caused by content so they are reported and content is removed from
+ * queue. Task ends with failover also while Content Manipulation API is locked for provider, so content is not indexed
+ * during lockdown.
+ *
+ * @author Vlastimil Elias (velias at redhat dot com)
+ * @see JdbcIngestQueueService
+ * @see ContentPushService#pushContentBulk(ProviderContentTypeInfo, Map, Map)
+ * @see ContentRestService#pushContentBulkAsync(String, Map)
+ */
+public class ProcessIngestJobTask extends Task {
+
+	/**
+	 * Max number of errors written into task log, only count of them is written then.
+	 */
+	protected static final int MAX_LOGGED_ERRORS = 100;
+
+	protected JdbcIngestQueueService ingestQueueService;
+
+	protected ProviderService providerService;
+
+	protected SearchClientService searchClientService;
+
+	protected ContentPushService contentPushService;
+
+	protected ContentManipulationLockService contentManipulationLockService;
+
+	protected String sysContentType;
+
+	protected String queueId;
+
+	protected int batchSize;
+
+	public ProcessIngestJobTask(JdbcIngestQueueService ingestQueueService, ProviderService providerService,
+			SearchClientService searchClientService, ContentPushService contentPushService,
+			ContentManipulationLockService contentManipulationLockService, String sysContentType, String queueId,
+			int batchSize) {
+		super();
+		this.ingestQueueService = ingestQueueService;
+		this.providerService = providerService;
+		this.searchClientService = searchClientService;
+		this.contentPushService = contentPushService;
+		this.contentManipulationLockService = contentManipulationLockService;
+		this.sysContentType = sysContentType;
+		this.queueId = queueId;
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Constructor for unit tests.
+	 */
+	protected ProcessIngestJobTask() {
+
+	}
+
+	@Override
+	public void performTask() throws Exception {
+		ProviderContentTypeInfo typeInfo = providerService.findContentType(sysContentType);
+		if (typeInfo == null) {
+			ingestQueueService.removeQueue(queueId);
+			throw new Exception("Configuration not found for sys_content_type " + sysContentType);
+		}
+
+		int count = 0;
+		int unchanged = 0;
+		int errors = 0;
+		boolean queueEmpty = false;
+		boolean failover = false;
+		try {
+			while (!isCanceledOrInterrupted()) {
+				if (contentManipulationLockService.isLockedForProvider(typeInfo.getProviderName())) {
+					throw new OperationLockedException(typeInfo.getProviderName());
+				}
+				Map<String, Object> batch = ingestQueueService.readBatch(queueId, batchSize);
+				if (batch.isEmpty()) {
+					queueEmpty = true;
+					break;
+				}
+				Map<String, Object> ret = pushBatch(typeInfo, batch);
+				for (Map.Entry<String, Object> e : ret.entrySet()) {
+					@SuppressWarnings("unchecked")
+					Map<String, Object> status = (Map<String, Object>) e.getValue();
+					Object s = status.get("status");
+					if ("error".equals(s)) {
+						if (errors < MAX_LOGGED_ERRORS)
+							writeTaskLog("ERROR: content " + e.getKey() + " not pushed: " + status.get("message"));
+						errors++;
+					} else if ("unchanged".equals(s)) {
+						unchanged++;
+					}
+				}
+				count += batch.size();
+				ingestQueueService.remove(queueId, batch.keySet());
+			}
+		} catch (IndexMissingException e) {
+			throw e;
+		} catch (RuntimeException | Error e) {
+			// task is run again later and continues with content left in queue
+			failover = true;
+			throw e;
+		} finally {
+			writeTaskLog(count + " content objects processed, " + unchanged + " unchanged, " + errors + " errors");
+			if (!queueEmpty && !failover && !isInterrupted()) {
+				ingestQueueService.removeQueue(queueId);
+			}
+		}
+	}
+
+	/**
+	 * Push batch of content. Content objects are pushed one by one if push of whole batch fails.
+	 *
+	 * @param typeInfo of pushed content
+	 * @param batch to push
+	 * @return status of push for each content object, key is content id
+	 * @throws RuntimeException if push of all content objects fails one by one also and search cluster or database is not
+	 *           available, so failures are not caused by content
+	 */
+	protected Map<String, Object> pushBatch(ProviderContentTypeInfo typeInfo, Map<String, Object> batch) {
+		Map<String, Object> ret = new LinkedHashMap<>();
+		try {
+			contentPushService.pushContentBulk(typeInfo, batch, ret);
+			return ret;
+		} catch (RuntimeException e) {
+			writeTaskLog("Push of batch failed due " + e.getMessage() + ", content is pushed one by one");
+			ret.clear();
+			RuntimeException lastError = null;
+			for (Map.Entry<String, Object> entry : batch.entrySet()) {
+				try {
+					contentPushService.pushContentBulk(typeInfo,
+							Collections.singletonMap(entry.getKey(), entry.getValue()), ret);
+				} catch (RuntimeException e2) {
+					lastError = e2;
+					Map<String, Object> status = new LinkedHashMap<>();
+					status.put(ContentPushService.RETFIELD_STATUS, "error");
+					status.put(ContentPushService.RETFIELD_MESSAGE, e2.getMessage());
+					ret.put(entry.getKey(), status);
+				}
+			}
+			if (lastError != null && isAllFailed(ret) && !isServicesAvailable(typeInfo)) {
+				throw lastError;
+			}
+			return ret;
+		}
+	}
+
+	/**
+	 * Check if search cluster and database used by push are available.
+	 *
+	 * @param typeInfo of pushed content
+	 * @return true if both are available
+	 */
+	protected boolean isServicesAvailable(ProviderContentTypeInfo typeInfo) {
+		if (!searchClientService.isClusterAvailable(typeInfo.getIndexName())) {
+			writeTaskLog("Search cluster is not available, job will continue later");
+			return false;
+		}
+		try {
+			ingestQueueService.count(queueId);
+		} catch (RuntimeException e) {
+			writeTaskLog("Database is not available due " + e.getMessage() + ", job will continue later");
+			return false;
+		}
+		return true;
+	}
+
+	private static boolean isAllFailed(Map<String, Object> ret) {
+		for (Object status : ret.values()) {
+			if (!"error".equals(((Map<?, ?>) status).get("status")))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Exception thrown when Content Manipulation API is locked for provider, so task fails over and is run later.
+	 */
+	protected static class OperationLockedException extends RuntimeException {
+
+		private static final long serialVersionUID = 1L;
+
+		public OperationLockedException(String providerName) {
+			super("Content manipulation API is locked down for provider " + providerName + ", job will continue later");
+		}
+	}
+
+}
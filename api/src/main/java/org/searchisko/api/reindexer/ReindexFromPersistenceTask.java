@@ -6,6 +6,7 @@
 package org.searchisko.api.reindexer;
 
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import javax.enterprise.event.Event;
@@ -13,6 +14,7 @@ import javax.enterprise.event.Event;
 import org.elasticsearch.action.bulk.BulkRequestBuilder;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.common.settings.SettingsException;
+import org.searchisko.api.events.ContentBatchBeforeIndexedEvent;
 import org.searchisko.api.events.ContentBeforeIndexedEvent;
 import org.searchisko.api.rest.exception.PreprocessorInvalidDataException;
 import org.searchisko.api.service.ProviderService;
@@ -20,8 +22,8 @@ import org.searchisko.api.service.ProviderService.ProviderContentTypeInfo;
 import org.searchisko.api.service.SearchClientService;
 import org.searchisko.api.tasker.Task;
 import org.searchisko.persistence.service.ContentPersistenceService;
+import org.searchisko.persistence.service.ContentStreamHandler;
 import org.searchisko.persistence.service.ContentTuple;
-import org.searchisko.persistence.service.ListRequest;
 
 /**
  * Task used to reindex data from persistent store into ElasticSearch search indices.
@@ -40,15 +42,19 @@ public class ReindexFromPersistenceTask extends Task {
 
 	protected Event<ContentBeforeIndexedEvent> eventBeforeIndexed;
 
+	protected Event<ContentBatchBeforeIndexedEvent> eventBatchBeforeIndexed;
+
 	public ReindexFromPersistenceTask(ContentPersistenceService contentPersistenceService,
 			ProviderService providerService, SearchClientService searchClientService,
-			Event<ContentBeforeIndexedEvent> eventBeforeIndexed, String sysContentType) {
+			Event<ContentBeforeIndexedEvent> eventBeforeIndexed,
+			Event<ContentBatchBeforeIndexedEvent> eventBatchBeforeIndexed, String sysContentType) {
 		super();
 		this.contentPersistenceService = contentPersistenceService;
 		this.providerService = providerService;
 		this.searchClientService = searchClientService;
 		this.sysContentType = sysContentType;
 		this.eventBeforeIndexed = eventBeforeIndexed;
+		this.eventBatchBeforeIndexed = eventBatchBeforeIndexed;
 	}
 
 	/**
@@ -58,57 +64,102 @@ public class ReindexFromPersistenceTask extends Task {
 
 	}
 
+	/**
+	 * Max number of documents sent to search index in one bulk request.
+	 */
+	protected int bulkSize = 1000;
+
 	@Override
 	public void performTask() throws Exception {
-		ProviderContentTypeInfo typeInfo = providerService.findContentType(sysContentType);
+		final ProviderContentTypeInfo typeInfo = providerService.findContentType(sysContentType);
 		if (typeInfo == null) {
 			throw new Exception("Configuration not found for sys_content_type " + sysContentType);
 		}
 
-		int count = 0;
+		BulkIndexingHandler handler = null;
 		try {
 			String indexName = ProviderService.extractIndexName(typeInfo, sysContentType);
 			String indexType = ProviderService.extractIndexType(typeInfo, sysContentType);
-			ListRequest lr = contentPersistenceService.listRequestInit(sysContentType);
-			if (lr.hasContent()) {
-				long startTimestamp = System.currentTimeMillis();
-				Client client = searchClientService.getClient();
-				while (lr.hasContent()) {
-					BulkRequestBuilder brb = client.prepareBulk();
-					for (ContentTuple<String, Map<String, Object>> contentTuple : lr.content()) {
-						if (isCanceledOrInterrupted())
-							return;
-						String id = contentTuple.getId();
-						Map<String, Object> content = contentTuple.getContent();
-						try {
-							// Run preprocessors to normalize mapped fields
-							providerService.runPreprocessors(sysContentType,
-									ProviderService.extractPreprocessors(typeInfo, sysContentType), content);
-						} catch (PreprocessorInvalidDataException e) {
-							writeTaskLog("Data error from preprocessors execution so document " + id + " is skipped: "
-									+ e.getMessage());
-							continue;
-						}
-
-						eventBeforeIndexed.fire(new ContentBeforeIndexedEvent(id, content));
-
-						// Push to search subsystem
-						brb.add(client.prepareIndex(indexName, indexType, id).setSource(content));
-						count++;
-					}
-					brb.execute().actionGet();
-					if (isCanceledOrInterrupted())
-						return;
-					lr = contentPersistenceService.listRequestNext(lr);
-				}
-				// delete old entries from index which are not in persistence store anymore (so they was not updated during this
-				// reindexing run)
+			long startTimestamp = System.currentTimeMillis();
+			handler = new BulkIndexingHandler(searchClientService.getClient(), typeInfo, indexName, indexType);
+			int streamed = contentPersistenceService.streamContent(sysContentType, handler);
+			if (handler.canceled)
+				return;
+			handler.flush();
+			if (streamed > 0 && !isCanceledOrInterrupted()) {
+				// delete old entries from index which are not in persistence store anymore (so they was not updated during
+				// this reindexing run)
 				searchClientService.performDeleteOldRecords(indexName, indexType, new Date(startTimestamp));
 			}
 		} catch (SettingsException e) {
 			throw new Exception(e.getMessage());
 		} finally {
-			writeTaskLog(count + " records reindexed");
+			writeTaskLog((handler != null ? handler.count : 0) + " records reindexed, "
+					+ (handler != null ? handler.skipped : 0) + " records skipped");
+		}
+	}
+
+	/**
+	 * Handler of content streamed from persistence, sends it to search index in bulk requests. Events are fired for
+	 * whole bulk just before it is sent, so observers may process it at once.
+	 */
+	protected class BulkIndexingHandler implements ContentStreamHandler {
+
+		protected final Client client;
+		protected final ProviderContentTypeInfo typeInfo;
+		protected final String indexName;
+		protected final String indexType;
+
+		protected Map<String, Map<String, Object>> bulk = new LinkedHashMap<>();
+		protected int count = 0;
+		protected int skipped = 0;
+		protected boolean canceled = false;
+
+		protected BulkIndexingHandler(Client client, ProviderContentTypeInfo typeInfo, String indexName, String indexType) {
+			this.client = client;
+			this.typeInfo = typeInfo;
+			this.indexName = indexName;
+			this.indexType = indexType;
+		}
+
+		@Override
+		public boolean handle(ContentTuple<String, Map<String, Object>> contentTuple) {
+			if (isCanceledOrInterrupted()) {
+				canceled = true;
+				return false;
+			}
+			String id = contentTuple.getId();
+			Map<String, Object> content = contentTuple.getContent();
+			try {
+				// Run preprocessors to normalize mapped fields
+				providerService.runPreprocessors(sysContentType, ProviderService.extractPreprocessors(typeInfo, sysContentType),
+						content);
+			} catch (PreprocessorInvalidDataException e) {
+				writeTaskLog("Data error from preprocessors execution so document " + id + " is skipped: " + e.getMessage());
+				skipped++;
+				return true;
+			}
+
+			bulk.put(id, content);
+			count++;
+			if (bulk.size() >= bulkSize) {
+				flush();
+			}
+			return true;
+		}
+
+		protected void flush() {
+			if (!bulk.isEmpty()) {
+				eventBatchBeforeIndexed.fire(new ContentBatchBeforeIndexedEvent(bulk));
+				// Push to search subsystem
+				BulkRequestBuilder brb = client.prepareBulk();
+				for (Map.Entry<String, Map<String, Object>> e : bulk.entrySet()) {
+					eventBeforeIndexed.fire(new ContentBeforeIndexedEvent(e.getKey(), e.getValue()));
+					brb.add(client.prepareIndex(indexName, indexType, e.getKey()).setSource(e.getValue()));
+				}
+				brb.execute().actionGet();
+				bulk = new LinkedHashMap<>();
+			}
 		}
 	}
 }
@@ -5,6 +5,20 @@
  */
 package org.searchisko.api.reindexer;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.elasticsearch.action.admin.cluster.shards.ClusterSearchShardsGroup;
 import org.elasticsearch.action.bulk.BulkRequestBuilder;
 import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.elasticsearch.action.search.SearchResponse;
@@ -21,6 +35,8 @@ import org.searchisko.api.tasker.Task;
  * Base abstract class for tasks used to reindex content in ElasticSearch search indices. Content matching some builder
  * is loaded from ES index using Scroll mechanism, some action is applied to document, and then it is stored back to the
  * ES index using bulk request.
+ * <p>
+ * Content may be processed by more scrolls running in parallel, see {@link #setParallelism(int)}.
  * 
  * @author Vlastimil Elias (velias at redhat dot com)
  */
@@ -32,6 +48,14 @@ public abstract class ReindexingTaskBase extends Task {
 
 	protected static final long ES_SCROLL_KEEPALIVE = 60 * 1000;
 
+	/**
+	 * Number of scrolls used to process content in parallel.
+	 */
+	protected int parallelism = 1;
+
+	// set when processing of all scrolls must be stopped due error in one of them
+	private volatile boolean scrollsAborted = false;
+
 	public ReindexingTaskBase(ProviderService providerService, SearchClientService searchClientService) {
 		super();
 		this.providerService = providerService;
@@ -44,48 +68,173 @@ public abstract class ReindexingTaskBase extends Task {
 	protected ReindexingTaskBase() {
 	}
 
+	/**
+	 * Set number of scrolls used to process content in parallel. Each scroll reads distinct subset of index shards and
+	 * stores processed documents back using own bulk requests. Number of scrolls is limited by number of shards. Content
+	 * is processed by one scroll if lower than 2.
+	 * 
+	 * @param parallelism number of scrolls
+	 */
+	public void setParallelism(int parallelism) {
+		this.parallelism = parallelism;
+	}
+
 	@Override
 	public void performTask() throws Exception {
 
 		try {
-			int i = 0;
+			AtomicLong count = new AtomicLong();
 			if (validateTaskConfiguration()) {
 
 				Client client = searchClientService.getClient();
 
-				SearchRequestBuilder srb = prepareSearchRequest(client);
-				srb.setScroll(new TimeValue(ES_SCROLL_KEEPALIVE)).setSearchType(SearchType.SCAN);
-
-				SearchResponse scrollResp = srb.execute().actionGet();
-
-				if (scrollResp.getHits().totalHits() > 0) {
-					scrollResp = executeESScrollSearchNextRequest(client, scrollResp);
-					while (scrollResp.getHits().getHits().length > 0) {
-						BulkRequestBuilder brb = client.prepareBulk();
-						for (SearchHit hit : scrollResp.getHits()) {
-							if (isCanceledOrInterrupted()) {
-								writeTaskLog("Processed " + i + " documents then cancelled.");
-								return;
-							}
-							i++;
-							performHitProcessing(client, brb, hit);
-						}
-						brb.execute().actionGet();
-						if (isCanceledOrInterrupted()) {
-							writeTaskLog("Processed " + i + " documents then cancelled.");
-							return;
-						}
-						scrollResp = executeESScrollSearchNextRequest(client, scrollResp);
-					}
+				List<String> preferences = parallelism > 1 ? prepareShardPreferences(client) : null;
+				boolean hitsFound;
+				if (preferences == null || preferences.size() < 2) {
+					hitsFound = processScroll(client, prepareSearchRequest(client), count);
+				} else {
+					writeTaskLog("Processing content by " + preferences.size() + " parallel scrolls.");
+					hitsFound = processScrollsInParallel(client, preferences, count);
+				}
+				if (isCanceledOrInterrupted()) {
+					writeTaskLog("Processed " + count.get() + " documents then cancelled.");
+					return;
+				}
+				if (hitsFound) {
 					performPostReindexingProcessing(client);
 				}
 			}
-			writeTaskLog("Processed " + i + " documents.");
+			writeTaskLog("Processed " + count.get() + " documents.");
 		} catch (SettingsException e) {
 			throw new Exception(e.getMessage());
 		}
 	}
 
+	/**
+	 * Process all documents returned by search request using scroll.
+	 * 
+	 * @param client to be used
+	 * @param srb search request to get documents to be processed
+	 * @param count counter of processed documents to be incremented
+	 * @return true if some document was found for search request
+	 */
+	protected boolean processScroll(Client client, SearchRequestBuilder srb, AtomicLong count) {
+		srb.setScroll(new TimeValue(ES_SCROLL_KEEPALIVE)).setSearchType(SearchType.SCAN);
+
+		SearchResponse scrollResp = srb.execute().actionGet();
+
+		if (scrollResp.getHits().totalHits() == 0) {
+			return false;
+		}
+		scrollResp = executeESScrollSearchNextRequest(client, scrollResp);
+		while (scrollResp.getHits().getHits().length > 0) {
+			BulkRequestBuilder brb = client.prepareBulk();
+			for (SearchHit hit : scrollResp.getHits()) {
+				if (isScrollProcessingStopped()) {
+					return true;
+				}
+				count.incrementAndGet();
+				performHitProcessing(client, brb, hit);
+			}
+			brb.execute().actionGet();
+			if (isScrollProcessingStopped()) {
+				return true;
+			}
+			scrollResp = executeESScrollSearchNextRequest(client, scrollResp);
+		}
+		return true;
+	}
+
+	/**
+	 * Process documents by more scrolls running in parallel threads, each one for one search preference. Processing of
+	 * all scrolls is stopped if one of them fails, and first error is thrown then.
+	 * 
+	 * @param client to be used
+	 * @param preferences search preferences selecting shards for each scroll
+	 * @param count counter of processed documents to be incremented
+	 * @return true if some document was found by any scroll
+	 * @throws Exception thrown from scroll processing
+	 * @see #prepareShardPreferences(Client)
+	 */
+	protected boolean processScrollsInParallel(final Client client, List<String> preferences, final AtomicLong count)
+			throws Exception {
+		scrollsAborted = false;
+		ExecutorService executor = Executors.newFixedThreadPool(preferences.size(), new ScrollThreadFactory(getName()));
+		try {
+			List<Future<Boolean>> futures = new ArrayList<>(preferences.size());
+			for (String preference : preferences) {
+				final SearchRequestBuilder srb = prepareSearchRequest(client).setPreference(preference);
+				futures.add(executor.submit(new Callable<Boolean>() {
+					@Override
+					public Boolean call() throws Exception {
+						try {
+							return processScroll(client, srb, count);
+						} catch (RuntimeException | Error e) {
+							scrollsAborted = true;
+							throw e;
+						}
+					}
+				}));
+			}
+			boolean hitsFound = false;
+			Throwable error = null;
+			for (Future<Boolean> future : futures) {
+				try {
+					hitsFound |= future.get();
+				} catch (ExecutionException e) {
+					if (error == null)
+						error = e.getCause();
+				}
+			}
+			if (error instanceof Exception)
+				throw (Exception) error;
+			if (error instanceof Error)
+				throw (Error) error;
+			return hitsFound;
+		} finally {
+			scrollsAborted = true;
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Prepare search preferences to split documents into distinct subsets by shards they are stored in. Number of
+	 * subsets is given by {@link #parallelism} and limited by number of shards. Same shard number is used for all indices
+	 * searched by {@link #prepareSearchRequest(Client)}.
+	 * 
+	 * @param client to be used
+	 * @return list of search preferences
+	 */
+	protected List<String> prepareShardPreferences(Client client) {
+		String[] indices = prepareSearchRequest(client).request().indices();
+		SortedSet<Integer> shardIds = new TreeSet<>();
+		for (ClusterSearchShardsGroup group : client.admin().cluster().prepareSearchShards(indices).execute().actionGet()
+				.getGroups()) {
+			shardIds.add(group.getShardId());
+		}
+		int slices = Math.min(parallelism, shardIds.size());
+		List<StringBuilder> sbs = new ArrayList<>(slices);
+		int i = 0;
+		for (Integer shardId : shardIds) {
+			int slice = i++ % slices;
+			if (sbs.size() <= slice) {
+				sbs.add(new StringBuilder("_shards:"));
+			} else {
+				sbs.get(slice).append(",");
+			}
+			sbs.get(slice).append(shardId);
+		}
+		List<String> ret = new ArrayList<>(slices);
+		for (StringBuilder sb : sbs) {
+			ret.add(sb.toString());
+		}
+		return ret;
+	}
+
+	private boolean isScrollProcessingStopped() {
+		return scrollsAborted || isCanceledOrInterrupted();
+	}
+
 	/**
 	 * Validate task configuration, called before reindexing
 	 * 
@@ -122,4 +271,21 @@ public abstract class ReindexingTaskBase extends Task {
 		return client.prepareSearchScroll(scrollResp.getScrollId()).setScroll(new TimeValue(ES_SCROLL_KEEPALIVE)).execute()
 				.actionGet();
 	}
+
+	private static class ScrollThreadFactory implements ThreadFactory {
+
+		private final String namePrefix;
+		private final AtomicInteger counter = new AtomicInteger();
+
+		protected ScrollThreadFactory(String taskThreadName) {
+			this.namePrefix = "Scroll thread for " + taskThreadName + " #";
+		}
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, namePrefix + counter.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	}
 }
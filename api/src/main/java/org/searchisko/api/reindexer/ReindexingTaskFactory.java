@@ -21,7 +21,11 @@ import javax.inject.Inject;
 import javax.inject.Named;
 
 import org.searchisko.api.ContentObjectFields;
+import org.searchisko.api.events.ContentBatchBeforeIndexedEvent;
 import org.searchisko.api.events.ContentBeforeIndexedEvent;
+import org.searchisko.api.service.AppConfigurationService;
+import org.searchisko.api.service.ContentManipulationLockService;
+import org.searchisko.api.service.ContentPushService;
 import org.searchisko.api.service.ContributorProfileService;
 import org.searchisko.api.service.ContributorService;
 import org.searchisko.api.service.ProjectService;
@@ -33,6 +37,7 @@ import org.searchisko.api.tasker.TaskConfigurationException;
 import org.searchisko.api.tasker.TaskFactory;
 import org.searchisko.api.tasker.UnsupportedTaskException;
 import org.searchisko.persistence.service.ContentPersistenceService;
+import org.searchisko.persistence.service.JdbcIngestQueueService;
 
 /**
  * {@link TaskFactory} for Searchisko tasks. It's CDI singleton bean because it needs to be injected some other
@@ -53,6 +58,7 @@ public class ReindexingTaskFactory implements TaskFactory {
 	public static final String CFG_SYS_CONTENT_TYPE = "sys_content_type";
 	public static final String CFG_PROJECT_CODE = "project_code";
 	public static final String CFG_CONTRIBUTOR_CODE = "contributor_code";
+	public static final String CFG_INGEST_QUEUE_ID = "ingest_queue_id";
 
 	@Inject
 	protected ContentPersistenceService contentPersistenceService;
@@ -75,6 +81,21 @@ public class ReindexingTaskFactory implements TaskFactory {
 	@Inject
 	protected ContributorService contributorService;
 
+	@Inject
+	protected JdbcIngestQueueService ingestQueueService;
+
+	@Inject
+	protected AppConfigurationService appConfigurationService;
+
+	@Inject
+	protected Event<ContentBatchBeforeIndexedEvent> eventBatchBeforeIndexed;
+
+	@Inject
+	protected ContentManipulationLockService contentManipulationLockService;
+
+	@Inject
+	protected ContentPushService contentPushService;
+
 	@Override
 	public List<String> listSupportedTaskTypes() {
 		List<String> ret = new ArrayList<String>();
@@ -110,6 +131,8 @@ public class ReindexingTaskFactory implements TaskFactory {
 			return new ReindexSearchableEntityTask(contributorService);
 		case REINDEX_PROJECT:
 			return new ReindexSearchableEntityTask(projectService);
+		case PROCESS_INGEST_JOB:
+			return createProcessIngestJobTask(taskConfig);
 		}
 		throw new UnsupportedTaskException(taskType);
 	}
@@ -120,13 +143,18 @@ public class ReindexingTaskFactory implements TaskFactory {
 		if (typeDef == null) {
 			throw new TaskConfigurationException("Content type '" + sysContentType + "' doesn't exists.");
 		}
-		return new RenormalizeByContentTypeTask(providerService, searchClientService, sysContentType);
+		return configureParallelism(new RenormalizeByContentTypeTask(providerService, searchClientService, sysContentType));
 	}
 
 	private Task createRenormalizeByEsValueTask(Map<String, Object> taskConfig, String taskConfigField, String esField)
 			throws TaskConfigurationException {
-		return new RenormalizeByEsValueTask(providerService, searchClientService, esField, getMandatoryConfigStringArray(
-				taskConfig, taskConfigField));
+		return configureParallelism(new RenormalizeByEsValueTask(providerService, searchClientService, esField,
+				getMandatoryConfigStringArray(taskConfig, taskConfigField)));
+	}
+
+	private Task configureParallelism(ReindexingTaskBase task) {
+		task.setParallelism(appConfigurationService.getAppConfiguration().getReindexingParallelism());
+		return task;
 	}
 
 	private Task createRenormalizeByEsLookedUpValuesTask(Map<String, Object> taskConfig, String lookupIndex,
@@ -143,11 +171,22 @@ public class ReindexingTaskFactory implements TaskFactory {
 		if (typeDef == null) {
 			throw new TaskConfigurationException("Content type '" + sysContentType + "' doesn't exists.");
 		}
-		if (!ProviderService.extractPersist(typeDef.getTypeDef())) {
+		if (!typeDef.isPersist()) {
 			throw new TaskConfigurationException("Content type '" + sysContentType + "' is not persisted.");
 		}
 		return new ReindexFromPersistenceTask(contentPersistenceService, providerService, searchClientService,
-				eventBeforeIndexed, sysContentType);
+				eventBeforeIndexed, eventBatchBeforeIndexed, sysContentType);
+	}
+
+	private Task createProcessIngestJobTask(Map<String, Object> taskConfig) throws TaskConfigurationException {
+		String sysContentType = getMandatoryConfigString(taskConfig, CFG_SYS_CONTENT_TYPE);
+		String queueId = getMandatoryConfigString(taskConfig, CFG_INGEST_QUEUE_ID);
+		if (providerService.findContentType(sysContentType) == null) {
+			throw new TaskConfigurationException("Content type '" + sysContentType + "' doesn't exists.");
+		}
+		return new ProcessIngestJobTask(ingestQueueService, providerService, searchClientService, contentPushService,
+				contentManipulationLockService, sysContentType, queueId, appConfigurationService.getAppConfiguration()
+						.getIngestQueueBatchSize());
 	}
 
 	/**
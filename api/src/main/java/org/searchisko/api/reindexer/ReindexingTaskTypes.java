@@ -13,7 +13,7 @@ import org.searchisko.api.tasker.UnsupportedTaskException;
  * @author Vlastimil Elias (velias at redhat dot com)
  */
 public enum ReindexingTaskTypes {
-	REINDEX_FROM_PERSISTENCE, RENORMALIZE_BY_CONTENT_TYPE, RENORMALIZE_BY_PROJECT_CODE, RENORMALIZE_BY_CONTRIBUTOR_CODE, RENORMALIZE_BY_CONTRIBUTOR_LOOKUP_ID, RENORMALIZE_BY_PROJECT_LOOKUP_ID, UPDATE_CONTRIBUTOR_PROFILE, SYNC_CONTRIBUTORS_AND_PROFILES, REINDEX_CONTRIBUTOR, REINDEX_PROJECT;
+	REINDEX_FROM_PERSISTENCE, RENORMALIZE_BY_CONTENT_TYPE, RENORMALIZE_BY_PROJECT_CODE, RENORMALIZE_BY_CONTRIBUTOR_CODE, RENORMALIZE_BY_CONTRIBUTOR_LOOKUP_ID, RENORMALIZE_BY_PROJECT_LOOKUP_ID, UPDATE_CONTRIBUTOR_PROFILE, SYNC_CONTRIBUTORS_AND_PROFILES, REINDEX_CONTRIBUTOR, REINDEX_PROJECT, PROCESS_INGEST_JOB;
 
 	/**
 	 * @return task type identifier for this type
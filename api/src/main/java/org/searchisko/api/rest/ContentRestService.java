@@ -5,11 +5,19 @@
  */
 package org.searchisko.api.rest;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.logging.Level;
 
 import javax.annotation.security.RolesAllowed;
@@ -24,20 +32,27 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonProcessingException;
+import org.codehaus.jackson.JsonToken;
+import org.codehaus.jackson.map.ObjectMapper;
 
 import org.elasticsearch.action.bulk.BulkItemResponse;
 import org.elasticsearch.action.bulk.BulkRequestBuilder;
 import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.delete.DeleteResponse;
 import org.elasticsearch.action.get.GetResponse;
-import org.elasticsearch.action.index.IndexRequestBuilder;
-import org.elasticsearch.action.index.IndexResponse;
 import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.elasticsearch.action.search.SearchResponse;
-import org.elasticsearch.common.settings.SettingsException;
+import org.elasticsearch.index.engine.DocumentAlreadyExistsException;
+import org.elasticsearch.index.engine.DocumentMissingException;
+import org.elasticsearch.index.engine.VersionConflictEngineException;
 import org.elasticsearch.index.query.QueryBuilders;
 import org.elasticsearch.indices.IndexMissingException;
 import org.elasticsearch.search.sort.SortOrder;
@@ -45,22 +60,34 @@ import org.searchisko.api.ContentObjectFields;
 import org.searchisko.api.audit.annotation.Audit;
 import org.searchisko.api.audit.annotation.AuditContent;
 import org.searchisko.api.audit.annotation.AuditId;
+import org.searchisko.api.events.ContentBatchBeforeIndexedEvent;
+import org.searchisko.api.events.ContentBatchStoredEvent;
 import org.searchisko.api.events.ContentBeforeIndexedEvent;
 import org.searchisko.api.events.ContentDeletedEvent;
 import org.searchisko.api.events.ContentStoredEvent;
+import org.searchisko.api.reindexer.ReindexingTaskFactory;
+import org.searchisko.api.reindexer.ReindexingTaskTypes;
 import org.searchisko.api.rest.exception.BadFieldException;
 import org.searchisko.api.rest.exception.NotAuthorizedException;
 import org.searchisko.api.rest.exception.OperationUnavailableException;
 import org.searchisko.api.rest.exception.PreprocessorInvalidDataException;
 import org.searchisko.api.rest.exception.RequiredFieldException;
 import org.searchisko.api.security.Role;
+import org.searchisko.api.service.AppConfigurationService;
 import org.searchisko.api.service.AuthenticationUtilService;
 import org.searchisko.api.service.ContentManipulationLockService;
+import org.searchisko.api.service.ContentPushService;
 import org.searchisko.api.service.ProviderService;
 import org.searchisko.api.service.ProviderService.ProviderContentTypeInfo;
 import org.searchisko.api.service.SearchClientService;
+import org.searchisko.api.service.TaskService;
+import org.searchisko.api.tasker.TaskConfigurationException;
+import org.searchisko.api.tasker.TaskStatus;
+import org.searchisko.api.tasker.TaskStatusInfo;
+import org.searchisko.api.tasker.UnsupportedTaskException;
 import org.searchisko.api.util.SearchUtils;
 import org.searchisko.persistence.service.ContentPersistenceService;
+import org.searchisko.persistence.service.JdbcIngestQueueService;
 
 /**
  * REST API for Content related operations.
@@ -75,11 +102,12 @@ import org.searchisko.persistence.service.ContentPersistenceService;
 @RolesAllowed({ Role.ADMIN, Role.PROVIDER })
 public class ContentRestService extends RestServiceBase {
 
-	static final String RETFIELD_WARNINGS = "warnings";
-
-	static final String RETFIELD_MESSAGE = "message";
+	static final String RETFIELD_JOB_ID = "job_id";
 
-	static final String RETFIELD_STATUS = "status";
+	/**
+	 * Number of content objects pushed in one chunk by {@link #pushContentBulkStream(String, InputStream)}.
+	 */
+	protected static final int BULK_STREAM_CHUNK_SIZE = 100;
 
 	@Inject
 	protected ProviderService providerService;
@@ -97,13 +125,19 @@ public class ContentRestService extends RestServiceBase {
 	protected ContentManipulationLockService contentManipulationLockService;
 
 	@Inject
-	protected Event<ContentStoredEvent> eventContentStored;
+	protected ContentPushService contentPushService;
 
 	@Inject
 	protected Event<ContentDeletedEvent> eventContentDeleted;
 
 	@Inject
-	protected Event<ContentBeforeIndexedEvent> eventBeforeIndexed;
+	protected JdbcIngestQueueService ingestQueueService;
+
+	@Inject
+	protected TaskService taskService;
+
+	@Inject
+	protected AppConfigurationService appConfigurationService;
 
 	@GET
 	@Path("/")
@@ -200,36 +234,199 @@ public class ContentRestService extends RestServiceBase {
 
 		ProviderContentTypeInfo typeInfo = getTypeInfoWithManagePermissionCheck(type);
 
-		PushContentImplRet pcir = pushContentImpl(typeInfo, contentId, content);
+		return Response.ok(contentPushService.pushContent(typeInfo, contentId, content)).build();
+	}
+
+	/**
+	 * Update some fields of content stored in Searchisko before. Passed fields are applied to stored content - see
+	 * {@link SearchUtils#applyJsonMapPatch(Map, Map)}, all preprocessors are run on the merged content and only changed
+	 * fields are sent to the search index. Version of indexed content read before patch is checked during update, so
+	 * <code>409 Conflict</code> is returned if content is changed concurrently.
+	 * 
+	 * This method fires {@link ContentBeforeIndexedEvent} and {@link ContentStoredEvent}.
+	 */
+	@PATCH
+	@Path("/{contentId}")
+	@Consumes(MediaType.APPLICATION_JSON)
+	@Produces(MediaType.APPLICATION_JSON)
+	public Object patchContent(@PathParam("type") String type, @PathParam("contentId") String contentId,
+			Map<String, Object> patch) throws PreprocessorInvalidDataException, IOException {
+
+		// validation
+		if (contentId == null || contentId.isEmpty()) {
+			throw new RequiredFieldException("contentId");
+		}
+		if (patch == null || patch.isEmpty()) {
+			throw new BadFieldException("content", "Some fields for patching must be defined");
+		}
+
+		ProviderContentTypeInfo typeInfo = getTypeInfoWithManagePermissionCheck(type);
+
+		String sysContentId = providerService.generateSysId(type, contentId);
+		String indexName = ProviderService.extractIndexName(typeInfo, type);
+		String indexType = ProviderService.extractIndexType(typeInfo, type);
+
+		// source is read from persistence if content is persisted, but version is always taken from search index
+		GetResponse indexed = getIndexedContent(indexName, indexType, sysContentId, !typeInfo.isPersist());
+		long version = indexed != null ? indexed.getVersion() : -1;
+		Map<String, Object> content = null;
+		if (typeInfo.isPersist()) {
+			content = contentPersistenceService.get(sysContentId, type);
+		} else if (indexed != null) {
+			content = indexed.getSourceAsMap();
+		}
+		if (content == null) {
+			return Response.status(Status.NOT_FOUND).entity("Content not found to be patched.").build();
+		}
+		// copy of original content to detect changed fields
+		Map<String, Object> original = SearchUtils.convertToJsonMap(SearchUtils.convertJsonMapToString(content));
+
+		SearchUtils.applyJsonMapPatch(patch, content);
+
+		// normalized fields can't be changed by patch
+		content.put(ContentObjectFields.SYS_CONTENT_PROVIDER, typeInfo.getProviderName());
+		content.put(ContentObjectFields.SYS_CONTENT_ID, contentId);
+		content.put(ContentObjectFields.SYS_CONTENT_TYPE, type);
+		content.put(ContentObjectFields.SYS_ID, sysContentId);
+		content.put(ContentObjectFields.SYS_TYPE, ProviderService.extractSysType(typeInfo.getTypeDef(), type));
+		content.put(ContentObjectFields.SYS_UPDATED, new Date());
+		// hash of content pushed before is no longer valid, so next push of same content must not be skipped
+		content.remove(ContentObjectFields.SYS_CONTENT_HASH);
+		if (patch.containsKey(ContentObjectFields.TAGS)) {
+			content.put(ContentObjectFields.SYS_TAGS, content.get(ContentObjectFields.TAGS));
+		}
+		if (patch.containsKey(ContentObjectFields.SYS_VISIBLE_FOR_ROLES)) {
+			contentPushService.processFieldSysVisibleForRoles(content);
+		}
+
+		// we do not know which fields preprocessors read, so whole chain is run to keep derived fields consistent
+		List<Map<String, String>> contentWarnings = providerService.runPreprocessors(type,
+				ProviderService.extractPreprocessors(typeInfo, type), content);
+
+		if (content.containsKey(ContentObjectFields.SYS_CONTENT)) {
+			content.put(ContentObjectFields.SYS_CONTENT_CONTENT_TYPE,
+					ProviderService.extractSysContentContentType(typeInfo.getTypeDef(), type));
+		} else {
+			content.remove(ContentObjectFields.SYS_CONTENT_CONTENT_TYPE);
+		}
+
+		// content is persisted only once it is successfully indexed, so persistence is not changed on conflict. Copy is
+		// persisted as event listeners add top level fields which must not be persisted.
+		Map<String, Object> toPersist = null;
+		if (typeInfo.isPersist()) {
+			toPersist = new HashMap<>(content);
+		}
+
+		contentPushService.fireContentBeforeIndexedEvents(Collections.singletonMap(sysContentId, content));
 
 		// Push to search subsystem
-		IndexResponse ir = pcir.irb.execute().actionGet();
+		try {
+			if (version < 0) {
+				searchClientService.getClient().prepareIndex(indexName, indexType, sysContentId).setSource(content)
+						.setCreate(true).execute().actionGet();
+			} else {
+				Map<String, Object> partial = createPartialDocument(original, content);
+				if (partial != null) {
+					searchClientService.getClient().prepareUpdate(indexName, indexType, sysContentId).setDoc(partial)
+							.setVersion(version).execute().actionGet();
+				} else {
+					searchClientService.getClient().prepareIndex(indexName, indexType, sysContentId).setSource(content)
+							.setVersion(version).execute().actionGet();
+				}
+			}
+		} catch (VersionConflictEngineException | DocumentMissingException | DocumentAlreadyExistsException e) {
+			log.log(Level.FINE, "Content {0} changed concurrently during patch", sysContentId);
+			return Response.status(Status.CONFLICT).entity("Content was changed concurrently, patch it again.").build();
+		}
+		contentPushService.invalidateSearchResultCache(typeInfo);
 
-		ContentStoredEvent event = new ContentStoredEvent(pcir.sysContentId, content);
-		log.log(Level.FINE, "Going to fire event {0}", event);
-		eventContentStored.fire(event);
+		if (toPersist != null) {
+			contentPersistenceService.store(sysContentId, type, toPersist);
+		}
+
+		contentPushService.fireContentStoredEvents(Collections.singletonMap(sysContentId, content));
 
 		Map<String, Object> retJson = new LinkedHashMap<String, Object>();
-		processIndexResponse(ir, retJson);
-		if (pcir.contentWarnings != null && !pcir.contentWarnings.isEmpty())
-			retJson.put(RETFIELD_WARNINGS, pcir.contentWarnings);
+		retJson.put(ContentPushService.RETFIELD_STATUS, "update");
+		retJson.put(ContentPushService.RETFIELD_MESSAGE, "Content updated successfully.");
+		if (contentWarnings != null && !contentWarnings.isEmpty())
+			retJson.put(ContentPushService.RETFIELD_WARNINGS, contentWarnings);
 		return Response.ok(retJson).build();
 	}
 
-	private void processIndexResponse(IndexResponse ir, Map<String, Object> retJson) {
-		if (ir.getVersion() > 1) {
-			retJson.put(RETFIELD_STATUS, "update");
-			retJson.put(RETFIELD_MESSAGE, "Content updated successfully.");
-		} else {
-			retJson.put(RETFIELD_STATUS, "insert");
-			retJson.put(RETFIELD_MESSAGE, "Content inserted successfully.");
+	/**
+	 * Get content from search index.
+	 * 
+	 * @param indexName content is indexed into
+	 * @param indexType content is indexed into
+	 * @param sysContentId of content
+	 * @param fetchSource if true then source of content is read, only version otherwise
+	 * @return response or null if content doesn't exist in index
+	 */
+	protected GetResponse getIndexedContent(String indexName, String indexType, String sysContentId,
+			boolean fetchSource) {
+		try {
+			GetResponse gr = searchClientService.getClient().prepareGet(indexName, indexType, sysContentId)
+					.setFetchSource(fetchSource).execute().actionGet();
+			if (gr.isExists()) {
+				return gr;
+			}
+		} catch (IndexMissingException e) {
+			// content doesn't exist
 		}
+		return null;
+	}
+
+	/**
+	 * Create partial document with top level fields changed in content. Removed fields are set to <code>null</code>.
+	 * 
+	 * @param original content before change
+	 * @param content after change
+	 * @return partial document, or null if it can't be used to update search index, because some field contains object
+	 *         with removed value which partial update can't remove.
+	 * @throws IOException
+	 */
+	protected Map<String, Object> createPartialDocument(Map<String, Object> original, Map<String, Object> content)
+			throws IOException {
+		Map<String, Object> ret = new LinkedHashMap<>();
+		for (Map.Entry<String, Object> e : content.entrySet()) {
+			Object originalValue = original.get(e.getKey());
+			if (!toJson(e.getKey(), e.getValue()).equals(toJson(e.getKey(), originalValue))) {
+				if (!containsAllKeys(e.getValue(), originalValue))
+					return null;
+				ret.put(e.getKey(), e.getValue());
+			}
+		}
+		for (String key : original.keySet()) {
+			if (!content.containsKey(key))
+				ret.put(key, null);
+		}
+		return ret;
+	}
+
+	private String toJson(String key, Object value) throws IOException {
+		Map<String, Object> m = new HashMap<>();
+		m.put(key, value);
+		return SearchUtils.convertJsonMapToString(m);
+	}
+
+	@SuppressWarnings("unchecked")
+	private boolean containsAllKeys(Object value, Object originalValue) {
+		if (!(value instanceof Map) || !(originalValue instanceof Map))
+			return true;
+		Map<String, Object> m = (Map<String, Object>) value;
+		for (Map.Entry<String, Object> e : ((Map<String, Object>) originalValue).entrySet()) {
+			if (!m.containsKey(e.getKey()) || !containsAllKeys(m.get(e.getKey()), e.getValue()))
+				return false;
+		}
+		return true;
 	}
 
 	/**
 	 * Store bulk of new content into Searchisko.
 	 * 
-	 * This method fires series of {@link ContentBeforeIndexedEvent} and {@link ContentStoredEvent}.
+	 * This method fires {@link ContentBatchBeforeIndexedEvent} and {@link ContentBatchStoredEvent} for whole bulk, and
+	 * series of {@link ContentBeforeIndexedEvent} and {@link ContentStoredEvent}.
 	 */
 	@POST
 	@Path("/")
@@ -240,163 +437,245 @@ public class ContentRestService extends RestServiceBase {
 		ProviderContentTypeInfo typeInfo = getTypeInfoWithManagePermissionCheck(type);
 
 		Map<String, Object> ret = new LinkedHashMap<>();
+		contentPushService.pushContentBulk(typeInfo, contentStructure, ret);
+		return ret;
 
-		if (contentStructure.isEmpty())
-			return ret;
+	}
 
-		BulkRequestBuilder brb = searchClientService.getClient().prepareBulk();
-		List<String> ids = new ArrayList<>();
-		Map<String, PushContentImplRet> pcis = new LinkedHashMap<>();
+	/**
+	 * Accept bulk of new content to be stored into Searchisko asynchronously. Content is put into durable ingest queue
+	 * and processed later in batches by {@link ReindexingTaskTypes#PROCESS_INGEST_JOB} task, so request returns
+	 * immediately with HTTP code 202 and id of ingest job. Status of job can be obtained by
+	 * {@link #getPushContentAsyncJob(String, String)}. Request is refused with HTTP code 503 if ingest queue is full,
+	 * see {@link JdbcIngestQueueService#enqueue(Map, int)} for details about the limit.
+	 * 
+	 * This method fires {@link ContentBatchBeforeIndexedEvent} and {@link ContentBatchStoredEvent} for each batch, and
+	 * series of {@link ContentBeforeIndexedEvent} and {@link ContentStoredEvent} during job processing.
+	 */
+	@POST
+	@Path("/_async")
+	@Consumes(MediaType.APPLICATION_JSON)
+	@Produces(MediaType.APPLICATION_JSON)
+	public Object pushContentBulkAsync(@PathParam("type") String type, Map<String, Object> contentStructure) {
 
+		ProviderContentTypeInfo typeInfo = getTypeInfoWithManagePermissionCheck(type);
+
+		if (contentStructure == null || contentStructure.isEmpty()) {
+			throw new BadFieldException("content", "Some content for pushing must be defined");
+		}
+		Map<String, Map<String, Object>> toQueue = new LinkedHashMap<>();
 		for (String contentId : contentStructure.keySet()) {
 			Object o = contentStructure.get(contentId);
 			if (!(o instanceof Map)) {
-				Map<String, Object> retitem = new LinkedHashMap<>();
-				retitem.put(RETFIELD_STATUS, "error");
-				retitem.put(RETFIELD_MESSAGE, "content must be JSON structure");
-				ret.put(contentId, retitem);
-			} else {
-				@SuppressWarnings("unchecked")
-				Map<String, Object> content = (Map<String, Object>) o;
-				try {
-					PushContentImplRet pcir = pushContentImpl(typeInfo, contentId, content);
-					brb.add(pcir.irb);
-					ids.add(contentId);
-					pcis.put(contentId, pcir);
-				} catch (RequiredFieldException | BadFieldException | PreprocessorInvalidDataException e) {
-					Map<String, Object> retitem = new LinkedHashMap<>();
-					retitem.put(RETFIELD_STATUS, "error");
-					retitem.put(RETFIELD_MESSAGE, e.getMessage());
-					ret.put(contentId, retitem);
-				}
+				throw new BadFieldException("content", "content must be JSON structure for id " + contentId);
 			}
+			@SuppressWarnings("unchecked")
+			Map<String, Object> content = (Map<String, Object>) o;
+			toQueue.put(contentId, content);
 		}
 
-		if (!ids.isEmpty()) {
-			BulkResponse br = brb.execute().actionGet();
-
-			int i = 0;
-			for (BulkItemResponse bri : br.getItems()) {
-				String contentId = ids.get(i);
-				Map<String, Object> retitem = new LinkedHashMap<>();
-				ret.put(contentId, retitem);
-				if (!bri.isFailed()) {
-					PushContentImplRet pcir = pcis.get(contentId);
-					ContentStoredEvent event = new ContentStoredEvent(pcir.sysContentId, pcir.content);
-					log.log(Level.FINE, "Going to fire event {0}", event);
-					eventContentStored.fire(event);
+		int maxSize = appConfigurationService.getAppConfiguration().getIngestQueueMaxSize();
+		String queueId = null;
+		if (ingestQueueService.count(null) + toQueue.size() <= maxSize || removeOrphanedIngestQueues() > 0) {
+			queueId = ingestQueueService.enqueue(toQueue, maxSize);
+		}
+		if (queueId == null) {
+			throw new OperationUnavailableException("Ingest queue is full, try again later");
+		}
 
-					processIndexResponse((IndexResponse) bri.getResponse(), retitem);
-					if (pcir.contentWarnings != null && !pcir.contentWarnings.isEmpty())
-						retitem.put(RETFIELD_WARNINGS, pcir.contentWarnings);
-				} else {
-					retitem.put(RETFIELD_STATUS, "error");
-					retitem.put(RETFIELD_MESSAGE, bri.getFailureMessage());
-				}
-				i++;
-			}
+		String jobId;
+		try {
+			Map<String, Object> taskConfig = new HashMap<>();
+			taskConfig.put(ReindexingTaskFactory.CFG_SYS_CONTENT_TYPE, type);
+			taskConfig.put(ReindexingTaskFactory.CFG_INGEST_QUEUE_ID, queueId);
+			jobId = taskService.getTaskManager().createTask(ReindexingTaskTypes.PROCESS_INGEST_JOB.getTaskType(),
+					taskConfig);
+		} catch (UnsupportedTaskException | TaskConfigurationException | RuntimeException e) {
+			ingestQueueService.removeQueue(queueId);
+			throw new RuntimeException("Ingest job can't be created: " + e.getMessage(), e);
 		}
-		return ret;
 
+		Map<String, Object> retJson = new LinkedHashMap<>();
+		retJson.put(RETFIELD_JOB_ID, jobId);
+		retJson.put(ContentPushService.RETFIELD_STATUS, "accepted");
+		retJson.put(ContentPushService.RETFIELD_MESSAGE, toQueue.size() + " content objects accepted for processing.");
+		return Response.status(Status.ACCEPTED).entity(retJson).build();
 	}
 
-	public PushContentImplRet pushContentImpl(ProviderContentTypeInfo typeInfo, String contentId,
-			Map<String, Object> content) throws RequiredFieldException, BadFieldException, PreprocessorInvalidDataException {
-
-		String type = typeInfo.getTypeName();
+	/**
+	 * Time [ms] after which queue not referenced by any unfinished ingest job is treated as orphaned. Protects queue
+	 * between it's creation and creation of its job.
+	 */
+	protected static final long INGEST_QUEUE_ORPHAN_TIMEOUT = 60 * 1000;
 
-		// content validation
-		if (contentId == null || contentId.isEmpty()) {
-			throw new RequiredFieldException("contentId");
+	/**
+	 * Remove ingest queues which are never processed because their job is not going to run, eg. job was canceled before
+	 * it started.
+	 *
+	 * @return number of removed queues
+	 */
+	protected int removeOrphanedIngestQueues() {
+		Set<String> activeQueueIds = new HashSet<>();
+		List<TaskStatusInfo> tasks = taskService.getTaskManager().listTasks(
+				ReindexingTaskTypes.PROCESS_INGEST_JOB.getTaskType(),
+				Arrays.asList(TaskStatus.NEW, TaskStatus.RUNNING, TaskStatus.FAILOVER), 0, 0);
+		for (TaskStatusInfo tsi : tasks) {
+			Map<String, Object> taskConfig = tsi.getTaskConfig();
+			if (taskConfig != null && taskConfig.get(ReindexingTaskFactory.CFG_INGEST_QUEUE_ID) != null)
+				activeQueueIds.add(taskConfig.get(ReindexingTaskFactory.CFG_INGEST_QUEUE_ID).toString());
 		}
-
-		if (contentId.startsWith("_") || contentId.contains(",") || contentId.contains("*")) {
-			throw new BadFieldException("contentId", "contentId can't start with underscore or contain comma, star");
+		int count = 0;
+		for (String queueId : ingestQueueService.listQueueIds(new Date(System.currentTimeMillis()
+				- INGEST_QUEUE_ORPHAN_TIMEOUT))) {
+			if (!activeQueueIds.contains(queueId)) {
+				log.log(Level.INFO, "Removing orphaned ingest queue {0}", queueId);
+				ingestQueueService.removeQueue(queueId);
+				count++;
+			}
 		}
+		return count;
+	}
 
-		if (content == null || content.isEmpty()) {
-			throw new BadFieldException("content", "Some content for pushing must be defined");
-		}
+	/**
+	 * Get status of ingest job created by {@link #pushContentBulkAsync(String, Map)}.
+	 */
+	@GET
+	@Path("/_async/{jobId}")
+	@Produces(MediaType.APPLICATION_JSON)
+	public Object getPushContentAsyncJob(@PathParam("type") String type, @PathParam("jobId") String jobId) {
 
-		String sysContentId = providerService.generateSysId(type, contentId);
+		getTypeInfoWithManagePermissionCheck(type);
 
-		// check search subsystem configuration
-		String indexName = ProviderService.extractIndexName(typeInfo, type);
-		String indexType = ProviderService.extractIndexType(typeInfo, type);
+		TaskStatusInfo tsi = taskService.getTaskManager().getTaskStatusInfo(jobId);
+		if (tsi == null || !ReindexingTaskTypes.PROCESS_INGEST_JOB.getTaskType().equals(tsi.getTaskType())) {
+			return Response.status(Status.NOT_FOUND).build();
+		}
+		Map<String, Object> taskConfig = tsi.getTaskConfig();
+		if (taskConfig == null || !type.equals(taskConfig.get(ReindexingTaskFactory.CFG_SYS_CONTENT_TYPE))) {
+			return Response.status(Status.NOT_FOUND).build();
+		}
 
-		// fill some normalized fields - should be last step to avoid changing them via preprocessors
-		content.put(ContentObjectFields.SYS_CONTENT_PROVIDER, typeInfo.getProviderName());
-		content.put(ContentObjectFields.SYS_CONTENT_ID, contentId);
-		content.put(ContentObjectFields.SYS_CONTENT_TYPE, type);
-		content.put(ContentObjectFields.SYS_ID, sysContentId);
-		content.put(ContentObjectFields.SYS_TYPE, ProviderService.extractSysType(typeInfo.getTypeDef(), type));
-		content.put(ContentObjectFields.SYS_UPDATED, new Date());
-		// Copy distinct data from content to normalized fields
-		content.put(ContentObjectFields.SYS_TAGS, content.get(ContentObjectFields.TAGS));
+		Map<String, Object> retJson = new LinkedHashMap<>();
+		retJson.put(RETFIELD_JOB_ID, tsi.getId());
+		retJson.put(ContentPushService.RETFIELD_STATUS, tsi.getTaskStatus() != null ? tsi.getTaskStatus().name() : null);
+		retJson.put("queued_count", ingestQueueService.count((String) taskConfig
+				.get(ReindexingTaskFactory.CFG_INGEST_QUEUE_ID)));
+		retJson.put("created_at", tsi.getTaskCreatedAt());
+		retJson.put("last_run_started_at", tsi.getLastRunStartedAt());
+		retJson.put("last_run_finished_at", tsi.getLastRunFinishedAt());
+		retJson.put("processing_log", tsi.getProcessingLog());
+		return retJson;
+	}
 
-		processFieldSysVisibleForRoles(content);
+	/**
+	 * Store content objects from stream of newline delimited JSON into Searchisko. Each line contains one content object
+	 * with <code>sys_content_id</code> field. Content is read and processed in chunks of
+	 * {@link #BULK_STREAM_CHUNK_SIZE} objects, each chunk is persisted in one batch and indexed in one bulk request.
+	 * Status of each content object is written into response as newline delimited JSON when its chunk is processed, so
+	 * memory consumption doesn't depend on request size.
+	 * 
+	 * This method fires {@link ContentBatchBeforeIndexedEvent} and {@link ContentBatchStoredEvent} for each chunk, and
+	 * series of {@link ContentBeforeIndexedEvent} and {@link ContentStoredEvent}.
+	 */
+	@POST
+	@Path("/_bulk_stream")
+	@Consumes({ MEDIA_TYPE_NDJSON, MediaType.APPLICATION_JSON, MediaType.TEXT_PLAIN })
+	@Produces(MEDIA_TYPE_NDJSON)
+	public Object pushContentBulkStream(@PathParam("type") String type, final InputStream input) {
 
-		// Fill type of content from configuration
-		if (content.containsKey(ContentObjectFields.SYS_CONTENT)) {
-			content.put(ContentObjectFields.SYS_CONTENT_CONTENT_TYPE,
-					ProviderService.extractSysContentContentType(typeInfo.getTypeDef(), type));
-		} else {
-			content.remove(ContentObjectFields.SYS_CONTENT_CONTENT_TYPE);
-		}
+		final ProviderContentTypeInfo typeInfo = getTypeInfoWithManagePermissionCheck(type);
 
-		// Run preprocessors to manipulate other fields
-		List<Map<String, String>> contentWarnings = providerService.runPreprocessors(type,
-				ProviderService.extractPreprocessors(typeInfo, type), content);
+		return new StreamingOutput() {
+			@Override
+			public void write(OutputStream output) throws IOException, WebApplicationException {
+				pushContentBulkStreamImpl(typeInfo, input, output, BULK_STREAM_CHUNK_SIZE);
+			}
+		};
+	}
 
-		// Refill type of content from configuration if content was added in preprocessors
-		if (content.containsKey(ContentObjectFields.SYS_CONTENT)
-				&& !content.containsKey(ContentObjectFields.SYS_CONTENT_CONTENT_TYPE)) {
-			content.put(ContentObjectFields.SYS_CONTENT_CONTENT_TYPE,
-					ProviderService.extractSysContentContentType(typeInfo.getTypeDef(), type));
-		}
+	static final String MEDIA_TYPE_NDJSON = "application/x-ndjson";
 
-		if (ProviderService.extractPersist(typeInfo.getTypeDef())) {
-			contentPersistenceService.store(sysContentId, type, content);
+	/**
+	 * Read content objects from input stream and push them in chunks, write status of each one into output stream.
+	 * 
+	 * @param typeInfo of pushed content
+	 * @param input to read newline delimited JSON with content objects from
+	 * @param output to write newline delimited JSON with status of each content object into
+	 * @param chunkSize max number of content objects pushed in one chunk
+	 * @throws IOException
+	 * @see #pushContentBulkStream(String, InputStream)
+	 */
+	protected void pushContentBulkStreamImpl(ProviderContentTypeInfo typeInfo, InputStream input, OutputStream output,
+			int chunkSize) throws IOException {
+		ObjectMapper mapper = new ObjectMapper();
+		Map<String, Object> chunk = new LinkedHashMap<>();
+		try (JsonParser parser = mapper.getJsonFactory().createJsonParser(input)) {
+			JsonToken token;
+			while ((token = parser.nextToken()) != null) {
+				if (token != JsonToken.START_OBJECT) {
+					parser.skipChildren();
+					writeBulkStreamStatus(mapper, output, null, createErrorStatus("content must be JSON structure"));
+					continue;
+				}
+				@SuppressWarnings("unchecked")
+				Map<String, Object> content = mapper.readValue(parser, Map.class);
+				Object contentId = content.remove(ContentObjectFields.SYS_CONTENT_ID);
+				if (contentId == null || contentId.toString().isEmpty()) {
+					writeBulkStreamStatus(mapper, output, null, createErrorStatus("sys_content_id field is required"));
+					continue;
+				}
+				if (chunk.containsKey(contentId.toString())) {
+					// same content pushed twice, first one must be processed before it
+					pushContentBulkStreamChunk(typeInfo, chunk, mapper, output);
+				}
+				chunk.put(contentId.toString(), content);
+				if (chunk.size() >= chunkSize) {
+					pushContentBulkStreamChunk(typeInfo, chunk, mapper, output);
+				}
+			}
+		} catch (JsonProcessingException e) {
+			pushContentBulkStreamChunk(typeInfo, chunk, mapper, output);
+			writeBulkStreamStatus(mapper, output, null, createErrorStatus("Invalid JSON, processing stopped: " + e.getMessage()));
 		}
-
-		ContentBeforeIndexedEvent event1 = new ContentBeforeIndexedEvent(sysContentId, content);
-		log.log(Level.FINE, "Going to fire event {0}", event1);
-		eventBeforeIndexed.fire(event1);
-
-		IndexRequestBuilder irb = searchClientService.getClient().prepareIndex(indexName, indexType, sysContentId)
-				.setSource(content);
-		return new PushContentImplRet(irb, contentWarnings, sysContentId, contentId, content);
+		pushContentBulkStreamChunk(typeInfo, chunk, mapper, output);
 	}
 
-	protected void processFieldSysVisibleForRoles(Map<String, Object> content) {
+	private void pushContentBulkStreamChunk(ProviderContentTypeInfo typeInfo, Map<String, Object> chunk,
+			ObjectMapper mapper, OutputStream output) throws IOException {
+		if (chunk.isEmpty())
+			return;
+		Map<String, Object> ret = new LinkedHashMap<>();
 		try {
-			List<String> vr = SearchUtils.getListOfStringsFromJsonMap(content, ContentObjectFields.SYS_VISIBLE_FOR_ROLES);
-			if (vr != null) {
-				content.put(ContentObjectFields.SYS_VISIBLE_FOR_ROLES, vr);
-			} else {
-				content.remove(ContentObjectFields.SYS_VISIBLE_FOR_ROLES);
+			contentPushService.pushContentBulk(typeInfo, chunk, ret);
+		} catch (RuntimeException e) {
+			log.log(Level.WARNING, "Bulk stream chunk push failed: " + e.getMessage(), e);
+			for (String contentId : chunk.keySet()) {
+				if (!ret.containsKey(contentId))
+					ret.put(contentId, createErrorStatus(e.getMessage()));
 			}
-		} catch (SettingsException e) {
-			throw new BadFieldException(ContentObjectFields.SYS_VISIBLE_FOR_ROLES);
 		}
+		for (Map.Entry<String, Object> e : ret.entrySet()) {
+			writeBulkStreamStatus(mapper, output, e.getKey(), e.getValue());
+		}
+		output.flush();
+		chunk.clear();
 	}
 
-	protected static final class PushContentImplRet {
-		IndexRequestBuilder irb;
-		List<Map<String, String>> contentWarnings;
-		String sysContentId;
-		String contentId;
-		Map<String, Object> content;
-
-		public PushContentImplRet(IndexRequestBuilder irb, List<Map<String, String>> contentWarnings, String sysContentId,
-				String contentId, Map<String, Object> content) {
-			super();
-			this.irb = irb;
-			this.contentWarnings = contentWarnings;
-			this.sysContentId = sysContentId;
-			this.contentId = contentId;
-			this.content = content;
-		}
+	private Map<String, Object> createErrorStatus(String message) {
+		Map<String, Object> retitem = new LinkedHashMap<>();
+		retitem.put(ContentPushService.RETFIELD_STATUS, "error");
+		retitem.put(ContentPushService.RETFIELD_MESSAGE, message);
+		return retitem;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void writeBulkStreamStatus(ObjectMapper mapper, OutputStream output, String contentId, Object status)
+			throws IOException {
+		Map<String, Object> line = new LinkedHashMap<>();
+		line.put(ContentObjectFields.SYS_CONTENT_ID, contentId);
+		line.putAll((Map<String, Object>) status);
+		output.write(mapper.writeValueAsBytes(line));
+		output.write('\n');
 	}
 
 	/**
@@ -447,7 +726,7 @@ public class ContentRestService extends RestServiceBase {
 
 		String sysContentId = providerService.generateSysId(type, contentId);
 
-		if (ProviderService.extractPersist(typeInfo.getTypeDef())) {
+		if (typeInfo.isPersist()) {
 			contentPersistenceService.delete(sysContentId, type);
 		}
 
@@ -458,6 +737,8 @@ public class ContentRestService extends RestServiceBase {
 				.actionGet();
 
 		if (dr.isFound()) {
+			contentPushService.invalidateSearchResultCache(typeInfo);
+
 			ContentDeletedEvent event = new ContentDeletedEvent(sysContentId);
 			log.log(Level.FINE, "Going to fire event {0}", event);
 			eventContentDeleted.fire(event);
@@ -510,7 +791,7 @@ public class ContentRestService extends RestServiceBase {
 			String sysContentId = providerService.generateSysId(type, contentId);
 			sysIds.add(sysContentId);
 
-			if (ProviderService.extractPersist(typeInfo.getTypeDef())) {
+			if (typeInfo.isPersist()) {
 				contentPersistenceService.delete(sysContentId, type);
 			}
 
@@ -518,6 +799,7 @@ public class ContentRestService extends RestServiceBase {
 		}
 
 		BulkResponse br = brb.execute().actionGet();
+		contentPushService.invalidateSearchResultCache(typeInfo);
 
 		int i = 0;
 		for (BulkItemResponse bri : br.getItems()) {
@@ -239,6 +239,7 @@ public class CustomTagRestService extends RestServiceBase {
 				tagObject.setTagLabel(tag);
 				created = customTagPersistenceService.createTag(tagObject);
 				if (created) {
+					customTagService.refreshTagIndex(contentSysId);
 					customTagService.updateSysTagsField(source);
 					searchClientService.performPut(getResponse.getIndex(), getResponse.getType(), contentSysId, source);
 				}
@@ -280,6 +281,7 @@ public class CustomTagRestService extends RestServiceBase {
 
 		// delete tags from custom tags
 		customTagPersistenceService.deleteTagsForContent(contentSysId);
+		customTagService.refreshTagIndex(contentSysId);
 
 		// delete tags from SYS_TAG field (update SYS_TAG field)
 		GetResponse getResponse;
@@ -343,6 +345,7 @@ public class CustomTagRestService extends RestServiceBase {
 
 		// delete tag from custom tags
 		customTagPersistenceService.deleteTag(contentSysId, tagLabel);
+		customTagService.refreshTagIndex(contentSysId);
 
 		// delete tag from SYS_TAG field (update SYS_TAG field)
 		GetResponse getResponse;
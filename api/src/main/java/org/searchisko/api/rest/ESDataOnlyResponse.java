@@ -46,6 +46,11 @@ public class ESDataOnlyResponse implements StreamingOutput {
 	 */
 	private SearchResponse response;
 
+	/**
+	 * Data used instead of Elastic search response, key is id, value is data.
+	 */
+	private Map<String, Map<String, Object>> data;
+
 	/**
 	 * Name of field in document source which is returned as id in results. If null then ElasticSearch document id is
 	 * returned as id.
@@ -103,12 +108,33 @@ public class ESDataOnlyResponse implements StreamingOutput {
 		this.fieldsToRemove = fieldsToRemove;
 	}
 
+	/**
+	 * Create new response object from data available in memory, output is in same format as for Elastic search response.
+	 *
+	 * @param data key is id, value is JSON content of entity. It is not modified.
+	 * @return response object
+	 */
+	public static ESDataOnlyResponse fromData(Map<String, Map<String, Object>> data) {
+		ESDataOnlyResponse ret = new ESDataOnlyResponse((SearchResponse) null);
+		ret.data = data;
+		return ret;
+	}
+
 	@Override
 	public void write(OutputStream output) throws IOException, WebApplicationException {
 		XContentBuilder builder = XContentFactory.jsonBuilder(output);
 		// shows only hits
 		builder.startObject();
-		if (response != null) {
+		if (data != null) {
+			builder.field("total", data.size());
+			builder.startArray("hits");
+			for (Map.Entry<String, Map<String, Object>> e : data.entrySet()) {
+				builder.startObject();
+				builder.field("id", e.getKey());
+				builder.field("data", e.getValue());
+				builder.endObject();
+			}
+		} else if (response != null) {
 			builder.field("total", response.getHits().getTotalHits());
 			builder.startArray("hits");
 			SearchHit[] hits = response.getHits().getHits();
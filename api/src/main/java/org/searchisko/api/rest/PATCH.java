@@ -0,0 +1,28 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.searchisko.api.rest;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import javax.ws.rs.HttpMethod;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Indicates that the annotated method responds to HTTP PATCH requests. JAX-RS 1.1 doesn't contain it.
+ *
+ * @author Vlastimil Elias (velias at redhat dot com)
+ */
+@Target({ METHOD })
+@Retention(RUNTIME)
+@HttpMethod("PATCH")
+@Documented
+public @interface PATCH {
+
+}
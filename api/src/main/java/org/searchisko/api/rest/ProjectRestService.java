@@ -157,6 +157,19 @@ public class ProjectRestService extends RestEntityServiceBase {
 					.entity("Value for request parameter " + codeName + " must be provided").build();
 		}
 
+		// served from in-memory snapshot of projects if available. Snapshot matches exact values only, so we fall back to
+		// analyzed search in the index if nothing is found there.
+		if (projectService.isSnapshotAvailable()) {
+			Map<String, Map<String, Object>> projects = null;
+			if (PARAM_CODE.equals(codeName)) {
+				projects = projectService.findProjectsByCode(codeValue);
+			} else {
+				projects = projectService.findProjectsByTypeSpecificCode(codeName, codeValue);
+			}
+			if (projects != null && !projects.isEmpty())
+				return ESDataOnlyResponse.fromData(projects);
+		}
+
 		if (PARAM_CODE.equals(codeName)) {
 			response = projectService.findByCode(codeValue);
 		} else {
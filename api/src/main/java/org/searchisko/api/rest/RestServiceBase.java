@@ -8,6 +8,7 @@ package org.searchisko.api.rest;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
 
@@ -105,4 +106,44 @@ public class RestServiceBase {
 			}
 		};
 	}
+
+	/**
+	 * Create response based on elastic multi search response. Responses are in <code>responses</code> array, each one
+	 * contains additional fields for it. Failed search contains <code>error</code> field only.
+	 * 
+	 * @param response elastic multi search response to return
+	 * @param additionalResponseFields list of maps with additional fields added to the root level object of each
+	 *          response, in the same order as responses
+	 * @return JAX-RS response
+	 */
+	public StreamingOutput createResponse(final MultiSearchResponse response,
+			final List<Map<String, String>> additionalResponseFields) {
+		return new StreamingOutput() {
+			@Override
+			public void write(OutputStream output) throws IOException, WebApplicationException {
+				XContentBuilder builder = XContentFactory.jsonBuilder(output);
+				builder.startObject();
+				builder.startArray("responses");
+				MultiSearchResponse.Item[] items = response.getResponses();
+				for (int i = 0; i < items.length; i++) {
+					builder.startObject();
+					if (additionalResponseFields != null && i < additionalResponseFields.size()) {
+						Map<String, String> af = additionalResponseFields.get(i);
+						for (String key : af.keySet()) {
+							builder.field(key, af.get(key));
+						}
+					}
+					if (items[i].isFailure()) {
+						builder.field("error", items[i].getFailureMessage());
+					} else {
+						items[i].getResponse().toXContent(builder, ToXContent.EMPTY_PARAMS);
+					}
+					builder.endObject();
+				}
+				builder.endArray();
+				builder.endObject();
+				builder.close();
+			}
+		};
+	}
 }
@@ -5,8 +5,14 @@
  */
 package org.searchisko.api.rest;
 
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.MultiSearchResponse;
+import org.elasticsearch.action.search.SearchPhaseExecutionException;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.indices.IndexMissingException;
+import org.jboss.resteasy.annotations.Suspend;
+import org.jboss.resteasy.specimpl.MultivaluedMapImpl;
+import org.jboss.resteasy.spi.AsynchronousResponse;
 import org.searchisko.api.audit.annotation.AuditId;
 import org.searchisko.api.model.QuerySettings;
 import org.searchisko.api.rest.exception.BadFieldException;
@@ -25,15 +31,20 @@ import javax.enterprise.context.RequestScoped;
 import javax.inject.Inject;
 import javax.ws.rs.*;
 import javax.ws.rs.core.*;
+import javax.ws.rs.ext.ExceptionMapper;
+import javax.ws.rs.ext.Providers;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.logging.Level;
 
 import static org.searchisko.api.util.SearchUtils.collapseURLParams;
 
 /**
- * Search REST API.
+ * Search REST API. Search operations are asynchronous, so container worker thread is released while search is
+ * executed by Elasticsearch.
  * 
  * @author Libor Krzyzanek
  * @author Vlastimil Elias (velias at redhat dot com)
@@ -45,6 +56,21 @@ import static org.searchisko.api.util.SearchUtils.collapseURLParams;
 @Produces(MediaType.APPLICATION_JSON)
 public class SearchRestService extends RestServiceBase {
 
+	/**
+	 * Timeout [ms] for asynchronous search response. Service Unavailable is returned if search is not finished in it.
+	 */
+	public static final long ASYNC_RESPONSE_TIMEOUT = 120000L;
+
+	/**
+	 * Name of field with list of searches in multi search request data.
+	 */
+	public static final String MULTI_SEARCH_SEARCHES_KEY = "searches";
+
+	/**
+	 * Max number of searches in one multi search request.
+	 */
+	public static final int MULTI_SEARCH_MAX_SEARCHES = 20;
+
 	@Inject
 	protected SearchService searchService;
 
@@ -57,11 +83,15 @@ public class SearchRestService extends RestServiceBase {
 	@Inject
 	protected QuerySettingsParser querySettingsParser;
 
+	@Context
+	protected Providers providers;
+
 	@GET
 	@Path("/")
 	@Produces(MediaType.APPLICATION_JSON)
 	@PermitAll
-	public Object search(@Context UriInfo uriInfo) {
+	public void search(@Context UriInfo uriInfo,
+			@Suspend(ASYNC_RESPONSE_TIMEOUT) final AsynchronousResponse asynchronousResponse) {
 
 		QuerySettings querySettings = null;
 		try {
@@ -73,14 +103,13 @@ public class SearchRestService extends RestServiceBase {
 			querySettings = querySettingsParser.parseUriParams(params);
 			String responseUuid = UUID.randomUUID().toString();
 
-			SearchResponse searchResponse = searchService.performSearch(querySettings, responseUuid, StatsRecordType.SEARCH);
+			// request scoped data must be obtained before search is started
 			Map<String, String> af = searchService.getIntervalValuesForDateHistogramAggregations(querySettings);
 			af.put("uuid", responseUuid);
-			return createResponse(searchResponse, af);
+			searchService.performSearchAsync(querySettings, responseUuid, StatsRecordType.SEARCH,
+					new AsyncSearchResponseListener(asynchronousResponse, af, getSearchFailureExceptionMapper()));
 		} catch (IllegalArgumentException e) {
 			throw new BadFieldException("unknown", e);
-		} catch (IndexMissingException e) {
-			return Response.status(Response.Status.NOT_FOUND).build();
 		}
 	}
 
@@ -88,7 +117,8 @@ public class SearchRestService extends RestServiceBase {
 	@Path("/{id}")
 	@Produces(MediaType.APPLICATION_JSON)
 	@PermitAll
-	public Object searchRegisteredQuery(@PathParam("id") @AuditId String id, @Context UriInfo uriInfo) {
+	public void searchRegisteredQuery(@PathParam("id") @AuditId String id, @Context UriInfo uriInfo,
+			@Suspend(ASYNC_RESPONSE_TIMEOUT) final AsynchronousResponse asynchronousResponse) {
 		try {
 			if ((id = SearchUtils.trimToNull(id)) == null) {
 				throw new RequiredFieldException("id");
@@ -96,7 +126,8 @@ public class SearchRestService extends RestServiceBase {
 
 			Map<String, Object> registeredQuery = registeredQueryService.get(id);
 			if (registeredQuery == null) {
-				return Response.status(Response.Status.NOT_FOUND).build();
+				asynchronousResponse.setResponse(Response.status(Response.Status.NOT_FOUND).build());
+				return;
 			}
 			@SuppressWarnings("unchecked")
 			List<String> roles = (List<String>) registeredQuery.get(RegisteredQueryService.FIELD_ALLOWED_ROLES);
@@ -117,18 +148,198 @@ public class SearchRestService extends RestServiceBase {
 				Map<String, Object> collapsedParams = collapseURLParams(params);
 				String responseUuid = UUID.randomUUID().toString();
 
-				SearchResponse searchResponse = searchService.performSearchTemplate(id, collapsedParams, filters);
 				Map<String, String> af = new HashMap<>();
 				af.put("uuid", responseUuid);
-				return createResponse(searchResponse, af);
+				searchService.performSearchTemplateAsync(id, collapsedParams, filters, new AsyncSearchResponseListener(
+						asynchronousResponse, af, getSearchFailureExceptionMapper()));
 			} else {
 				throw new NotAuthorizedException("Client missing required role to execute this registered query.");
 			}
 		} catch (IllegalArgumentException e) {
 			throw new BadFieldException("unknown", e);
-		} catch (IndexMissingException e) {
+		}
+	}
+
+	/**
+	 * Perform more searches in one request. Request data contains <code>searches</code> array, each item is object with
+	 * the same parameters as used for {@link #search(UriInfo, AsynchronousResponse)} (value can be string or array of
+	 * strings for multi value parameters). Responses are returned in <code>responses</code> array in the same order.
+	 * 
+	 * @param data request data
+	 * @param asynchronousResponse to write response into
+	 */
+	@POST
+	@Path("/_msearch")
+	@Consumes(MediaType.APPLICATION_JSON)
+	@Produces(MediaType.APPLICATION_JSON)
+	@PermitAll
+	public void multiSearch(Map<String, Object> data,
+			@Suspend(ASYNC_RESPONSE_TIMEOUT) final AsynchronousResponse asynchronousResponse) {
+
+		List<MultivaluedMap<String, String>> searches = parseMultiSearchRequest(data);
+		List<QuerySettings> querySettingsList = new ArrayList<>();
+		List<String> responseUuids = new ArrayList<>();
+		final List<Map<String, String>> afList = new ArrayList<>();
+		try {
+			for (MultivaluedMap<String, String> params : searches) {
+				querySettingsList.add(querySettingsParser.parseUriParams(params));
+				String responseUuid = UUID.randomUUID().toString();
+				responseUuids.add(responseUuid);
+				Map<String, String> af = new HashMap<>();
+				af.put("uuid", responseUuid);
+				afList.add(af);
+			}
+		} catch (IllegalArgumentException e) {
+			throw new BadFieldException("unknown", e);
+		}
+
+		final ExceptionMapper<SearchPhaseExecutionException> searchFailureMapper = getSearchFailureExceptionMapper();
+		searchService.performMultiSearchAsync(querySettingsList, responseUuids, StatsRecordType.SEARCH, afList,
+				new ActionListener<MultiSearchResponse>() {
+					@Override
+					public void onResponse(MultiSearchResponse multiSearchResponse) {
+						Response response;
+						try {
+							response = Response.ok(createResponse(multiSearchResponse, afList), MediaType.APPLICATION_JSON_TYPE)
+									.build();
+						} catch (RuntimeException e) {
+							response = createErrorResponse(e, searchFailureMapper);
+						}
+						asynchronousResponse.setResponse(response);
+					}
+
+					@Override
+					public void onFailure(Throwable e) {
+						asynchronousResponse.setResponse(createErrorResponse(e, searchFailureMapper));
+					}
+				});
+	}
+
+	/**
+	 * Parse multi search request data into list of parameters for each search.
+	 * 
+	 * @param data to parse
+	 * @return list of search parameters, never empty
+	 * @throws RequiredFieldException if no search is defined
+	 * @throws BadFieldException if data structure is invalid
+	 */
+	protected List<MultivaluedMap<String, String>> parseMultiSearchRequest(Map<String, Object> data) {
+		Object searchesObject = data != null ? data.get(MULTI_SEARCH_SEARCHES_KEY) : null;
+		if (searchesObject == null) {
+			throw new RequiredFieldException(MULTI_SEARCH_SEARCHES_KEY);
+		}
+		if (!(searchesObject instanceof List)) {
+			throw new BadFieldException(MULTI_SEARCH_SEARCHES_KEY, "must be an array");
+		}
+		List<?> searchesList = (List<?>) searchesObject;
+		if (searchesList.isEmpty()) {
+			throw new RequiredFieldException(MULTI_SEARCH_SEARCHES_KEY);
+		}
+		if (searchesList.size() > MULTI_SEARCH_MAX_SEARCHES) {
+			throw new BadFieldException(MULTI_SEARCH_SEARCHES_KEY, "max " + MULTI_SEARCH_MAX_SEARCHES
+					+ " searches allowed");
+		}
+		List<MultivaluedMap<String, String>> ret = new ArrayList<>();
+		for (Object searchObject : searchesList) {
+			if (!(searchObject instanceof Map)) {
+				throw new BadFieldException(MULTI_SEARCH_SEARCHES_KEY, "each search must be an object");
+			}
+			MultivaluedMap<String, String> params = new MultivaluedMapImpl<>();
+			for (Map.Entry<?, ?> param : ((Map<?, ?>) searchObject).entrySet()) {
+				String key = param.getKey().toString();
+				Object value = param.getValue();
+				if (value instanceof List) {
+					for (Object v : (List<?>) value) {
+						if (v != null)
+							params.add(key, v.toString());
+					}
+				} else if (value != null) {
+					params.add(key, value.toString());
+				}
+			}
+			ret.add(params);
+		}
+		return ret;
+	}
+
+	/**
+	 * Listener rendering search response into suspended asynchronous response. Called from Elasticsearch thread, so it
+	 * MUST NOT use request scoped services.
+	 */
+	protected class AsyncSearchResponseListener implements ActionListener<SearchResponse> {
+
+		private final AsynchronousResponse asynchronousResponse;
+		private final Map<String, String> additionalResponseFields;
+		private final ExceptionMapper<SearchPhaseExecutionException> searchFailureMapper;
+
+		protected AsyncSearchResponseListener(AsynchronousResponse asynchronousResponse,
+				Map<String, String> additionalResponseFields,
+				ExceptionMapper<SearchPhaseExecutionException> searchFailureMapper) {
+			this.asynchronousResponse = asynchronousResponse;
+			this.additionalResponseFields = additionalResponseFields;
+			this.searchFailureMapper = searchFailureMapper;
+		}
+
+		@Override
+		public void onResponse(SearchResponse searchResponse) {
+			Response response;
+			try {
+				response = Response.ok(createResponse(searchResponse, additionalResponseFields),
+						MediaType.APPLICATION_JSON_TYPE).build();
+			} catch (RuntimeException e) {
+				response = createErrorResponse(e, searchFailureMapper);
+			}
+			asynchronousResponse.setResponse(response);
+		}
+
+		@Override
+		public void onFailure(Throwable e) {
+			asynchronousResponse.setResponse(createErrorResponse(e, searchFailureMapper));
+		}
+	}
+
+	/**
+	 * Get {@link ExceptionMapper} for search failures reported by Elasticsearch. {@link Providers} are bound to the
+	 * request thread, so this MUST be called before search is started, not from asynchronous listener.
+	 *
+	 * @return mapper or null if not available
+	 */
+	protected ExceptionMapper<SearchPhaseExecutionException> getSearchFailureExceptionMapper() {
+		if (providers == null) {
+			return null;
+		}
+		try {
+			return providers.getExceptionMapper(SearchPhaseExecutionException.class);
+		} catch (RuntimeException e) {
+			log.log(Level.WARNING, "Unable to get ExceptionMapper for search failures: " + e.getMessage(), e);
+			return null;
+		}
+	}
+
+	/**
+	 * Create response for error from asynchronous search. Never throws exception, so suspended response is always
+	 * resumed.
+	 *
+	 * @param e error to create response for
+	 * @param searchFailureMapper mapper for search failures obtained by {@link #getSearchFailureExceptionMapper()}, can
+	 *          be null
+	 * @return response
+	 */
+	protected Response createErrorResponse(Throwable e,
+			ExceptionMapper<SearchPhaseExecutionException> searchFailureMapper) {
+		if (e instanceof IndexMissingException) {
 			return Response.status(Response.Status.NOT_FOUND).build();
 		}
+		if (searchFailureMapper != null && e instanceof SearchPhaseExecutionException) {
+			try {
+				return searchFailureMapper.toResponse((SearchPhaseExecutionException) e);
+			} catch (RuntimeException e2) {
+				log.log(Level.WARNING, "ExceptionMapper failed: " + e2.getMessage(), e2);
+			}
+		}
+		log.log(Level.WARNING, "Search failed: " + e.getMessage(), e);
+		return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity("An error occurred during your search.")
+				.build();
 	}
 
 	@PUT
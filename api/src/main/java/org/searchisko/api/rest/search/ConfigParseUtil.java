@@ -7,6 +7,7 @@ package org.searchisko.api.rest.search;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -85,7 +86,7 @@ public class ConfigParseUtil {
 				final String key = map.containsKey(TERMS_FILTER_TYPE) ? TERMS_FILTER_TYPE : TERMS_FILTER_TYPE_ALIAS;
 				Map<String, Object> termsAggregationConfig = (Map<String, Object>) map.get(key);
 				setOptionalSettings(termsAggregationConfig, config);
-				Set<String> termsAggregationConfigKeys = termsAggregationConfig.keySet();
+				Set<String> termsAggregationConfigKeys = new HashSet<>(termsAggregationConfig.keySet());
 				termsAggregationConfigKeys.removeAll(OPTIONAL_SETTINGS);
 				if (termsAggregationConfigKeys.size() == 1) {
 					conf.setFieldName(termsAggregationConfigKeys.iterator().next());
@@ -108,7 +109,7 @@ public class ConfigParseUtil {
 
 				Map<String, Object> rangeAggregationConfig = (Map<String, Object>) map.get(RANGE_FILTER_TYPE);
 				setOptionalSettings(rangeAggregationConfig, config);
-				Set<String> rangeAggregationConfigKeys = rangeAggregationConfig.keySet();
+				Set<String> rangeAggregationConfigKeys = new HashSet<>(rangeAggregationConfig.keySet());
 				rangeAggregationConfigKeys.removeAll(OPTIONAL_SETTINGS);
 				if (rangeAggregationConfigKeys.size() == 1) {
 					String fieldName = rangeAggregationConfigKeys.iterator().next();
@@ -116,6 +116,30 @@ public class AppConfigurationService {
 		);
 		appConfiguration.setCasConfig(casConfig);
 
+		AppConfiguration.SearchResultCacheConfig searchResultCacheConfig = new AppConfiguration.SearchResultCacheConfig(
+				Boolean.parseBoolean(prop.getProperty("search.resultcache.enabled", "false")),
+				Integer.parseInt(prop.getProperty("search.resultcache.size", "500")),
+				Integer.parseInt(prop.getProperty("search.resultcache.ttl", "60"))
+		);
+		appConfiguration.setSearchResultCacheConfig(searchResultCacheConfig);
+		appConfiguration.setSearchCoalescingEnabled(Boolean.parseBoolean(prop.getProperty("search.coalescing.enabled",
+				"true")));
+		appConfiguration.setContentPersistenceCompressionEnabled(Boolean.parseBoolean(prop.getProperty(
+				"contentpersistence.compression.enabled", "false")));
+		appConfiguration.setIngestQueueMaxSize(Integer.parseInt(prop.getProperty("ingestqueue.max.size", "100000")));
+		appConfiguration.setIngestQueueBatchSize(Integer.parseInt(prop.getProperty("ingestqueue.batch.size", "100")));
+		appConfiguration.setContentPushBulkPreprocessingThreads(Integer.parseInt(prop.getProperty(
+				"contentpush.bulk.preprocessing.threads", "0")));
+		appConfiguration.setCustomTagsIndexReloadInterval(Integer.parseInt(prop.getProperty(
+				"customtags.index.reload.interval", "0")));
+		appConfiguration.setContributorLookupCacheSize(Integer.parseInt(prop.getProperty("contributor.lookup.cache.size",
+				"5000")));
+		appConfiguration.setContributorLookupCacheTtl(Integer.parseInt(prop.getProperty("contributor.lookup.cache.ttl",
+				"600")));
+		appConfiguration.setProjectsSnapshotReloadInterval(Integer.parseInt(prop.getProperty(
+				"projects.snapshot.reload.interval", "300")));
+		appConfiguration.setReindexingParallelism(Integer.parseInt(prop.getProperty("reindexing.parallelism", "1")));
+
 
 		log.log(Level.INFO, "App Configuration: {0}", appConfiguration);
 	}
@@ -8,6 +8,7 @@ package org.searchisko.api.service;
 import java.security.Principal;
 import java.util.Collection;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -262,6 +263,25 @@ public class AuthenticationUtilService {
 		return null;
 	}
 
+	/**
+	 * Get normalized key of security context of actually authenticated user. Users with the same key have the same
+	 * permissions, so it can be used as a part of key for data shared between requests of distinct users.
+	 *
+	 * @return empty string if user is not authenticated, sorted list of roles for
+	 *         {@link org.searchisko.api.security.jaas.PrincipalWithRoles}, principal name otherwise.
+	 */
+	public String getUserSecurityContextKey() {
+		Principal principal = httpRequest.getUserPrincipal();
+		if (principal == null) {
+			return "";
+		}
+		if (principal instanceof PrincipalWithRoles) {
+			Set<String> roles = ((PrincipalWithRoles) principal).getRoles();
+			return "roles:" + (roles != null ? new TreeSet<>(roles) : "[]");
+		}
+		return "user:" + principal.getName();
+	}
+
 	/**
 	 * Check if user of given type is authenticated.
 	 * 
@@ -0,0 +1,160 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.searchisko.api.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.ejb.Asynchronous;
+import javax.ejb.Lock;
+import javax.ejb.LockType;
+import javax.ejb.SessionContext;
+import javax.ejb.Singleton;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+/**
+ * Service used to preprocess content objects of one bulk push in parallel. Work is performed by container managed
+ * threads through {@link Asynchronous} EJB method, so security context of caller is propagated to it. Number of work
+ * items performed in parallel is bounded by <code>contentpush.bulk.preprocessing.threads</code> in
+ * {@link AppConfigurationService#FILENAME}. If bound is reached then work is performed in caller's thread, so bulk push
+ * is never refused, it only doesn't run in parallel. Parallel processing is switched off by default, and if number of
+ * threads is lower than 2.
+ * <p>
+ * Preprocessors are not guaranteed to be thread safe, so work submitted here must use them through
+ * {@link ProviderService} session bean, where each concurrent call is served by distinct bean instance.
+ *
+ * @author Vlastimil Elias (velias at redhat dot com)
+ */
+@Named
+@ApplicationScoped
+@Singleton
+@Lock(LockType.READ)
+public class BulkPreprocessingService {
+
+	@Inject
+	protected Logger log;
+
+	@Inject
+	protected AppConfigurationService appConfigurationService;
+
+	@Resource
+	protected SessionContext sessionContext;
+
+	protected int threads;
+
+	/**
+	 * Permits for work performed in parallel, null if parallel processing is switched off.
+	 */
+	protected Semaphore permits;
+
+	private final AtomicLong parallelCount = new AtomicLong();
+	private final AtomicLong callerRunsCount = new AtomicLong();
+
+	@PostConstruct
+	public void init() {
+		threads = appConfigurationService.getAppConfiguration().getContentPushBulkPreprocessingThreads();
+		log.log(Level.INFO, "Bulk push preprocessing threads: {0}", threads);
+		if (threads > 1) {
+			permits = new Semaphore(threads);
+		}
+	}
+
+	@PreDestroy
+	public void destroy() {
+		permits = null;
+	}
+
+	/**
+	 * @return true if work is processed in parallel
+	 */
+	public boolean isEnabled() {
+		return permits != null;
+	}
+
+	/**
+	 * Submit work to be performed. It is performed immediately in caller's thread if parallel processing is switched off
+	 * or all permits for parallel work are taken.
+	 *
+	 * @param work to be performed
+	 * @return future with result of work
+	 */
+	public <T> Future<T> submit(Callable<T> work) {
+		final FutureTask<T> task = new FutureTask<>(work);
+		final Semaphore s = permits;
+		if (s != null) {
+			if (s.tryAcquire()) {
+				try {
+					getAsyncProxy().runAsync(new Runnable() {
+						@Override
+						public void run() {
+							try {
+								task.run();
+							} finally {
+								s.release();
+							}
+						}
+					});
+					parallelCount.incrementAndGet();
+					return task;
+				} catch (RuntimeException e) {
+					s.release();
+					log.log(Level.WARNING, "Unable to preprocess content in parallel: " + e.getMessage(), e);
+				}
+			}
+			callerRunsCount.incrementAndGet();
+		}
+		task.run();
+		return task;
+	}
+
+	/**
+	 * Run work asynchronously in container managed thread. Must be called through {@link #getAsyncProxy()}.
+	 *
+	 * @param work to run
+	 */
+	@Asynchronous
+	public void runAsync(Runnable work) {
+		work.run();
+	}
+
+	/**
+	 * @return business object of this bean which performs {@link Asynchronous} methods
+	 */
+	protected BulkPreprocessingService getAsyncProxy() {
+		return sessionContext.getBusinessObject(BulkPreprocessingService.class);
+	}
+
+	/**
+	 * Get statistics of this service.
+	 *
+	 * @return map with statistics
+	 */
+	public Map<String, Object> getStatistics() {
+		Map<String, Object> ret = new LinkedHashMap<>();
+		Semaphore s = permits;
+		ret.put("enabled", s != null);
+		if (s != null) {
+			ret.put("threads", threads);
+			ret.put("active_threads", threads - s.availablePermits());
+		}
+		ret.put("submitted_count", parallelCount.get());
+		ret.put("caller_runs_count", callerRunsCount.get());
+		return ret;
+	}
+
+}
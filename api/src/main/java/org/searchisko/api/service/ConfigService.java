@@ -15,6 +15,7 @@ import javax.inject.Inject;
 import javax.inject.Named;
 import javax.ws.rs.core.StreamingOutput;
 
+import org.searchisko.api.cache.SearchConfigCache;
 import org.searchisko.persistence.service.EntityService;
 import org.searchisko.persistence.service.ListRequest;
 
@@ -45,6 +46,9 @@ public class ConfigService implements EntityService {
 	@Named("configServiceBackend")
 	protected EntityService entityService;
 
+	@Inject
+	protected SearchConfigCache searchConfigCache;
+
 	@Override
 	public StreamingOutput getAll(Integer from, Integer size, String[] fieldsToRemove) {
 		return entityService.getAll(from, size, fieldsToRemove);
@@ -69,16 +73,30 @@ public class ConfigService implements EntityService {
 	@Override
 	public void create(String id, Map<String, Object> entity) {
 		entityService.create(id, entity);
+		flushSearchConfigCache(id);
 	}
 
 	@Override
 	public void update(String id, Map<String, Object> entity) {
 		entityService.update(id, entity);
+		flushSearchConfigCache(id);
 	}
 
 	@Override
 	public void delete(String id) {
 		entityService.delete(id);
+		flushSearchConfigCache(id);
+	}
+
+	/**
+	 * Flush {@link SearchConfigCache} if configuration document with given id is part of search configuration snapshot.
+	 * 
+	 * @param id of changed configuration document
+	 */
+	protected void flushSearchConfigCache(String id) {
+		if (SearchConfigCache.isSnapshotDocument(id)) {
+			searchConfigCache.flush();
+		}
 	}
 
 	@Override
@@ -0,0 +1,631 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.searchisko.api.service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Event;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.get.MultiGetItemResponse;
+import org.elasticsearch.action.get.MultiGetRequest;
+import org.elasticsearch.action.get.MultiGetRequestBuilder;
+import org.elasticsearch.action.index.IndexRequestBuilder;
+import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.common.settings.SettingsException;
+import org.elasticsearch.indices.IndexMissingException;
+import org.searchisko.api.ContentObjectFields;
+import org.searchisko.api.cache.SearchResultCache;
+import org.searchisko.api.events.ContentBatchBeforeIndexedEvent;
+import org.searchisko.api.events.ContentBatchStoredEvent;
+import org.searchisko.api.events.ContentBeforeIndexedEvent;
+import org.searchisko.api.events.ContentStoredEvent;
+import org.searchisko.api.rest.exception.BadFieldException;
+import org.searchisko.api.rest.exception.PreprocessorInvalidDataException;
+import org.searchisko.api.rest.exception.RequiredFieldException;
+import org.searchisko.api.service.ProviderService.ProviderContentTypeInfo;
+import org.searchisko.api.util.SearchUtils;
+import org.searchisko.persistence.service.ContentPersistenceService;
+
+/**
+ * Service used to push content into Searchisko - content is validated, normalized by preprocessors, persisted if
+ * configured for its type, and indexed into search index. Used by Content REST API and by asynchronous content push
+ * processing.
+ * <p>
+ * This service fires CDI events:
+ * <ul>
+ * <li> {@link ContentBatchBeforeIndexedEvent}
+ * <li> {@link ContentBeforeIndexedEvent}
+ * <li> {@link ContentBatchStoredEvent}
+ * <li> {@link ContentStoredEvent}
+ * </ul>
+ * 
+ * @author Libor Krzyzanek
+ * @author Vlastimil Elias (velias at redhat dot com)
+ */
+@Named
+@ApplicationScoped
+public class ContentPushService {
+
+	public static final String RETFIELD_WARNINGS = "warnings";
+
+	public static final String RETFIELD_MESSAGE = "message";
+
+	public static final String RETFIELD_STATUS = "status";
+
+	@Inject
+	protected Logger log;
+
+	@Inject
+	protected ProviderService providerService;
+
+	@Inject
+	protected SearchClientService searchClientService;
+
+	@Inject
+	protected ContentPersistenceService contentPersistenceService;
+
+	@Inject
+	protected SearchResultCache searchResultCache;
+
+	@Inject
+	protected Event<ContentStoredEvent> eventContentStored;
+
+	@Inject
+	protected Event<ContentBeforeIndexedEvent> eventBeforeIndexed;
+
+	@Inject
+	protected Event<ContentBatchBeforeIndexedEvent> eventBatchBeforeIndexed;
+
+	@Inject
+	protected Event<ContentBatchStoredEvent> eventBatchStored;
+
+	@Inject
+	protected BulkPreprocessingService bulkPreprocessingService;
+
+	/**
+	 * Store more content objects into Searchisko - preprocess all of them (in parallel if enabled in
+	 * {@link BulkPreprocessingService}), persist them in one batch and index them in one bulk request.
+	 * 
+	 * @param typeInfo of pushed content
+	 * @param contentStructure key is content id, value is content
+	 * @param ret status structure for each content object is put into it, key is content id
+	 */
+	public void pushContentBulk(ProviderContentTypeInfo typeInfo, Map<String, Object> contentStructure,
+			Map<String, Object> ret) {
+
+		String type = typeInfo.getTypeName();
+
+		if (contentStructure.isEmpty())
+			return;
+
+		BulkRequestBuilder brb = searchClientService.getClient().prepareBulk();
+		List<String> ids = new ArrayList<>();
+		Map<String, PushContentImplRet> pcis = new LinkedHashMap<>();
+
+		// hashes of content pushed before are read at once for whole bulk
+		List<String> sysContentIds = new ArrayList<>();
+		for (String contentId : contentStructure.keySet()) {
+			if (contentId != null && !contentId.isEmpty() && contentStructure.get(contentId) instanceof Map)
+				sysContentIds.add(providerService.generateSysId(type, contentId));
+		}
+		Map<String, String> storedContentHashes = getStoredContentHashes(typeInfo, sysContentIds);
+
+		// preprocessing of content objects is independent, so it may run in parallel
+		Map<String, Future<PushContentImplRet>> prepared = new HashMap<>();
+		for (String contentId : contentStructure.keySet()) {
+			Object o = contentStructure.get(contentId);
+			if (o instanceof Map) {
+				@SuppressWarnings("unchecked")
+				Map<String, Object> content = (Map<String, Object>) o;
+				prepared.put(contentId, submitContentForPush(typeInfo, contentId, content, storedContentHashes));
+			}
+		}
+
+		try {
+			for (String contentId : contentStructure.keySet()) {
+				Future<PushContentImplRet> f = prepared.get(contentId);
+				if (f == null) {
+					Map<String, Object> retitem = new LinkedHashMap<>();
+					retitem.put(RETFIELD_STATUS, "error");
+					retitem.put(RETFIELD_MESSAGE, "content must be JSON structure");
+					ret.put(contentId, retitem);
+				} else {
+					try {
+						PushContentImplRet pcir = getPreparedContent(f);
+						if (pcir.unchanged) {
+							Map<String, Object> retitem = new LinkedHashMap<>();
+							processUnchanged(retitem);
+							ret.put(contentId, retitem);
+						} else {
+							ids.add(contentId);
+							pcis.put(contentId, pcir);
+						}
+					} catch (RequiredFieldException | BadFieldException | PreprocessorInvalidDataException e) {
+						Map<String, Object> retitem = new LinkedHashMap<>();
+						retitem.put(RETFIELD_STATUS, "error");
+						retitem.put(RETFIELD_MESSAGE, e.getMessage());
+						ret.put(contentId, retitem);
+					}
+				}
+			}
+		} catch (RuntimeException | Error e) {
+			// content of bulk is not pushed, so preprocessing of the rest of it is useless
+			for (Future<PushContentImplRet> f : prepared.values()) {
+				f.cancel(true);
+			}
+			throw e;
+		}
+
+		if (!ids.isEmpty()) {
+			if (typeInfo.isPersist()) {
+				// all content from bulk is stored in one batch
+				Map<String, Map<String, Object>> toStore = new LinkedHashMap<>();
+				for (PushContentImplRet pcir : pcis.values()) {
+					toStore.put(pcir.sysContentId, pcir.content);
+				}
+				contentPersistenceService.storeBatch(type, toStore);
+			}
+			Map<String, Map<String, Object>> contents = new LinkedHashMap<>();
+			for (PushContentImplRet pcir : pcis.values()) {
+				contents.put(pcir.sysContentId, pcir.content);
+			}
+			fireContentBeforeIndexedEvents(contents);
+			for (PushContentImplRet pcir : pcis.values()) {
+				prepareIndexRequest(typeInfo, pcir);
+				brb.add(pcir.irb);
+			}
+			BulkResponse br = brb.execute().actionGet();
+			invalidateSearchResultCache(typeInfo);
+
+			Map<String, Map<String, Object>> stored = new LinkedHashMap<>();
+			int i = 0;
+			for (BulkItemResponse bri : br.getItems()) {
+				String contentId = ids.get(i);
+				Map<String, Object> retitem = new LinkedHashMap<>();
+				ret.put(contentId, retitem);
+				if (!bri.isFailed()) {
+					PushContentImplRet pcir = pcis.get(contentId);
+					stored.put(pcir.sysContentId, pcir.content);
+
+					processIndexResponse((IndexResponse) bri.getResponse(), retitem);
+					if (pcir.contentWarnings != null && !pcir.contentWarnings.isEmpty())
+						retitem.put(RETFIELD_WARNINGS, pcir.contentWarnings);
+				} else {
+					retitem.put(RETFIELD_STATUS, "error");
+					retitem.put(RETFIELD_MESSAGE, bri.getFailureMessage());
+				}
+				i++;
+			}
+			if (!stored.isEmpty())
+				fireContentStoredEvents(stored);
+		}
+	}
+
+	/**
+	 * Submit content for preparation by {@link #prepareContentForPush(ProviderContentTypeInfo, String, Map, Map)}. It
+	 * is prepared in parallel if {@link BulkPreprocessingService} is available, in caller's thread otherwise.
+	 * 
+	 * @return future with prepared content
+	 * @see #getPreparedContent(Future)
+	 */
+	protected Future<PushContentImplRet> submitContentForPush(final ProviderContentTypeInfo typeInfo,
+			final String contentId, final Map<String, Object> content, final Map<String, String> storedContentHashes) {
+		Callable<PushContentImplRet> work = new Callable<PushContentImplRet>() {
+			@Override
+			public PushContentImplRet call() throws Exception {
+				return prepareContentForPush(typeInfo, contentId, content, storedContentHashes);
+			}
+		};
+		if (bulkPreprocessingService != null) {
+			return bulkPreprocessingService.submit(work);
+		}
+		FutureTask<PushContentImplRet> task = new FutureTask<>(work);
+		task.run();
+		return task;
+	}
+
+	/**
+	 * Wait for content submitted by {@link #submitContentForPush(ProviderContentTypeInfo, String, Map, Map)} and rethrow
+	 * exception thrown during its preparation.
+	 */
+	protected PushContentImplRet getPreparedContent(Future<PushContentImplRet> f) throws PreprocessorInvalidDataException {
+		try {
+			return f.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while waiting for content preprocessing", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof PreprocessorInvalidDataException)
+				throw (PreprocessorInvalidDataException) cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new RuntimeException(cause);
+		}
+	}
+
+	/**
+	 * Store one content object into Searchisko - preprocess, persist and index it.
+	 * 
+	 * @param typeInfo of pushed content
+	 * @param contentId of pushed content
+	 * @param content to push, it is changed
+	 * @return status structure with <code>status</code> and <code>message</code> field, and optional
+	 *         <code>warnings</code> from preprocessors
+	 */
+	public Map<String, Object> pushContent(ProviderContentTypeInfo typeInfo, String contentId,
+			Map<String, Object> content) throws RequiredFieldException, BadFieldException, PreprocessorInvalidDataException {
+
+		Map<String, Object> ret = new LinkedHashMap<>();
+		PushContentImplRet pcir = prepareContentForPush(typeInfo, contentId, content);
+		if (pcir.unchanged) {
+			processUnchanged(ret);
+			return ret;
+		}
+
+		if (typeInfo.isPersist()) {
+			contentPersistenceService.store(pcir.sysContentId, typeInfo.getTypeName(), content);
+		}
+
+		fireContentBeforeIndexedEvents(Collections.singletonMap(pcir.sysContentId, pcir.content));
+		prepareIndexRequest(typeInfo, pcir);
+
+		// Push to search subsystem
+		IndexResponse ir = pcir.irb.execute().actionGet();
+		invalidateSearchResultCache(typeInfo);
+
+		fireContentStoredEvents(Collections.singletonMap(pcir.sysContentId, content));
+
+		processIndexResponse(ir, ret);
+		if (pcir.contentWarnings != null && !pcir.contentWarnings.isEmpty())
+			ret.put(RETFIELD_WARNINGS, pcir.contentWarnings);
+		return ret;
+	}
+
+	/**
+	 * Validate content and prepare it for push - fill normalized fields and run preprocessors. Content is neither
+	 * persisted nor prepared for indexing here. Hash of pushed content is compared with hash stored with content pushed
+	 * before, and content is not processed if they are same.
+	 * <p>
+	 * Note that preprocessors are not run for unchanged content, so data enriched from other sources (eg. contributor or
+	 * project mappings) is not refreshed by push of the same content. Reindexing tasks have to be used for it.
+	 * 
+	 * @param typeInfo of pushed content
+	 * @param contentId of pushed content
+	 * @param content to prepare, it is changed
+	 * @return info about prepared content, {@link PushContentImplRet#irb} is not filled yet,
+	 *         {@link PushContentImplRet#unchanged} is true if content is same as pushed before
+	 * @see #prepareIndexRequest(ProviderContentTypeInfo, PushContentImplRet)
+	 */
+	protected PushContentImplRet prepareContentForPush(ProviderContentTypeInfo typeInfo, String contentId,
+			Map<String, Object> content) throws RequiredFieldException, BadFieldException, PreprocessorInvalidDataException {
+		return prepareContentForPush(typeInfo, contentId, content, null);
+	}
+
+	/**
+	 * Validate content and prepare it for push, see {@link #prepareContentForPush(ProviderContentTypeInfo, String, Map)}
+	 * .
+	 * 
+	 * @param typeInfo of pushed content
+	 * @param contentId of pushed content
+	 * @param content to prepare, it is changed
+	 * @param storedContentHashes hashes of content pushed before read by
+	 *          {@link #getStoredContentHashes(ProviderContentTypeInfo, Collection)}, key is <code>sys_id</code>. Hash is
+	 *          read for this content only if null.
+	 * @return info about prepared content
+	 */
+	protected PushContentImplRet prepareContentForPush(ProviderContentTypeInfo typeInfo, String contentId,
+			Map<String, Object> content, Map<String, String> storedContentHashes) throws RequiredFieldException,
+			BadFieldException, PreprocessorInvalidDataException {
+
+		String type = typeInfo.getTypeName();
+
+		// content validation
+		if (contentId == null || contentId.isEmpty()) {
+			throw new RequiredFieldException("contentId");
+		}
+
+		if (contentId.startsWith("_") || contentId.contains(",") || contentId.contains("*")) {
+			throw new BadFieldException("contentId", "contentId can't start with underscore or contain comma, star");
+		}
+
+		if (content == null || content.isEmpty()) {
+			throw new BadFieldException("content", "Some content for pushing must be defined");
+		}
+
+		String sysContentId = providerService.generateSysId(type, contentId);
+
+		// check search subsystem configuration
+		String indexName = ProviderService.extractIndexName(typeInfo, type);
+		String indexType = ProviderService.extractIndexType(typeInfo, type);
+
+		// skip unchanged content
+		String contentHash = computeContentHash(typeInfo, content);
+		if (contentHash != null
+				&& contentHash.equals(storedContentHashes != null ? storedContentHashes.get(sysContentId)
+						: getStoredContentHash(typeInfo, indexName, indexType, sysContentId))) {
+			log.log(Level.FINE, "Content {0} not changed", sysContentId);
+			PushContentImplRet pcir = new PushContentImplRet(null, null, sysContentId, contentId, content);
+			pcir.unchanged = true;
+			return pcir;
+		}
+
+		// fill some normalized fields - should be last step to avoid changing them via preprocessors
+		content.put(ContentObjectFields.SYS_CONTENT_PROVIDER, typeInfo.getProviderName());
+		content.put(ContentObjectFields.SYS_CONTENT_ID, contentId);
+		content.put(ContentObjectFields.SYS_CONTENT_TYPE, type);
+		content.put(ContentObjectFields.SYS_ID, sysContentId);
+		content.put(ContentObjectFields.SYS_TYPE, ProviderService.extractSysType(typeInfo.getTypeDef(), type));
+		content.put(ContentObjectFields.SYS_UPDATED, new Date());
+		// Copy distinct data from content to normalized fields
+		content.put(ContentObjectFields.SYS_TAGS, content.get(ContentObjectFields.TAGS));
+
+		processFieldSysVisibleForRoles(content);
+
+		// Fill type of content from configuration
+		if (content.containsKey(ContentObjectFields.SYS_CONTENT)) {
+			content.put(ContentObjectFields.SYS_CONTENT_CONTENT_TYPE,
+					ProviderService.extractSysContentContentType(typeInfo.getTypeDef(), type));
+		} else {
+			content.remove(ContentObjectFields.SYS_CONTENT_CONTENT_TYPE);
+		}
+
+		// Run preprocessors to manipulate other fields
+		List<Map<String, String>> contentWarnings = providerService.runPreprocessors(type,
+				ProviderService.extractPreprocessors(typeInfo, type), content);
+
+		// Refill type of content from configuration if content was added in preprocessors
+		if (content.containsKey(ContentObjectFields.SYS_CONTENT)
+				&& !content.containsKey(ContentObjectFields.SYS_CONTENT_CONTENT_TYPE)) {
+			content.put(ContentObjectFields.SYS_CONTENT_CONTENT_TYPE,
+					ProviderService.extractSysContentContentType(typeInfo.getTypeDef(), type));
+		}
+
+		if (contentHash != null)
+			content.put(ContentObjectFields.SYS_CONTENT_HASH, contentHash);
+
+		return new PushContentImplRet(null, contentWarnings, sysContentId, contentId, content);
+	}
+
+	/**
+	 * Compute hash of pushed content. Whole configuration of content type (preprocessors, index, values of normalized
+	 * fields etc.) is part of hash, so content is processed again when it changes.
+	 * 
+	 * @param typeInfo of pushed content
+	 * @param content pushed by provider, before any change. {@link ContentObjectFields#SYS_CONTENT_HASH} is removed
+	 *          from it.
+	 * @return hash or null if it can't be computed
+	 */
+	protected String computeContentHash(ProviderContentTypeInfo typeInfo, Map<String, Object> content) {
+		content.remove(ContentObjectFields.SYS_CONTENT_HASH);
+		Map<String, Object> hashed = new HashMap<>();
+		hashed.put("content", content);
+		hashed.put("type", typeInfo.getTypeName());
+		hashed.put("type_def", typeInfo.getTypeDef());
+		try {
+			return SearchUtils.computeJsonMapHash(hashed);
+		} catch (IOException e) {
+			log.log(Level.WARNING, "Content hash can't be computed: " + e.getMessage());
+			return null;
+		}
+	}
+
+	/**
+	 * Get hash of content pushed before. Hash is read from search index, so content lost from index is indexed again
+	 * even if pushed content is same. For persisted content hash stored in persistence must be same also.
+	 * 
+	 * @param typeInfo of pushed content
+	 * @param indexName content is indexed into
+	 * @param indexType content is indexed into
+	 * @param sysContentId of content
+	 * @return hash or null if content doesn't exist or has no hash
+	 */
+	protected String getStoredContentHash(ProviderContentTypeInfo typeInfo, String indexName, String indexType,
+			String sysContentId) {
+		String ret = null;
+		try {
+			GetResponse gr = searchClientService.getClient().prepareGet(indexName, indexType, sysContentId)
+					.setFields(ContentObjectFields.SYS_CONTENT_HASH).execute().actionGet();
+			if (gr.isExists() && gr.getField(ContentObjectFields.SYS_CONTENT_HASH) != null) {
+				Object value = gr.getField(ContentObjectFields.SYS_CONTENT_HASH).getValue();
+				ret = value != null ? value.toString() : null;
+			}
+		} catch (IndexMissingException e) {
+			// content doesn't exist
+		}
+		if (ret != null && typeInfo.isPersist()
+				&& !ret.equals(contentPersistenceService.getContentHash(sysContentId, typeInfo.getTypeName()))) {
+			return null;
+		}
+		return ret;
+	}
+
+	/**
+	 * Get hashes of more content objects pushed before at once. They are read by one multi get request from search
+	 * index, and compared with hashes read from persistence in batch if content is persisted.
+	 * 
+	 * @param typeInfo of pushed content
+	 * @param sysContentIds of content objects
+	 * @return map with hashes, key is <code>sys_id</code>. Content which doesn't exist or has no hash is not in map.
+	 * @see #getStoredContentHash(ProviderContentTypeInfo, String, String, String)
+	 */
+	protected Map<String, String> getStoredContentHashes(ProviderContentTypeInfo typeInfo,
+			Collection<String> sysContentIds) {
+		Map<String, String> ret = new HashMap<>();
+		if (sysContentIds.isEmpty()) {
+			return ret;
+		}
+		String indexName = ProviderService.extractIndexName(typeInfo, typeInfo.getTypeName());
+		String indexType = ProviderService.extractIndexType(typeInfo, typeInfo.getTypeName());
+		MultiGetRequestBuilder mgrb = searchClientService.getClient().prepareMultiGet();
+		for (String sysContentId : sysContentIds) {
+			mgrb.add(new MultiGetRequest.Item(indexName, indexType, sysContentId).fields(ContentObjectFields.SYS_CONTENT_HASH));
+		}
+		try {
+			for (MultiGetItemResponse item : mgrb.execute().actionGet()) {
+				if (!item.isFailed() && item.getResponse().isExists()
+						&& item.getResponse().getField(ContentObjectFields.SYS_CONTENT_HASH) != null) {
+					Object value = item.getResponse().getField(ContentObjectFields.SYS_CONTENT_HASH).getValue();
+					if (value != null)
+						ret.put(item.getId(), value.toString());
+				}
+			}
+		} catch (IndexMissingException e) {
+			// content doesn't exist
+		}
+		if (!ret.isEmpty() && typeInfo.isPersist()) {
+			Map<String, String> persisted = contentPersistenceService.getContentHashes(ret.keySet(), typeInfo.getTypeName());
+			ret.entrySet().retainAll(persisted != null ? persisted.entrySet() : Collections.<Map.Entry<String, String>> emptySet());
+		}
+		return ret;
+	}
+
+	/**
+	 * Fire {@link ContentBatchBeforeIndexedEvent} for all content objects indexed together, then
+	 * {@link ContentBeforeIndexedEvent} for each of them. Must be called after content is persisted.
+	 * 
+	 * @param contents to fire events for, key is <code>sys_id</code>
+	 */
+	public void fireContentBeforeIndexedEvents(Map<String, Map<String, Object>> contents) {
+		ContentBatchBeforeIndexedEvent batchEvent = new ContentBatchBeforeIndexedEvent(contents);
+		log.log(Level.FINE, "Going to fire event {0}", batchEvent);
+		eventBatchBeforeIndexed.fire(batchEvent);
+		for (Map.Entry<String, Map<String, Object>> e : contents.entrySet()) {
+			ContentBeforeIndexedEvent event = new ContentBeforeIndexedEvent(e.getKey(), e.getValue());
+			log.log(Level.FINE, "Going to fire event {0}", event);
+			eventBeforeIndexed.fire(event);
+		}
+	}
+
+	/**
+	 * Fire {@link ContentBatchStoredEvent} for all content objects stored together, then {@link ContentStoredEvent} for
+	 * each of them.
+	 * 
+	 * @param contents to fire events for, key is <code>sys_id</code>
+	 */
+	public void fireContentStoredEvents(Map<String, Map<String, Object>> contents) {
+		ContentBatchStoredEvent batchEvent = new ContentBatchStoredEvent(contents);
+		log.log(Level.FINE, "Going to fire event {0}", batchEvent);
+		eventBatchStored.fire(batchEvent);
+		for (Map.Entry<String, Map<String, Object>> e : contents.entrySet()) {
+			ContentStoredEvent event = new ContentStoredEvent(e.getKey(), e.getValue());
+			log.log(Level.FINE, "Going to fire event {0}", event);
+			eventContentStored.fire(event);
+		}
+	}
+
+	/**
+	 * Create index request for prepared content. Must be called after
+	 * {@link #fireContentBeforeIndexedEvents(Map)}, as content is serialized here.
+	 * 
+	 * @param typeInfo of pushed content
+	 * @param pcir prepared content, {@link PushContentImplRet#irb} is filled here
+	 */
+	protected void prepareIndexRequest(ProviderContentTypeInfo typeInfo, PushContentImplRet pcir) {
+		String type = typeInfo.getTypeName();
+		String indexName = ProviderService.extractIndexName(typeInfo, type);
+		String indexType = ProviderService.extractIndexType(typeInfo, type);
+		pcir.irb = searchClientService.getClient().prepareIndex(indexName, indexType, pcir.sysContentId)
+				.setSource(pcir.content);
+	}
+
+	/**
+	 * Normalize {@link ContentObjectFields#SYS_VISIBLE_FOR_ROLES} field of content to list of roles, remove it if there
+	 * is no role.
+	 * 
+	 * @param content to process
+	 * @throws BadFieldException if field has bad format
+	 */
+	public void processFieldSysVisibleForRoles(Map<String, Object> content) {
+		try {
+			List<String> vr = SearchUtils.getListOfStringsFromJsonMap(content, ContentObjectFields.SYS_VISIBLE_FOR_ROLES);
+			if (vr != null) {
+				content.put(ContentObjectFields.SYS_VISIBLE_FOR_ROLES, vr);
+			} else {
+				content.remove(ContentObjectFields.SYS_VISIBLE_FOR_ROLES);
+			}
+		} catch (SettingsException e) {
+			throw new BadFieldException(ContentObjectFields.SYS_VISIBLE_FOR_ROLES);
+		}
+	}
+
+	protected static final class PushContentImplRet {
+		IndexRequestBuilder irb;
+		List<Map<String, String>> contentWarnings;
+		String sysContentId;
+		String contentId;
+		Map<String, Object> content;
+		/**
+		 * true if pushed content is same as pushed before, so it is not processed
+		 */
+		boolean unchanged;
+
+		public PushContentImplRet(IndexRequestBuilder irb, List<Map<String, String>> contentWarnings, String sysContentId,
+				String contentId, Map<String, Object> content) {
+			super();
+			this.irb = irb;
+			this.contentWarnings = contentWarnings;
+			this.sysContentId = sysContentId;
+			this.contentId = contentId;
+			this.content = content;
+		}
+	}
+
+	private void processUnchanged(Map<String, Object> retJson) {
+		retJson.put(RETFIELD_STATUS, "unchanged");
+		retJson.put(RETFIELD_MESSAGE, "Content not changed.");
+	}
+
+	private void processIndexResponse(IndexResponse ir, Map<String, Object> retJson) {
+		if (ir.getVersion() > 1) {
+			retJson.put(RETFIELD_STATUS, "update");
+			retJson.put(RETFIELD_MESSAGE, "Content updated successfully.");
+		} else {
+			retJson.put(RETFIELD_STATUS, "insert");
+			retJson.put(RETFIELD_MESSAGE, "Content inserted successfully.");
+		}
+	}
+
+	/**
+	 * Invalidate cached search responses which may contain content of given type.
+	 * 
+	 * @param typeInfo of changed content
+	 */
+	public void invalidateSearchResultCache(ProviderContentTypeInfo typeInfo) {
+		String type = typeInfo.getTypeName();
+		Set<String> indices = new HashSet<>();
+		indices.add(ProviderService.extractIndexName(typeInfo, type));
+		for (String index : ProviderService.extractSearchIndices(typeInfo, type)) {
+			indices.add(index);
+		}
+		searchResultCache.invalidate(indices);
+	}
+}
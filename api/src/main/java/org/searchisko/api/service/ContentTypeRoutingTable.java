@@ -0,0 +1,89 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.searchisko.api.service;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.elasticsearch.common.settings.SettingsException;
+import org.searchisko.api.service.ProviderService.ProviderContentTypeInfo;
+
+/**
+ * Immutable routing table built from list of all provider definitions. Maps <code>sys_content_type</code> to
+ * {@link ProviderContentTypeInfo} (which holds extracted index name, index type, sys_type, visibility roles, persist
+ * flag and preprocessors definitions). If more providers define the same <code>sys_content_type</code> then the first
+ * one wins. Table can't be built if configuration of any provider is incorrect, so misconfiguration is not hidden.
+ *
+ * @author Vlastimil Elias (velias at redhat dot com)
+ * @see ProviderService#getRoutingTable()
+ */
+public class ContentTypeRoutingTable {
+
+	private final List<Map<String, Object>> providers;
+
+	private final Map<String, ProviderContentTypeInfo> contentTypes;
+
+	/**
+	 * Build routing table.
+	 *
+	 * @param providers list of all provider definitions to build table from, can be null
+	 * @throws SettingsException if configuration of some provider is incorrect
+	 */
+	public ContentTypeRoutingTable(List<Map<String, Object>> providers) {
+		this.providers = providers;
+		Map<String, ProviderContentTypeInfo> ct = new LinkedHashMap<>();
+		if (providers != null) {
+			for (Map<String, Object> providerDef : providers) {
+				Map<String, Map<String, Object>> types = ProviderService.extractAllContentTypes(providerDef);
+				if (types == null)
+					continue;
+				for (String typeName : types.keySet()) {
+					if (ct.containsKey(typeName))
+						continue;
+					if (types.get(typeName) == null) {
+						throw new SettingsException("Incorrect configuration of 'type' section for provider '"
+								+ providerDef.get(ProviderService.NAME) + "' and sys_content_type=" + typeName + ".");
+					}
+					ct.put(typeName, new ProviderContentTypeInfo(providerDef, typeName));
+				}
+			}
+		}
+		this.contentTypes = Collections.unmodifiableMap(ct);
+	}
+
+	/**
+	 * Check if this table was built from given list of providers.
+	 *
+	 * @param providers list of providers to check
+	 * @return true if this table was built from exactly the same list instance
+	 */
+	public boolean isBuiltFrom(List<Map<String, Object>> providers) {
+		return this.providers == providers;
+	}
+
+	/**
+	 * Get info about content type.
+	 *
+	 * @param typeName <code>sys_content_type</code> to get info for
+	 * @return type info or null if not found
+	 */
+	public ProviderContentTypeInfo getContentType(String typeName) {
+		if (typeName == null)
+			return null;
+		return contentTypes.get(typeName);
+	}
+
+	/**
+	 * @return unmodifiable collection of info about all content types, never null
+	 */
+	public Collection<ProviderContentTypeInfo> getContentTypes() {
+		return contentTypes.values();
+	}
+
+}
@@ -0,0 +1,122 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.searchisko.api.service;
+
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.ejb.Lock;
+import javax.ejb.LockType;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.searchisko.api.events.ContributorCodeChangedEvent;
+import org.searchisko.api.events.ContributorCreatedEvent;
+import org.searchisko.api.events.ContributorDeletedEvent;
+import org.searchisko.api.events.ContributorMergedEvent;
+import org.searchisko.api.events.ContributorUpdatedEvent;
+import org.searchisko.api.model.AppConfiguration;
+import org.searchisko.tools.content.ContributorMappingPreprocessor;
+import org.searchisko.tools.content.ContributorLookupCache;
+
+/**
+ * Service managing cache of contributor lookups performed by {@link ContributorMappingPreprocessor}. Cache is
+ * configured by <code>contributor.lookup.cache.size</code> and <code>contributor.lookup.cache.ttl</code> in
+ * {@link AppConfigurationService#FILENAME}, and flushed whenever contributor is changed on this node. Changes performed
+ * on other cluster nodes are picked up after <code>ttl</code>.
+ *
+ * @author Vlastimil Elias (velias at redhat dot com)
+ */
+@Named
+@ApplicationScoped
+@Singleton
+@Startup
+@Lock(LockType.READ)
+public class ContributorLookupCacheService {
+
+	@Inject
+	protected Logger log;
+
+	@Inject
+	protected AppConfigurationService appConfigurationService;
+
+	@PostConstruct
+	public void init() {
+		AppConfiguration ac = appConfigurationService.getAppConfiguration();
+		getLookupCache().configure(ac.getContributorLookupCacheSize(), ac.getContributorLookupCacheTtl() * 1000L);
+		log.log(Level.INFO, "Contributor lookup cache enabled: {0}", getLookupCache().isEnabled());
+	}
+
+	protected ContributorLookupCache getLookupCache() {
+		return ContributorMappingPreprocessor.getLookupCache();
+	}
+
+	/**
+	 * CDI event handler for {@link ContributorCreatedEvent}, cached negative lookups may be invalid now.
+	 *
+	 * @param event to process
+	 */
+	public void contributorCreatedEventHandler(@Observes ContributorCreatedEvent event) {
+		flush(event);
+	}
+
+	/**
+	 * CDI event handler for {@link ContributorUpdatedEvent}.
+	 *
+	 * @param event to process
+	 */
+	public void contributorUpdatedEventHandler(@Observes ContributorUpdatedEvent event) {
+		flush(event);
+	}
+
+	/**
+	 * CDI event handler for {@link ContributorMergedEvent}.
+	 *
+	 * @param event to process
+	 */
+	public void contributorMergedEventHandler(@Observes ContributorMergedEvent event) {
+		flush(event);
+	}
+
+	/**
+	 * CDI event handler for {@link ContributorDeletedEvent}.
+	 *
+	 * @param event to process
+	 */
+	public void contributorDeletedEventHandler(@Observes ContributorDeletedEvent event) {
+		flush(event);
+	}
+
+	/**
+	 * CDI event handler for {@link ContributorCodeChangedEvent}.
+	 *
+	 * @param event to process
+	 */
+	public void contributorCodeChangedEventHandler(@Observes ContributorCodeChangedEvent event) {
+		flush(event);
+	}
+
+	private void flush(Object event) {
+		log.log(Level.FINE, "Contributor lookup cache flushed due event {0}", event);
+		getLookupCache().flush();
+	}
+
+	/**
+	 * Get statistics of contributor lookup cache.
+	 *
+	 * @return map with statistics
+	 */
+	public Map<String, Object> getStatistics() {
+		return getLookupCache().getStatistics();
+	}
+
+}
@@ -6,10 +6,16 @@
 package org.searchisko.api.service;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -22,7 +28,7 @@ import javax.inject.Inject;
 import javax.inject.Named;
 
 import org.searchisko.api.ContentObjectFields;
-import org.searchisko.api.events.ContentBeforeIndexedEvent;
+import org.searchisko.api.events.ContentBatchBeforeIndexedEvent;
 import org.searchisko.api.events.ContentDeletedEvent;
 import org.searchisko.api.events.ContributorCodeChangedEvent;
 import org.searchisko.api.events.ContributorMergedEvent;
@@ -32,6 +38,11 @@ import org.searchisko.persistence.service.CustomTagPersistenceService;
 /**
  * Business logic for Custom Tags. It can provide some more complicated operations at top of
  * {@link CustomTagPersistenceService} but you can use {@link CustomTagPersistenceService} directly when appropriate.
+ * <p>
+ * Optional in-memory index of custom tags labels may be used when content is indexed, as only small fraction of
+ * content has custom tags. It is switched on by <code>customtags.index.reload.interval</code> in
+ * {@link AppConfigurationService#FILENAME}. Index is updated by {@link #refreshTagIndex(String)} when tags are changed
+ * on this node, and fully reloaded from persistence after configured interval to pick up changes from other nodes.
  * 
  * @author Jiri Mauritz (jirmauritz at gmail dot com)
  */
@@ -47,6 +58,25 @@ public class CustomTagService {
 	@Inject
 	protected CustomTagPersistenceService customTagPersistenceService;
 
+	@Inject
+	protected AppConfigurationService appConfigurationService;
+
+	/**
+	 * In-memory index of custom tags, key is content id, value is list of tag labels. <code>null</code> if not loaded.
+	 */
+	protected volatile Map<String, List<String>> tagIndex;
+
+	/**
+	 * Timestamp of last full load of {@link #tagIndex}.
+	 */
+	protected volatile long tagIndexLoadTimestamp;
+
+	private final Object tagIndexLoadLock = new Object();
+
+	private final AtomicLong indexLookupCount = new AtomicLong();
+	private final AtomicLong persistenceLookupCount = new AtomicLong();
+	private final AtomicLong indexReloadCount = new AtomicLong();
+
 	/**
 	 * CDI Event handler for {@link ContentDeletedEvent} used to remove tags when content is deleted.
 	 * 
@@ -56,23 +86,34 @@ public class CustomTagService {
 		log.log(Level.FINE, "contentDeletedEventHandler called for event {0}", event);
 		if (event != null && event.getContentId() != null) {
 			customTagPersistenceService.deleteTagsForContent(event.getContentId());
+			Map<String, List<String>> index = tagIndex;
+			if (index != null)
+				index.remove(event.getContentId());
 		} else {
 			log.warning("Invalid event " + event);
 		}
 	}
 
 	/**
-	 * CDI event handler for {@link ContentBeforeIndexedEvent}. Used to add content tags fields into content data before
-	 * indexed.
+	 * CDI event handler for {@link ContentBatchBeforeIndexedEvent}. Used to add content tags fields into content data
+	 * before indexed. Custom tags for whole batch are obtained by one lookup.
 	 */
-	public void contentBeforeIndexedHandler(@Observes ContentBeforeIndexedEvent event) {
-		log.log(Level.FINE, "contentBeforeIndexedHandler called for event {0}", event);
-		if (event == null || event.getContentId() == null || event.getContentData() == null) {
+	public void contentBatchBeforeIndexedHandler(@Observes ContentBatchBeforeIndexedEvent event) {
+		log.log(Level.FINE, "contentBatchBeforeIndexedHandler called for event {0}", event);
+		if (event == null || event.getContents() == null) {
 			log.warning("Invalid event " + event);
 			return;
 		}
-		Map<String, Object> content = event.getContentData();
-		updateSysTagsField(content);
+		Map<String, Map<String, Object>> contents = new LinkedHashMap<>();
+		for (Map.Entry<String, Map<String, Object>> e : event.getContents().entrySet()) {
+			if (e.getKey() != null && e.getValue() != null) {
+				contents.put(e.getKey(), e.getValue());
+			} else {
+				log.warning("Invalid content " + e.getKey() + " in event " + event);
+			}
+		}
+		if (!contents.isEmpty())
+			updateSysTagsFields(contents);
 	}
 
 	/**
@@ -106,29 +147,167 @@ public class CustomTagService {
 	 * 
 	 * @param source
 	 */
-	@SuppressWarnings("unchecked")
 	public void updateSysTagsField(Map<String, Object> source) {
-		List<String> tags = null;
-		try {
-			tags = (List<String>) source.get(ContentObjectFields.TAGS);
-		} catch (Exception e) {
-			log.warning("Incorrect format (not an array) of 'tags' field in document: " + source);
+		String contentId = (String) source.get(ContentObjectFields.SYS_ID);
+		updateSysTagsFields(Collections.singletonMap(contentId, source));
+	}
+
+	/**
+	 * Merge tags from TAGS field and custom tags and save them into SYS_TAGS field for more content objects. Custom tags
+	 * are obtained by one lookup for all of them.
+	 * 
+	 * @param contents to update, key is content id (value of SYS_ID field)
+	 */
+	@SuppressWarnings("unchecked")
+	public void updateSysTagsFields(Map<String, Map<String, Object>> contents) {
+		Map<String, List<String>> customTags = getCustomTagLabels(contents.keySet());
+
+		for (Map.Entry<String, Map<String, Object>> e : contents.entrySet()) {
+			Map<String, Object> source = e.getValue();
+			List<String> tags = null;
+			try {
+				tags = (List<String>) source.get(ContentObjectFields.TAGS);
+			} catch (Exception ex) {
+				log.warning("Incorrect format (not an array) of 'tags' field in document: " + source);
+			}
+
+			Set<String> sysTags = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+
+			List<String> labels = customTags.get(e.getKey());
+			if (labels != null) {
+				sysTags.addAll(labels);
+			}
+
+			if (tags != null) {
+				sysTags.addAll(tags);
+			}
+
+			source.put(ContentObjectFields.SYS_TAGS, new ArrayList<String>(sysTags));
 		}
+	}
 
-		List<Tag> customTags = customTagPersistenceService
-				.getTagsByContent((String) source.get(ContentObjectFields.SYS_ID));
-		Set<String> sysTags = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+	/**
+	 * Get labels of custom tags for content objects. In-memory index is used if enabled, persistence otherwise.
+	 * 
+	 * @param contentIds to get labels for, <code>null</code> values are ignored
+	 * @return map where key is content id and value is list of labels. Content without custom tags is not present.
+	 */
+	protected Map<String, List<String>> getCustomTagLabels(Collection<String> contentIds) {
+		Map<String, List<String>> ret = new HashMap<>();
+		List<String> ids = new ArrayList<>(contentIds.size());
+		for (String id : contentIds) {
+			if (id != null)
+				ids.add(id);
+		}
+		if (ids.isEmpty())
+			return ret;
 
-		if (customTags != null) {
-			for (Tag tag : customTags) {
-				sysTags.add(tag.getTagLabel());
+		Map<String, List<String>> index = getTagIndex();
+		if (index != null) {
+			indexLookupCount.incrementAndGet();
+			for (String id : ids) {
+				List<String> labels = index.get(id);
+				if (labels != null)
+					ret.put(id, labels);
+			}
+		} else {
+			persistenceLookupCount.incrementAndGet();
+			Map<String, List<Tag>> tags = customTagPersistenceService.getTagsByContents(ids);
+			if (tags != null) {
+				for (Map.Entry<String, List<Tag>> e : tags.entrySet()) {
+					ret.put(e.getKey(), getLabels(e.getValue()));
+				}
 			}
 		}
+		return ret;
+	}
 
-		if (tags != null) {
-			sysTags.addAll(tags);
+	/**
+	 * Get in-memory index of custom tags, fully reload it if older than configured interval.
+	 * 
+	 * @return index or <code>null</code> if in-memory index is switched off
+	 */
+	protected Map<String, List<String>> getTagIndex() {
+		long interval = appConfigurationService.getAppConfiguration().getCustomTagsIndexReloadInterval() * 1000L;
+		if (interval <= 0)
+			return null;
+		Map<String, List<String>> index = tagIndex;
+		if (index == null || System.currentTimeMillis() - tagIndexLoadTimestamp > interval) {
+			synchronized (tagIndexLoadLock) {
+				index = tagIndex;
+				if (index == null || System.currentTimeMillis() - tagIndexLoadTimestamp > interval) {
+					index = loadTagIndex();
+					tagIndex = index;
+					tagIndexLoadTimestamp = System.currentTimeMillis();
+				}
+			}
 		}
+		return index;
+	}
+
+	private Map<String, List<String>> loadTagIndex() {
+		log.fine("Loading in-memory index of custom tags");
+		Map<String, List<Tag>> tagsByContent = new HashMap<>();
+		List<Tag> allTags = customTagPersistenceService.getAllTags();
+		if (allTags != null) {
+			for (Tag tag : allTags) {
+				List<Tag> l = tagsByContent.get(tag.getContentId());
+				if (l == null) {
+					l = new ArrayList<>();
+					tagsByContent.put(tag.getContentId(), l);
+				}
+				l.add(tag);
+			}
+		}
+		Map<String, List<String>> index = new ConcurrentHashMap<>();
+		for (Map.Entry<String, List<Tag>> e : tagsByContent.entrySet()) {
+			index.put(e.getKey(), getLabels(e.getValue()));
+		}
+		indexReloadCount.incrementAndGet();
+		log.log(Level.FINE, "In-memory index of custom tags loaded for {0} content objects", index.size());
+		return index;
+	}
 
-		source.put(ContentObjectFields.SYS_TAGS, new ArrayList<String>(sysTags));
+	/**
+	 * Refresh custom tags of one content object in in-memory index from persistence. Must be called when custom tags of
+	 * content are changed.
+	 * 
+	 * @param contentId id of content which tags was changed
+	 */
+	public void refreshTagIndex(String contentId) {
+		Map<String, List<String>> index = tagIndex;
+		if (index == null || contentId == null)
+			return;
+		List<Tag> tags = customTagPersistenceService.getTagsByContent(contentId);
+		if (tags == null || tags.isEmpty()) {
+			index.remove(contentId);
+		} else {
+			index.put(contentId, getLabels(tags));
+		}
+	}
+
+	private static List<String> getLabels(List<Tag> tags) {
+		List<String> ret = new ArrayList<>(tags.size());
+		for (Tag tag : tags) {
+			ret.add(tag.getTagLabel());
+		}
+		return ret;
+	}
+
+	/**
+	 * Get statistics of in-memory index of custom tags.
+	 * 
+	 * @return map with statistics
+	 */
+	public Map<String, Object> getStatistics() {
+		Map<String, Object> ret = new LinkedHashMap<>();
+		Map<String, List<String>> index = tagIndex;
+		ret.put("enabled", appConfigurationService.getAppConfiguration().getCustomTagsIndexReloadInterval() > 0);
+		ret.put("size", index != null ? index.size() : 0);
+		ret.put("load_timestamp", tagIndexLoadTimestamp);
+		ret.put("reload_count", indexReloadCount.get());
+		ret.put("index_lookup_count", indexLookupCount.get());
+		ret.put("persistence_lookup_count", persistenceLookupCount.get());
+		return ret;
 	}
 }
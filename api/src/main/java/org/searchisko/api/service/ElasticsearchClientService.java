@@ -17,6 +17,7 @@ import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 
 import org.elasticsearch.action.admin.cluster.health.ClusterHealthResponse;
+import org.elasticsearch.action.admin.cluster.health.ClusterHealthStatus;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.client.Requests;
 import org.elasticsearch.client.transport.TransportClient;
@@ -150,4 +151,21 @@ public class ElasticsearchClientService {
 		}
 	}
 
+	/**
+	 * Cheap check if cluster is reachable and given indices are able to accept data.
+	 * 
+	 * @param indices to check health for, whole cluster is checked if none is given
+	 * @return true if cluster responded and health status of indices is not RED
+	 */
+	public boolean isClusterAvailable(String... indices) {
+		try {
+			ClusterHealthResponse healthResponse = getClient().admin().cluster()
+					.health(Requests.clusterHealthRequest(indices)).actionGet(TimeValue.timeValueSeconds(10));
+			return healthResponse.getStatus() != ClusterHealthStatus.RED;
+		} catch (Exception e) {
+			log.log(Level.WARNING, "Cluster health request failed: {0}", e.getMessage());
+			return false;
+		}
+	}
+
 }
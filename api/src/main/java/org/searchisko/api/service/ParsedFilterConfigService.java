@@ -26,9 +26,10 @@ import org.elasticsearch.common.joda.time.format.ISODateTimeFormat;
 import org.elasticsearch.index.query.FilterBuilder;
 import org.elasticsearch.index.query.RangeFilterBuilder;
 import org.elasticsearch.index.query.TermsFilterBuilder;
+import org.searchisko.api.cache.SearchConfigCache;
 import org.searchisko.api.model.ParsableIntervalConfig;
 import org.searchisko.api.model.QuerySettings;
-import org.searchisko.api.rest.search.ConfigParseUtil;
+import org.searchisko.api.model.SearchConfigSnapshot;
 import org.searchisko.api.rest.search.SemiParsedFilterConfig;
 import org.searchisko.api.rest.search.SemiParsedFilterConfigSupportSuppressed;
 import org.searchisko.api.rest.search.SemiParsedRangeFilterConfig;
@@ -51,7 +52,7 @@ public class ParsedFilterConfigService {
 	protected Logger log;
 
 	@Inject
-	protected ConfigService configService;
+	protected SearchConfigCache searchConfigCache;
 
 	protected static final DateTimeFormatter DATE_TIME_FORMATTER_UTC = ISODateTimeFormat.dateTime().withZoneUTC();
 
@@ -99,7 +100,8 @@ public class ParsedFilterConfigService {
 		rangeFiltersIntervals = new LinkedHashMap<>();
 
 		if (filters != null && !filters.getFilterCandidatesKeys().isEmpty()) {
-			Map<String, Object> filtersConfig = configService.get(ConfigService.CFGNAME_SEARCH_FULLTEXT_FILTER_FIELDS);
+			SearchConfigSnapshot searchConfig = searchConfigCache.getSnapshot();
+			Map<String, Object> filtersConfig = searchConfig.getFilterFields();
 
 			if (filtersConfig == null || filtersConfig.isEmpty()) {
 				if (log.isLoggable(Level.FINEST)) {
@@ -109,13 +111,11 @@ public class ParsedFilterConfigService {
 				return;
 			}
 
-			// collect parsed filter configurations that are relevant to filters required by client
+			// collect parsed filter configurations that are relevant to filters required by client, they are shared
+			// between requests so only request values are bound to them bellow
 			for (String filterCandidateKey : filters.getFilterCandidatesKeys()) {
-				if (filtersConfig.containsKey(filterCandidateKey)) {
-					// get filter types for filterCandidateKey and check all types are the same
-					Object filterConfig = filtersConfig.get(filterCandidateKey);
-					// TODO search filter configuration - cache it
-					SemiParsedFilterConfig parsedFilterConfig = ConfigParseUtil.parseFilterType(filterConfig, filterCandidateKey);
+				SemiParsedFilterConfig parsedFilterConfig = searchConfig.getParsedFilter(filterCandidateKey);
+				if (parsedFilterConfig != null) {
 					semiParsedFilters.put(filterCandidateKey, parsedFilterConfig);
 				}
 			}
@@ -196,13 +196,8 @@ public class ParsedFilterConfigService {
 
 						// handle <_processor> if specified
 						if (conf.getProcessor() != null) {
-							Class<?> processorClass = Class.forName(conf.getProcessor());
-							if (!processorClass.isEnum()) {
-								throw new RuntimeException("Class [" + conf.getProcessor() + "] is not an enum type.");
-							}
-							// TODO: improve ParsableIntervalConfig design to make sure this method has to be implemented
-							Method m = processorClass.getMethod("parseRequestParameterValue", String.class);
-							interval = (ParsableIntervalConfig) m.invoke(processorClass, filterValue);
+							Method m = searchConfig.getRangeFilterProcessorMethod(conf.getProcessor());
+							interval = (ParsableIntervalConfig) m.invoke(null, filterValue);
 						}
 						if (conf.definesGte()) {
 							if (interval != null) {
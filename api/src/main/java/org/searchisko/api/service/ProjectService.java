@@ -6,31 +6,52 @@
 package org.searchisko.api.service;
 
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
 import javax.ejb.LocalBean;
-import javax.ejb.Stateless;
+import javax.ejb.Lock;
+import javax.ejb.LockType;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.ejb.Timeout;
+import javax.ejb.TimerConfig;
+import javax.ejb.TimerService;
+import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 import javax.inject.Named;
 import javax.ws.rs.core.StreamingOutput;
 
 import org.elasticsearch.action.bulk.BulkRequestBuilder;
 import org.elasticsearch.action.search.SearchResponse;
+import org.searchisko.persistence.service.ContentTuple;
 import org.searchisko.persistence.service.EntityService;
 import org.searchisko.persistence.service.ListRequest;
 
 /**
  * Service related to Project definitions.
+ * <p>
+ * Service holds in-memory {@link ProjectsSnapshot} of all projects used for project lookups, as there is small number
+ * of them. Snapshot is loaded at startup, replaced when project is created/updated/deleted on this node, and reloaded
+ * periodically to pick up changes from other cluster nodes. Interval is configured by
+ * <code>projects.snapshot.reload.interval</code> in {@link AppConfigurationService#FILENAME}, snapshot is switched off
+ * and lookups go to search index if it is 0.
  * 
  * @author Libor Krzyzanek
  * @author Lukas Vlcek
  * @author Vlastimil Elias (velias at redhat dot com)
  */
 @Named
-@Stateless
+@ApplicationScoped
+@Singleton
+@Startup
 @LocalBean
+@Lock(LockType.READ)
 public class ProjectService implements SearchableEntityService {
 
 	/**
@@ -71,6 +92,107 @@ public class ProjectService implements SearchableEntityService {
 	@Named("projectServiceBackend")
 	protected EntityService entityService;
 
+	@Inject
+	protected AppConfigurationService appConfigurationService;
+
+	@Resource
+	protected TimerService timerService;
+
+	/**
+	 * Actual snapshot of projects, null if not loaded or switched off. Static so it is available for
+	 * {@link org.searchisko.tools.content.ProjectMappingPreprocessor} too.
+	 */
+	protected static volatile ProjectsSnapshot snapshot;
+
+	private static final Object snapshotLock = new Object();
+
+	// increased on each snapshot change so reload started before it doesn't overwrite it
+	private static long snapshotChangeStamp = 0;
+
+	@PostConstruct
+	public void init() {
+		int interval = appConfigurationService.getAppConfiguration().getProjectsSnapshotReloadInterval();
+		if (interval < 1) {
+			log.info("Projects snapshot is switched off");
+			synchronized (snapshotLock) {
+				snapshot = null;
+			}
+			return;
+		}
+		try {
+			reloadSnapshot();
+		} catch (Exception e) {
+			log.log(Level.WARNING, "Projects snapshot not loaded at startup: " + e.getMessage(), e);
+		}
+		if (timerService != null) {
+			timerService.createIntervalTimer(interval * 1000L, interval * 1000L, new TimerConfig(
+					"Projects snapshot reload", false));
+		}
+	}
+
+	/**
+	 * Timeout handler used to reload snapshot of projects periodically.
+	 */
+	@Timeout
+	public void snapshotReloadTimeout() {
+		try {
+			reloadSnapshot();
+		} catch (Exception e) {
+			log.log(Level.WARNING, "Projects snapshot reload failed: " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Reload snapshot of projects from persistence.
+	 */
+	public void reloadSnapshot() {
+		long stamp;
+		synchronized (snapshotLock) {
+			stamp = snapshotChangeStamp;
+		}
+		Map<String, Map<String, Object>> projects = new LinkedHashMap<>();
+		ListRequest lr = entityService.listRequestInit();
+		while (lr.hasContent()) {
+			for (ContentTuple<String, Map<String, Object>> ct : lr.content()) {
+				projects.put(ct.getId(), ct.getContent());
+			}
+			lr = entityService.listRequestNext(lr);
+		}
+		synchronized (snapshotLock) {
+			// project changed during reload, so snapshot is reloaded next time
+			if (stamp == snapshotChangeStamp) {
+				snapshot = new ProjectsSnapshot(projects);
+				log.log(Level.FINE, "Projects snapshot loaded with {0} projects", projects.size());
+			}
+		}
+	}
+
+	/**
+	 * Get actual snapshot of projects.
+	 *
+	 * @return snapshot or null if it is not loaded or switched off
+	 */
+	public static ProjectsSnapshot getSnapshot() {
+		return snapshot;
+	}
+
+	/**
+	 * @return true if snapshot of projects is loaded so lookups can be served from it
+	 */
+	public boolean isSnapshotAvailable() {
+		return snapshot != null;
+	}
+
+	private void updateSnapshot(String id, Map<String, Object> entity) {
+		synchronized (snapshotLock) {
+			snapshotChangeStamp++;
+			if (snapshot != null) {
+				snapshot = entity != null ? snapshot.withProject(id, new LinkedHashMap<>(entity)) : snapshot
+						.withoutProject(id);
+			}
+		}
+	}
+
 	@Override
 	public StreamingOutput getAll(Integer from, Integer size, String[] fieldsToRemove) {
 		return entityService.getAll(from, size, fieldsToRemove);
@@ -95,6 +217,7 @@ public class ProjectService implements SearchableEntityService {
 		String id = entityService.create(entity);
 
 		updateSearchIndex(id, entity);
+		updateSnapshot(id, entity);
 
 		return id;
 	}
@@ -103,17 +226,20 @@ public class ProjectService implements SearchableEntityService {
 	public void create(String id, Map<String, Object> entity) {
 		entityService.create(id, entity);
 		updateSearchIndex(id, entity);
+		updateSnapshot(id, entity);
 	}
 
 	@Override
 	public void update(String id, Map<String, Object> entity) {
 		entityService.update(id, entity);
 		updateSearchIndex(id, entity);
+		updateSnapshot(id, entity);
 	}
 
 	@Override
 	public void delete(String id) {
 		entityService.delete(id);
+		updateSnapshot(id, null);
 		try {
 			searchClientService.performDelete(SEARCH_INDEX_NAME, SEARCH_INDEX_TYPE, id);
 		} catch (SearchIndexMissingException e) {
@@ -155,6 +281,53 @@ public class ProjectService implements SearchableEntityService {
 		}
 	}
 
+	/**
+	 * Find projects by <code>code</code> in snapshot of projects.
+	 * 
+	 * @param code to search project for.
+	 * @return projects found (should be zero or one), key is project id, value is project definition which must not be
+	 *         modified. Null if snapshot is not available.
+	 * @see #findByCode(String)
+	 */
+	public Map<String, Map<String, Object>> findProjectsByCode(String code) {
+		ProjectsSnapshot s = snapshot;
+		if (s == null)
+			return null;
+		return s.findByField(FIELD_CODE, code);
+	}
+
+	/**
+	 * Find projects by 'type specific code' in snapshot of projects.
+	 * 
+	 * @param codeName name of 'type specific code', eg. <code>jbossorg_jira</code>, <code>jbossorg_project_info</code>
+	 * @param codeValue value of code to search for
+	 * @return projects found (should be zero or one), key is project id, value is project definition which must not be
+	 *         modified. Null if snapshot is not available.
+	 * @see #findByTypeSpecificCode(String, String)
+	 */
+	public Map<String, Map<String, Object>> findProjectsByTypeSpecificCode(String codeName, String codeValue) {
+		ProjectsSnapshot s = snapshot;
+		if (s == null)
+			return null;
+		return s.findByField(FIELD_TYPE_SPECIFIC_CODE + "." + codeName, codeValue);
+	}
+
+	/**
+	 * Get statistics of projects snapshot.
+	 *
+	 * @return map with statistics
+	 */
+	public Map<String, Object> getSnapshotStatistics() {
+		Map<String, Object> ret = new LinkedHashMap<>();
+		ProjectsSnapshot s = snapshot;
+		ret.put("loaded", s != null);
+		if (s != null) {
+			ret.put("size", s.getProjects().size());
+			ret.put("timestamp", s.getTimestamp());
+		}
+		return ret;
+	}
+
 	@Override
 	public ListRequest listRequestInit() {
 		return entityService.listRequestInit();
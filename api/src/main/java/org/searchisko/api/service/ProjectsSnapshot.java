@@ -0,0 +1,150 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.searchisko.api.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.elasticsearch.common.xcontent.support.XContentMapValues;
+
+/**
+ * Immutable in-memory snapshot of all project definitions, held by {@link ProjectService} and used for project lookups
+ * instead of search index. Lookup by field value is exact match, with lookup index for each field built on first use.
+ * Project data returned from snapshot are shared, so they must not be modified.
+ *
+ * @author Vlastimil Elias (velias at redhat dot com)
+ */
+public class ProjectsSnapshot {
+
+	private final Map<String, Map<String, Object>> projects;
+
+	private final long timestamp;
+
+	// key is field name, value is map from field value to identifiers of projects
+	private final ConcurrentMap<String, Map<String, List<String>>> fieldIndices = new ConcurrentHashMap<>();
+
+	/**
+	 * Create snapshot.
+	 *
+	 * @param projects key is project id, value is project definition
+	 */
+	public ProjectsSnapshot(Map<String, Map<String, Object>> projects) {
+		this.projects = Collections.unmodifiableMap(new LinkedHashMap<>(projects));
+		this.timestamp = System.currentTimeMillis();
+	}
+
+	/**
+	 * @return all projects, key is project id, value is project definition
+	 */
+	public Map<String, Map<String, Object>> getProjects() {
+		return projects;
+	}
+
+	/**
+	 * @return time when snapshot was created
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * Find projects by value of field.
+	 *
+	 * @param field name of field in project definition, dot notation may be used for nested fields
+	 * @param value to search for, project matches if field value or any of field values is equal
+	 * @return projects found, key is project id, value is project definition. Never null.
+	 */
+	public Map<String, Map<String, Object>> findByField(String field, String value) {
+		Map<String, Map<String, Object>> ret = new LinkedHashMap<>();
+		List<String> ids = getFieldIndex(field).get(value);
+		if (ids != null) {
+			for (String id : ids) {
+				ret.put(id, projects.get(id));
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Find first project by value of field.
+	 *
+	 * @param field name of field in project definition, dot notation may be used for nested fields
+	 * @param value to search for
+	 * @return project definition or null if not found
+	 * @see #findByField(String, String)
+	 */
+	public Map<String, Object> findFirstByField(String field, String value) {
+		List<String> ids = getFieldIndex(field).get(value);
+		if (ids == null || ids.isEmpty())
+			return null;
+		return projects.get(ids.get(0));
+	}
+
+	private Map<String, List<String>> getFieldIndex(String field) {
+		Map<String, List<String>> index = fieldIndices.get(field);
+		if (index == null) {
+			index = new HashMap<>();
+			for (Map.Entry<String, Map<String, Object>> e : projects.entrySet()) {
+				Object v = XContentMapValues.extractValue(field, e.getValue());
+				if (v instanceof Collection) {
+					for (Object o : (Collection<?>) v) {
+						addToIndex(index, o, e.getKey());
+					}
+				} else {
+					addToIndex(index, v, e.getKey());
+				}
+			}
+			Map<String, List<String>> old = fieldIndices.putIfAbsent(field, index);
+			if (old != null)
+				index = old;
+		}
+		return index;
+	}
+
+	private static void addToIndex(Map<String, List<String>> index, Object value, String id) {
+		if (value == null)
+			return;
+		List<String> ids = index.get(value.toString());
+		if (ids == null) {
+			ids = new ArrayList<>(1);
+			index.put(value.toString(), ids);
+		}
+		ids.add(id);
+	}
+
+	/**
+	 * Create new snapshot with project added or replaced.
+	 *
+	 * @param id of project
+	 * @param project definition
+	 * @return new snapshot
+	 */
+	public ProjectsSnapshot withProject(String id, Map<String, Object> project) {
+		Map<String, Map<String, Object>> p = new LinkedHashMap<>(projects);
+		p.put(id, project);
+		return new ProjectsSnapshot(p);
+	}
+
+	/**
+	 * Create new snapshot with project removed.
+	 *
+	 * @param id of project to remove
+	 * @return new snapshot
+	 */
+	public ProjectsSnapshot withoutProject(String id) {
+		Map<String, Map<String, Object>> p = new LinkedHashMap<>(projects);
+		p.remove(id);
+		return new ProjectsSnapshot(p);
+	}
+
+}
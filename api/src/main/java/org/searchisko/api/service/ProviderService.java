@@ -5,7 +5,10 @@
  */
 package org.searchisko.api.service;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
@@ -17,6 +20,7 @@ import javax.inject.Inject;
 import javax.inject.Named;
 import javax.ws.rs.core.StreamingOutput;
 
+import org.elasticsearch.client.Client;
 import org.elasticsearch.common.settings.SettingsException;
 import org.jboss.elasticsearch.tools.content.InvalidDataException;
 import org.jboss.elasticsearch.tools.content.StructuredContentPreprocessor;
@@ -146,17 +150,23 @@ public class ProviderService implements EntityService {
 	public ProviderContentTypeInfo findContentType(String typeName) {
 		if (SearchUtils.isBlank(typeName))
 			return null;
-		// we do not cache here because getAll() caches.
+		return getRoutingTable().getContentType(typeName);
+	}
+
+	/**
+	 * Get routing table for all content types. Table is built from {@link #getAll()} so it is rebuilt when list of all
+	 * providers is reloaded or {@link #flushCaches()} is called.
+	 * 
+	 * @return routing table, never null
+	 */
+	public ContentTypeRoutingTable getRoutingTable() {
 		List<Map<String, Object>> allProviders = getAll();
-		if (allProviders != null) {
-			for (Map<String, Object> providerDef : allProviders) {
-				Map<String, Object> ct = extractContentType(providerDef, typeName);
-				if (ct != null) {
-					return new ProviderContentTypeInfo(providerDef, typeName);
-				}
-			}
+		ContentTypeRoutingTable ret = cacheRoutingTable;
+		if (ret == null || !ret.isBuiltFrom(allProviders)) {
+			ret = new ContentTypeRoutingTable(allProviders);
+			cacheRoutingTable = ret;
 		}
-		return null;
+		return ret;
 	}
 
 	/**
@@ -169,6 +179,17 @@ public class ProviderService implements EntityService {
 		private Map<String, Object> typeDef;
 		private String typeName;
 
+		// values extracted from typeDef on first use, shared so they MUST NOT be modified by callers
+		private volatile String indexName;
+		private volatile String indexType;
+		private volatile String sysType;
+		private volatile String[] searchIndices;
+		private volatile Boolean persist;
+		private volatile Collection<String> visibilityRoles;
+		private volatile boolean visibilityRolesExtracted;
+		private volatile List<Map<String, Object>> preprocessors;
+		private volatile boolean preprocessorsExtracted;
+
 		public ProviderContentTypeInfo(Map<String, Object> providerDef, String typeName) {
 			if (providerDef == null)
 				throw new IllegalArgumentException("providerDef can't be null");
@@ -221,6 +242,97 @@ public class ProviderService implements EntityService {
 			return typeDef;
 		}
 
+		/**
+		 * @return search index name, see {@link ProviderService#extractIndexName(Map, String)}
+		 * @throws SettingsException if configuration is invalid
+		 */
+		public String getIndexName() {
+			String ret = indexName;
+			if (ret == null) {
+				ret = extractIndexName(typeDef, typeName);
+				indexName = ret;
+			}
+			return ret;
+		}
+
+		/**
+		 * @return search type name, see {@link ProviderService#extractIndexType(Map, String)}
+		 * @throws SettingsException if configuration is invalid
+		 */
+		public String getIndexType() {
+			String ret = indexType;
+			if (ret == null) {
+				ret = extractIndexType(typeDef, typeName);
+				indexType = ret;
+			}
+			return ret;
+		}
+
+		/**
+		 * @return <code>sys_type</code> value, see {@link ProviderService#extractSysType(Map, String)}
+		 * @throws SettingsException if configuration is invalid
+		 */
+		public String getSysType() {
+			String ret = sysType;
+			if (ret == null) {
+				ret = extractSysType(typeDef, typeName);
+				sysType = ret;
+			}
+			return ret;
+		}
+
+		/**
+		 * @return search index names, see {@link ProviderService#extractSearchIndices(Map, String)}. Array is shared so
+		 *         MUST NOT be modified.
+		 * @throws SettingsException if configuration is invalid
+		 */
+		public String[] getSearchIndices() {
+			String[] ret = searchIndices;
+			if (ret == null) {
+				ret = extractSearchIndices(typeDef, typeName);
+				searchIndices = ret;
+			}
+			return ret;
+		}
+
+		/**
+		 * @return persist flag, see {@link ProviderService#extractPersist(Map)}
+		 */
+		public boolean isPersist() {
+			Boolean ret = persist;
+			if (ret == null) {
+				ret = extractPersist(typeDef);
+				persist = ret;
+			}
+			return ret;
+		}
+
+		/**
+		 * @return roles this content type is visible for, null means visible for everybody. See
+		 *         {@link ProviderService#extractTypeVisibilityRoles(Map, String)}. Collection is shared so MUST NOT be
+		 *         modified.
+		 * @throws SettingsException if configuration is invalid
+		 */
+		public Collection<String> getVisibilityRoles() {
+			if (!visibilityRolesExtracted) {
+				visibilityRoles = extractTypeVisibilityRoles(typeDef, typeName);
+				visibilityRolesExtracted = true;
+			}
+			return visibilityRoles;
+		}
+
+		/**
+		 * @return preprocessors configuration, see {@link ProviderService#extractPreprocessors(Map, String)}
+		 * @throws SettingsException if configuration is invalid
+		 */
+		public List<Map<String, Object>> getPreprocessors() {
+			if (!preprocessorsExtracted) {
+				preprocessors = extractPreprocessors(typeDef, typeName);
+				preprocessorsExtracted = true;
+			}
+			return preprocessors;
+		}
+
 		@Override
 		public String toString() {
 			return "ProviderContentTypeInfo [typeName=" + typeName + ", providerDef=" + providerDef + ", typeDef=" + typeDef
@@ -269,6 +381,21 @@ public class ProviderService implements EntityService {
 	 */
 	protected long cacheAllProvidersTTL = 10000;
 
+	/**
+	 * Routing table built from cached list of all providers.
+	 * 
+	 * @see #getRoutingTable()
+	 */
+	protected ContentTypeRoutingTable cacheRoutingTable;
+
+	/**
+	 * Preprocessor chains created for <code>sys_content_type</code>. Preprocessors are not guaranteed to be thread safe,
+	 * so chains are cached per bean instance which is used by one thread at a time only.
+	 * 
+	 * @see #getPreprocessorChain(String, List)
+	 */
+	protected Map<String, PreprocessorChain> cachePreprocessorChains = new HashMap<>();
+
 	@Override
 	public String create(Map<String, Object> entity) {
 		String id = entityService.create(entity);
@@ -326,6 +453,8 @@ public class ProviderService implements EntityService {
 	 */
 	public void flushCaches() {
 		cacheAllProvidersValidTo = 0;
+		cacheRoutingTable = null;
+		cachePreprocessorChains.clear();
 		if (indexNamesCache != null)
 			indexNamesCache.flush();
 		if (providerCache != null)
@@ -344,8 +473,7 @@ public class ProviderService implements EntityService {
 	public List<Map<String, String>> runPreprocessors(String typeName, List<Map<String, Object>> preprocessorsDef,
 			Map<String, Object> content) throws PreprocessorInvalidDataException {
 		try {
-			List<StructuredContentPreprocessor> preprocessors = StructuredContentPreprocessorFactory.createPreprocessors(
-					preprocessorsDef, searchClientService.getClient());
+			List<StructuredContentPreprocessor> preprocessors = getPreprocessorChain(typeName, preprocessorsDef);
 			PreprocessChainContextImpl context = new PreprocessChainContextImpl();
 			for (StructuredContentPreprocessor preprocessor : preprocessors) {
 				content = preprocessor.preprocessData(content, context);
@@ -363,6 +491,87 @@ public class ProviderService implements EntityService {
 		}
 	}
 
+	/**
+	 * Get preprocessors for given <code>sys_content_type</code>. Preprocessors are created only if not cached yet or if
+	 * definition differs from one cached chain was created from. Definitions are compared by value, because they come
+	 * from provider configurations cached by distinct bean instances, and they are reloaded periodically even if they do
+	 * not change.
+	 * 
+	 * @param typeName <code>sys_content_type</code> name we get preprocessors for
+	 * @param preprocessorsDef definition of preprocessors - see {@link #extractPreprocessors(Map, String)}
+	 * @return list of preprocessors, never null
+	 * @throws IllegalArgumentException or {@link ClassCastException} if definition is incorrect
+	 */
+	protected List<StructuredContentPreprocessor> getPreprocessorChain(String typeName,
+			List<Map<String, Object>> preprocessorsDef) {
+		Client client = searchClientService.getClient();
+		PreprocessorChain chain = cachePreprocessorChains.get(typeName);
+		if (chain == null || chain.client != client || !equalsPreprocessorsDef(chain.preprocessorsDef, preprocessorsDef)) {
+			// preprocessors may change their settings during init, so they get own copy of definition and cached
+			// definition stays same as one in provider configuration
+			chain = new PreprocessorChain(copyJsonValue(preprocessorsDef), client, createPreprocessors(
+					copyJsonValue(preprocessorsDef), client));
+			cachePreprocessorChains.put(typeName, chain);
+		}
+		return chain.preprocessors;
+	}
+
+	private static boolean equalsPreprocessorsDef(List<Map<String, Object>> cached, List<Map<String, Object>> def) {
+		return cached == def || (cached != null && cached.equals(def));
+	}
+
+	/**
+	 * Create preprocessors from definition.
+	 * 
+	 * @param preprocessorsDef definition of preprocessors - see {@link #extractPreprocessors(Map, String)}
+	 * @param client to be passed to preprocessors
+	 * @return list of preprocessors
+	 */
+	protected List<StructuredContentPreprocessor> createPreprocessors(List<Map<String, Object>> preprocessorsDef,
+			Client client) {
+		return StructuredContentPreprocessorFactory.createPreprocessors(preprocessorsDef, client);
+	}
+
+	/**
+	 * Deep copy of JSON like structure of {@link Map}s and {@link List}s, other values are shared.
+	 * 
+	 * @param value to copy
+	 * @return copy of value
+	 */
+	@SuppressWarnings("unchecked")
+	protected static <T> T copyJsonValue(T value) {
+		if (value instanceof Map) {
+			Map<String, Object> ret = new LinkedHashMap<>();
+			for (Map.Entry<String, Object> e : ((Map<String, Object>) value).entrySet()) {
+				ret.put(e.getKey(), copyJsonValue(e.getValue()));
+			}
+			return (T) ret;
+		} else if (value instanceof List) {
+			List<Object> ret = new ArrayList<>();
+			for (Object o : (List<Object>) value) {
+				ret.add(copyJsonValue(o));
+			}
+			return (T) ret;
+		}
+		return value;
+	}
+
+	/**
+	 * Preprocessors created from one definition.
+	 */
+	protected static final class PreprocessorChain {
+		private final List<Map<String, Object>> preprocessorsDef;
+		private final Client client;
+		private final List<StructuredContentPreprocessor> preprocessors;
+
+		private PreprocessorChain(List<Map<String, Object>> preprocessorsDef, Client client,
+				List<StructuredContentPreprocessor> preprocessors) {
+			this.preprocessorsDef = preprocessorsDef;
+			this.client = client;
+			this.preprocessors = preprocessors;
+		}
+	}
+
 	/**
 	 * Generate system wide unique <code>sys_id</code> value from <code>sys_content_type</code> and
 	 * <code>sys_content_id</code>.
@@ -461,7 +670,7 @@ public class ProviderService implements EntityService {
 	 * @return list of preprocessor configurations
 	 */
 	public static List<Map<String, Object>> extractPreprocessors(ProviderContentTypeInfo typeInfo, String typeName) {
-		return extractPreprocessors(typeInfo.getTypeDef(), typeName);
+		return typeInfo.getPreprocessors();
 	}
 
 	/**
@@ -497,7 +706,7 @@ public class ProviderService implements EntityService {
 	 * @return search index name
 	 */
 	public static String extractIndexName(ProviderContentTypeInfo typeInfo, String typeName) {
-		return extractIndexName(typeInfo.getTypeDef(), typeName);
+		return typeInfo.getIndexName();
 	}
 
 	/**
@@ -547,7 +756,7 @@ public class ProviderService implements EntityService {
 	 * @return search index name
 	 */
 	public static String[] extractSearchIndices(ProviderContentTypeInfo typeInfo, String typeName) {
-		return extractSearchIndices(typeInfo.getTypeDef(), typeName);
+		return typeInfo.getSearchIndices();
 	}
 
 	/**
@@ -559,7 +768,7 @@ public class ProviderService implements EntityService {
 	 * @return collection of user roles this content is available for. null means it is available for everybody.
 	 */
 	public static Collection<String> extractTypeVisibilityRoles(ProviderContentTypeInfo typeInfo, String typeName) {
-		return extractTypeVisibilityRoles(typeInfo.getTypeDef(), typeName);
+		return typeInfo.getVisibilityRoles();
 	}
 
 	/**
@@ -612,7 +821,7 @@ public class ProviderService implements EntityService {
 	 * @return search type name
 	 */
 	public static String extractIndexType(ProviderContentTypeInfo typeInfo, String typeName) {
-		return extractIndexType(typeInfo.getTypeDef(), typeName);
+		return typeInfo.getIndexType();
 	}
 
 	/**
@@ -0,0 +1,247 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.searchisko.api.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.ejb.Lock;
+import javax.ejb.LockType;
+import javax.ejb.Singleton;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.SearchResponse;
+
+/**
+ * Service used to coalesce identical concurrent search requests. First request for given key (leader) performs search
+ * in own thread, all requests with the same key arriving before search is finished wait for it and share its
+ * {@link SearchResponse}. Key must contain everything which affects search request, including security context of
+ * user.
+ * <p>
+ * Can be switched off by <code>search.coalescing.enabled</code> in {@link AppConfigurationService#FILENAME}.
+ *
+ * @author Vlastimil Elias (velias at redhat dot com)
+ */
+@Named
+@ApplicationScoped
+@Singleton
+@Lock(LockType.READ)
+public class SearchCoalescingService {
+
+	@Inject
+	protected Logger log;
+
+	@Inject
+	protected AppConfigurationService appConfigurationService;
+
+	protected boolean enabled = true;
+
+	private final ConcurrentMap<String, FutureTask<SearchResponse>> inFlight = new ConcurrentHashMap<>();
+
+	private final ConcurrentMap<String, PendingSearch> inFlightAsync = new ConcurrentHashMap<>();
+
+	private final AtomicLong executedCount = new AtomicLong();
+	private final AtomicLong coalescedCount = new AtomicLong();
+
+	@PostConstruct
+	public void init() {
+		enabled = appConfigurationService.getAppConfiguration().isSearchCoalescingEnabled();
+		log.log(Level.INFO, "Search requests coalescing enabled: {0}", enabled);
+	}
+
+	/**
+	 * @return true if coalescing is enabled so it can be used
+	 */
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Perform search or wait for result of identical search already running.
+	 *
+	 * @param key of search, requests with same key share one search
+	 * @param search to be called if no identical search is running. It is called in caller's thread.
+	 * @return search response, shared between all requests with same key, so MUST NOT be modified.
+	 * @throws ElasticsearchException or other {@link RuntimeException} thrown by search
+	 */
+	public SearchResponse performSearch(String key, Callable<SearchResponse> search) {
+		FutureTask<SearchResponse> task = new FutureTask<>(search);
+		FutureTask<SearchResponse> running = inFlight.putIfAbsent(key, task);
+		if (running == null) {
+			executedCount.incrementAndGet();
+			try {
+				task.run();
+			} finally {
+				inFlight.remove(key, task);
+			}
+			running = task;
+		} else {
+			coalescedCount.incrementAndGet();
+			if (log.isLoggable(Level.FINE)) {
+				log.log(Level.FINE, "Search request coalesced with running one for key {0}", key);
+			}
+		}
+		return getResult(running);
+	}
+
+	/**
+	 * Asynchronous search to be coalesced.
+	 *
+	 * @see SearchCoalescingService#performSearchAsync(String, AsyncSearch, ActionListener)
+	 */
+	public interface AsyncSearch {
+
+		/**
+		 * Start search, result must be passed to listener.
+		 *
+		 * @param listener to be notified about search result
+		 */
+		void execute(ActionListener<SearchResponse> listener);
+	}
+
+	/**
+	 * Perform asynchronous search or join identical asynchronous search already running.
+	 *
+	 * @param key of search, requests with same key share one search
+	 * @param search to be started if no identical search is running. It is started in caller's thread.
+	 * @param listener notified about search result. Response is shared between all requests with same key, so MUST NOT
+	 *          be modified.
+	 */
+	public void performSearchAsync(String key, AsyncSearch search, ActionListener<SearchResponse> listener) {
+		PendingSearch pending = new PendingSearch(key);
+		PendingSearch running = inFlightAsync.putIfAbsent(key, pending);
+		if (running == null) {
+			executedCount.incrementAndGet();
+			pending.addListener(listener);
+			try {
+				search.execute(pending);
+			} catch (RuntimeException e) {
+				pending.onFailure(e);
+			}
+		} else {
+			coalescedCount.incrementAndGet();
+			if (log.isLoggable(Level.FINE)) {
+				log.log(Level.FINE, "Asynchronous search request coalesced with running one for key {0}", key);
+			}
+			running.addListener(listener);
+		}
+	}
+
+	/**
+	 * Running asynchronous search distributing its result to all listeners.
+	 */
+	private class PendingSearch implements ActionListener<SearchResponse> {
+
+		private final String key;
+
+		private final List<ActionListener<SearchResponse>> listeners = new ArrayList<>();
+
+		private boolean done = false;
+		private SearchResponse response;
+		private Throwable failure;
+
+		private PendingSearch(String key) {
+			this.key = key;
+		}
+
+		private void addListener(ActionListener<SearchResponse> listener) {
+			synchronized (this) {
+				if (!done) {
+					listeners.add(listener);
+					return;
+				}
+			}
+			notifyListener(listener);
+		}
+
+		@Override
+		public void onResponse(SearchResponse response) {
+			complete(response, null);
+		}
+
+		@Override
+		public void onFailure(Throwable e) {
+			complete(null, e);
+		}
+
+		private void complete(SearchResponse response, Throwable failure) {
+			inFlightAsync.remove(key, this);
+			List<ActionListener<SearchResponse>> toNotify;
+			synchronized (this) {
+				if (done)
+					return;
+				done = true;
+				this.response = response;
+				this.failure = failure;
+				toNotify = new ArrayList<>(listeners);
+				listeners.clear();
+			}
+			for (ActionListener<SearchResponse> listener : toNotify) {
+				try {
+					notifyListener(listener);
+				} catch (RuntimeException e) {
+					log.log(Level.WARNING, "Search result listener failed: " + e.getMessage(), e);
+				}
+			}
+		}
+
+		private void notifyListener(ActionListener<SearchResponse> listener) {
+			if (failure != null) {
+				listener.onFailure(failure);
+			} else {
+				listener.onResponse(response);
+			}
+		}
+	}
+
+	private SearchResponse getResult(FutureTask<SearchResponse> task) {
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ElasticsearchException("Interrupted while waiting for search response", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new ElasticsearchException("Search failed: " + cause.getMessage(), cause);
+		}
+	}
+
+	/**
+	 * Get statistics of coalescing.
+	 *
+	 * @return map with statistics
+	 */
+	public Map<String, Object> getStatistics() {
+		Map<String, Object> ret = new LinkedHashMap<>();
+		ret.put("enabled", enabled);
+		ret.put("in_flight", inFlight.size() + inFlightAsync.size());
+		ret.put("executed_count", executedCount.get());
+		ret.put("coalesced_count", coalescedCount.get());
+		return ret;
+	}
+
+}
@@ -6,6 +6,7 @@
 package org.searchisko.api.service;
 
 import java.util.*;
+import java.util.concurrent.Callable;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -17,6 +18,9 @@ import javax.inject.Inject;
 import javax.inject.Named;
 
 import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.MultiSearchRequestBuilder;
+import org.elasticsearch.action.search.MultiSearchResponse;
 import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.common.settings.SettingsException;
@@ -40,6 +44,8 @@ import org.elasticsearch.search.aggregations.bucket.terms.TermsBuilder;
 import org.elasticsearch.search.sort.SortOrder;
 import org.searchisko.api.ContentObjectFields;
 import org.searchisko.api.cache.IndexNamesCache;
+import org.searchisko.api.cache.SearchConfigCache;
+import org.searchisko.api.cache.SearchResultCache;
 import org.searchisko.api.model.QuerySettings;
 import org.searchisko.api.model.SortByValue;
 import org.searchisko.api.model.TimeoutConfiguration;
@@ -50,8 +56,6 @@ import org.searchisko.api.security.Role;
 import org.searchisko.api.service.ProviderService.ProviderContentTypeInfo;
 import org.searchisko.api.util.SearchUtils;
 
-import static org.searchisko.api.rest.search.ConfigParseUtil.parseAggregationType;
-
 /**
  * Search business logic service.
  * 
@@ -85,7 +89,7 @@ public class SearchService {
 	protected RegisteredQueryService registeredQueryService;
 
 	@Inject
-	protected ConfigService configService;
+	protected SearchConfigCache searchConfigCache;
 
 	@Inject
 	protected ParsedFilterConfigService parsedFilterConfigService;
@@ -93,6 +97,12 @@ public class SearchService {
 	@Inject
 	protected IndexNamesCache indexNamesCache;
 
+	@Inject
+	protected SearchResultCache searchResultCache;
+
+	@Inject
+	protected SearchCoalescingService searchCoalescingService;
+
 	@Inject
 	protected TimeoutConfiguration timeout;
 
@@ -103,22 +113,50 @@ public class SearchService {
 	protected Logger log;
 
 	/**
-	 * Perform search operation.
+	 * Perform search operation. Responses for not authenticated users are served from {@link SearchResultCache} if it
+	 * is enabled. Identical concurrent searches are coalesced by {@link SearchCoalescingService} if it is enabled.
 	 * 
 	 * @param querySettings to use for search
 	 * @param responseUuid used for search response, we need it only to write it into statistics (so can be null)
 	 * @param statsRecordType
 	 * @return search response
 	 */
-	public SearchResponse performSearch(QuerySettings querySettings, String responseUuid, StatsRecordType statsRecordType) {
+	public SearchResponse performSearch(final QuerySettings querySettings, String responseUuid,
+			StatsRecordType statsRecordType) {
 		try {
 
-			SearchRequestBuilder srb = new SearchRequestBuilder(searchClientService.getClient());
-			srb = performSearchInternal(querySettings, srb);
-			srb.setTimeout(TimeValue.timeValueSeconds(timeout.search()));
+			String cacheKey = null;
+			long cacheStamp = 0;
+			if (searchResultCache.isEnabled() && !authenticationUtilService.isAuthenticatedUser()) {
+				cacheKey = querySettings.toCanonicalString();
+				SearchResponse cachedResponse = searchResultCache.get(cacheKey);
+				if (cachedResponse != null) {
+					// filters for request have to be prepared because they are used later in response processing
+					prepareFiltersForRequest(querySettings.getFilters());
+					statsClientService.writeStatisticsRecord(statsRecordType, responseUuid, cachedResponse,
+							System.currentTimeMillis(), querySettings);
+					return cachedResponse;
+				}
+				cacheStamp = searchResultCache.getInvalidationStamp();
+			}
 
-			log.log(Level.FINE, "Elasticsearch Search request: {0}", srb);
-			final SearchResponse searchResponse = srb.execute().actionGet();
+			final SearchResponse searchResponse;
+			if (searchCoalescingService.isEnabled()) {
+				// filters for request have to be prepared even if search is performed by another request
+				prepareFiltersForRequest(querySettings.getFilters());
+				final String fCacheKey = cacheKey;
+				final long fCacheStamp = cacheStamp;
+				searchResponse = searchCoalescingService.performSearch(
+						querySettings.toCanonicalString() + "|" + authenticationUtilService.getUserSecurityContextKey(),
+						new Callable<SearchResponse>() {
+							@Override
+							public SearchResponse call() {
+								return executeSearch(querySettings, fCacheKey, fCacheStamp);
+							}
+						});
+			} else {
+				searchResponse = executeSearch(querySettings, cacheKey, cacheStamp);
+			}
 			statsClientService.writeStatisticsRecord(statsRecordType, responseUuid, searchResponse,
 					System.currentTimeMillis(), querySettings);
 			return searchResponse;
@@ -128,6 +166,238 @@ public class SearchService {
 		}
 	}
 
+	/**
+	 * Build search request and execute it.
+	 *
+	 * @param querySettings to use for search
+	 * @param cacheKey key to store response into {@link SearchResultCache} under, null if response is not cached
+	 * @param cacheStamp invalidation stamp of {@link SearchResultCache} obtained before search
+	 * @return search response
+	 */
+	protected SearchResponse executeSearch(QuerySettings querySettings, String cacheKey, long cacheStamp) {
+		SearchRequestBuilder srb = prepareSearchRequest(querySettings);
+		SearchResponse searchResponse = srb.execute().actionGet();
+		if (cacheKey != null && isCacheable(searchResponse)) {
+			searchResultCache.put(cacheKey, searchResponse, srb.request().indices(), cacheStamp);
+		}
+		return searchResponse;
+	}
+
+	/**
+	 * Perform search operation asynchronously, so calling thread is not blocked while search is executed by
+	 * Elasticsearch. Search request is prepared in calling thread because request scoped services are used for it.
+	 * Statistics record is written and listener is notified when search is finished, typically in Elasticsearch thread
+	 * pool. Responses for not authenticated users are served from {@link SearchResultCache} if it is enabled (listener is
+	 * notified in calling thread then). Identical concurrent searches are coalesced by {@link SearchCoalescingService} if
+	 * it is enabled.
+	 *
+	 * @param querySettings to use for search
+	 * @param responseUuid used for search response, we need it only to write it into statistics (so can be null)
+	 * @param statsRecordType
+	 * @param listener notified about search response, all errors are passed to it also
+	 */
+	public void performSearchAsync(final QuerySettings querySettings, final String responseUuid,
+			final StatsRecordType statsRecordType, final ActionListener<SearchResponse> listener) {
+
+		final ActionListener<SearchResponse> statsListener = new ActionListener<SearchResponse>() {
+			@Override
+			public void onResponse(SearchResponse searchResponse) {
+				statsClientService.writeStatisticsRecord(statsRecordType, responseUuid, searchResponse,
+						System.currentTimeMillis(), querySettings);
+				listener.onResponse(searchResponse);
+			}
+
+			@Override
+			public void onFailure(Throwable e) {
+				if (e instanceof ElasticsearchException) {
+					statsClientService.writeStatisticsRecord(statsRecordType, (ElasticsearchException) e,
+							System.currentTimeMillis(), querySettings);
+				}
+				listener.onFailure(e);
+			}
+		};
+
+		String cacheKey = null;
+		long cacheStamp = 0;
+		SearchResponse cachedResponse = null;
+		String coalescingKey = null;
+		try {
+			if (searchResultCache.isEnabled() && !authenticationUtilService.isAuthenticatedUser()) {
+				cacheKey = querySettings.toCanonicalString();
+				cachedResponse = searchResultCache.get(cacheKey);
+				cacheStamp = searchResultCache.getInvalidationStamp();
+			}
+			if (cachedResponse != null || searchCoalescingService.isEnabled()) {
+				// filters for request have to be prepared even if search is not performed for this request
+				prepareFiltersForRequest(querySettings.getFilters());
+			}
+			if (cachedResponse == null && searchCoalescingService.isEnabled()) {
+				coalescingKey = querySettings.toCanonicalString() + "|" + authenticationUtilService.getUserSecurityContextKey();
+			}
+		} catch (RuntimeException e) {
+			statsListener.onFailure(e);
+			return;
+		}
+
+		if (cachedResponse != null) {
+			statsListener.onResponse(cachedResponse);
+		} else if (coalescingKey != null) {
+			final String fCacheKey = cacheKey;
+			final long fCacheStamp = cacheStamp;
+			searchCoalescingService.performSearchAsync(coalescingKey, new SearchCoalescingService.AsyncSearch() {
+				@Override
+				public void execute(ActionListener<SearchResponse> coalescingListener) {
+					executeSearchAsync(querySettings, fCacheKey, fCacheStamp, coalescingListener);
+				}
+			}, statsListener);
+		} else {
+			executeSearchAsync(querySettings, cacheKey, cacheStamp, statsListener);
+		}
+	}
+
+	/**
+	 * Perform more searches in one Elasticsearch Multi Search request asynchronously. Each search request is built by
+	 * {@link #performSearchInternal(QuerySettings, SearchRequestBuilder)} so the same security rules are applied as for
+	 * single search. Statistics record is written for each search. {@link SearchResultCache} and
+	 * {@link SearchCoalescingService} are not used for multi search.
+	 *
+	 * @param querySettingsList settings of searches to perform
+	 * @param responseUuids UUIDs of responses, one for each search, we need them only to write them into statistics
+	 * @param statsRecordType
+	 * @param additionalResponseFields maps, one for each search, interval values for Date Histogram aggregations are
+	 *          added into them (see {@link #getIntervalValuesForDateHistogramAggregations(QuerySettings)})
+	 * @param listener notified about multi search response with items in the same order as query settings, all errors
+	 *          are passed to it also
+	 */
+	public void performMultiSearchAsync(final List<QuerySettings> querySettingsList, final List<String> responseUuids,
+			final StatsRecordType statsRecordType, List<Map<String, String>> additionalResponseFields,
+			final ActionListener<MultiSearchResponse> listener) {
+		MultiSearchRequestBuilder msrb;
+		try {
+			msrb = new MultiSearchRequestBuilder(searchClientService.getClient());
+			for (int i = 0; i < querySettingsList.size(); i++) {
+				QuerySettings querySettings = querySettingsList.get(i);
+				// filters prepared for request are valid for one search only, so we have to prepare them for each search
+				resetFiltersForRequest(querySettings.getFilters());
+				msrb.add(prepareSearchRequest(querySettings));
+				additionalResponseFields.get(i).putAll(getIntervalValuesForDateHistogramAggregations(querySettings));
+			}
+		} catch (RuntimeException e) {
+			listener.onFailure(e);
+			return;
+		}
+		// do not notify listener in network thread
+		msrb.setListenerThreaded(true);
+		msrb.execute(new ActionListener<MultiSearchResponse>() {
+			@Override
+			public void onResponse(MultiSearchResponse multiSearchResponse) {
+				long now = System.currentTimeMillis();
+				MultiSearchResponse.Item[] items = multiSearchResponse.getResponses();
+				for (int i = 0; i < items.length && i < querySettingsList.size(); i++) {
+					if (items[i].isFailure()) {
+						statsClientService.writeStatisticsRecord(statsRecordType,
+								new ElasticsearchException(items[i].getFailureMessage()), now, querySettingsList.get(i));
+					} else {
+						statsClientService.writeStatisticsRecord(statsRecordType, responseUuids.get(i), items[i].getResponse(),
+								now, querySettingsList.get(i));
+					}
+				}
+				listener.onResponse(multiSearchResponse);
+			}
+
+			@Override
+			public void onFailure(Throwable e) {
+				if (e instanceof ElasticsearchException) {
+					long now = System.currentTimeMillis();
+					for (QuerySettings querySettings : querySettingsList) {
+						statsClientService.writeStatisticsRecord(statsRecordType, (ElasticsearchException) e, now,
+								querySettings);
+					}
+				}
+				listener.onFailure(e);
+			}
+		});
+	}
+
+	/**
+	 * Build search request in calling thread and execute it asynchronously.
+	 *
+	 * @param querySettings to use for search
+	 * @param cacheKey key to store response into {@link SearchResultCache} under, null if response is not cached
+	 * @param cacheStamp invalidation stamp of {@link SearchResultCache} obtained before search
+	 * @param listener notified about search response, all errors are passed to it also
+	 */
+	protected void executeSearchAsync(QuerySettings querySettings, final String cacheKey, final long cacheStamp,
+			final ActionListener<SearchResponse> listener) {
+		final SearchRequestBuilder srb;
+		try {
+			srb = prepareSearchRequest(querySettings);
+		} catch (RuntimeException e) {
+			listener.onFailure(e);
+			return;
+		}
+		// do not notify listener in network thread
+		srb.setListenerThreaded(true);
+		srb.execute(new ActionListener<SearchResponse>() {
+			@Override
+			public void onResponse(SearchResponse searchResponse) {
+				if (cacheKey != null && isCacheable(searchResponse)) {
+					searchResultCache.put(cacheKey, searchResponse, srb.request().indices(), cacheStamp);
+				}
+				listener.onResponse(searchResponse);
+			}
+
+			@Override
+			public void onFailure(Throwable e) {
+				listener.onFailure(e);
+			}
+		});
+	}
+
+	/**
+	 * Build search request.
+	 *
+	 * @param querySettings to use for search
+	 * @return search request ready to be executed
+	 */
+	protected SearchRequestBuilder prepareSearchRequest(QuerySettings querySettings) {
+		SearchRequestBuilder srb = new SearchRequestBuilder(searchClientService.getClient());
+		srb = performSearchInternal(querySettings, srb);
+		srb.setTimeout(TimeValue.timeValueSeconds(timeout.search()));
+
+		log.log(Level.FINE, "Elasticsearch Search request: {0}", srb);
+		return srb;
+	}
+
+	private static boolean isCacheable(SearchResponse searchResponse) {
+		return !searchResponse.isTimedOut() && searchResponse.getFailedShards() == 0;
+	}
+
+	/**
+	 * Prepare filters for actual request in {@link ParsedFilterConfigService} if not prepared yet.
+	 *
+	 * @param filters from request
+	 */
+	protected void prepareFiltersForRequest(QuerySettings.Filters filters) {
+		if (!parsedFilterConfigService.isCacheInitialized()) {
+			resetFiltersForRequest(filters);
+		}
+	}
+
+	/**
+	 * Prepare filters for actual request in {@link ParsedFilterConfigService} even if they are prepared already, so more
+	 * searches can be performed in one request.
+	 *
+	 * @param filters from request
+	 */
+	protected void resetFiltersForRequest(QuerySettings.Filters filters) {
+		try {
+			parsedFilterConfigService.prepareFiltersForRequest(filters);
+		} catch (ReflectiveOperationException e) {
+			throw new ElasticsearchException("Can not prepare filters", e);
+		}
+	}
+
 	/**
 	 * This method handles search query building.
 	 * 
@@ -136,13 +406,7 @@ public class SearchService {
 	 * @return SearchRequestBuilder {@link org.elasticsearch.action.search.SearchRequestBuilder} instance that reflects input parameters
 	 */
 	protected SearchRequestBuilder performSearchInternal(final QuerySettings querySettings, SearchRequestBuilder srb) {
-		if (!parsedFilterConfigService.isCacheInitialized()) {
-			try {
-				parsedFilterConfigService.prepareFiltersForRequest(querySettings.getFilters());
-			} catch (ReflectiveOperationException e) {
-				throw new ElasticsearchException("Can not prepare filters", e);
-			}
-		}
+		prepareFiltersForRequest(querySettings.getFilters());
 
 		setSearchRequestIndicesAndTypes(querySettings.getFilters(), querySettings.getAggregations(), srb);
 
@@ -209,8 +473,8 @@ public class SearchService {
 				Set<String> fn = parsedFilterConfigService.getFilterNamesForDocumentField(ContentObjectFields.SYS_TYPE);
 				sysTypesRequested = filters.getFilterCandidateValues(fn);
 			}
-			boolean isSysTypeAggregation = (aggregations != null && aggregations.contains(
-					getAggregationNameUsingSysTypeField()));
+			boolean isSysTypeAggregation = (aggregations != null && !aggregations.isEmpty() && aggregations
+					.contains(searchConfigCache.getSnapshot().getAggregationNameUsingSysTypeField()));
 			allQueryIndices = getIndicesForUserInRoleBasedOnTypes(sysTypesRequested, isSysTypeAggregation);
 		}
 
@@ -232,18 +496,18 @@ public class SearchService {
 	 * @return
 	 */
 	protected Set<String> getIndicesForUserInRoleBasedOnTypes(Set<String> sysTypesRequested, boolean isSysTypeAggregation) {
-        Set<String> allQueryIndices = null;
-		// #142 - we can't cache for authenticated users due content type level security
-		String indexNameCacheKey = null;
-		if (!authenticationUtilService.isAuthenticatedUser()) {
-            indexNameCacheKey = prepareIndexNamesCacheKey(sysTypesRequested, isSysTypeAggregation);
-            allQueryIndices = indexNamesCache.get(indexNameCacheKey);
-        }
+		// #142 - content type level security, so cache key for authenticated users contains normalized set of their roles
+		String indexNameCacheKey;
+		if (authenticationUtilService.isAuthenticatedUser()) {
+			indexNameCacheKey = prepareIndexNamesCacheKey(authenticationUtilService.getUserSecurityContextKey(),
+					sysTypesRequested, isSysTypeAggregation);
+		} else {
+			indexNameCacheKey = prepareIndexNamesCacheKey(sysTypesRequested, isSysTypeAggregation);
+		}
+		Set<String> allQueryIndices = indexNamesCache.get(indexNameCacheKey);
 		if (allQueryIndices == null) {
             allQueryIndices = prepareIndexNamesForSysType(sysTypesRequested, isSysTypeAggregation);
-            if (indexNameCacheKey != null) {
-                indexNamesCache.put(indexNameCacheKey, allQueryIndices);
-            }
+            indexNamesCache.put(indexNameCacheKey, allQueryIndices);
         }
 		if (log.isLoggable(Level.FINE)) {
             log.log(Level.FINE, "Query indices: {0}", allQueryIndices);
@@ -317,39 +581,39 @@ public class SearchService {
 		return sb.toString();
 	}
 
+	/**
+	 * Prepare key for indexName cache for authenticated user.
+	 *
+	 * @param securityContextKey of authenticated user, see {@link AuthenticationUtilService#getUserSecurityContextKey()}
+	 * @param sysTypesRequested to prepare key for
+	 * @param isSysTypeAggregation
+	 * @return key value (never null)
+	 */
+	protected static String prepareIndexNamesCacheKey(String securityContextKey, Set<String> sysTypesRequested,
+			boolean isSysTypeAggregation) {
+		return securityContextKey + "|||" + prepareIndexNamesCacheKey(sysTypesRequested, isSysTypeAggregation);
+	}
+
 	private Set<String> prepareIndexNamesForSysType(Set<String> sysTypesRequested, boolean isSysTypeAggregation) {
 		if (sysTypesRequested != null && sysTypesRequested.isEmpty())
 			sysTypesRequested = null;
 		Set<String> indexNames = new LinkedHashSet<>();
-		List<Map<String, Object>> allProviders = providerService.getAll();
+		Collection<ProviderContentTypeInfo> allTypes = providerService.getRoutingTable().getContentTypes();
 		boolean unknownType = true;
-		boolean isAnyType = false;
-		for (Map<String, Object> providerCfg : allProviders) {
-			try {
-				@SuppressWarnings("unchecked")
-				Map<String, Map<String, Object>> types = (Map<String, Map<String, Object>>) providerCfg
-						.get(ProviderService.TYPE);
-				if (types != null) {
-					for (String typeName : types.keySet()) {
-						isAnyType = true;
-						Map<String, Object> typeDef = types.get(typeName);
-						// #142 - check content type level security there
-						Collection<String> roles = ProviderService.extractTypeVisibilityRoles(typeDef, typeName);
-						if (roles == null || authenticationUtilService.isUserInAnyOfRoles(true, roles)) {
-							String sysType = ProviderService.extractSysType(typeDef, typeName);
-							if ((sysTypesRequested == null && !ProviderService.extractSearchAllExcluded(typeDef))
-									|| (sysTypesRequested != null && ((isSysTypeAggregation && !ProviderService
-											.extractSearchAllExcluded(typeDef)) || sysTypesRequested.contains(sysType)))) {
-								indexNames.addAll(Arrays.asList(ProviderService.extractSearchIndices(typeDef, typeName)));
-							} else if (sysTypesRequested == null || sysTypesRequested.contains(sysType)) {
-								unknownType = false;
-							}
-						}
-					}
+		boolean isAnyType = !allTypes.isEmpty();
+		for (ProviderContentTypeInfo typeInfo : allTypes) {
+			// #142 - check content type level security there
+			Collection<String> roles = typeInfo.getVisibilityRoles();
+			if (roles == null || authenticationUtilService.isUserInAnyOfRoles(true, roles)) {
+				String sysType = typeInfo.getSysType();
+				boolean searchAllExcluded = ProviderService.extractSearchAllExcluded(typeInfo.getTypeDef());
+				if ((sysTypesRequested == null && !searchAllExcluded)
+						|| (sysTypesRequested != null && ((isSysTypeAggregation && !searchAllExcluded) || sysTypesRequested
+								.contains(sysType)))) {
+					indexNames.addAll(Arrays.asList(typeInfo.getSearchIndices()));
+				} else if (sysTypesRequested == null || sysTypesRequested.contains(sysType)) {
+					unknownType = false;
 				}
-			} catch (ClassCastException e) {
-				throw new SettingsException("Incorrect configuration of 'type' section for sys_provider="
-						+ providerCfg.get(ProviderService.NAME) + ".");
 			}
 		}
 
@@ -379,7 +643,7 @@ public class SearchService {
 	protected QueryBuilder prepareQueryBuilder(QuerySettings querySettings) {
 		if (querySettings.getQuery() != null) {
 			SimpleQueryStringBuilder qb = QueryBuilders.simpleQueryString(querySettings.getQuery());
-			Map<String, Object> fields = configService.get(ConfigService.CFGNAME_SEARCH_FULLTEXT_QUERY_FIELDS);
+			Map<String, Object> fields = searchConfigCache.getSnapshot().getQueryFields();
 			if (fields != null) {
 				for (String fieldName : fields.keySet()) {
 					String value = (String) fields.get(fieldName);
@@ -408,7 +672,7 @@ public class SearchService {
 	 */
 	protected void setSearchRequestHighlight(QuerySettings querySettings, SearchRequestBuilder srb) {
 		if (querySettings.getQuery() != null && querySettings.isQueryHighlight()) {
-			Map<String, Object> hf = configService.get(ConfigService.CFGNAME_SEARCH_FULLTEXT_HIGHLIGHT_FIELDS);
+			Map<String, Object> hf = searchConfigCache.getSnapshot().getHighlightFields();
 			if (hf != null && !hf.isEmpty()) {
 				srb.setHighlighterPreTags("<span class='hlt'>");
 				srb.setHighlighterPostTags("</span>");
@@ -512,14 +776,13 @@ public class SearchService {
 	 */
 	protected void handleAggregationSettings(QuerySettings querySettings, final Map<String, FilterBuilder> searchFilters,
 											 SearchRequestBuilder srb) {
-		Map<String, Object> configuredAggregations = configService.get(ConfigService.CFGNAME_SEARCH_FULLTEXT_AGGREGATIONS_FIELDS);
 		Set<String> requestedAggregations = querySettings.getAggregations();
-		if (configuredAggregations != null && !configuredAggregations.isEmpty() && requestedAggregations != null
-				&& !requestedAggregations.isEmpty()) {
+		if (requestedAggregations != null && !requestedAggregations.isEmpty()) {
+			Map<String, SemiParsedAggregationConfig> configuredAggregations = searchConfigCache.getSnapshot()
+					.getParsedAggregations();
 			for (String requestedAggregation : requestedAggregations) {
-				Object aggregationConfig = configuredAggregations.get(requestedAggregation);
-				if (aggregationConfig != null) {
-					SemiParsedAggregationConfig parsedAggregationConfig = parseAggregationType(aggregationConfig, requestedAggregation);
+				SemiParsedAggregationConfig parsedAggregationConfig = configuredAggregations.get(requestedAggregation);
+				if (parsedAggregationConfig != null) {
 
 					// terms aggregation
 					if (SemiParsedAggregationConfig.AggregationType.TERMS.toString().equals(parsedAggregationConfig.getAggregationType())) {
@@ -571,27 +834,6 @@ public class SearchService {
 		}
 	}
 
-	/**
-	 * Return (the first) name of aggregation that is built on top of "sys_type" field.
-	 * 
-	 * @return (the first) name of aggregation that is built on top of "sys_type" field.
-	 */
-	private String getAggregationNameUsingSysTypeField() {
-		Map<String, Object> configuredAggregations = configService.get(ConfigService.CFGNAME_SEARCH_FULLTEXT_AGGREGATIONS_FIELDS);
-		if (configuredAggregations != null && !configuredAggregations.isEmpty()) {
-			for (String aggregationName : configuredAggregations.keySet()) {
-				Object aggregationConfig = configuredAggregations.get(aggregationName);
-				if (aggregationConfig != null) {
-					SemiParsedAggregationConfig config = parseAggregationType(aggregationConfig, aggregationName);
-					if (ContentObjectFields.SYS_TYPE.equals(config.getFieldName())) {
-						return aggregationName;
-					}
-				}
-			}
-		}
-		return "";
-	}
-
 	/**
 	 * For given set of aggregation names it returns only those using "date_histogram" aggregation type.
 	 * It also returns name of their document filed.
@@ -602,16 +844,9 @@ public class SearchService {
 	private Map<String, String> filterAggregationNamesUsingDateHistogramAggregationType(Set<String> aggregationNames) {
 		Map<String, String> result = new HashMap<>();
 		if (aggregationNames.size() > 0) {
-			Map<String, Object> configuredAggregations = configService.get(ConfigService.CFGNAME_SEARCH_FULLTEXT_AGGREGATIONS_FIELDS);
-			if (configuredAggregations != null && !configuredAggregations.isEmpty()) {
-				for (String aggregationName : configuredAggregations.keySet()) {
-					Object aggregationConfig = configuredAggregations.get(aggregationName);
-					if (aggregationConfig != null) {
-						SemiParsedAggregationConfig config = parseAggregationType(aggregationConfig, aggregationName);
-						if (SemiParsedAggregationConfig.AggregationType.DATE_HISTOGRAM.toString().equals(config.getAggregationType())) {
-							result.put(aggregationName, config.getFieldName());
-						}
-					}
+			for (SemiParsedAggregationConfig config : searchConfigCache.getSnapshot().getParsedAggregations().values()) {
+				if (SemiParsedAggregationConfig.AggregationType.DATE_HISTOGRAM.toString().equals(config.getAggregationType())) {
+					result.put(config.getAggregationName(), config.getFieldName());
 				}
 			}
 		}
@@ -619,7 +854,8 @@ public class SearchService {
 	}
 
 	/**
-	 * Get interval values for Date Histogram aggregations.
+	 * Get interval values for Date Histogram aggregations. Filters for request are prepared if not prepared yet, so it
+	 * can be called before search is performed.
 	 * 
 	 * @param querySettings for search
 	 * @return map with additional fields, never null
@@ -628,6 +864,7 @@ public class SearchService {
 		Map<String, String> ret = new HashMap<>();
 		Set<String> aggregations = querySettings.getAggregations();
 		if (aggregations != null && !aggregations.isEmpty()) {
+			prepareFiltersForRequest(querySettings.getFilters());
 			Map<String, String> dateHistogramAggregations = filterAggregationNamesUsingDateHistogramAggregationType(aggregations);
 			for (String aggregationName : dateHistogramAggregations.keySet()) {
 				String interval = getDateHistogramAggregationInterval(dateHistogramAggregations.get(aggregationName));
@@ -778,7 +1015,7 @@ public class SearchService {
 	 */
 	protected void setSearchRequestFields(QuerySettings querySettings, SearchRequestBuilder srb) {
 
-		Map<String, Object> cf = configService.get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS);
+		Map<String, Object> cf = searchConfigCache.getSnapshot().getResponseFields();
 
 		List<String> fields = null;
 
@@ -914,19 +1151,39 @@ public class SearchService {
 	public SearchResponse performSearchTemplate(final String templateName, final Map<String, Object> templateParams,
 												final QuerySettings.Filters filters) {
 
-		if (!parsedFilterConfigService.isCacheInitialized()) {
-			try {
-				parsedFilterConfigService.prepareFiltersForRequest(filters);
-			} catch (ReflectiveOperationException e) {
-				throw new ElasticsearchException("Can not prepare filters", e);
-			}
-		}
+		prepareFiltersForRequest(filters);
 
 		SearchRequestBuilder srb = new SearchRequestBuilder(searchClientService.getClient());
 		performSearchTemplateInternal(templateName, templateParams, filters, srb);
 		return srb.get();
 	}
 
+	/**
+	 * Perform Search Template query asynchronously, so calling thread is not blocked while search is executed by
+	 * Elasticsearch. Search request is prepared in calling thread, listener is notified when search is finished.
+	 *
+	 * @param templateName name of registered query
+	 * @param templateParams parameters and values to pass into Mustache template
+	 * @param filters url param filters
+	 * @param listener notified about search response, all errors are passed to it also
+	 * @see #performSearchTemplate(String, Map, QuerySettings.Filters)
+	 */
+	public void performSearchTemplateAsync(final String templateName, final Map<String, Object> templateParams,
+			final QuerySettings.Filters filters, ActionListener<SearchResponse> listener) {
+		SearchRequestBuilder srb;
+		try {
+			prepareFiltersForRequest(filters);
+			srb = new SearchRequestBuilder(searchClientService.getClient());
+			performSearchTemplateInternal(templateName, templateParams, filters, srb);
+		} catch (RuntimeException e) {
+			listener.onFailure(e);
+			return;
+		}
+		// do not notify listener in network thread
+		srb.setListenerThreaded(true);
+		srb.execute(listener);
+	}
+
 	/**
 	 * This method handles processing of search template.
 	 *
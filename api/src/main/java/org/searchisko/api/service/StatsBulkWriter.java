@@ -0,0 +1,255 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.searchisko.api.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.unit.TimeValue;
+import org.searchisko.api.model.StatsConfiguration;
+import org.searchisko.api.model.StatsConfiguration.DropPolicy;
+
+/**
+ * Thread writing statistics records into Elasticsearch in bulk requests. Records are kept in bounded in-memory queue
+ * and flushed when number of queued records or their size reaches configured limit, or when flush interval elapses.
+ * Only one bulk request is running at a time. If queue is full then records are dropped according to configured
+ * {@link DropPolicy}.
+ *
+ * @author Vlastimil Elias (velias at redhat dot com)
+ * @see StatsConfiguration
+ * @see StatsClientService#writeStatisticsRecord(StatsRecordType, long, Map)
+ */
+public class StatsBulkWriter extends Thread {
+
+	private static final Logger log = Logger.getLogger(StatsBulkWriter.class.getName());
+
+	protected Client client;
+
+	protected int queueSize;
+	protected int bulkActions;
+	protected long bulkSizeBytes;
+	protected long flushInterval;
+	protected DropPolicy dropPolicy;
+	protected TimeValue timeout;
+
+	protected BlockingQueue<IndexRequest> queue;
+
+	private final AtomicLong pendingBytes = new AtomicLong();
+
+	private final AtomicLong queuedCount = new AtomicLong();
+	private final AtomicLong flushedCount = new AtomicLong();
+	private final AtomicLong droppedCount = new AtomicLong();
+	private final AtomicLong failedCount = new AtomicLong();
+	private final AtomicLong bulkCount = new AtomicLong();
+
+	private volatile boolean stopped = false;
+
+	/**
+	 * Listener notified about records which were queued, but are not written finally.
+	 */
+	public static interface LostRecordListener {
+
+		/**
+		 * Called when queued record is dropped from queue or its write fails.
+		 *
+		 * @param ir index request for lost record
+		 */
+		public void recordLost(IndexRequest ir);
+	}
+
+	protected LostRecordListener lostRecordListener;
+
+	/**
+	 * Create writer, {@link #start()} must be called to start flushing.
+	 *
+	 * @param client used to write records
+	 * @param statsConfiguration to read bulk writing configuration from
+	 * @param timeout for bulk requests
+	 */
+	public StatsBulkWriter(Client client, StatsConfiguration statsConfiguration, TimeValue timeout) {
+		super();
+		this.client = client;
+		this.queueSize = statsConfiguration.getBulkQueueSize();
+		this.bulkActions = statsConfiguration.getBulkActions();
+		this.bulkSizeBytes = statsConfiguration.getBulkSizeBytes();
+		this.flushInterval = statsConfiguration.getBulkFlushInterval();
+		this.dropPolicy = statsConfiguration.getBulkDropPolicy();
+		this.timeout = timeout;
+		this.queue = new ArrayBlockingQueue<>(queueSize);
+		setDaemon(true);
+		setName("Statistics bulk writer thread");
+	}
+
+	/**
+	 * Add record into queue to be written. Never blocks.
+	 *
+	 * @param ir index request for record
+	 * @return true if record was queued, false if it was dropped because queue is full
+	 */
+	public boolean add(IndexRequest ir) {
+		long size = sizeOf(ir);
+		pendingBytes.addAndGet(size);
+		if (!queue.offer(ir)) {
+			if (dropPolicy == DropPolicy.DROP_OLDEST) {
+				IndexRequest oldest = queue.poll();
+				if (oldest != null) {
+					pendingBytes.addAndGet(-sizeOf(oldest));
+					droppedCount.incrementAndGet();
+					notifyRecordLost(oldest);
+				}
+			}
+			if (dropPolicy != DropPolicy.DROP_OLDEST || !queue.offer(ir)) {
+				pendingBytes.addAndGet(-size);
+				droppedCount.incrementAndGet();
+				if (log.isLoggable(Level.FINE)) {
+					log.fine("Statistics queue is full, record dropped");
+				}
+				return false;
+			}
+		}
+		queuedCount.incrementAndGet();
+		if (isFlushNeeded()) {
+			synchronized (this) {
+				notifyAll();
+			}
+		}
+		return true;
+	}
+
+	private boolean isFlushNeeded() {
+		return queue.size() >= bulkActions || pendingBytes.get() >= bulkSizeBytes;
+	}
+
+	@Override
+	public void run() {
+		log.info("Statistics bulk writer started");
+		try {
+			while (!stopped) {
+				synchronized (this) {
+					if (!stopped && !isFlushNeeded())
+						wait(flushInterval);
+				}
+				flush();
+			}
+		} catch (InterruptedException e) {
+			// nothing to do, just finish
+		} finally {
+			flush();
+			log.info("Statistics bulk writer stopped");
+		}
+	}
+
+	/**
+	 * Stop writer. Records still present in queue are flushed before thread finishes.
+	 */
+	public void stopWriter() {
+		stopped = true;
+		synchronized (this) {
+			notifyAll();
+		}
+	}
+
+	/**
+	 * Write all queued records in bulk requests, each one limited by configured number of records and size.
+	 */
+	protected void flush() {
+		while (!queue.isEmpty()) {
+			BulkRequest br = new BulkRequest();
+			br.timeout(timeout);
+			long bytes = 0;
+			IndexRequest ir;
+			while (br.numberOfActions() < bulkActions && bytes < bulkSizeBytes && (ir = queue.poll()) != null) {
+				br.add(ir);
+				bytes += sizeOf(ir);
+			}
+			pendingBytes.addAndGet(-bytes);
+			if (br.numberOfActions() == 0)
+				return;
+			writeBulk(br);
+		}
+	}
+
+	protected void writeBulk(BulkRequest br) {
+		int count = br.numberOfActions();
+		bulkCount.incrementAndGet();
+		try {
+			BulkResponse response = client.bulk(br).actionGet();
+			int failed = 0;
+			if (response.hasFailures()) {
+				for (BulkItemResponse item : response.getItems()) {
+					if (item.isFailed()) {
+						failed++;
+						notifyRecordLost(br.requests().get(item.getItemId()));
+					}
+				}
+				log.log(Level.WARNING, "stats bulk write failed for {0} records: {1}",
+						new Object[] { failed, response.buildFailureMessage() });
+			}
+			failedCount.addAndGet(failed);
+			flushedCount.addAndGet(count - failed);
+		} catch (Exception e) {
+			failedCount.addAndGet(count);
+			log.log(Level.WARNING, "stats bulk write failed: " + e.getMessage(), e);
+			for (ActionRequest<?> r : br.requests()) {
+				notifyRecordLost(r);
+			}
+		}
+	}
+
+	/**
+	 * Set listener notified about records which were queued, but are not written finally.
+	 *
+	 * @param lostRecordListener to set, may be null
+	 */
+	public void setLostRecordListener(LostRecordListener lostRecordListener) {
+		this.lostRecordListener = lostRecordListener;
+	}
+
+	private void notifyRecordLost(ActionRequest<?> r) {
+		LostRecordListener l = lostRecordListener;
+		if (l != null && r instanceof IndexRequest) {
+			try {
+				l.recordLost((IndexRequest) r);
+			} catch (RuntimeException e) {
+				log.log(Level.WARNING, "lost stats record listener failed: " + e.getMessage(), e);
+			}
+		}
+	}
+
+	private static long sizeOf(IndexRequest ir) {
+		return ir.source() != null ? ir.source().length() : 0;
+	}
+
+	/**
+	 * Get statistics of this writer.
+	 *
+	 * @return map with statistics
+	 */
+	public Map<String, Object> getStatistics() {
+		Map<String, Object> ret = new LinkedHashMap<>();
+		ret.put("queue_capacity", queueSize);
+		ret.put("queue_size", queue.size());
+		ret.put("drop_policy", dropPolicy.name());
+		ret.put("queued_count", queuedCount.get());
+		ret.put("flushed_count", flushedCount.get());
+		ret.put("dropped_count", droppedCount.get());
+		ret.put("failed_count", failedCount.get());
+		ret.put("bulk_count", bulkCount.get());
+		return ret;
+	}
+
+}
@@ -43,6 +43,7 @@ import org.elasticsearch.indices.IndexMissingException;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.sort.SortOrder;
 import org.searchisko.api.StatsObjectFields;
+import org.searchisko.api.cache.RecentSearchResponsesIndex;
 import org.searchisko.api.model.AppConfiguration.ClientType;
 import org.searchisko.api.model.QuerySettings;
 import org.searchisko.api.model.StatsConfiguration;
@@ -78,6 +79,10 @@ public class StatsClientService extends ElasticsearchClientService {
 
 	protected ActionListener<IndexResponse> statsLogListener;
 
+	protected StatsBulkWriter statsBulkWriter;
+
+	protected RecentSearchResponsesIndex recentSearchResponses;
+
 	public static final String CONFIG_FILE_TRANSPORT = "/stats_client_connections.properties";
 	public static final String CONFIG_FILE = "/stats_client_settings.properties";
 
@@ -120,6 +125,21 @@ public class StatsClientService extends ElasticsearchClientService {
 				}
 				checkHealthOfCluster(client);
 			}
+			if (statsConfiguration.getRecentResponsesWindow() > 0) {
+				recentSearchResponses = new RecentSearchResponsesIndex(statsConfiguration.getRecentResponsesWindow() * 1000L,
+						statsConfiguration.getRecentResponsesMaxSize());
+			}
+			if (statsConfiguration.isAsync() && statsConfiguration.isBulk()) {
+				log.info("Statistics are written in bulk requests");
+				statsBulkWriter = new StatsBulkWriter(client, statsConfiguration, TimeValue.timeValueSeconds(timeout.stats()));
+				statsBulkWriter.setLostRecordListener(new StatsBulkWriter.LostRecordListener() {
+					@Override
+					public void recordLost(IndexRequest ir) {
+						removeRecentSearchResponse(ir);
+					}
+				});
+				statsBulkWriter.start();
+			}
 		} else {
 			log.info("Statistics are disabled");
 		}
@@ -128,6 +148,15 @@ public class StatsClientService extends ElasticsearchClientService {
 
 	@PreDestroy
 	public void destroy() {
+		if (statsBulkWriter != null) {
+			statsBulkWriter.stopWriter();
+			try {
+				statsBulkWriter.join(timeout.stats() * 1000L);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			statsBulkWriter = null;
+		}
 		if (node != null) {
 			super.destroy();
 		} else {
@@ -255,8 +284,9 @@ public class StatsClientService extends ElasticsearchClientService {
 
 		addQuery(source, querySettings);
 
+		List<String> hitIds = null;
 		if (resp.getHits().totalHits() > 0) {
-			List<String> hitIds = new ArrayList<>();
+			hitIds = new ArrayList<>();
 			for (SearchHit hit : resp.getHits().getHits()) {
 				hitIds.add(hit.getId());
 			}
@@ -265,7 +295,32 @@ public class StatsClientService extends ElasticsearchClientService {
 
 		}
 
-		writeStatisticsRecord(type, dateInMillis, source);
+		// registered before write so it can be removed again if record is dropped or its write fails. Record may still
+		// be lost in other ways (eg. node crash), so in-memory check is best effort only.
+		RecentSearchResponsesIndex rsr = recentSearchResponses;
+		if (rsr != null && type == StatsRecordType.SEARCH) {
+			rsr.put(responseUuid, hitIds);
+		}
+		if (!writeStatisticsRecord(type, dateInMillis, source) && rsr != null) {
+			rsr.remove(responseUuid);
+		}
+	}
+
+	/**
+	 * Remove search response from in-memory index of recent responses if statistics record for it is not written.
+	 *
+	 * @param ir index request of lost statistics record
+	 */
+	protected void removeRecentSearchResponse(IndexRequest ir) {
+		RecentSearchResponsesIndex rsr = recentSearchResponses;
+		if (rsr == null)
+			return;
+		Map<String, Object> source = ir.sourceAsMap();
+		if (StatsRecordType.SEARCH.getSearchIndexedValue().equals(source.get(FIELD_TYPE))) {
+			Object uuid = source.get(FIELD_RESPONSE_UUID);
+			if (uuid != null)
+				rsr.remove(uuid.toString());
+		}
 	}
 
 	/**
@@ -274,11 +329,12 @@ public class StatsClientService extends ElasticsearchClientService {
 	 * @param type         of record
 	 * @param dateInMillis timestamp when operation was performed
 	 * @param source       fields to be written into statistics record.
+	 * @return true if record was written or accepted to be written asynchronously, false if it was dropped
 	 */
-	public void writeStatisticsRecord(StatsRecordType type, long dateInMillis, Map<String, Object> source) {
+	public boolean writeStatisticsRecord(StatsRecordType type, long dateInMillis, Map<String, Object> source) {
 
 		if (!statsConfiguration.enabled()) {
-			return;
+			return false;
 		}
 
 		if (source == null)
@@ -290,20 +346,41 @@ public class StatsClientService extends ElasticsearchClientService {
 			IndexRequest ir = Requests.indexRequest().index(type.getSearchIndexName()).type(type.getSearchIndexType())
 					.timeout(TimeValue.timeValueSeconds(timeout.stats())).source(source);
 			if (statsConfiguration.isAsync()) {
-				// async call, if it fails -> just log
-				client.index(ir, statsLogListener);
+				if (statsBulkWriter != null) {
+					// queued for bulk write, dropped if queue is full
+					return statsBulkWriter.add(ir);
+				} else {
+					// async call, if it fails -> just log
+					final IndexRequest fir = ir;
+					client.index(ir, new ActionListener<IndexResponse>() {
+						@Override
+						public void onResponse(IndexResponse indexResponse) {
+							statsLogListener.onResponse(indexResponse);
+						}
+
+						@Override
+						public void onFailure(Throwable e) {
+							statsLogListener.onFailure(e);
+							removeRecentSearchResponse(fir);
+						}
+					});
+				}
 			} else {
 				// sync call and log it
 				IndexResponse response = client.index(ir).actionGet();
 				statsLogListener.onResponse(response);
 			}
+			return true;
 		} catch (Throwable e) {
 			log.log(Level.FINEST, "Error writing into stats server: " + e.getMessage(), e);
+			return false;
 		}
 	}
 
 	/**
-	 * Check if some statistics record exists for specified conditions.
+	 * Check if some statistics record exists for specified conditions. {@link StatsRecordType#SEARCH} records looked up
+	 * by response uuid and hit id only are checked in-memory if they were written recently by this node, statistics
+	 * cluster is searched otherwise.
 	 *
 	 * @param type       of record we are looking for
 	 * @param conditions for lookup. Key is a name of field to filter over, Value is a value to filter for using term
@@ -314,6 +391,25 @@ public class StatsClientService extends ElasticsearchClientService {
 		if (!statsConfiguration.enabled()) {
 			return false;
 		}
+		if (recentSearchResponses != null && type == StatsRecordType.SEARCH && conditions != null
+				&& conditions.size() == 2 && conditions.get(FIELD_RESPONSE_UUID) instanceof String
+				&& conditions.get(FIELD_HITS_ID) instanceof String) {
+			Boolean ret = recentSearchResponses.containsHit((String) conditions.get(FIELD_RESPONSE_UUID),
+					(String) conditions.get(FIELD_HITS_ID));
+			if (ret != null)
+				return ret;
+		}
+		return searchStatisticsRecordExists(type, conditions);
+	}
+
+	/**
+	 * Search statistics cluster for record matching specified conditions.
+	 *
+	 * @param type       of record we are looking for
+	 * @param conditions for lookup, see {@link #checkStatisticsRecordExists(StatsRecordType, Map)}
+	 * @return true if at least one record matching conditions exits
+	 */
+	protected boolean searchStatisticsRecordExists(StatsRecordType type, Map<String, Object> conditions) {
 		SearchRequestBuilder srb = new SearchRequestBuilder(client);
 		srb.setIndices(type.getSearchIndexName());
 		srb.setTypes(type.getSearchIndexType());
@@ -337,6 +433,15 @@ public class StatsClientService extends ElasticsearchClientService {
 		}
 	}
 
+	/**
+	 * Get statistics of in-memory index of recent search responses.
+	 *
+	 * @return map with statistics or null if index is not used
+	 */
+	public Map<String, Object> getRecentSearchResponsesStatistics() {
+		return recentSearchResponses != null ? recentSearchResponses.getStatistics() : null;
+	}
+
 	/**
 	 * @param source
 	 * @param querySettings
@@ -375,6 +480,16 @@ public class StatsClientService extends ElasticsearchClientService {
 		}
 	}
 
+	/**
+	 * Get statistics of bulk writer.
+	 *
+	 * @return map with statistics or null if bulk writer is not used
+	 */
+	public Map<String, Object> getBulkWriterStatistics() {
+		StatsBulkWriter w = statsBulkWriter;
+		return w != null ? w.getStatistics() : null;
+	}
+
 	public Properties getSettings() {
 		return settings;
 	}
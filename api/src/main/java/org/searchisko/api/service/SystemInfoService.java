@@ -31,6 +31,7 @@ import org.elasticsearch.client.Client;
 import org.elasticsearch.common.xcontent.ToXContent;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentFactory;
+import org.searchisko.api.cache.SearchResultCache;
 import org.searchisko.api.filter.CDIServletRequestProducingListener;
 import org.searchisko.api.model.StatsConfiguration;
 import org.searchisko.api.util.SearchUtils;
@@ -77,6 +78,24 @@ public class SystemInfoService {
 	@Inject
 	protected StatsConfiguration statsConfiguration;
 
+	@Inject
+	protected SearchResultCache searchResultCache;
+
+	@Inject
+	protected SearchCoalescingService searchCoalescingService;
+
+	@Inject
+	protected BulkPreprocessingService bulkPreprocessingService;
+
+	@Inject
+	protected CustomTagService customTagService;
+
+	@Inject
+	protected ContributorLookupCacheService contributorLookupCacheService;
+
+	@Inject
+	protected ProjectService projectService;
+
 	private Properties buildInfo = new Properties();
 
 	@PostConstruct
@@ -146,6 +165,7 @@ public class SystemInfoService {
 			getConfigInfo(ret);
 			getElasticsearchRuntimeInfo(ret);
 			getJpaInfo(ret);
+			getCacheInfo(ret);
 			ret.put("system", new LinkedHashMap<>(System.getProperties()));
 		}
 
@@ -206,6 +226,23 @@ public class SystemInfoService {
 		ret.put("config", map);
 	}
 
+	protected void getCacheInfo(Map<Object, Object> ret) {
+		Map<Object, Object> caches = new LinkedHashMap<>();
+		caches.put("search-result", searchResultCache.getStatistics());
+		Map<String, Object> recentResponses = statsClientService.getRecentSearchResponsesStatistics();
+		if (recentResponses != null)
+			caches.put("stats-recent-responses", recentResponses);
+		caches.put("contributor-lookup", contributorLookupCacheService.getStatistics());
+		caches.put("projects-snapshot", projectService.getSnapshotStatistics());
+		ret.put("caches", caches);
+		ret.put("search-coalescing", searchCoalescingService.getStatistics());
+		ret.put("bulk-preprocessing", bulkPreprocessingService.getStatistics());
+		ret.put("custom-tags-index", customTagService.getStatistics());
+		Map<String, Object> statsWriter = statsClientService.getBulkWriterStatistics();
+		if (statsWriter != null)
+			ret.put("stats-bulk-writer", statsWriter);
+	}
+
 	protected void getJpaInfo(Map<Object, Object> ret) {
 		if (em != null) {
 			Map<Object, Object> jpa = new LinkedHashMap<>();
@@ -232,6 +269,7 @@ public class SystemInfoService {
 					dbmap.put("url", dbmd.getURL());
 					dbmap.put("username", dbmd.getUserName());
 					dbmap.put("transaction-isolation-default", "" + dbmd.getDefaultTransactionIsolation());
+					dbmap.put("content-compression", jdbcContentPersistenceService.getCompressionStatistics());
 					ret.put("db", dbmap);
 				} finally {
 					if (conn != null)
@@ -24,7 +24,7 @@ public abstract class Task extends Thread {
 
 	protected TaskExecutionContext context;
 
-	private transient boolean canceled;
+	private transient volatile boolean canceled;
 
 	public Task() {
 		log = Logger.getLogger(getClass().getName());
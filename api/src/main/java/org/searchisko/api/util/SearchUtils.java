@@ -13,6 +13,7 @@ import java.util.*;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang.StringUtils;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jackson.type.TypeReference;
@@ -125,6 +126,38 @@ public class SearchUtils {
 		return mapper.writeValueAsString(jsonMapValue);
 	}
 
+	/**
+	 * Compute hash of JSON Map structure. Fields are sorted by name before hash is computed, so hash doesn't depend on
+	 * order of fields.
+	 * 
+	 * @param jsonMapValue to compute hash for
+	 * @return SHA-1 hash as hex string
+	 * @throws IOException
+	 */
+	public static String computeJsonMapHash(Map<String, Object> jsonMapValue) throws IOException {
+		ObjectMapper mapper = new ObjectMapper();
+		mapper.setDateFormat(getISODateFormat());
+		return DigestUtils.shaHex(mapper.writeValueAsString(sortJsonValue(jsonMapValue)));
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Object sortJsonValue(Object value) {
+		if (value instanceof Map) {
+			Map<String, Object> ret = new TreeMap<>();
+			for (Map.Entry<String, Object> e : ((Map<String, Object>) value).entrySet()) {
+				ret.put(e.getKey(), sortJsonValue(e.getValue()));
+			}
+			return ret;
+		} else if (value instanceof Collection) {
+			List<Object> ret = new ArrayList<>();
+			for (Object o : (Collection<Object>) value) {
+				ret.add(sortJsonValue(o));
+			}
+			return ret;
+		}
+		return value;
+	}
+
 	/**
 	 * Get ISO date time formatter.
 	 * 
@@ -341,6 +374,35 @@ public class SearchUtils {
 		}
 	}
 
+	/**
+	 * Apply patch to JSON Map, so patch is more important than target. Unlike {@link #mergeJsonMaps(Map, Map)} values
+	 * are not merged into Lists - value from patch replaces target value, Maps are patched recursively and
+	 * <code>null</code> value in patch removes key from target (JSON Merge Patch semantics).
+	 *
+	 * @param patch Map to apply, it is not changed
+	 * @param target Map to apply patch to
+	 */
+	@SuppressWarnings("unchecked")
+	public static void applyJsonMapPatch(Map<String, Object> patch, Map<String, Object> target) {
+		if (patch == null || target == null)
+			return;
+		for (Map.Entry<String, Object> e : patch.entrySet()) {
+			Object patchValue = e.getValue();
+			if (patchValue == null) {
+				target.remove(e.getKey());
+			} else if (patchValue instanceof Map) {
+				Object targetValue = target.get(e.getKey());
+				if (!(targetValue instanceof Map)) {
+					targetValue = new LinkedHashMap<String, Object>();
+					target.put(e.getKey(), targetValue);
+				}
+				applyJsonMapPatch((Map<String, Object>) patchValue, (Map<String, Object>) targetValue);
+			} else {
+				target.put(e.getKey(), patchValue);
+			}
+		}
+	}
+
 	/**
 	 * Convert URL params format to type that is required by internal Elasticsearch API.
 	 *
@@ -368,4 +430,14 @@ public class SearchUtils {
 		return StringUtils.containsIgnoreCase(databaseProductName, "mysql");
 	}
 
+	/**
+	 * Determine if database product name is H2
+	 * @param databaseProductName
+	 * @return true if database is H2
+	 * @see java.sql.Connection#getMetaData()#getDatabaseProductName()
+	 */
+	public static boolean isH2Dialect(String databaseProductName) {
+		return "h2".equalsIgnoreCase(SearchUtils.trimToNull(databaseProductName));
+	}
+
 }
@@ -0,0 +1,111 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.searchisko.persistence.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Codec used to store JSON data in compressed binary form. First byte of encoded data is format marker, so other
+ * formats may be added later without migration of already stored data. Statistics of compression ratio and decode time
+ * are collected.
+ *
+ * @author Vlastimil Elias (velias at redhat dot com)
+ * @see JdbcContentPersistenceService
+ */
+public class CompressedJsonCodec {
+
+	/**
+	 * Format marker for GZIP compressed UTF-8 JSON text.
+	 */
+	public static final byte FORMAT_GZIP_JSON = 1;
+
+	private final AtomicLong encodedCount = new AtomicLong();
+	private final AtomicLong encodedRawBytes = new AtomicLong();
+	private final AtomicLong encodedBytes = new AtomicLong();
+	private final AtomicLong decodedCount = new AtomicLong();
+	private final AtomicLong decodeNanos = new AtomicLong();
+
+	/**
+	 * Encode JSON text.
+	 *
+	 * @param json text to encode
+	 * @return encoded data with format marker
+	 */
+	public byte[] encode(String json) {
+		byte[] raw = (json != null ? json : "").getBytes(StandardCharsets.UTF_8);
+		ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 4 + 16);
+		out.write(FORMAT_GZIP_JSON);
+		try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+			gzip.write(raw);
+		} catch (IOException e) {
+			// can't happen for in-memory stream
+			throw new RuntimeException(e);
+		}
+		byte[] ret = out.toByteArray();
+		encodedCount.incrementAndGet();
+		encodedRawBytes.addAndGet(raw.length);
+		encodedBytes.addAndGet(ret.length);
+		return ret;
+	}
+
+	/**
+	 * Decode data encoded by {@link #encode(String)}.
+	 *
+	 * @param data to decode
+	 * @return JSON text
+	 * @throws IOException if data are corrupted or format is unknown
+	 */
+	public String decode(byte[] data) throws IOException {
+		if (data == null || data.length == 0)
+			throw new IOException("No data to decode");
+		if (data[0] != FORMAT_GZIP_JSON)
+			throw new IOException("Unknown format of compressed JSON data: " + data[0]);
+		long start = System.nanoTime();
+		ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+		try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(data, 1, data.length - 1))) {
+			byte[] buf = new byte[8192];
+			int len;
+			while ((len = in.read(buf)) > 0) {
+				out.write(buf, 0, len);
+			}
+		}
+		String ret = new String(out.toByteArray(), StandardCharsets.UTF_8);
+		decodeNanos.addAndGet(System.nanoTime() - start);
+		decodedCount.incrementAndGet();
+		return ret;
+	}
+
+	/**
+	 * Get statistics of this codec usage.
+	 *
+	 * @return map with statistics
+	 */
+	public Map<String, Object> getStatistics() {
+		Map<String, Object> ret = new LinkedHashMap<>();
+		long raw = encodedRawBytes.get();
+		long encoded = encodedBytes.get();
+		long decoded = decodedCount.get();
+		long nanos = decodeNanos.get();
+		ret.put("encoded_count", encodedCount.get());
+		ret.put("encoded_raw_bytes", raw);
+		ret.put("encoded_bytes", encoded);
+		ret.put("compression_ratio", encoded > 0 ? Math.round(raw * 100d / encoded) / 100d : 0d);
+		ret.put("decoded_count", decoded);
+		ret.put("decode_time_total_ms", nanos / 1000000L);
+		ret.put("decode_time_avg_us", decoded > 0 ? nanos / decoded / 1000L : 0L);
+		return ret;
+	}
+
+}
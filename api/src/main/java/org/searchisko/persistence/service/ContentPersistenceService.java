@@ -5,6 +5,7 @@
  */
 package org.searchisko.persistence.service;
 
+import java.util.Collection;
 import java.util.Map;
 
 /**
@@ -31,6 +32,27 @@ public interface ContentPersistenceService {
 	 */
 	public Map<String, Object> get(String id, String sysContentType);
 
+	/**
+	 * Get hash of content with specified id. Hash is stored with content from
+	 * {@link org.searchisko.api.ContentObjectFields#SYS_CONTENT_HASH} field, so it can be read without content itself.
+	 * 
+	 * @param id of entity
+	 * @param sysContentType sys_content_type of content object
+	 * @return hash or null if content is not found or it was stored without hash
+	 */
+	public String getContentHash(String id, String sysContentType);
+
+	/**
+	 * Get hashes of more content objects at once.
+	 * 
+	 * @param ids of entities
+	 * @param sysContentType sys_content_type of content objects
+	 * @return map with hashes, key is id of content object. Content not found or stored without hash is not in map.
+	 *         Never null.
+	 * @see #getContentHash(String, String)
+	 */
+	public Map<String, String> getContentHashes(Collection<String> ids, String sysContentType);
+
 	/**
 	 * Store content with defined id. Update it if exists already.
 	 * 
@@ -40,6 +62,14 @@ public interface ContentPersistenceService {
 	 */
 	public void store(String id, String sysContentType, Map<String, Object> entity);
 
+	/**
+	 * Store more content objects of same sys_content_type at once, in one transaction. Update them if exist already.
+	 * 
+	 * @param sysContentType sys_content_type of content objects
+	 * @param contents to store, key is id of content object, value is content to store
+	 */
+	public void storeBatch(String sysContentType, Map<String, Map<String, Object>> contents);
+
 	/**
 	 * Delete content.
 	 * 
@@ -65,4 +95,16 @@ public interface ContentPersistenceService {
 	 */
 	public ListRequest listRequestNext(ListRequest previous);
 
+	/**
+	 * Pass whole content of given sysContentType to handler one by one, ordered by id. Raw content is read in bounded
+	 * pages and each content object is parsed just before it is passed to handler, so memory consumption doesn't depend
+	 * on number of content objects. No database cursor is kept open while handler works. Use it instead of
+	 * {@link #listRequestInit(String)} for iteration over large sets of data.
+	 * 
+	 * @param sysContentType to stream content for
+	 * @param handler to pass content to
+	 * @return number of content objects passed to handler
+	 */
+	public int streamContent(String sysContentType, ContentStreamHandler handler);
+
 }
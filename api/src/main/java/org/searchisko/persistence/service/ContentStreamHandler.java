@@ -0,0 +1,28 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.searchisko.persistence.service;
+
+import java.util.Map;
+
+/**
+ * Interface of handlers used by persistence services to pass content one by one during streaming iteration over large
+ * sets of data.
+ * 
+ * @author Vlastimil Elias (velias at redhat dot com)
+ * 
+ * @see ContentPersistenceService#streamContent(String, ContentStreamHandler)
+ */
+public interface ContentStreamHandler {
+
+	/**
+	 * Handle one content object.
+	 * 
+	 * @param content to handle
+	 * @return true to continue with next content, false to stop iteration
+	 */
+	public boolean handle(ContentTuple<String, Map<String, Object>> content);
+
+}
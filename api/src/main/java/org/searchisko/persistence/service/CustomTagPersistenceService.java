@@ -5,7 +5,10 @@
  */
 package org.searchisko.persistence.service;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+
 import org.searchisko.persistence.jpa.model.Tag;
 
 
@@ -24,6 +27,22 @@ public interface CustomTagPersistenceService {
 	 */
 	List<Tag> getTagsByContent(String... contentId);
 
+	/**
+	 * Get all custom tags for more content objects at once.
+	 *
+	 * @param contentIds identifiers of the content
+	 * @return map where key is identifier of the content and value is list of its tags. Content without tags is not
+	 *         present in the map.
+	 */
+	Map<String, List<Tag>> getTagsByContents(Collection<String> contentIds);
+
+	/**
+	 * Get all custom tags.
+	 *
+	 * @return list of all tags
+	 */
+	List<Tag> getAllTags();
+
 	/**
 	 * Get all tags for content type.
 	 *
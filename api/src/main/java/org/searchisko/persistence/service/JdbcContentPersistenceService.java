@@ -11,6 +11,7 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.sql.Types;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
@@ -28,6 +29,7 @@ import javax.persistence.EntityManager;
 import javax.sql.DataSource;
 
 import org.searchisko.api.ContentObjectFields;
+import org.searchisko.api.service.AppConfigurationService;
 import org.searchisko.api.util.CdiHelper;
 import org.searchisko.api.util.SearchUtils;
 
@@ -37,6 +39,11 @@ import org.searchisko.api.util.SearchUtils;
  * It uses select from SQL standard <code>information_schema.tables</code> view to check table existence, which may be
  * incompatible with some DB engines who do not follow SQL exactly (like Oracle)! It also uses <code>LONGTEXT</code>
  * data type for one column, which may be incompatible with some DB engines also.<br>
+ * Content can be stored compressed by {@link CompressedJsonCodec} if enabled by
+ * <code>contentpersistence.compression.enabled</code> in app configuration. Compressed data are stored in
+ * <code>json_data_compressed</code> column, which is added into existing tables when content is stored with compression
+ * enabled for the first time (never on read). Rows stored uncompressed before are readable and they are compressed when
+ * rewritten.<br>
  * It's session bean to work with transactions.
  * 
  * @author Vlastimil Elias (velias at redhat dot com)
@@ -54,6 +61,9 @@ public class JdbcContentPersistenceService implements ContentPersistenceService
 	@Inject
 	protected EntityManager em;
 
+	@Inject
+	protected AppConfigurationService appConfigurationService;
+
 	protected DataSource searchiskoDs;
 
 	@PostConstruct
@@ -66,8 +76,13 @@ public class JdbcContentPersistenceService implements ContentPersistenceService
 		String tableName = getTableName(sysContentType);
 		if (!checkTableExists(tableName))
 			return null;
-		String sqlString = String.format("select json_data from %s where id = ?", tableName);
-		String jsonData = executeStringReturningSql(sqlString, id);
+		String jsonData;
+		if (hasColumn(tableName, COLUMN_COMPRESSED)) {
+			jsonData = executeJsonDataReturningSql(
+					String.format("select json_data, json_data_compressed from %s where id = ?", tableName), id);
+		} else {
+			jsonData = executeStringReturningSql(String.format("select json_data from %s where id = ?", tableName), id);
+		}
 		if (SearchUtils.trimToNull(jsonData) != null) {
 			try {
 				return SearchUtils.convertToJsonMap(jsonData);
@@ -80,33 +95,58 @@ public class JdbcContentPersistenceService implements ContentPersistenceService
 	}
 
 	@Override
-	@TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
-	public void store(String id, String sysContentType, Map<String, Object> content) {
+	public String getContentHash(String id, String sysContentType) {
 		String tableName = getTableName(sysContentType);
-		ensureTableExists(tableName);
+		if (!checkTableExists(tableName) || !hasColumn(tableName, COLUMN_CONTENT_HASH))
+			return null;
+		return executeStringReturningSql(String.format("select content_hash from %s where id = ?", tableName), id);
+	}
 
-		Date updated = null;
-		if (content != null) {
-			Object o = content.get(ContentObjectFields.SYS_UPDATED);
-			if (o instanceof Date) {
-				updated = (Date) o;
-			} else if (o instanceof String) {
-				try {
-					updated = SearchUtils.dateFromISOString((String) o, true);
-				} catch (Exception e) {
-					// ignore exception here
+	/**
+	 * Max number of ids used in one <code>in</code> clause of SQL query.
+	 */
+	protected static final int MAX_IDS_IN_QUERY = 500;
+
+	@Override
+	public Map<String, String> getContentHashes(Collection<String> ids, String sysContentType) {
+		Map<String, String> ret = new HashMap<>();
+		String tableName = getTableName(sysContentType);
+		if (ids == null || ids.isEmpty() || !checkTableExists(tableName) || !hasColumn(tableName, COLUMN_CONTENT_HASH))
+			return ret;
+		List<String> idList = new ArrayList<>(ids);
+		for (int from = 0; from < idList.size(); from += MAX_IDS_IN_QUERY) {
+			List<String> chunk = idList.subList(from, Math.min(from + MAX_IDS_IN_QUERY, idList.size()));
+			StringBuilder sql = new StringBuilder("select id, content_hash from ").append(tableName).append(" where id in (");
+			for (int i = 0; i < chunk.size(); i++) {
+				sql.append(i > 0 ? ", ?" : "?");
+			}
+			sql.append(")");
+			try (Connection conn = searchiskoDs.getConnection();
+					PreparedStatement statement = conn.prepareStatement(sql.toString())) {
+				setParams(statement, chunk.toArray());
+				try (final ResultSet rs = statement.executeQuery()) {
+					while (rs.next()) {
+						if (rs.getString(2) != null)
+							ret.put(rs.getString(1), rs.getString(2));
+					}
 				}
+			} catch (SQLException e) {
+				log.severe(String.format("Error executing statement -- %s -- Error -- %s", sql, e.getMessage()));
+				throw new RuntimeException(e);
 			}
 		}
-		if (updated == null)
-			updated = new Date();
+		return ret;
+	}
 
-		String jsonString;
-		try {
-			jsonString = SearchUtils.convertJsonMapToString(content);
-		} catch (IOException e) {
-			throw new RuntimeException(e);
-		}
+	@Override
+	@TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+	public void store(String id, String sysContentType, Map<String, Object> content) {
+		String tableName = getTableName(sysContentType);
+		ensureTableExists(tableName);
+		ensureColumnExists(tableName, COLUMN_CONTENT_HASH, "varchar(64)");
+
+		Date updated = getUpdated(content);
+		StoredData data = prepareStoredData(content, hasCompressedColumn(tableName));
 
 		try (final Connection conn = searchiskoDs.getConnection()) {
 			if (log.isLoggable(Level.FINEST)) {
@@ -118,20 +158,18 @@ public class JdbcContentPersistenceService implements ContentPersistenceService
 			if (SearchUtils.isMysqlDialect(conn.getMetaData().getDatabaseProductName())) {
 				log.log(Level.FINE, "Store data via insert on duplicate key update technique");
 				executeNonReturningSql(conn,
-						String.format("insert into %s (id, json_data, sys_content_type, updated) values (?, ?, ?, ?) ON DUPLICATE KEY UPDATE json_data=?", tableName),
-						id, jsonString, sysContentType, updated, jsonString);
+						String.format("insert into %s %s ON DUPLICATE KEY UPDATE %s", tableName, data.insertColumnsSql(),
+								data.duplicateKeyUpdateSql()), data.insertParams(id, sysContentType, updated));
 			} else {
 				try {
 					log.log(Level.FINE, "Try insert data");
-					executeNonReturningSql(conn,
-							String.format("insert into %s (id, json_data, sys_content_type, updated) values (?, ?, ?, ?)", tableName),
-							id, jsonString, sysContentType, updated);
+					executeNonReturningSql(conn, String.format("insert into %s %s", tableName, data.insertColumnsSql()),
+							data.insertParams(id, sysContentType, updated));
 				} catch (SQLException e) {
 					// insert failed, so record is in DB already, so we try to upgrade it
 					log.log(Level.FINE, "Insert failed. Try update row");
-					executeNonReturningSql(conn,
-							String.format("update %s set json_data=?, sys_content_type=?, updated=? where id=?", tableName),
-							jsonString, sysContentType, updated, id);
+					executeNonReturningSql(conn, String.format("update %s set %s where id=?", tableName, data.updateSetSql()),
+							data.updateParams(id, sysContentType, updated));
 				}
 			}
 
@@ -144,6 +182,234 @@ public class JdbcContentPersistenceService implements ContentPersistenceService
 
 	}
 
+	@Override
+	@TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+	public void storeBatch(String sysContentType, Map<String, Map<String, Object>> contents) {
+		if (contents == null || contents.isEmpty())
+			return;
+		String tableName = getTableName(sysContentType);
+		ensureTableExists(tableName);
+		ensureColumnExists(tableName, COLUMN_CONTENT_HASH, "varchar(64)");
+		// all rows of batch use same columns
+		boolean compressedColumn = hasCompressedColumn(tableName);
+		StoredData columns = new StoredData(null, null, null, compressedColumn);
+
+		try (final Connection conn = searchiskoDs.getConnection()) {
+			String dbName = conn.getMetaData().getDatabaseProductName();
+			String sql = null;
+			if (SearchUtils.isMysqlDialect(dbName)) {
+				sql = String.format("insert into %s %s ON DUPLICATE KEY UPDATE %s", tableName, columns.insertColumnsSql(),
+						columns.duplicateKeyUpdateSql());
+			} else if (SearchUtils.isH2Dialect(dbName)) {
+				sql = String.format("merge into %s %s", tableName, columns.mergeColumnsSql());
+			}
+			if (sql != null) {
+				log.log(Level.FINE, "Store batch of {0} records via native upsert", contents.size());
+				try (final PreparedStatement statement = conn.prepareStatement(sql)) {
+					for (Map.Entry<String, Map<String, Object>> e : contents.entrySet()) {
+						StoredData data = prepareStoredData(e.getValue(), compressedColumn);
+						setParams(statement, data.insertParams(e.getKey(), sysContentType, getUpdated(e.getValue())));
+						statement.addBatch();
+					}
+					statement.executeBatch();
+				}
+			} else {
+				// generic way - update first and insert if nothing was updated, all in one transaction
+				log.log(Level.FINE, "Store batch of {0} records via update or insert", contents.size());
+				for (Map.Entry<String, Map<String, Object>> e : contents.entrySet()) {
+					StoredData data = prepareStoredData(e.getValue(), compressedColumn);
+					Date updated = getUpdated(e.getValue());
+					int count;
+					try (final PreparedStatement statement = conn.prepareStatement(String.format("update %s set %s where id=?",
+							tableName, data.updateSetSql()))) {
+						setParams(statement, data.updateParams(e.getKey(), sysContentType, updated));
+						count = statement.executeUpdate();
+					}
+					if (count == 0) {
+						executeNonReturningSql(conn, String.format("insert into %s %s", tableName, data.insertColumnsSql()),
+								data.insertParams(e.getKey(), sysContentType, updated));
+					}
+				}
+			}
+		} catch (SQLException e) {
+			log.severe(String.format("Error while storing batch of content of type '%s' in the DB -- %s", sysContentType,
+					e.getMessage()));
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Get update timestamp of content from {@link ContentObjectFields#SYS_UPDATED} field.
+	 * 
+	 * @param content to get timestamp from
+	 * @return timestamp, current date if not present in content
+	 */
+	protected Date getUpdated(Map<String, Object> content) {
+		Date updated = null;
+		if (content != null) {
+			Object o = content.get(ContentObjectFields.SYS_UPDATED);
+			if (o instanceof Date) {
+				updated = (Date) o;
+			} else if (o instanceof String) {
+				try {
+					updated = SearchUtils.dateFromISOString((String) o, true);
+				} catch (Exception e) {
+					// ignore exception here
+				}
+			}
+		}
+		if (updated == null)
+			updated = new Date();
+		return updated;
+	}
+
+	protected String convertToJsonString(Map<String, Object> content) {
+		try {
+			return SearchUtils.convertJsonMapToString(content);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Codec used to compress stored content, shared to collect statistics for whole application.
+	 */
+	protected static final CompressedJsonCodec CODEC = new CompressedJsonCodec();
+
+	/**
+	 * Check if content is stored compressed.
+	 * 
+	 * @return true if compression is enabled in app configuration
+	 */
+	protected boolean isCompressionEnabled() {
+		return appConfigurationService != null && appConfigurationService.getAppConfiguration() != null
+				&& appConfigurationService.getAppConfiguration().isContentPersistenceCompressionEnabled();
+	}
+
+	/**
+	 * Get statistics of content compression.
+	 * 
+	 * @return map with statistics
+	 */
+	public Map<String, Object> getCompressionStatistics() {
+		Map<String, Object> ret = new LinkedHashMap<>();
+		ret.put("enabled", isCompressionEnabled());
+		ret.putAll(CODEC.getStatistics());
+		return ret;
+	}
+
+	/**
+	 * Prepare data to be stored into DB.
+	 * 
+	 * @param content to store
+	 * @param compressedColumn true if table contains column for compressed data
+	 * @return data to store, compressed if compression is enabled
+	 */
+	protected StoredData prepareStoredData(Map<String, Object> content, boolean compressedColumn) {
+		String jsonString = convertToJsonString(content);
+		String contentHash = null;
+		if (content != null && content.get(ContentObjectFields.SYS_CONTENT_HASH) != null) {
+			contentHash = content.get(ContentObjectFields.SYS_CONTENT_HASH).toString();
+		}
+		if (compressedColumn && isCompressionEnabled()) {
+			return new StoredData(null, CODEC.encode(jsonString), contentHash, true);
+		}
+		return new StoredData(jsonString, null, contentHash, compressedColumn);
+	}
+
+	/**
+	 * Data of one row to be stored, with SQL fragments for columns they are stored into.
+	 */
+	protected static class StoredData {
+
+		final String jsonData;
+		final byte[] jsonDataCompressed;
+		final String contentHash;
+		/**
+		 * true if table contains <code>json_data_compressed</code> column, so it must be written (cleared if data are not
+		 * compressed)
+		 */
+		final boolean compressedColumn;
+
+		protected StoredData(String jsonData, byte[] jsonDataCompressed, String contentHash, boolean compressedColumn) {
+			this.jsonData = jsonData;
+			this.jsonDataCompressed = jsonDataCompressed;
+			this.contentHash = contentHash;
+			this.compressedColumn = compressedColumn;
+		}
+
+		private String columnsSql() {
+			if (compressedColumn)
+				return "(id, json_data, sys_content_type, updated, content_hash, json_data_compressed)";
+			return "(id, json_data, sys_content_type, updated, content_hash)";
+		}
+
+		private String valuesSql() {
+			if (compressedColumn)
+				return "values (?, ?, ?, ?, ?, ?)";
+			return "values (?, ?, ?, ?, ?)";
+		}
+
+		protected String insertColumnsSql() {
+			return columnsSql() + " " + valuesSql();
+		}
+
+		protected String mergeColumnsSql() {
+			return columnsSql() + " key (id) " + valuesSql();
+		}
+
+		/**
+		 * @return columns updated by MySQL <code>ON DUPLICATE KEY UPDATE</code>, same as ones updated by
+		 *         {@link #updateSetSql()} so all write paths leave row in same state
+		 */
+		protected String duplicateKeyUpdateSql() {
+			String sql = "json_data=VALUES(json_data), sys_content_type=VALUES(sys_content_type), updated=VALUES(updated), "
+					+ "content_hash=VALUES(content_hash)";
+			if (compressedColumn)
+				return sql + ", json_data_compressed=VALUES(json_data_compressed)";
+			return sql;
+		}
+
+		protected String updateSetSql() {
+			if (compressedColumn)
+				return "json_data=?, sys_content_type=?, updated=?, content_hash=?, json_data_compressed=?";
+			return "json_data=?, sys_content_type=?, updated=?, content_hash=?";
+		}
+
+		protected Object[] insertParams(String id, String sysContentType, Date updated) {
+			if (compressedColumn)
+				return new Object[] { id, jsonData, sysContentType, updated, contentHash, jsonDataCompressed };
+			return new Object[] { id, jsonData, sysContentType, updated, contentHash };
+		}
+
+		protected Object[] updateParams(String id, String sysContentType, Date updated) {
+			if (compressedColumn)
+				return new Object[] { jsonData, sysContentType, updated, contentHash, jsonDataCompressed, id };
+			return new Object[] { jsonData, sysContentType, updated, contentHash, id };
+		}
+	}
+
+	/**
+	 * Read JSON data from result set row. Compressed data are used if uncompressed are not present (they are always
+	 * cleared when compressed data are written).
+	 * 
+	 * @param rs to read from
+	 * @param jsonDataIdx index of <code>json_data</code> column
+	 * @param compressedIdx index of <code>json_data_compressed</code> column, 0 if not selected
+	 * @return JSON data
+	 * @throws SQLException
+	 * @throws IOException if compressed data can't be decoded
+	 */
+	protected String readJsonData(ResultSet rs, int jsonDataIdx, int compressedIdx) throws SQLException, IOException {
+		String jsonData = rs.getString(jsonDataIdx);
+		if (jsonData == null && compressedIdx > 0) {
+			byte[] compressed = rs.getBytes(compressedIdx);
+			if (compressed != null)
+				return CODEC.decode(compressed);
+		}
+		return jsonData;
+	}
+
 	@Override
 	@TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
 	public void delete(String id, String sysContentType) {
@@ -235,11 +501,89 @@ public class JdbcContentPersistenceService implements ContentPersistenceService
 			if (!checkTableExists(tableName)) {
 				executeNonReturningSql(String.format("create table %s%s", tableName, TABLE_STRUCTURE_DDL));
 				TABLES_EXISTS.put(tableName, Boolean.TRUE);
+				COLUMNS_EXISTS.put(tableName + "." + COLUMN_CONTENT_HASH, Boolean.TRUE);
+				COLUMNS_EXISTS.put(tableName + "." + COLUMN_COMPRESSED, Boolean.TRUE);
 			}
 		}
 	}
 
-	private static final String TABLE_STRUCTURE_DDL = " ( id varchar(200) not null primary key, json_data longtext, sys_content_type varchar(100) not null, updated timestamp )";
+	private static final String TABLE_STRUCTURE_DDL = " ( id varchar(200) not null primary key, json_data longtext, sys_content_type varchar(100) not null, updated timestamp, content_hash varchar(64), json_data_compressed longblob )";
+
+	protected static final String COLUMN_CONTENT_HASH = "content_hash";
+
+	protected static final String COLUMN_COMPRESSED = "json_data_compressed";
+
+	/**
+	 * Cache of column existence for columns added to tables created by older versions, key is
+	 * <code>table_name.column_name</code>.
+	 */
+	protected static final ConcurrentUpperCaseHashMap COLUMNS_EXISTS = new ConcurrentUpperCaseHashMap(10);
+
+	/**
+	 * Check if table contains column for compressed data. If compression is enabled then column is created if it
+	 * doesn't exist yet, so this method may be called from write paths only, as DDL commits transaction implicitly on
+	 * some databases. Read paths have to use {@link #hasColumn(String, String)} instead.
+	 * 
+	 * @param tableName to check, must exist
+	 * @return true if column exists
+	 */
+	protected boolean hasCompressedColumn(String tableName) {
+		if (isCompressionEnabled()) {
+			ensureColumnExists(tableName, COLUMN_COMPRESSED, "longblob");
+			return true;
+		}
+		return hasColumn(tableName, COLUMN_COMPRESSED);
+	}
+
+	/**
+	 * Check if table contains column. Result is cached.
+	 * 
+	 * @param tableName to check, must exist
+	 * @param columnName to check
+	 * @return true if column exists
+	 */
+	protected boolean hasColumn(String tableName, String columnName) {
+		String key = tableName + "." + columnName;
+		Boolean exists = COLUMNS_EXISTS.get(key);
+		if (exists == null) {
+			exists = checkColumnExists(tableName, columnName);
+			COLUMNS_EXISTS.put(key, exists);
+		}
+		return exists;
+	}
+
+	/**
+	 * Check in DB if table contains column.
+	 * 
+	 * @param tableName to check
+	 * @param columnName to check
+	 * @return true if column exists
+	 */
+	protected boolean checkColumnExists(String tableName, String columnName) {
+		return executeIntegerReturningSql("select count(*) from INFORMATION_SCHEMA.columns "
+				+ "where upper(table_name) = ? and upper(column_name) = ?", tableName.toUpperCase(Locale.US),
+				columnName.toUpperCase(Locale.US)) > 0;
+	}
+
+	/**
+	 * Create column in table if it doesn't exist yet. Existing rows are not changed.
+	 * 
+	 * @param tableName to create column in
+	 * @param columnName to create
+	 * @param columnType SQL type of column
+	 */
+	protected void ensureColumnExists(String tableName, String columnName, String columnType) {
+		String key = tableName + "." + columnName;
+		if (Boolean.TRUE.equals(COLUMNS_EXISTS.get(key)))
+			return;
+		synchronized (TABLE_STRUCTURE_DDL) {
+			if (!checkColumnExists(tableName, columnName)) {
+				log.log(Level.INFO, "Adding column {0} into table {1}", new Object[] { columnName, tableName });
+				executeNonReturningSql(String.format("alter table %s add column %s %s", tableName, columnName, columnType));
+			}
+			COLUMNS_EXISTS.put(key, Boolean.TRUE);
+		}
+	}
 
 	protected void executeNonReturningSql(final String sql, final Object... params) {
 		try (final Connection conn = searchiskoDs.getConnection()) {
@@ -291,6 +635,22 @@ public class JdbcContentPersistenceService implements ContentPersistenceService
 		return null;
 	}
 
+	protected String executeJsonDataReturningSql(final String sql, final Object... params) {
+		try (Connection conn = searchiskoDs.getConnection(); PreparedStatement statement = conn.prepareStatement(sql)) {
+			setParams(statement, params);
+
+			try (final ResultSet rs = statement.executeQuery()) {
+				while (rs.next()) {
+					return readJsonData(rs, 1, 2);
+				}
+			}
+		} catch (SQLException | IOException e) {
+			log.severe(String.format("Error executing statement -- %s -- Error -- %s", sql, e.getMessage()));
+			throw new RuntimeException(e);
+		}
+		return null;
+	}
+
 	protected int executeIntegerReturningSql(final String sql, final Object... params) {
 		try (Connection conn = searchiskoDs.getConnection(); PreparedStatement statement = conn.prepareStatement(sql)) {
 			setParams(statement, params);
@@ -320,6 +680,10 @@ public class JdbcContentPersistenceService implements ContentPersistenceService
 				statement.setInt(i, (Integer) param);
 			} else if (param instanceof Long) {
 				statement.setLong(i, (Long) param);
+			} else if (param instanceof byte[]) {
+				statement.setBytes(i, (byte[]) param);
+			} else if (param == null) {
+				statement.setNull(i, Types.NULL);
 			}
 			i++;
 		}
@@ -331,13 +695,16 @@ public class JdbcContentPersistenceService implements ContentPersistenceService
 
 		List<ContentTuple<String, Map<String, Object>>> content;
 		String sysContentType;
-		int beginIndex = 0;
+		/**
+		 * id of last row read for this page, next page starts after it. null if no row was read.
+		 */
+		String lastId;
 
-		protected ListRequestImpl(String sysContentType, int beginIndex,
+		protected ListRequestImpl(String sysContentType, String lastId,
 				List<ContentTuple<String, Map<String, Object>>> content) {
 			super();
 			this.sysContentType = sysContentType;
-			this.beginIndex = beginIndex;
+			this.lastId = lastId;
 			this.content = content;
 		}
 
@@ -355,39 +722,121 @@ public class JdbcContentPersistenceService implements ContentPersistenceService
 
 	@Override
 	public ListRequest listRequestInit(String sysContentType) {
-		return listRequestImpl(sysContentType, 0);
+		return listRequestImpl(sysContentType, null);
 	}
 
 	@Override
 	public ListRequest listRequestNext(ListRequest previous) {
 		ListRequestImpl lr = (ListRequestImpl) previous;
-		return listRequestImpl(lr.sysContentType, lr.beginIndex + LIST_PAGE_SIZE);
+		if (lr.lastId == null) {
+			// previous page was empty so we are at the end
+			return new ListRequestImpl(lr.sysContentType, null, new ArrayList<ContentTuple<String, Map<String, Object>>>());
+		}
+		return listRequestImpl(lr.sysContentType, lr.lastId);
 	}
 
-	protected ListRequest listRequestImpl(String sysContentType, int beginIndex) {
+	/**
+	 * Read one page of content. Keyset pagination is used (rows with id greater than id of last row of previous page),
+	 * so cost of page read doesn't depend on position of page in table.
+	 * 
+	 * @param sysContentType to read content for
+	 * @param afterId id of last row of previous page, null for first page
+	 * @return list request with page of content
+	 */
+	protected ListRequest listRequestImpl(String sysContentType, String afterId) {
 		List<ContentTuple<String, Map<String, Object>>> content = new ArrayList<>(10);
+		String lastId = null;
+		for (ContentTuple<String, String> row : readJsonDataPage(sysContentType, afterId)) {
+			lastId = row.getId();
+			Map<String, Object> parsed = parseJsonData(sysContentType, row);
+			if (parsed != null)
+				content.add(new ContentTuple<>(row.getId(), parsed));
+		}
+		return new ListRequestImpl(sysContentType, lastId, content);
+	}
+
+	/**
+	 * Pages of content are read same way as in {@link #listRequestImpl(String, String)}, but only raw JSON data are kept
+	 * for page and each content object is parsed just before it is passed to handler. No database cursor is kept open
+	 * while handler works, which may take long time (eg. bulk indexing) and cause database server side timeouts.
+	 */
+	@Override
+	@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+	public int streamContent(String sysContentType, ContentStreamHandler handler) {
+		int count = 0;
+		String lastId = null;
+		List<ContentTuple<String, String>> page;
+		do {
+			page = readJsonDataPage(sysContentType, lastId);
+			for (ContentTuple<String, String> row : page) {
+				lastId = row.getId();
+				Map<String, Object> content = parseJsonData(sysContentType, row);
+				if (content == null)
+					continue;
+				count++;
+				if (!handler.handle(new ContentTuple<>(row.getId(), content)))
+					return count;
+			}
+		} while (page.size() >= LIST_PAGE_SIZE);
+		return count;
+	}
+
+	/**
+	 * Read one page of raw JSON data of content, ordered by id.
+	 * 
+	 * @param sysContentType to read content for
+	 * @param afterId id of last row of previous page, null for first page
+	 * @return list of id and JSON data tuples, never null
+	 */
+	protected List<ContentTuple<String, String>> readJsonDataPage(String sysContentType, String afterId) {
+		List<ContentTuple<String, String>> ret = new ArrayList<>();
 		String tableName = getTableName(sysContentType);
-		if (checkTableExists(tableName)) {
-			final String sql = String.format("select json_data, id from %s order by id limit %d offset %d", tableName,
-					LIST_PAGE_SIZE, beginIndex);
-			try (Connection conn = searchiskoDs.getConnection(); PreparedStatement statement = conn.prepareStatement(sql)) {
-				try (ResultSet rs = statement.executeQuery()) {
-					while (rs.next()) {
-						String id = rs.getString(2);
-						try {
-							content.add(new ContentTuple<>(id, SearchUtils.convertToJsonMap(rs.getString(1))));
-						} catch (IOException e) {
-							log.severe("Could not convert content to JSON object for contentType='" + sysContentType + "' and id='"
-									+ id + "' due: " + e.getMessage());
-						}
+		if (!checkTableExists(tableName))
+			return ret;
+		final int compressedIdx = hasColumn(tableName, COLUMN_COMPRESSED) ? 3 : 0;
+		final String columns = compressedIdx > 0 ? "json_data, id, json_data_compressed" : "json_data, id";
+		final String sql;
+		if (afterId == null) {
+			sql = String.format("select %s from %s order by id limit %d", columns, tableName, LIST_PAGE_SIZE);
+		} else {
+			sql = String.format("select %s from %s where id > ? order by id limit %d", columns, tableName, LIST_PAGE_SIZE);
+		}
+		try (Connection conn = searchiskoDs.getConnection();
+				PreparedStatement statement = conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+						ResultSet.CONCUR_READ_ONLY)) {
+			if (afterId != null) {
+				statement.setString(1, afterId);
+			}
+			try (ResultSet rs = statement.executeQuery()) {
+				while (rs.next()) {
+					String id = rs.getString(2);
+					try {
+						ret.add(new ContentTuple<>(id, readJsonData(rs, 1, compressedIdx)));
+					} catch (IOException e) {
+						log.severe("Could not read content data for contentType='" + sysContentType + "' and id='" + id
+								+ "' due: " + e.getMessage());
+						// keep row so next page starts after it
+						ret.add(new ContentTuple<String, String>(id, null));
 					}
 				}
-			} catch (SQLException e) {
-				log.severe(String.format("Error executing statement '%s' due error %s", sql, e.getMessage()));
-				throw new RuntimeException(e);
 			}
+		} catch (SQLException e) {
+			log.severe(String.format("Error executing statement '%s' due error %s", sql, e.getMessage()));
+			throw new RuntimeException(e);
+		}
+		return ret;
+	}
+
+	private Map<String, Object> parseJsonData(String sysContentType, ContentTuple<String, String> row) {
+		if (row.getContent() == null)
+			return null;
+		try {
+			return SearchUtils.convertToJsonMap(row.getContent());
+		} catch (IOException e) {
+			log.severe("Could not convert content to JSON object for contentType='" + sysContentType + "' and id='"
+					+ row.getId() + "' due: " + e.getMessage());
+			return null;
 		}
-		return new ListRequestImpl(sysContentType, beginIndex, content);
 	}
 
 	public DataSource getDataSource() {
@@ -0,0 +1,295 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.searchisko.persistence.service;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.ejb.LocalBean;
+import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.naming.NamingException;
+import javax.persistence.EntityManager;
+import javax.sql.DataSource;
+
+import org.elasticsearch.common.Strings;
+import org.searchisko.api.util.CdiHelper;
+import org.searchisko.api.util.SearchUtils;
+
+/**
+ * Durable queue of content pushed asynchronously, waiting to be processed. Content is stored in
+ * <code>ingest_queue</code> table of Searchisko datasource, so it survives restart of the node and can be processed by
+ * any node of the cluster. Content pushed in one request forms one queue identified by id, content objects are read
+ * from it in order they were pushed and removed after they are processed.<br>
+ * We use raw JDBC here same way as in {@link JdbcContentPersistenceService}. It's session bean to work with
+ * transactions.
+ *
+ * @author Vlastimil Elias (velias at redhat dot com)
+ * @see org.searchisko.api.reindexer.ProcessIngestJobTask
+ */
+@Named
+@Stateless
+@LocalBean
+public class JdbcIngestQueueService {
+
+	protected static final String TABLE_NAME = "ingest_queue";
+
+	private static final String TABLE_STRUCTURE_DDL = " ( queue_id varchar(50) not null, seq int not null, content_id varchar(200) not null, json_data longtext, created timestamp, primary key (queue_id, seq) )";
+
+	/**
+	 * Flag if table exists, so we do not need to check it in DB again.
+	 */
+	protected static volatile boolean tableExists = false;
+
+	@Inject
+	protected Logger log;
+
+	@Inject
+	protected EntityManager em;
+
+	protected DataSource searchiskoDs;
+
+	@PostConstruct
+	public void init() throws NamingException {
+		searchiskoDs = CdiHelper.getDefaultDataSource(em);
+	}
+
+	/**
+	 * Put content objects into new queue if size of all queues doesn't exceed given limit then. Size is checked after
+	 * content is inserted, in the same transaction, so two concurrent requests can't both pass the check based on the
+	 * same stale count. Content inserted by other transactions not committed yet is not visible to the check, so limit
+	 * can be exceeded by such concurrent requests - it is soft limit protecting the database from unbounded growth.
+	 *
+	 * @param contentStructure key is content id, value is content. Values must be JSON structures.
+	 * @param maxSize max number of content objects in all queues
+	 * @return id of queue content was put into, null if content was not put into queue because limit would be exceeded
+	 */
+	@TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+	public String enqueue(Map<String, Map<String, Object>> contentStructure, int maxSize) {
+		ensureTableExists();
+		String queueId = Strings.randomBase64UUID();
+		String sql = String.format(
+				"insert into %s (queue_id, seq, content_id, json_data, created) values (?, ?, ?, ?, ?)", TABLE_NAME);
+		try (final Connection conn = searchiskoDs.getConnection()) {
+			try (final PreparedStatement statement = conn.prepareStatement(sql)) {
+				Timestamp created = new Timestamp(System.currentTimeMillis());
+				int seq = 0;
+				for (Map.Entry<String, Map<String, Object>> e : contentStructure.entrySet()) {
+					statement.setString(1, queueId);
+					statement.setInt(2, seq++);
+					statement.setString(3, e.getKey());
+					statement.setString(4, SearchUtils.convertJsonMapToString(e.getValue()));
+					statement.setTimestamp(5, created);
+					statement.addBatch();
+				}
+				statement.executeBatch();
+			}
+			int size;
+			try (final PreparedStatement statement = conn.prepareStatement(String.format("select count(*) from %s",
+					TABLE_NAME)); final ResultSet rs = statement.executeQuery()) {
+				size = rs.next() ? rs.getInt(1) : 0;
+			}
+			if (size > maxSize) {
+				try (final PreparedStatement statement = conn.prepareStatement(String.format(
+						"delete from %s where queue_id = ?", TABLE_NAME))) {
+					statement.setString(1, queueId);
+					statement.execute();
+				}
+				log.log(Level.FINE, "Ingest queue is full, {0} content objects not accepted", contentStructure.size());
+				return null;
+			}
+		} catch (SQLException | IOException e) {
+			log.severe(String.format("Error while storing content into ingest queue -- %s", e.getMessage()));
+			throw new RuntimeException(e);
+		}
+		log.log(Level.FINE, "{0} content objects put into ingest queue {1}", new Object[] { contentStructure.size(),
+				queueId });
+		return queueId;
+	}
+
+	/**
+	 * Read next batch of content objects from queue. They stay in queue until {@link #remove(String, Collection)} is
+	 * called for them.
+	 *
+	 * @param queueId to read from
+	 * @param size max number of content objects to read
+	 * @return key is content id, value is content. Ordered same way as content was put into queue. Empty if queue is
+	 *         empty.
+	 */
+	public Map<String, Object> readBatch(String queueId, int size) {
+		ensureTableExists();
+		Map<String, Object> ret = new LinkedHashMap<>();
+		String sql = String.format("select content_id, json_data from %s where queue_id = ? order by seq", TABLE_NAME);
+		try (final Connection conn = searchiskoDs.getConnection();
+				final PreparedStatement statement = conn.prepareStatement(sql)) {
+			statement.setMaxRows(size);
+			statement.setString(1, queueId);
+			try (final ResultSet rs = statement.executeQuery()) {
+				while (rs.next()) {
+					String contentId = rs.getString(1);
+					try {
+						ret.put(contentId, SearchUtils.convertToJsonMap(rs.getString(2)));
+					} catch (IOException e) {
+						log.warning(String.format("JSON data are not valid in ingest queue '%s' for content id '%s': %s",
+								queueId, contentId, e.getMessage()));
+						ret.put(contentId, null);
+					}
+				}
+			}
+		} catch (SQLException e) {
+			log.severe(String.format("Error while reading ingest queue '%s' -- %s", queueId, e.getMessage()));
+			throw new RuntimeException(e);
+		}
+		return ret;
+	}
+
+	/**
+	 * Remove processed content objects from queue.
+	 *
+	 * @param queueId to remove from
+	 * @param contentIds of processed content objects
+	 */
+	@TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+	public void remove(String queueId, Collection<String> contentIds) {
+		if (contentIds == null || contentIds.isEmpty())
+			return;
+		ensureTableExists();
+		String sql = String.format("delete from %s where queue_id = ? and content_id = ?", TABLE_NAME);
+		try (final Connection conn = searchiskoDs.getConnection();
+				final PreparedStatement statement = conn.prepareStatement(sql)) {
+			for (String contentId : contentIds) {
+				statement.setString(1, queueId);
+				statement.setString(2, contentId);
+				statement.addBatch();
+			}
+			statement.executeBatch();
+		} catch (SQLException e) {
+			log.severe(String.format("Error while removing content from ingest queue '%s' -- %s", queueId,
+					e.getMessage()));
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Remove whole queue.
+	 *
+	 * @param queueId to remove
+	 */
+	@TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+	public void removeQueue(String queueId) {
+		ensureTableExists();
+		executeUpdate(String.format("delete from %s where queue_id = ?", TABLE_NAME), queueId);
+	}
+
+	/**
+	 * List ids of queues created before given date.
+	 *
+	 * @param createdBefore date to list queues created before
+	 * @return ids of queues
+	 */
+	public Set<String> listQueueIds(Date createdBefore) {
+		ensureTableExists();
+		Set<String> ret = new LinkedHashSet<>();
+		String sql = String.format("select distinct queue_id from %s where created < ?", TABLE_NAME);
+		try (final Connection conn = searchiskoDs.getConnection();
+				final PreparedStatement statement = conn.prepareStatement(sql)) {
+			statement.setTimestamp(1, new Timestamp(createdBefore.getTime()));
+			try (final ResultSet rs = statement.executeQuery()) {
+				while (rs.next()) {
+					ret.add(rs.getString(1));
+				}
+			}
+		} catch (SQLException e) {
+			log.severe(String.format("Error executing statement -- %s -- Error -- %s", sql, e.getMessage()));
+			throw new RuntimeException(e);
+		}
+		return ret;
+	}
+
+	/**
+	 * Count content objects waiting in queue.
+	 *
+	 * @param queueId to count content in, if null then content in all queues is counted
+	 * @return number of content objects in queue
+	 */
+	public int count(String queueId) {
+		ensureTableExists();
+		String sql = String.format("select count(*) from %s", TABLE_NAME);
+		if (queueId != null)
+			sql = sql + " where queue_id = ?";
+		try (final Connection conn = searchiskoDs.getConnection();
+				final PreparedStatement statement = conn.prepareStatement(sql)) {
+			if (queueId != null)
+				statement.setString(1, queueId);
+			try (final ResultSet rs = statement.executeQuery()) {
+				if (rs.next())
+					return rs.getInt(1);
+			}
+		} catch (SQLException e) {
+			log.severe(String.format("Error executing statement -- %s -- Error -- %s", sql, e.getMessage()));
+			throw new RuntimeException(e);
+		}
+		return 0;
+	}
+
+	/**
+	 * Check if queue table exists in DB and create it if not.
+	 */
+	protected void ensureTableExists() {
+		if (tableExists)
+			return;
+		synchronized (TABLE_STRUCTURE_DDL) {
+			if (tableExists)
+				return;
+			String sql = "select count(*) from INFORMATION_SCHEMA.tables where upper(table_name) = ?";
+			try (final Connection conn = searchiskoDs.getConnection();
+					final PreparedStatement statement = conn.prepareStatement(sql)) {
+				statement.setString(1, TABLE_NAME.toUpperCase());
+				try (final ResultSet rs = statement.executeQuery()) {
+					tableExists = rs.next() && rs.getInt(1) > 0;
+				}
+			} catch (SQLException e) {
+				log.severe(String.format("Error executing statement -- %s -- Error -- %s", sql, e.getMessage()));
+				throw new RuntimeException(e);
+			}
+			if (!tableExists) {
+				executeUpdate(String.format("create table %s%s", TABLE_NAME, TABLE_STRUCTURE_DDL));
+				tableExists = true;
+			}
+		}
+	}
+
+	protected void executeUpdate(final String sql, final String... params) {
+		try (final Connection conn = searchiskoDs.getConnection();
+				final PreparedStatement statement = conn.prepareStatement(sql)) {
+			int i = 1;
+			for (String param : params) {
+				statement.setString(i++, param);
+			}
+			statement.execute();
+		} catch (SQLException e) {
+			log.severe(String.format("Error executing SQL statement -- %s -- Error -- %s", sql, e.getMessage()));
+			throw new RuntimeException(e);
+		}
+	}
+
+}
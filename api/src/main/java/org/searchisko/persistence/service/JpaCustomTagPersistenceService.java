@@ -6,8 +6,13 @@
 package org.searchisko.persistence.service;
 
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+
 import javax.ejb.LocalBean;
 import javax.ejb.Stateless;
 import javax.inject.Inject;
@@ -28,6 +33,11 @@ import org.searchisko.persistence.jpa.model.Tag;
 @LocalBean
 public class JpaCustomTagPersistenceService implements CustomTagPersistenceService {
 
+	/**
+	 * Max number of content identifiers used in one query.
+	 */
+	protected static final int MAX_IDS_IN_QUERY = 500;
+
 	@Inject
 	protected EntityManager em;
 
@@ -42,6 +52,33 @@ public class JpaCustomTagPersistenceService implements CustomTagPersistenceServi
 		return q.getResultList();
 	}
 
+	@Override
+	public Map<String, List<Tag>> getTagsByContents(Collection<String> contentIds) {
+		Map<String, List<Tag>> ret = new HashMap<>();
+		if (contentIds == null || contentIds.isEmpty())
+			return ret;
+		List<String> ids = new ArrayList<>(contentIds);
+		// number of parameters in one query is limited by database
+		for (int i = 0; i < ids.size(); i += MAX_IDS_IN_QUERY) {
+			List<Tag> tags = em.createQuery("SELECT t FROM Tag t WHERE t.contentId IN ?1", Tag.class)
+					.setParameter(1, ids.subList(i, Math.min(i + MAX_IDS_IN_QUERY, ids.size()))).getResultList();
+			for (Tag tag : tags) {
+				List<Tag> contentTags = ret.get(tag.getContentId());
+				if (contentTags == null) {
+					contentTags = new ArrayList<>();
+					ret.put(tag.getContentId(), contentTags);
+				}
+				contentTags.add(tag);
+			}
+		}
+		return ret;
+	}
+
+	@Override
+	public List<Tag> getAllTags() {
+		return em.createQuery("SELECT t FROM Tag t", Tag.class).getResultList();
+	}
+
 	@Override
 	public List<Tag> getTagsByContentType(String contentType) {
 		return em.createQuery("SELECT t FROM Tag t WHERE SUBSTRING(t.contentId, 1, ?1) = ?2")
@@ -17,6 +17,7 @@ import javax.persistence.EntityNotFoundException;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Path;
 import javax.persistence.criteria.Root;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.StreamingOutput;
@@ -177,11 +178,14 @@ public class JpaEntityService<T> implements EntityService {
 	protected static class ListRequestImpl implements ListRequest {
 
 		List<ContentTuple<String, Map<String, Object>>> content;
-		int beginIndex = 0;
+		/**
+		 * id of last entity read for this page, next page starts after it. null if no entity was read.
+		 */
+		String lastId;
 
-		protected ListRequestImpl(int beginIndex, List<ContentTuple<String, Map<String, Object>>> content) {
+		protected ListRequestImpl(String lastId, List<ContentTuple<String, Map<String, Object>>> content) {
 			super();
-			this.beginIndex = beginIndex;
+			this.lastId = lastId;
 			this.content = content;
 		}
 
@@ -199,23 +203,44 @@ public class JpaEntityService<T> implements EntityService {
 
 	@Override
 	public ListRequest listRequestInit() {
-		return listRequestImpl(0);
+		return listRequestImpl(null);
 	}
 
 	@Override
 	public ListRequest listRequestNext(ListRequest previous) {
 		ListRequestImpl lr = (ListRequestImpl) previous;
-		return listRequestImpl(lr.beginIndex + LIST_PAGE_SIZE);
+		if (lr.lastId == null) {
+			// previous page was empty so we are at the end
+			return new ListRequestImpl(null, new ArrayList<ContentTuple<String, Map<String, Object>>>());
+		}
+		return listRequestImpl(lr.lastId);
 	}
 
-	protected ListRequest listRequestImpl(int beginIndex) {
+	/**
+	 * Read one page of entities. Keyset pagination is used (entities with id greater than id of last entity of previous
+	 * page), so cost of page read doesn't depend on position of page.
+	 * 
+	 * @param afterId id of last entity of previous page, null for first page
+	 * @return list request with page of content
+	 */
+	protected ListRequest listRequestImpl(String afterId) {
 
 		CriteriaBuilder cb = em.getCriteriaBuilder();
-		final List<T> result = listEntities(cb, beginIndex, LIST_PAGE_SIZE);
+		CriteriaQuery<T> queryList = cb.createQuery(entityType);
+		Root<T> root = queryList.from(entityType);
+		queryList.select(root);
+		Path<String> idPath = root.get(converter.getEntityIdFieldName());
+		if (afterId != null) {
+			queryList.where(cb.greaterThan(idPath, afterId));
+		}
+		queryList.orderBy(cb.asc(idPath));
+		final List<T> result = em.createQuery(queryList).setMaxResults(LIST_PAGE_SIZE).getResultList();
 
 		List<ContentTuple<String, Map<String, Object>>> content = new ArrayList<>(10);
+		String lastId = null;
 
 		for (T data : result) {
+			lastId = converter.getId(data);
 			try {
 				content.add(converter.convertToContentTuple(data));
 			} catch (IOException e) {
@@ -224,7 +249,7 @@ public class JpaEntityService<T> implements EntityService {
 			}
 		}
 
-		return new ListRequestImpl(beginIndex, content);
+		return new ListRequestImpl(lastId, content);
 	}
 
 }
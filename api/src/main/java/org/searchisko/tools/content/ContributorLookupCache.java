@@ -0,0 +1,183 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.searchisko.tools.content;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Size bounded cache of contributor codes looked up by {@link ContributorMappingPreprocessor}. Key is looked up value
+ * (together with fields it is searched in), value is contributor code. Values not found in contributors index are
+ * cached too as {@link #MISSING} (negative caching), so repeated lookups of unknown values do not hit search index.
+ * <p>
+ * Least recently used entries are evicted when cache is full, entries expire after <code>ttl</code>. Cache is
+ * switched off until configured by {@link #configure(int, long)} with size greater than 0.
+ *
+ * @author Vlastimil Elias (velias at redhat dot com)
+ */
+public class ContributorLookupCache {
+
+	/**
+	 * Marker of cached value which is not found in contributors index.
+	 */
+	public static final String MISSING = new String("MISSING");
+
+	/**
+	 * Max number of cached values. Cache is switched off if lower than 1.
+	 */
+	protected volatile int maxSize = 0;
+
+	/**
+	 * Time to Live for cached value [ms].
+	 */
+	protected volatile long ttl = 0;
+
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong negativeHitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+	private final AtomicLong evictionCount = new AtomicLong();
+	private final AtomicLong flushCount = new AtomicLong();
+
+	// increased on each flush so values looked up before it are not cached
+	private long flushStamp = 0;
+
+	// access ordered so least recently used entry is evicted first
+	private final Map<String, CacheItem> cache = new LinkedHashMap<String, CacheItem>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, CacheItem> eldest) {
+			if (size() > maxSize) {
+				evictionCount.incrementAndGet();
+				return true;
+			}
+			return false;
+		}
+	};
+
+	/**
+	 * Configure cache. Actual content of cache is flushed.
+	 *
+	 * @param maxSize max number of cached values, cache is switched off if lower than 1
+	 * @param ttl time to live of cached value [ms]
+	 */
+	public void configure(int maxSize, long ttl) {
+		synchronized (cache) {
+			this.maxSize = maxSize;
+			this.ttl = ttl;
+			flushStamp++;
+			cache.clear();
+		}
+	}
+
+	/**
+	 * @return true if cache is enabled so it is used
+	 */
+	public boolean isEnabled() {
+		return maxSize > 0 && ttl > 0;
+	}
+
+	/**
+	 * Flush all cached values. Called when contributors change.
+	 */
+	public void flush() {
+		synchronized (cache) {
+			flushStamp++;
+			cache.clear();
+		}
+		flushCount.incrementAndGet();
+	}
+
+	/**
+	 * Get cached contributor code.
+	 *
+	 * @param key of looked up value
+	 * @return contributor code, {@link #MISSING} if value is not found in index, or null if not cached
+	 */
+	public String get(String key) {
+		if (key == null || !isEnabled())
+			return null;
+		synchronized (cache) {
+			CacheItem ci = cache.get(key);
+			if (ci != null) {
+				if (ci.validTo > System.currentTimeMillis()) {
+					hitCount.incrementAndGet();
+					if (ci.value == MISSING)
+						negativeHitCount.incrementAndGet();
+					return ci.value;
+				}
+				cache.remove(key);
+			}
+		}
+		missCount.incrementAndGet();
+		return null;
+	}
+
+	/**
+	 * Get stamp identifying actual content of cache. Must be obtained before value is looked up in index, and passed to
+	 * {@link #put(String, String, long)}, so value looked up before flush is not cached.
+	 *
+	 * @return stamp
+	 */
+	public long getStamp() {
+		synchronized (cache) {
+			return flushStamp;
+		}
+	}
+
+	/**
+	 * Put contributor code into cache.
+	 *
+	 * @param key of looked up value
+	 * @param code of contributor, {@link #MISSING} if value is not found in index
+	 * @param stamp obtained by {@link #getStamp()} before value was looked up in index
+	 */
+	public void put(String key, String code, long stamp) {
+		if (key == null || code == null || !isEnabled())
+			return;
+		CacheItem ci = new CacheItem(code, System.currentTimeMillis() + ttl);
+		synchronized (cache) {
+			if (stamp == flushStamp)
+				cache.put(key, ci);
+		}
+	}
+
+	/**
+	 * Get statistics of this cache usage.
+	 *
+	 * @return map with statistics
+	 */
+	public Map<String, Object> getStatistics() {
+		Map<String, Object> ret = new LinkedHashMap<>();
+		ret.put("enabled", isEnabled());
+		ret.put("max_size", maxSize);
+		ret.put("ttl", ttl);
+		synchronized (cache) {
+			ret.put("size", cache.size());
+		}
+		long hits = hitCount.get();
+		long misses = missCount.get();
+		ret.put("hit_count", hits);
+		ret.put("negative_hit_count", negativeHitCount.get());
+		ret.put("miss_count", misses);
+		ret.put("hit_rate", (hits + misses) > 0 ? (double) hits / (hits + misses) : 0d);
+		ret.put("eviction_count", evictionCount.get());
+		ret.put("flush_count", flushCount.get());
+		return ret;
+	}
+
+	private static class CacheItem {
+		protected final long validTo;
+		protected final String value;
+
+		protected CacheItem(String value, long validTo) {
+			this.value = value;
+			this.validTo = validTo;
+		}
+	}
+
+}
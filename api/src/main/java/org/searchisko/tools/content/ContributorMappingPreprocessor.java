@@ -10,9 +10,17 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.common.settings.SettingsException;
+import org.elasticsearch.common.xcontent.support.XContentMapValues;
+import org.elasticsearch.index.query.FilterBuilder;
+import org.elasticsearch.index.query.FilterBuilders;
+import org.elasticsearch.index.query.OrFilterBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.indices.IndexMissingException;
 import org.jboss.elasticsearch.tools.content.ESLookupValuePreprocessor;
+import org.jboss.elasticsearch.tools.content.PreprocessChainContext;
 import org.searchisko.api.ContentObjectFields;
 import org.searchisko.api.service.ContributorService;
 
@@ -21,24 +29,33 @@ import org.searchisko.api.service.ContributorService;
  * <code>source_field</code>/<code>source_value</code> and <code>idx_search_field</code> config params in settings only
  * (and optionally <code>source_bases</code>). You can change <code>result_mapping</code> if you want, but default
  * config which fills {@value ContentObjectFields#SYS_CONTRIBUTORS}.
- * 
+ *
  * Example of configuration for this preprocessor for lookup of multiple values of same structure:
- * 
+ *
  * <pre>
- * { 
+ * {
  *     "name"     : "Author mapper",
  *     "class"    : "org.searchisko.tools.content.ContributorMappingPreprocessor",
  *     "settings" : {
  *         "source_field"      : "author.email",
  *         "idx_search_field"  : "email"
- *     } 
+ *     }
  * }
  * </pre>
- * 
+ *
+ * Resolved contributor codes (and values not found in contributors index) are cached in shared
+ * {@link ContributorLookupCache} available from {@link #getLookupCache()}, which is configured and flushed on
+ * contributor changes by {@link org.searchisko.api.service.ContributorLookupCacheService}. Cache is used for
+ * configuration with <code>source_field</code> where all <code>result_mapping</code> entries take contributor code
+ * and looked up values are non empty strings, other configurations and data are handled by
+ * {@link ESLookupValuePreprocessor} directly. Code shared with it is in {@link LookupPreprocessorUtils}.
+ *
  * @author Vlastimil Elias (velias at redhat dot com)
  */
 public class ContributorMappingPreprocessor extends ESLookupValuePreprocessor {
 
+	protected static final ContributorLookupCache lookupCache = new ContributorLookupCache();
+
 	protected static final List<Map<String, String>> resultMapping = new ArrayList<>();
 	static {
 		Map<String, String> rm_code = new HashMap<>();
@@ -47,6 +64,8 @@ public class ContributorMappingPreprocessor extends ESLookupValuePreprocessor {
 		resultMapping.add(rm_code);
 	}
 
+	protected Client lookupClient;
+
 	@Override
 	public void init(String name, Client client, Map<String, Object> settings) throws SettingsException {
 		settings.put(CFG_index_name, ContributorService.SEARCH_INDEX_NAME);
@@ -56,5 +75,113 @@ public class ContributorMappingPreprocessor extends ESLookupValuePreprocessor {
 			settings.put(CFG_result_mapping, resultMapping);
 		}
 		super.init(name, client, settings);
+		lookupClient = client;
+	}
+
+	@Override
+	public Map<String, Object> preprocessData(Map<String, Object> data, PreprocessChainContext chainContext) {
+		if (data == null || !lookupCache.isEnabled() || getSourceField() == null || !isCodeOnlyResultMapping()) {
+			return super.preprocessData(data, chainContext);
+		}
+
+		List<Map<String, Object>> bases = LookupPreprocessorUtils.collectSourceBases(data, getSourceBases());
+		if (bases == null) {
+			return super.preprocessData(data, chainContext);
+		}
+		for (Map<String, Object> base : bases) {
+			Object sourceValue = XContentMapValues.extractValue(getSourceField(), base);
+			if (sourceValue != null && (!(sourceValue instanceof String) || ((String) sourceValue).trim().isEmpty())) {
+				return super.preprocessData(data, chainContext);
+			}
+		}
+
+		for (Map<String, Object> base : bases) {
+			String sourceValue = (String) XContentMapValues.extractValue(getSourceField(), base);
+			String code = null;
+			if (sourceValue != null) {
+				code = lookupContributorCode(sourceValue);
+				if (code == null) {
+					chainContext.addDataWarning(getName(), "Value for field '" + getSourceField()
+							+ "' not found in contributors index: " + sourceValue);
+				}
+			}
+			for (Map<String, String> mapping : getResultMapping()) {
+				Object value = code;
+				if (value == null && mapping.get(CFG_value_default) != null) {
+					value = LookupPreprocessorUtils.replacePlaceholders(mapping.get(CFG_value_default), base);
+				}
+				if (value != null) {
+					LookupPreprocessorUtils.putLookupResultValue(base, mapping.get(CFG_target_field), value);
+				}
+			}
+		}
+		return data;
+	}
+
+	/**
+	 * Get contributor code for value. Cached code is used if available, contributors index is searched otherwise and
+	 * result is cached.
+	 *
+	 * @param value to lookup contributor for
+	 * @return contributor code or null if contributor is not found
+	 */
+	protected String lookupContributorCode(String value) {
+		String key = getIdxSearchField() + ":" + value;
+		String code = lookupCache.get(key);
+		if (code == null) {
+			long stamp = lookupCache.getStamp();
+			code = searchContributorCode(value);
+			if (code == null)
+				code = ContributorLookupCache.MISSING;
+			lookupCache.put(key, code, stamp);
+		}
+		return code == ContributorLookupCache.MISSING ? null : code;
+	}
+
+	/**
+	 * Search contributors index for contributor code.
+	 *
+	 * @param value to lookup contributor for
+	 * @return contributor code or null if contributor is not found
+	 */
+	protected String searchContributorCode(String value) {
+		FilterBuilder filter;
+		if (getIdxSearchField().size() == 1) {
+			filter = FilterBuilders.termFilter(getIdxSearchField().get(0), value);
+		} else {
+			OrFilterBuilder or = FilterBuilders.orFilter();
+			for (String idxSearchField : getIdxSearchField()) {
+				or.add(FilterBuilders.termFilter(idxSearchField, value));
+			}
+			filter = or;
+		}
+		try {
+			SearchResponse sr = lookupClient.prepareSearch(getIndexName()).setTypes(getIndexType())
+					.setQuery(QueryBuilders.filteredQuery(QueryBuilders.matchAllQuery(), filter)).setSize(1)
+					.setFetchSource(ContributorService.FIELD_CODE, null).execute().actionGet();
+			if (sr.getHits().getTotalHits() > 0) {
+				Object code = sr.getHits().getHits()[0].getSource().get(ContributorService.FIELD_CODE);
+				if (code instanceof String)
+					return (String) code;
+			}
+		} catch (IndexMissingException e) {
+			// no contributor exists yet
+		}
+		return null;
+	}
+
+	private boolean isCodeOnlyResultMapping() {
+		for (Map<String, String> mapping : getResultMapping()) {
+			if (!ContributorService.FIELD_CODE.equals(mapping.get(CFG_idx_result_field)))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return cache of contributor codes shared by all instances of this preprocessor
+	 */
+	public static ContributorLookupCache getLookupCache() {
+		return lookupCache;
 	}
 }
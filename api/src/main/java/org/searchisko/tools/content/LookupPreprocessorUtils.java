@@ -0,0 +1,103 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.searchisko.tools.content;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.elasticsearch.common.xcontent.support.XContentMapValues;
+
+/**
+ * Utility methods shared by lookup preprocessors which serve some lookups themselves (from in-memory snapshot or cache)
+ * instead of {@link org.jboss.elasticsearch.tools.content.ESLookupValuePreprocessor}.
+ *
+ * @author Vlastimil Elias (velias at redhat dot com)
+ * @see ProjectMappingPreprocessor
+ * @see ContributorMappingPreprocessor
+ */
+public class LookupPreprocessorUtils {
+
+	private static final Pattern PLACEHOLDER = Pattern.compile("\\{([^\\}]+)\\}");
+
+	/**
+	 * Put value into data structure, dot notation may be used in field name for nested maps.
+	 *
+	 * @param data to put value into
+	 * @param field name of field to put value into
+	 * @param value to put
+	 */
+	@SuppressWarnings("unchecked")
+	public static void putLookupResultValue(Map<String, Object> data, String field, Object value) {
+		String[] path = field.split("\\.");
+		Map<String, Object> m = data;
+		for (int i = 0; i < path.length - 1; i++) {
+			Object o = m.get(path[i]);
+			if (!(o instanceof Map)) {
+				o = new HashMap<String, Object>();
+				m.put(path[i], o);
+			}
+			m = (Map<String, Object>) o;
+		}
+		m.put(path[path.length - 1], value);
+	}
+
+	/**
+	 * Collect structures lookup is performed for.
+	 *
+	 * @param data to collect structures from
+	 * @param sourceBases <code>source_bases</code> configuration, data itself is returned if null or empty
+	 * @return list of structures, null if some base contains value which is not a {@link Map}, so lookup must be
+	 *         performed by {@link org.jboss.elasticsearch.tools.content.ESLookupValuePreprocessor}
+	 */
+	@SuppressWarnings("unchecked")
+	public static List<Map<String, Object>> collectSourceBases(Map<String, Object> data, List<String> sourceBases) {
+		List<Map<String, Object>> ret = new ArrayList<>();
+		if (sourceBases == null || sourceBases.isEmpty()) {
+			ret.add(data);
+			return ret;
+		}
+		for (String sourceBase : sourceBases) {
+			Object o = XContentMapValues.extractValue(sourceBase, data);
+			if (o == null)
+				continue;
+			if (o instanceof Map) {
+				ret.add((Map<String, Object>) o);
+			} else if (o instanceof List) {
+				for (Object item : (List<Object>) o) {
+					if (!(item instanceof Map))
+						return null;
+					ret.add((Map<String, Object>) item);
+				}
+			} else {
+				return null;
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Replace <code>{field}</code> placeholders in <code>value_default</code> pattern by values from data structure.
+	 *
+	 * @param pattern to replace placeholders in
+	 * @param data to take values from, dot notation may be used in field name for nested maps
+	 * @return pattern with replaced placeholders, empty string is used for missing values
+	 */
+	public static String replacePlaceholders(String pattern, Map<String, Object> data) {
+		Matcher m = PLACEHOLDER.matcher(pattern);
+		StringBuffer sb = new StringBuffer();
+		while (m.find()) {
+			Object v = XContentMapValues.extractValue(m.group(1), data);
+			m.appendReplacement(sb, Matcher.quoteReplacement(v != null ? v.toString() : ""));
+		}
+		m.appendTail(sb);
+		return sb.toString();
+	}
+
+}
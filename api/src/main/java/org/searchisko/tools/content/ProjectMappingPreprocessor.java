@@ -12,9 +12,12 @@ import java.util.Map;
 
 import org.elasticsearch.client.Client;
 import org.elasticsearch.common.settings.SettingsException;
+import org.elasticsearch.common.xcontent.support.XContentMapValues;
 import org.jboss.elasticsearch.tools.content.ESLookupValuePreprocessor;
+import org.jboss.elasticsearch.tools.content.PreprocessChainContext;
 import org.searchisko.api.ContentObjectFields;
 import org.searchisko.api.service.ProjectService;
+import org.searchisko.api.service.ProjectsSnapshot;
 
 /**
  * {@link ESLookupValuePreprocessor} preconfigured for project normalization. You have to define
@@ -36,6 +39,11 @@ import org.searchisko.api.service.ProjectService;
  * }
  * </pre>
  * 
+ * Lookup is served from in-memory {@link ProjectsSnapshot} held by {@link ProjectService} if it is available, for
+ * configuration with <code>source_field</code> and without <code>source_bases</code>. Search index is used if project
+ * is not found in snapshot (so <code>value_default</code> and warnings are handled same way as before), and for other
+ * configurations.
+ * 
  * @author Vlastimil Elias (velias at redhat dot com)
  */
 public class ProjectMappingPreprocessor extends ESLookupValuePreprocessor {
@@ -63,4 +71,41 @@ public class ProjectMappingPreprocessor extends ESLookupValuePreprocessor {
 		}
 		super.init(name, client, settings);
 	}
+
+	@Override
+	public Map<String, Object> preprocessData(Map<String, Object> data, PreprocessChainContext chainContext) {
+		ProjectsSnapshot snapshot = ProjectService.getSnapshot();
+		if (data == null || snapshot == null || getSourceField() == null
+				|| (getSourceBases() != null && !getSourceBases().isEmpty())) {
+			return super.preprocessData(data, chainContext);
+		}
+
+		Object sourceValue = XContentMapValues.extractValue(getSourceField(), data);
+		if (!(sourceValue instanceof String)) {
+			return super.preprocessData(data, chainContext);
+		}
+
+		Map<String, Object> project = null;
+		for (String idxSearchField : getIdxSearchField()) {
+			project = snapshot.findFirstByField(idxSearchField, (String) sourceValue);
+			if (project != null)
+				break;
+		}
+		if (project == null) {
+			return super.preprocessData(data, chainContext);
+		}
+
+		Map<String, Object> values = new HashMap<>();
+		for (Map<String, String> mapping : getResultMapping()) {
+			Object value = XContentMapValues.extractValue(mapping.get(CFG_idx_result_field), project);
+			if (value == null || value instanceof List || value instanceof Map) {
+				return super.preprocessData(data, chainContext);
+			}
+			values.put(mapping.get(CFG_target_field), value);
+		}
+		for (Map.Entry<String, Object> e : values.entrySet()) {
+			LookupPreprocessorUtils.putLookupResultValue(data, e.getKey(), e.getValue());
+		}
+		return data;
+	}
 }
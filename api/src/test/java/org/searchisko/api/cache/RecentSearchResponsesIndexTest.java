@@ -0,0 +1,80 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.searchisko.api.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link RecentSearchResponsesIndex}.
+ *
+ * @author Vlastimil Elias (velias at redhat dot com)
+ */
+public class RecentSearchResponsesIndexTest {
+
+	@Test
+	public void putAndContainsHit() {
+		RecentSearchResponsesIndex tested = new RecentSearchResponsesIndex(60000L, 100);
+
+		// case - unknown response
+		Assert.assertNull(tested.containsHit("uuid1", "hit1"));
+		Assert.assertNull(tested.containsHit(null, "hit1"));
+		Assert.assertNull(tested.containsHit("uuid1", null));
+
+		tested.put("uuid1", Arrays.asList("hit1", "hit2", "hit3"));
+		tested.put("uuid2", null);
+		tested.put("uuid3", new ArrayList<String>());
+		tested.put(null, Arrays.asList("hit1"));
+
+		Assert.assertTrue(tested.containsHit("uuid1", "hit1"));
+		Assert.assertTrue(tested.containsHit("uuid1", "hit3"));
+		Assert.assertFalse(tested.containsHit("uuid1", "hit4"));
+		Assert.assertFalse(tested.containsHit("uuid2", "hit1"));
+		Assert.assertFalse(tested.containsHit("uuid3", "hit1"));
+		Assert.assertNull(tested.containsHit("uuid4", "hit1"));
+
+		Map<String, Object> stats = tested.getStatistics();
+		Assert.assertEquals(3, stats.get("size"));
+		Assert.assertEquals(5L, stats.get("hit_count"));
+		Assert.assertEquals(2L, stats.get("miss_count"));
+	}
+
+	@Test
+	public void maxSize() {
+		RecentSearchResponsesIndex tested = new RecentSearchResponsesIndex(60000L, 2);
+
+		tested.put("uuid1", Arrays.asList("hit1"));
+		tested.put("uuid2", Arrays.asList("hit1"));
+		// first generation is full so it becomes previous one
+		tested.put("uuid3", Arrays.asList("hit1"));
+		Assert.assertTrue(tested.containsHit("uuid1", "hit1"));
+		Assert.assertTrue(tested.containsHit("uuid3", "hit1"));
+		tested.put("uuid4", Arrays.asList("hit1"));
+		// second generation is full so first one is dropped
+		tested.put("uuid5", Arrays.asList("hit1"));
+		Assert.assertNull(tested.containsHit("uuid1", "hit1"));
+		Assert.assertNull(tested.containsHit("uuid2", "hit1"));
+		Assert.assertTrue(tested.containsHit("uuid3", "hit1"));
+		Assert.assertTrue(tested.containsHit("uuid5", "hit1"));
+	}
+
+	@Test
+	public void window() throws InterruptedException {
+		RecentSearchResponsesIndex tested = new RecentSearchResponsesIndex(100L, 100);
+
+		tested.put("uuid1", Arrays.asList("hit1"));
+		Assert.assertTrue(tested.containsHit("uuid1", "hit1"));
+
+		// expires after two windows at most
+		Thread.sleep(250);
+		Assert.assertNull(tested.containsHit("uuid1", "hit1"));
+	}
+
+}
@@ -0,0 +1,113 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.searchisko.api.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.searchisko.api.model.SearchConfigSnapshot;
+import org.searchisko.api.service.ConfigService;
+
+/**
+ * Unit test for {@link SearchConfigCache}.
+ *
+ * @author Vlastimil Elias (velias at redhat dot com)
+ */
+public class SearchConfigCacheTest {
+
+	private SearchConfigCache getTested() {
+		SearchConfigCache tested = new SearchConfigCache();
+		tested.log = Logger.getLogger("testlogger");
+		tested.configService = Mockito.mock(ConfigService.class);
+		return tested;
+	}
+
+	@Test
+	public void getSnapshot() throws InterruptedException {
+		SearchConfigCache tested = getTested();
+		tested.ttl = 500;
+
+		Map<String, Object> queryFields = new HashMap<>();
+		queryFields.put("sys_title", "2.5");
+		Mockito.when(tested.configService.get(ConfigService.CFGNAME_SEARCH_FULLTEXT_QUERY_FIELDS)).thenReturn(queryFields);
+
+		// case - snapshot loaded
+		SearchConfigSnapshot s1 = tested.getSnapshot();
+		Assert.assertNotNull(s1);
+		Assert.assertEquals(queryFields, s1.getQueryFields());
+		Assert.assertNull(s1.getHighlightFields());
+		for (String documentName : SearchConfigCache.SNAPSHOT_DOCUMENTS) {
+			Mockito.verify(tested.configService).get(documentName);
+		}
+		Mockito.verifyNoMoreInteractions(tested.configService);
+
+		// case - snapshot served from cache
+		Assert.assertSame(s1, tested.getSnapshot());
+		Mockito.verifyNoMoreInteractions(tested.configService);
+
+		// case - snapshot expired so reloaded with new version
+		Thread.sleep(600);
+		SearchConfigSnapshot s2 = tested.getSnapshot();
+		Assert.assertNotSame(s1, s2);
+		Assert.assertTrue(s2.getVersion() > s1.getVersion());
+	}
+
+	@Test
+	public void flush() {
+		SearchConfigCache tested = getTested();
+
+		SearchConfigSnapshot s1 = tested.getSnapshot();
+		Assert.assertSame(s1, tested.getSnapshot());
+
+		tested.flush();
+		SearchConfigSnapshot s2 = tested.getSnapshot();
+		Assert.assertNotSame(s1, s2);
+		Assert.assertTrue(s2.getVersion() > s1.getVersion());
+	}
+
+	@Test
+	public void flush_duringLoad() {
+		final SearchConfigCache tested = getTested();
+
+		// case - snapshot loaded before flush is returned but not cached
+		Mockito.when(tested.configService.get(ConfigService.CFGNAME_SEARCH_FULLTEXT_QUERY_FIELDS)).thenAnswer(
+				new Answer<Map<String, Object>>() {
+					@Override
+					public Map<String, Object> answer(InvocationOnMock invocation) throws Throwable {
+						tested.flush();
+						return null;
+					}
+				});
+		SearchConfigSnapshot s1 = tested.getSnapshot();
+		Assert.assertNotNull(s1);
+
+		Mockito.reset(tested.configService);
+		SearchConfigSnapshot s2 = tested.getSnapshot();
+		Assert.assertNotSame(s1, s2);
+		Mockito.verify(tested.configService).get(ConfigService.CFGNAME_SEARCH_FULLTEXT_QUERY_FIELDS);
+
+		// case - snapshot loaded without concurrent flush is cached
+		Assert.assertSame(s2, tested.getSnapshot());
+	}
+
+	@Test
+	public void isSnapshotDocument() {
+		Assert.assertTrue(SearchConfigCache.isSnapshotDocument(ConfigService.CFGNAME_SEARCH_FULLTEXT_QUERY_FIELDS));
+		Assert.assertTrue(SearchConfigCache.isSnapshotDocument(ConfigService.CFGNAME_SEARCH_FULLTEXT_HIGHLIGHT_FIELDS));
+		Assert.assertTrue(SearchConfigCache.isSnapshotDocument(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS));
+		Assert.assertTrue(SearchConfigCache.isSnapshotDocument(ConfigService.CFGNAME_SEARCH_FULLTEXT_FILTER_FIELDS));
+		Assert.assertTrue(SearchConfigCache.isSnapshotDocument(ConfigService.CFGNAME_SEARCH_FULLTEXT_AGGREGATIONS_FIELDS));
+		Assert.assertFalse(SearchConfigCache.isSnapshotDocument(ConfigService.CFGNAME_NORMALIZATIONS));
+		Assert.assertFalse(SearchConfigCache.isSnapshotDocument("unknown"));
+	}
+
+}
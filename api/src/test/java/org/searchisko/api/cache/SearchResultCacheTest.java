@@ -0,0 +1,119 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.searchisko.api.cache;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.logging.Logger;
+
+import org.elasticsearch.action.search.SearchResponse;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.searchisko.api.model.AppConfiguration;
+import org.searchisko.api.service.AppConfigurationService;
+
+/**
+ * Unit test for {@link SearchResultCache}.
+ *
+ * @author Vlastimil Elias (velias at redhat dot com)
+ */
+public class SearchResultCacheTest {
+
+	private SearchResultCache getTested(boolean enabled, int size, int ttl) {
+		SearchResultCache tested = new SearchResultCache();
+		tested.log = Logger.getLogger("testlogger");
+		tested.appConfigurationService = Mockito.mock(AppConfigurationService.class);
+		AppConfiguration ac = new AppConfiguration("/tmp");
+		ac.setSearchResultCacheConfig(new AppConfiguration.SearchResultCacheConfig(enabled, size, ttl));
+		Mockito.when(tested.appConfigurationService.getAppConfiguration()).thenReturn(ac);
+		tested.init();
+		return tested;
+	}
+
+	@Test
+	public void init() {
+		SearchResultCache tested = getTested(true, 10, 5);
+		Assert.assertTrue(tested.isEnabled());
+		Assert.assertEquals(10, tested.maxSize);
+		Assert.assertEquals(5000L, tested.ttl);
+
+		Assert.assertFalse(getTested(false, 10, 5).isEnabled());
+		Assert.assertFalse(getTested(true, 0, 5).isEnabled());
+	}
+
+	@Test
+	public void getAndPut() throws InterruptedException {
+		SearchResultCache tested = getTested(true, 10, 5);
+		tested.ttl = 500;
+		SearchResponse r1 = Mockito.mock(SearchResponse.class);
+
+		Assert.assertNull(tested.get("k1"));
+		tested.put("k1", r1, new String[] { "idx1" }, tested.getInvalidationStamp());
+		Assert.assertSame(r1, tested.get("k1"));
+		Assert.assertNull(tested.get("k2"));
+
+		// case - null response not cached
+		tested.put("k2", null, new String[] { "idx1" }, tested.getInvalidationStamp());
+		Assert.assertNull(tested.get("k2"));
+
+		// case - expiration
+		Thread.sleep(600);
+		Assert.assertNull(tested.get("k1"));
+
+		Assert.assertEquals(1L, tested.getStatistics().get("hit_count"));
+		Assert.assertEquals(4L, tested.getStatistics().get("miss_count"));
+		Assert.assertEquals(0, tested.getStatistics().get("size"));
+	}
+
+	@Test
+	public void sizeBoundedEviction() {
+		SearchResultCache tested = getTested(true, 2, 60);
+		SearchResponse r = Mockito.mock(SearchResponse.class);
+		String[] indices = new String[] { "idx1" };
+
+		tested.put("k1", r, indices, tested.getInvalidationStamp());
+		tested.put("k2", r, indices, tested.getInvalidationStamp());
+		// k1 used so k2 is least recently used
+		Assert.assertSame(r, tested.get("k1"));
+		tested.put("k3", r, indices, tested.getInvalidationStamp());
+
+		Assert.assertSame(r, tested.get("k1"));
+		Assert.assertNull(tested.get("k2"));
+		Assert.assertSame(r, tested.get("k3"));
+		Assert.assertEquals(1L, tested.getStatistics().get("eviction_count"));
+		Assert.assertEquals(2, tested.getStatistics().get("size"));
+	}
+
+	@Test
+	public void invalidate() {
+		SearchResultCache tested = getTested(true, 10, 60);
+		SearchResponse r = Mockito.mock(SearchResponse.class);
+
+		tested.put("k1", r, new String[] { "idx1" }, tested.getInvalidationStamp());
+		tested.put("k2", r, new String[] { "idx2", "idx3" }, tested.getInvalidationStamp());
+		tested.put("k3", r, new String[] { "idx4" }, tested.getInvalidationStamp());
+
+		tested.invalidate(null);
+		tested.invalidate(Collections.<String> emptyList());
+		tested.invalidate(Arrays.asList("idx3", "idx1"));
+		Assert.assertNull(tested.get("k1"));
+		Assert.assertNull(tested.get("k2"));
+		Assert.assertSame(r, tested.get("k3"));
+		Assert.assertEquals(2L, tested.getStatistics().get("invalidation_count"));
+
+		// case - response obtained before invalidation is not cached
+		long stamp = tested.getInvalidationStamp();
+		tested.invalidate(Arrays.asList("idx5"));
+		tested.put("k1", r, new String[] { "idx1" }, stamp);
+		Assert.assertNull(tested.get("k1"));
+
+		// case - flush
+		tested.flush();
+		Assert.assertNull(tested.get("k3"));
+	}
+
+}
@@ -36,8 +36,9 @@ public class CORSWithCredentialsFilterTest {
 	private static final String M_POST = "POST";
 	private static final String M_PUT = "PUT";
 	private static final String M_DELETE = "DELETE";
+	private static final String M_PATCH = "PATCH";
 
-	private static final String[] METHODS = new String[] { M_GET, M_POST, M_PUT, M_DELETE };
+	private static final String[] METHODS = new String[] { M_GET, M_POST, M_PUT, M_DELETE, M_PATCH };
 
 	/**
 	 * CORS headers
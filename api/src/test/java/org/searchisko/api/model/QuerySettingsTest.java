@@ -0,0 +1,68 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.searchisko.api.model;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link QuerySettings}.
+ *
+ * @author Vlastimil Elias (velias at redhat dot com)
+ */
+public class QuerySettingsTest {
+
+	@Test
+	public void toCanonicalString() {
+		QuerySettings qs1 = new QuerySettings();
+		QuerySettings qs2 = new QuerySettings();
+		Assert.assertEquals(qs1.toCanonicalString(), qs2.toCanonicalString());
+
+		qs1.setQuery("query");
+		qs1.setSortBy(SortByValue.NEW);
+		qs1.setFrom(10);
+		qs1.setSize(20);
+		qs1.addField("f1");
+		qs1.addField("f2");
+		qs1.addAggregation("agg1");
+		qs1.addAggregation("agg2");
+		qs1.getFiltersInit().acknowledgeUrlFilterCandidate("project", "p1", "p2");
+		qs1.getFiltersInit().acknowledgeUrlFilterCandidate("type", "t1");
+
+		// case - order of aggregations and filter names is not significant
+		qs2.setQuery("query");
+		qs2.setSortBy(SortByValue.NEW);
+		qs2.setFrom(10);
+		qs2.setSize(20);
+		qs2.addField("f1");
+		qs2.addField("f2");
+		qs2.addAggregation("agg2");
+		qs2.addAggregation("agg1");
+		qs2.getFiltersInit().acknowledgeUrlFilterCandidate("type", "t1");
+		qs2.getFiltersInit().acknowledgeUrlFilterCandidate("project", "p1", "p2");
+		Assert.assertEquals(qs1.toCanonicalString(), qs2.toCanonicalString());
+
+		// case - order of filter values is significant
+		qs2.getFiltersInit().acknowledgeUrlFilterCandidate("project", "p2", "p1");
+		Assert.assertFalse(qs1.toCanonicalString().equals(qs2.toCanonicalString()));
+		qs2.getFiltersInit().acknowledgeUrlFilterCandidate("project", "p1", "p2");
+
+		qs2.setFrom(0);
+		Assert.assertFalse(qs1.toCanonicalString().equals(qs2.toCanonicalString()));
+		qs2.setFrom(10);
+
+		qs2.setQueryHighlight(true);
+		Assert.assertFalse(qs1.toCanonicalString().equals(qs2.toCanonicalString()));
+		qs2.setQueryHighlight(false);
+
+		// case - values containing separators do not collide
+		qs2.setQuery("query;");
+		Assert.assertFalse(qs1.toCanonicalString().equals(qs2.toCanonicalString()));
+		qs2.setQuery(null);
+		Assert.assertFalse(qs1.toCanonicalString().equals(qs2.toCanonicalString()));
+	}
+
+}
@@ -0,0 +1,121 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.searchisko.api.model;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.searchisko.api.rest.search.SemiParsedAggregationConfig;
+import org.searchisko.api.rest.search.SemiParsedFilterConfig;
+import org.searchisko.api.rest.search.SemiParsedRangeFilterConfig;
+import org.searchisko.api.rest.search.SemiParsedTermsFilterConfig;
+import org.searchisko.api.service.ConfigService;
+import org.searchisko.api.testtools.TestUtils;
+
+/**
+ * Unit test for {@link SearchConfigSnapshot}.
+ *
+ * @author Vlastimil Elias (velias at redhat dot com)
+ */
+public class SearchConfigSnapshotTest {
+
+	private SearchConfigSnapshot getTested() {
+		Map<String, Map<String, Object>> documents = new HashMap<>();
+		documents.put(ConfigService.CFGNAME_SEARCH_FULLTEXT_AGGREGATIONS_FIELDS,
+				TestUtils.loadJSONFromClasspathFile("/search/search_fulltext_aggregations_fields.json"));
+		documents.put(ConfigService.CFGNAME_SEARCH_FULLTEXT_FILTER_FIELDS,
+				TestUtils.loadJSONFromClasspathFile("/search/search_fulltext_filter_fields.json"));
+		return new SearchConfigSnapshot(5, documents);
+	}
+
+	@Test
+	public void documents() {
+		SearchConfigSnapshot tested = getTested();
+		Assert.assertEquals(5, tested.getVersion());
+		Assert.assertNull(tested.getQueryFields());
+		Assert.assertNull(tested.getHighlightFields());
+		Assert.assertNull(tested.getResponseFields());
+		Assert.assertNotNull(tested.getFilterFields());
+		Assert.assertNotNull(tested.getAggregationsFields());
+
+		try {
+			tested.getFilterFields().put("aa", "bb");
+			Assert.fail("UnsupportedOperationException expected");
+		} catch (UnsupportedOperationException e) {
+			// OK
+		}
+	}
+
+	@Test
+	public void getParsedAggregations() {
+		SearchConfigSnapshot tested = getTested();
+
+		Map<String, SemiParsedAggregationConfig> aggs = tested.getParsedAggregations();
+		Assert.assertEquals(5, aggs.size());
+		Assert.assertEquals("sys_contributors", aggs.get("top_contributors").getFieldName());
+		Assert.assertTrue(aggs.get("top_contributors").isFiltered());
+		Assert.assertEquals("date_histogram", aggs.get("activity_dates_histogram").getAggregationType());
+		// parsed only once
+		Assert.assertSame(aggs, tested.getParsedAggregations());
+
+		Assert.assertEquals("per_sys_type_counts", tested.getAggregationNameUsingSysTypeField());
+
+		// case - no aggregations configured
+		SearchConfigSnapshot empty = new SearchConfigSnapshot(1, new HashMap<String, Map<String, Object>>());
+		Assert.assertTrue(empty.getParsedAggregations().isEmpty());
+		Assert.assertEquals("", empty.getAggregationNameUsingSysTypeField());
+	}
+
+	@Test
+	public void getParsedFilter() {
+		SearchConfigSnapshot tested = getTested();
+
+		Assert.assertNull(tested.getParsedFilter(null));
+		Assert.assertNull(tested.getParsedFilter("unknown"));
+
+		SemiParsedFilterConfig tag = tested.getParsedFilter("tag");
+		Assert.assertTrue(tag instanceof SemiParsedTermsFilterConfig);
+		Assert.assertEquals("sys_tags", tag.getFieldName());
+		Assert.assertTrue(((SemiParsedTermsFilterConfig) tag).isLowercase());
+		// parsed only once
+		Assert.assertSame(tag, tested.getParsedFilter("tag"));
+
+		SemiParsedFilterConfig interval = tested.getParsedFilter("activity_date_interval");
+		Assert.assertTrue(interval instanceof SemiParsedRangeFilterConfig);
+		Assert.assertEquals(2, ((SemiParsedRangeFilterConfig) interval).getSuppressed().size());
+
+		// case - no filters configured
+		SearchConfigSnapshot empty = new SearchConfigSnapshot(1, new HashMap<String, Map<String, Object>>());
+		Assert.assertNull(empty.getParsedFilter("tag"));
+	}
+
+	@Test
+	public void getRangeFilterProcessorMethod() throws ReflectiveOperationException {
+		SearchConfigSnapshot tested = getTested();
+
+		Method m = tested.getRangeFilterProcessorMethod(PastIntervalValue.class.getName());
+		Assert.assertEquals(PastIntervalValue.class, m.getDeclaringClass());
+		Assert.assertSame(m, tested.getRangeFilterProcessorMethod(PastIntervalValue.class.getName()));
+
+		try {
+			tested.getRangeFilterProcessorMethod("org.searchisko.UnknownClass");
+			Assert.fail("ClassNotFoundException expected");
+		} catch (ClassNotFoundException e) {
+			// OK
+		}
+
+		try {
+			tested.getRangeFilterProcessorMethod(SearchConfigSnapshot.class.getName());
+			Assert.fail("RuntimeException expected");
+		} catch (RuntimeException e) {
+			// OK
+		}
+	}
+
+}
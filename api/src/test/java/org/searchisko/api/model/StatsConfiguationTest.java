@@ -26,6 +26,12 @@ public class StatsConfiguationTest {
 
 		Assert.assertFalse(tested.enabled());
 		Assert.assertTrue(tested.isUseSearchCluster());
+		Assert.assertFalse(tested.isBulk());
+		Assert.assertEquals(10000, tested.getBulkQueueSize());
+		Assert.assertEquals(500, tested.getBulkActions());
+		Assert.assertEquals(5242880L, tested.getBulkSizeBytes());
+		Assert.assertEquals(5000L, tested.getBulkFlushInterval());
+		Assert.assertEquals(StatsConfiguration.DropPolicy.DROP_NEWEST, tested.getBulkDropPolicy());
 	}
 
 }
@@ -0,0 +1,299 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.searchisko.api.reindexer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.elasticsearch.indices.IndexMissingException;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.searchisko.api.service.ContentManipulationLockService;
+import org.searchisko.api.service.ContentPushService;
+import org.searchisko.api.service.ProviderService;
+import org.searchisko.api.service.ProviderService.ProviderContentTypeInfo;
+import org.searchisko.api.service.ProviderServiceTest;
+import org.searchisko.api.service.SearchClientService;
+import org.searchisko.api.tasker.TaskExecutionContext;
+import org.searchisko.persistence.service.JdbcIngestQueueService;
+
+/**
+ * Unit test for {@link ProcessIngestJobTask}
+ *
+ * @author Vlastimil Elias (velias at redhat dot com)
+ */
+public class ProcessIngestJobTaskTest {
+
+	private static final String QUEUE_ID = "qid";
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void performTask_ok() throws Exception {
+		ProcessIngestJobTask tested = getTested();
+		TaskExecutionContext context = Mockito.mock(TaskExecutionContext.class);
+		tested.setExecutionContext("tid", context);
+		final ProviderContentTypeInfo typeInfo = ProviderServiceTest
+				.createProviderContentTypeInfo(new HashMap<String, Object>());
+		Mockito.when(tested.providerService.findContentType("tt")).thenReturn(typeInfo);
+
+		final List<Map<String, Object>> queue = new ArrayList<>();
+		queue.add(createBatch("1", "2"));
+		queue.add(createBatch("3"));
+		Mockito.when(tested.ingestQueueService.readBatch(QUEUE_ID, 2)).thenAnswer(new Answer<Map<String, Object>>() {
+			@Override
+			public Map<String, Object> answer(InvocationOnMock invocation) throws Throwable {
+				return queue.isEmpty() ? new LinkedHashMap<String, Object>() : queue.get(0);
+			}
+		});
+		Mockito.doAnswer(new Answer<Object>() {
+			@Override
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				queue.remove(0);
+				return null;
+			}
+		}).when(tested.ingestQueueService).remove(Mockito.eq(QUEUE_ID), Mockito.any(Collection.class));
+		Mockito.doAnswer(new Answer<Object>() {
+			@Override
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				Map<String, Object> batch = (Map<String, Object>) invocation.getArguments()[1];
+				Map<String, Object> ret = (Map<String, Object>) invocation.getArguments()[2];
+				for (String id : batch.keySet()) {
+					Map<String, Object> status = new HashMap<>();
+					if (id.equals("2")) {
+						status.put("status", "error");
+						status.put("message", "bad content");
+					} else if (id.equals("3")) {
+						status.put("status", "unchanged");
+					} else {
+						status.put("status", "insert");
+					}
+					ret.put(id, status);
+				}
+				return null;
+			}
+		}).when(tested.contentPushService)
+				.pushContentBulk(Mockito.eq(typeInfo), Mockito.anyMap(), Mockito.anyMap());
+
+		tested.performTask();
+
+		Assert.assertTrue(queue.isEmpty());
+		Mockito.verify(tested.contentPushService, Mockito.times(2)).pushContentBulk(Mockito.eq(typeInfo),
+				Mockito.anyMap(), Mockito.anyMap());
+		Mockito.verify(tested.ingestQueueService, Mockito.times(2)).remove(Mockito.eq(QUEUE_ID),
+				Mockito.any(Collection.class));
+		Mockito.verify(tested.ingestQueueService, Mockito.never()).removeQueue(QUEUE_ID);
+		Mockito.verify(context).writeTaskLog("tid", "ERROR: content 2 not pushed: bad content");
+		Mockito.verify(context).writeTaskLog("tid", "3 content objects processed, 1 unchanged, 1 errors");
+	}
+
+	@Test
+	public void performTask_unknownType() throws Exception {
+		ProcessIngestJobTask tested = getTested();
+		Mockito.when(tested.providerService.findContentType("tt")).thenReturn(null);
+		try {
+			tested.performTask();
+			Assert.fail("Exception expected");
+		} catch (Exception e) {
+			Assert.assertEquals("Configuration not found for sys_content_type tt", e.getMessage());
+		}
+		Mockito.verify(tested.ingestQueueService).removeQueue(QUEUE_ID);
+		Mockito.verifyZeroInteractions(tested.contentPushService);
+	}
+
+	@Test
+	public void performTask_canceled() throws Exception {
+		ProcessIngestJobTask tested = getTested();
+		Mockito.when(tested.providerService.findContentType("tt")).thenReturn(
+				ProviderServiceTest.createProviderContentTypeInfo(new HashMap<String, Object>()));
+		tested.setCanceled(true);
+
+		tested.performTask();
+
+		Mockito.verify(tested.ingestQueueService).removeQueue(QUEUE_ID);
+		Mockito.verifyNoMoreInteractions(tested.ingestQueueService);
+		Mockito.verifyZeroInteractions(tested.contentPushService);
+	}
+
+	@Test
+	public void performTask_failover() throws Exception {
+		ProcessIngestJobTask tested = getTested();
+		Mockito.when(tested.providerService.findContentType("tt")).thenReturn(
+				ProviderServiceTest.createProviderContentTypeInfo(new HashMap<String, Object>()));
+		Mockito.when(tested.ingestQueueService.readBatch(QUEUE_ID, 2)).thenThrow(new RuntimeException("db down"));
+		try {
+			tested.performTask();
+			Assert.fail("RuntimeException expected");
+		} catch (RuntimeException e) {
+			Assert.assertEquals("db down", e.getMessage());
+		}
+		// queue is kept for failover run
+		Mockito.verify(tested.ingestQueueService, Mockito.never()).removeQueue(QUEUE_ID);
+	}
+
+	@Test
+	public void performTask_finishedError() throws Exception {
+		ProcessIngestJobTask tested = getTested();
+		Mockito.when(tested.providerService.findContentType("tt")).thenReturn(
+				ProviderServiceTest.createProviderContentTypeInfo(new HashMap<String, Object>()));
+		Mockito.when(tested.ingestQueueService.readBatch(QUEUE_ID, 2)).thenThrow(new IndexMissingException(null));
+		try {
+			tested.performTask();
+			Assert.fail("IndexMissingException expected");
+		} catch (IndexMissingException e) {
+			// OK
+		}
+		// task is not run again so queue is removed
+		Mockito.verify(tested.ingestQueueService).removeQueue(QUEUE_ID);
+	}
+
+	@Test
+	public void performTask_locked() throws Exception {
+		ProcessIngestJobTask tested = getTested();
+		Mockito.when(tested.providerService.findContentType("tt")).thenReturn(
+				ProviderServiceTest.createProviderContentTypeInfo(new HashMap<String, Object>()));
+		Mockito.when(tested.contentManipulationLockService.isLockedForProvider(ProviderServiceTest.TEST_PROVIDER_NAME))
+				.thenReturn(true);
+		try {
+			tested.performTask();
+			Assert.fail("RuntimeException expected");
+		} catch (ProcessIngestJobTask.OperationLockedException e) {
+			// OK
+		}
+		Mockito.verify(tested.ingestQueueService, Mockito.never()).readBatch(Mockito.anyString(), Mockito.anyInt());
+		Mockito.verify(tested.ingestQueueService, Mockito.never()).removeQueue(QUEUE_ID);
+		Mockito.verifyZeroInteractions(tested.contentPushService);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void pushBatch() {
+		ProcessIngestJobTask tested = getTested();
+		final ProviderContentTypeInfo typeInfo = createTypeInfo();
+		Mockito.when(tested.searchClientService.isClusterAvailable("idx")).thenReturn(true);
+
+		Mockito.doAnswer(new Answer<Object>() {
+			@Override
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				Map<String, Object> batch = (Map<String, Object>) invocation.getArguments()[1];
+				Map<String, Object> ret = (Map<String, Object>) invocation.getArguments()[2];
+				if (batch.containsKey("2"))
+					throw new RuntimeException("bad content");
+				for (String id : batch.keySet()) {
+					Map<String, Object> status = new HashMap<>();
+					status.put("status", "insert");
+					ret.put(id, status);
+				}
+				return null;
+			}
+		}).when(tested.contentPushService)
+				.pushContentBulk(Mockito.eq(typeInfo), Mockito.anyMap(), Mockito.anyMap());
+
+		// case - batch fails, content pushed one by one
+		Map<String, Object> ret = tested.pushBatch(typeInfo, createBatch("1", "2", "3"));
+		Assert.assertEquals(3, ret.size());
+		Assert.assertEquals("insert", ((Map<String, Object>) ret.get("1")).get("status"));
+		Assert.assertEquals("error", ((Map<String, Object>) ret.get("2")).get("status"));
+		Assert.assertEquals("bad content", ((Map<String, Object>) ret.get("2")).get("message"));
+		Assert.assertEquals("insert", ((Map<String, Object>) ret.get("3")).get("status"));
+		Mockito.verify(tested.contentPushService, Mockito.times(4)).pushContentBulk(Mockito.eq(typeInfo),
+				Mockito.anyMap(), Mockito.anyMap());
+
+		// case - single content batch fails, reported as error
+		ret = tested.pushBatch(typeInfo, createBatch("2"));
+		Assert.assertEquals("error", ((Map<String, Object>) ret.get("2")).get("status"));
+
+		// case - all content fails one by one also, services available so failures are caused by content
+		Mockito.reset(tested.contentPushService, tested.ingestQueueService);
+		Mockito.doThrow(new RuntimeException("bad content")).when(tested.contentPushService)
+				.pushContentBulk(Mockito.eq(typeInfo), Mockito.anyMap(), Mockito.anyMap());
+		ret = tested.pushBatch(typeInfo, createBatch("1", "2"));
+		Assert.assertEquals(2, ret.size());
+		Assert.assertEquals("error", ((Map<String, Object>) ret.get("1")).get("status"));
+		Assert.assertEquals("error", ((Map<String, Object>) ret.get("2")).get("status"));
+		Mockito.verify(tested.ingestQueueService).count(QUEUE_ID);
+
+		// case - all content fails one by one also and search cluster is not available, so failure is not caused by
+		// content
+		Mockito.reset(tested.contentPushService, tested.ingestQueueService);
+		Mockito.doThrow(new RuntimeException("index down")).when(tested.contentPushService)
+				.pushContentBulk(Mockito.eq(typeInfo), Mockito.anyMap(), Mockito.anyMap());
+		Mockito.when(tested.searchClientService.isClusterAvailable("idx")).thenReturn(false);
+		try {
+			tested.pushBatch(typeInfo, createBatch("1", "2"));
+			Assert.fail("RuntimeException expected");
+		} catch (RuntimeException e) {
+			Assert.assertEquals("index down", e.getMessage());
+		}
+
+		// case - single content fails and database is not available
+		Mockito.when(tested.searchClientService.isClusterAvailable("idx")).thenReturn(true);
+		Mockito.when(tested.ingestQueueService.count(QUEUE_ID)).thenThrow(new RuntimeException("db down"));
+		try {
+			tested.pushBatch(typeInfo, createBatch("1"));
+			Assert.fail("RuntimeException expected");
+		} catch (RuntimeException e) {
+			Assert.assertEquals("index down", e.getMessage());
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void performTask_poisonContent() throws Exception {
+		ProcessIngestJobTask tested = getTested();
+		TaskExecutionContext context = Mockito.mock(TaskExecutionContext.class);
+		tested.setExecutionContext("tid", context);
+		final ProviderContentTypeInfo typeInfo = createTypeInfo();
+		Mockito.when(tested.searchClientService.isClusterAvailable("idx")).thenReturn(true);
+		Mockito.when(tested.providerService.findContentType("tt")).thenReturn(typeInfo);
+		Mockito.when(tested.ingestQueueService.readBatch(QUEUE_ID, 2)).thenReturn(createBatch("1", "2"),
+				new LinkedHashMap<String, Object>());
+		Mockito.doThrow(new RuntimeException("bad content")).when(tested.contentPushService)
+				.pushContentBulk(Mockito.eq(typeInfo), Mockito.anyMap(), Mockito.anyMap());
+
+		tested.performTask();
+
+		// content which can't be pushed is removed from queue so job is not failed over forever
+		Mockito.verify(tested.ingestQueueService).remove(Mockito.eq(QUEUE_ID), Mockito.any(Collection.class));
+		Mockito.verify(tested.ingestQueueService, Mockito.never()).removeQueue(QUEUE_ID);
+		Mockito.verify(context).writeTaskLog("tid", "ERROR: content 1 not pushed: bad content");
+		Mockito.verify(context).writeTaskLog("tid", "ERROR: content 2 not pushed: bad content");
+		Mockito.verify(context).writeTaskLog("tid", "2 content objects processed, 0 unchanged, 2 errors");
+	}
+
+	private ProviderContentTypeInfo createTypeInfo() {
+		Map<String, Object> typeDef = new HashMap<>();
+		Map<String, Object> indexDef = new HashMap<>();
+		indexDef.put(ProviderService.NAME, "idx");
+		typeDef.put(ProviderService.INDEX, indexDef);
+		return ProviderServiceTest.createProviderContentTypeInfo(typeDef);
+	}
+
+	private Map<String, Object> createBatch(String... ids) {
+		Map<String, Object> ret = new LinkedHashMap<>();
+		for (String id : ids) {
+			Map<String, Object> content = new HashMap<>();
+			content.put("field", "value" + id);
+			ret.put(id, content);
+		}
+		return ret;
+	}
+
+	private ProcessIngestJobTask getTested() {
+		ProcessIngestJobTask tested = new ProcessIngestJobTask(Mockito.mock(JdbcIngestQueueService.class),
+				Mockito.mock(ProviderService.class), Mockito.mock(SearchClientService.class),
+				Mockito.mock(ContentPushService.class), Mockito.mock(ContentManipulationLockService.class), "tt", QUEUE_ID, 2);
+		tested.setExecutionContext("tid", Mockito.mock(TaskExecutionContext.class));
+		return tested;
+	}
+
+}
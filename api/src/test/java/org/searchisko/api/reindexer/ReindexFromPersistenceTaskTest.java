@@ -6,6 +6,7 @@
 package org.searchisko.api.reindexer;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -13,20 +14,26 @@ import java.util.Map;
 
 import javax.enterprise.event.Event;
 
+import org.elasticsearch.client.Client;
 import org.hamcrest.CustomMatcher;
+import org.jboss.elasticsearch.tools.content.InvalidDataException;
 import org.junit.Assert;
 import org.junit.Test;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.searchisko.api.ContentObjectFields;
+import org.searchisko.api.events.ContentBatchBeforeIndexedEvent;
 import org.searchisko.api.events.ContentBeforeIndexedEvent;
+import org.searchisko.api.rest.exception.PreprocessorInvalidDataException;
 import org.searchisko.api.service.ProviderService;
 import org.searchisko.api.service.ProviderServiceTest;
 import org.searchisko.api.service.SearchClientService;
 import org.searchisko.api.tasker.TaskExecutionContext;
 import org.searchisko.api.testtools.ESRealClientTestBase;
 import org.searchisko.persistence.service.ContentPersistenceService;
+import org.searchisko.persistence.service.ContentStreamHandler;
 import org.searchisko.persistence.service.ContentTuple;
-import org.searchisko.persistence.service.ListRequest;
 
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
@@ -54,8 +61,11 @@ public class ReindexFromPersistenceTaskTest extends ESRealClientTestBase {
 			Mockito.doCallRealMethod().when(tested.searchClientService)
 					.performDeleteOldRecords(Mockito.anyString(), Mockito.anyString(), Mockito.any(Date.class));
 			tested.sysContentType = sysContentType;
+			// small bulks to test more bulk requests
+			tested.bulkSize = 3;
 			tested.providerService = Mockito.mock(ProviderService.class);
 			tested.eventBeforeIndexed = Mockito.mock(Event.class);
+			tested.eventBatchBeforeIndexed = Mockito.mock(Event.class);
 			List<Map<String, Object>> preprocessorsDef = new ArrayList<Map<String, Object>>();
 
 			configProviderServiceMock(tested, preprocessorsDef);
@@ -88,11 +98,16 @@ public class ReindexFromPersistenceTaskTest extends ESRealClientTestBase {
 				verify(tested.eventBeforeIndexed).fire(prepareContentBeforeIndexedEventMatcher("tt-7"));
 				verify(tested.eventBeforeIndexed).fire(prepareContentBeforeIndexedEventMatcher("tt-8"));
 				verifyNoMoreInteractions(tested.eventBeforeIndexed);
+				// case - one batch event per bulk
+				verify(tested.eventBatchBeforeIndexed).fire(prepareContentBatchBeforeIndexedEventMatcher("tt-1", "tt-2", "tt-3"));
+				verify(tested.eventBatchBeforeIndexed).fire(prepareContentBatchBeforeIndexedEventMatcher("tt-4", "tt-5", "tt-6"));
+				verify(tested.eventBatchBeforeIndexed).fire(prepareContentBatchBeforeIndexedEventMatcher("tt-7", "tt-8"));
+				verifyNoMoreInteractions(tested.eventBatchBeforeIndexed);
 			}
 
 			// case - put it into non empty index to check if records are deleted correctly
 			{
-				Mockito.reset(tested.providerService, tested.eventBeforeIndexed);
+				Mockito.reset(tested.providerService, tested.eventBeforeIndexed, tested.eventBatchBeforeIndexed);
 				configProviderServiceMock(tested, preprocessorsDef);
 				tested.contentPersistenceService = getContentPersistenceServiceMock(true);
 				tested.performTask();
@@ -115,13 +130,58 @@ public class ReindexFromPersistenceTaskTest extends ESRealClientTestBase {
 				verify(tested.eventBeforeIndexed).fire(prepareContentBeforeIndexedEventMatcher("tt-5"));
 				verify(tested.eventBeforeIndexed).fire(prepareContentBeforeIndexedEventMatcher("tt-6"));
 				verifyNoMoreInteractions(tested.eventBeforeIndexed);
-
+				verify(tested.eventBatchBeforeIndexed, Mockito.times(2)).fire(Mockito.any(ContentBatchBeforeIndexedEvent.class));
 			}
 		} finally {
 			finalizeESClientForUnitTest();
 		}
 	}
 
+	@SuppressWarnings("unchecked")
+	@Test
+	public void bulkIndexingHandler_skipped() throws Exception {
+		ReindexFromPersistenceTask tested = new ReindexFromPersistenceTask();
+		TaskExecutionContext context = Mockito.mock(TaskExecutionContext.class);
+		tested.setExecutionContext("tid", context);
+		tested.sysContentType = sysContentType;
+		tested.providerService = Mockito.mock(ProviderService.class);
+		List<Map<String, Object>> preprocessorsDef = new ArrayList<Map<String, Object>>();
+		configProviderServiceMock(tested, preprocessorsDef);
+
+		final List<ContentTuple<String, Map<String, Object>>> contents = new ArrayList<>();
+		addContent(contents, "tt-1");
+		addContent(contents, "tt-2");
+		Mockito.when(
+				tested.providerService.runPreprocessors(Mockito.eq(sysContentType), Mockito.anyList(),
+						Mockito.eq(contents.get(1).getContent()))).thenThrow(
+				new PreprocessorInvalidDataException(new InvalidDataException("data error")));
+
+		ReindexFromPersistenceTask.BulkIndexingHandler handler = tested.new BulkIndexingHandler(
+				Mockito.mock(Client.class), tested.providerService.findContentType(sysContentType), indexName, typeName);
+		Assert.assertTrue(handler.handle(contents.get(0)));
+		Assert.assertTrue(handler.handle(contents.get(1)));
+
+		// skipped document is not counted as reindexed
+		Assert.assertEquals(1, handler.count);
+		Assert.assertEquals(1, handler.skipped);
+		Assert.assertEquals(1, handler.bulk.size());
+		Mockito.verify(context).writeTaskLog("tid",
+				"Data error from preprocessors execution so document tt-2 is skipped: data error");
+	}
+
+	private ContentBatchBeforeIndexedEvent prepareContentBatchBeforeIndexedEventMatcher(final String... expectedIds) {
+		return Mockito.argThat(new CustomMatcher<ContentBatchBeforeIndexedEvent>("ContentBatchBeforeIndexedEvent [contentIds="
+				+ Arrays.asList(expectedIds) + "]") {
+
+			@Override
+			public boolean matches(Object paramObject) {
+				ContentBatchBeforeIndexedEvent e = (ContentBatchBeforeIndexedEvent) paramObject;
+				return new ArrayList<>(e.getContents().keySet()).equals(Arrays.asList(expectedIds));
+			}
+
+		});
+	}
+
 	private ContentBeforeIndexedEvent prepareContentBeforeIndexedEventMatcher(final String expectedId) {
 		return Mockito.argThat(new CustomMatcher<ContentBeforeIndexedEvent>("ContentBeforeIndexedEvent [contentId="
 				+ expectedId + "]") {
@@ -150,53 +210,35 @@ public class ReindexFromPersistenceTaskTest extends ESRealClientTestBase {
 	private ContentPersistenceService getContentPersistenceServiceMock(boolean shorter) {
 		ContentPersistenceService ret = Mockito.mock(ContentPersistenceService.class);
 
-		TestListRequest listRequest1 = new TestListRequest();
-		addContent(listRequest1, "tt-1");
-		addContent(listRequest1, "tt-2");
-		addContent(listRequest1, "tt-3");
-		Mockito.when(ret.listRequestInit(sysContentType)).thenReturn(listRequest1);
-
-		TestListRequest listRequest2 = new TestListRequest();
-		addContent(listRequest2, "tt-4");
-		addContent(listRequest2, "tt-5");
-		addContent(listRequest2, "tt-6");
-		Mockito.when(ret.listRequestNext(listRequest1)).thenReturn(listRequest2);
-
-		if (!shorter) {
-			TestListRequest listRequest3 = new TestListRequest();
-			addContent(listRequest3, "tt-7");
-			addContent(listRequest3, "tt-8");
-			Mockito.when(ret.listRequestNext(listRequest2)).thenReturn(listRequest3);
-			Mockito.when(ret.listRequestNext(listRequest3)).thenReturn(new TestListRequest());
-		} else {
-			Mockito.when(ret.listRequestNext(listRequest2)).thenReturn(new TestListRequest());
+		final List<ContentTuple<String, Map<String, Object>>> contents = new ArrayList<>();
+		int max = shorter ? 6 : 8;
+		for (int i = 1; i <= max; i++) {
+			addContent(contents, "tt-" + i);
 		}
+		Mockito.when(ret.streamContent(Mockito.eq(sysContentType), Mockito.any(ContentStreamHandler.class))).thenAnswer(
+				new Answer<Integer>() {
+					@Override
+					public Integer answer(InvocationOnMock invocation) throws Throwable {
+						ContentStreamHandler handler = (ContentStreamHandler) invocation.getArguments()[1];
+						int count = 0;
+						for (ContentTuple<String, Map<String, Object>> content : contents) {
+							count++;
+							if (!handler.handle(content))
+								break;
+						}
+						return count;
+					}
+				});
 
 		return ret;
 	}
 
-	private void addContent(TestListRequest listRequest1, String id) {
+	private void addContent(List<ContentTuple<String, Map<String, Object>>> contents, String id) {
 		Map<String, Object> content = new HashMap<String, Object>();
 		content.put(ContentObjectFields.SYS_ID, id);
 		content.put(ContentObjectFields.SYS_CONTENT_TYPE, sysContentType);
 		content.put(ContentObjectFields.SYS_DESCRIPTION, "value " + id);
-		listRequest1.content.add(new ContentTuple<String, Map<String, Object>>(id, content));
-	}
-
-	protected static class TestListRequest implements ListRequest {
-
-		List<ContentTuple<String, Map<String, Object>>> content = new ArrayList<>();
-
-		@Override
-		public boolean hasContent() {
-			return content != null && !content.isEmpty();
-		}
-
-		@Override
-		public List<ContentTuple<String, Map<String, Object>>> content() {
-			return content;
-		}
-
+		contents.add(new ContentTuple<String, Map<String, Object>>(id, content));
 	}
 
 }
@@ -17,6 +17,10 @@ import org.junit.Assert;
 import org.junit.Test;
 import org.mockito.Mockito;
 import org.searchisko.api.ContentObjectFields;
+import org.searchisko.api.model.AppConfiguration;
+import org.searchisko.api.service.AppConfigurationService;
+import org.searchisko.api.service.ContentManipulationLockService;
+import org.searchisko.api.service.ContentPushService;
 import org.searchisko.api.service.ContributorProfileService;
 import org.searchisko.api.service.ContributorService;
 import org.searchisko.api.service.ProjectService;
@@ -27,6 +31,7 @@ import org.searchisko.api.tasker.Task;
 import org.searchisko.api.tasker.TaskConfigurationException;
 import org.searchisko.api.tasker.UnsupportedTaskException;
 import org.searchisko.persistence.service.ContentPersistenceService;
+import org.searchisko.persistence.service.JdbcIngestQueueService;
 
 /**
  * Unit test for {@link ReindexingTaskFactory}.
@@ -131,6 +136,7 @@ public class ReindexingTaskFactoryTest {
 			Assert.assertEquals(tested.providerService, ctask.providerService);
 			Assert.assertEquals(tested.searchClientService, ctask.searchClientService);
 			Assert.assertEquals(tested.eventBeforeIndexed, ctask.eventBeforeIndexed);
+			Assert.assertEquals(tested.eventBatchBeforeIndexed, ctask.eventBatchBeforeIndexed);
 		}
 	}
 
@@ -190,6 +196,7 @@ public class ReindexingTaskFactoryTest {
 			Assert.assertEquals("mytype", ctask.sysContentType);
 			Assert.assertEquals(tested.providerService, ctask.providerService);
 			Assert.assertEquals(tested.searchClientService, ctask.searchClientService);
+			Assert.assertEquals(3, ctask.parallelism);
 		}
 	}
 
@@ -265,6 +272,7 @@ public class ReindexingTaskFactoryTest {
 			Assert.assertEquals("myproject", ctask.esValues[0]);
 			Assert.assertEquals(tested.providerService, ctask.providerService);
 			Assert.assertEquals(tested.searchClientService, ctask.searchClientService);
+			Assert.assertEquals(3, ctask.parallelism);
 		}
 
 		{
@@ -747,6 +755,51 @@ public class ReindexingTaskFactoryTest {
 		Assert.assertEquals(tested.projectService, ctask.searchableEntityService);
 	}
 
+	@Test
+	public void createTask_PROCESS_INGEST_JOB() throws TaskConfigurationException, UnsupportedTaskException {
+		ReindexingTaskFactory tested = getTested();
+
+		// case - missing queue id in configuration
+		try {
+			Map<String, Object> config = new HashMap<String, Object>();
+			config.put(ReindexingTaskFactory.CFG_SYS_CONTENT_TYPE, "mytype");
+			tested.createTask(ReindexingTaskTypes.PROCESS_INGEST_JOB.getTaskType(), config);
+			Assert.fail("TaskConfigurationException expected");
+		} catch (TaskConfigurationException e) {
+			Assert.assertEquals("ingest_queue_id configuration property must be defined", e.getMessage());
+		}
+
+		// case - nonexisting content type in configuration
+		Map<String, Object> config = new HashMap<String, Object>();
+		config.put(ReindexingTaskFactory.CFG_SYS_CONTENT_TYPE, "mytype");
+		config.put(ReindexingTaskFactory.CFG_INGEST_QUEUE_ID, "qid");
+		try {
+			Mockito.when(tested.providerService.findContentType("mytype")).thenReturn(null);
+			tested.createTask(ReindexingTaskTypes.PROCESS_INGEST_JOB.getTaskType(), config);
+			Assert.fail("TaskConfigurationException expected");
+		} catch (TaskConfigurationException e) {
+			Assert.assertEquals("Content type 'mytype' doesn't exists.", e.getMessage());
+		}
+
+		// case - everything is OK
+		Mockito.when(tested.providerService.findContentType("mytype")).thenReturn(
+				ProviderServiceTest.createProviderContentTypeInfo(new HashMap<String, Object>()));
+		AppConfiguration ac = new AppConfiguration("/tmp");
+		ac.setIngestQueueBatchSize(50);
+		Mockito.when(tested.appConfigurationService.getAppConfiguration()).thenReturn(ac);
+		Task task = tested.createTask(ReindexingTaskTypes.PROCESS_INGEST_JOB.getTaskType(), config);
+		Assert.assertEquals(ProcessIngestJobTask.class, task.getClass());
+		ProcessIngestJobTask ctask = (ProcessIngestJobTask) task;
+		Assert.assertEquals("mytype", ctask.sysContentType);
+		Assert.assertEquals("qid", ctask.queueId);
+		Assert.assertEquals(50, ctask.batchSize);
+		Assert.assertEquals(tested.ingestQueueService, ctask.ingestQueueService);
+		Assert.assertEquals(tested.providerService, ctask.providerService);
+		Assert.assertEquals(tested.searchClientService, ctask.searchClientService);
+		Assert.assertEquals(tested.contentManipulationLockService, ctask.contentManipulationLockService);
+		Assert.assertEquals(tested.contentPushService, ctask.contentPushService);
+	}
+
 	@Test
 	public void testGetConfigInteger() throws TaskConfigurationException {
 		String PROP_NAME = "testproperty";
@@ -790,6 +843,14 @@ public class ReindexingTaskFactoryTest {
 		tested.contributorProfileService = Mockito.mock(ContributorProfileService.class);
 		tested.contributorService = Mockito.mock(ContributorService.class);
 		tested.projectService = Mockito.mock(ProjectService.class);
+		tested.ingestQueueService = Mockito.mock(JdbcIngestQueueService.class);
+		tested.contentManipulationLockService = Mockito.mock(ContentManipulationLockService.class);
+		tested.appConfigurationService = Mockito.mock(AppConfigurationService.class);
+		AppConfiguration ac = new AppConfiguration("/tmp");
+		ac.setReindexingParallelism(3);
+		Mockito.when(tested.appConfigurationService.getAppConfiguration()).thenReturn(ac);
+		tested.contentPushService = Mockito.mock(ContentPushService.class);
+		tested.eventBatchBeforeIndexed = Mockito.mock(Event.class);
 		return tested;
 	}
 }
@@ -7,6 +7,7 @@ package org.searchisko.api.reindexer;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -15,6 +16,7 @@ import java.util.Set;
 
 import org.elasticsearch.action.bulk.BulkRequestBuilder;
 import org.elasticsearch.client.Client;
+import org.elasticsearch.common.settings.ImmutableSettings;
 import org.elasticsearch.indices.IndexMissingException;
 import org.elasticsearch.search.SearchHit;
 import org.jboss.elasticsearch.tools.content.InvalidDataException;
@@ -156,6 +158,73 @@ public class RenormalizeByContentTypeTaskTest extends ESRealClientTestBase {
 		}
 	}
 
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	@Test
+	public void performTask_parallel() throws Exception {
+
+		try {
+			RenormalizeByContentTypeTask tested = new RenormalizeByContentTypeTask();
+			tested.searchClientService = Mockito.mock(SearchClientService.class);
+			Client client = prepareESClientForUnitTest("RenormalizeByContentTypeTaskTest");
+			Mockito.when(tested.searchClientService.getClient()).thenReturn(client);
+			tested.sysContentType = sysContentType;
+			tested.providerService = Mockito.mock(ProviderService.class);
+			TaskExecutionContext context = Mockito.mock(TaskExecutionContext.class);
+			tested.setExecutionContext("tid", context);
+			tested.setParallelism(2);
+			List<Map<String, Object>> preprocessorsDef = new ArrayList<Map<String, Object>>();
+			configProviderServiceMock(tested, preprocessorsDef);
+
+			indexDelete(indexName);
+			client.admin().indices().prepareCreate(indexName)
+					.setSettings(ImmutableSettings.settingsBuilder().put("index.number_of_shards", 3).build()).execute()
+					.actionGet();
+			client.admin().cluster().prepareHealth(indexName).setWaitForYellowStatus().execute().actionGet();
+			for (int i = 1; i <= 6; i++) {
+				indexInsertDocument(indexName, typeName, "tt-" + i, "{\"id\" : \"tt" + i + "\"}");
+			}
+			indexFlushAndRefresh(indexName);
+
+			// case - shards are distributed into slices
+			tested.validateTaskConfiguration();
+			Assert.assertEquals(Arrays.asList("_shards:0,2", "_shards:1"), tested.prepareShardPreferences(client));
+
+			// case - all documents are processed by parallel scrolls
+			final Set<String> s = Collections.synchronizedSet(new HashSet<String>());
+			s.addAll(Arrays.asList(new String[] { "tt1", "tt2", "tt3", "tt4", "tt5", "tt6" }));
+			Mockito.doAnswer(new Answer() {
+
+				@Override
+				public Object answer(InvocationOnMock invocation) throws Throwable {
+					Map<String, Object> m = (Map<String, Object>) invocation.getArguments()[2];
+					s.remove(m.get("id"));
+					m.put("called", "yes");
+					return null;
+				}
+			}).when(tested.providerService).runPreprocessors(Mockito.eq(sysContentType), Mockito.anyList(), Mockito.anyMap());
+
+			tested.performTask();
+
+			indexFlushAndRefresh(indexName);
+			Assert.assertTrue("May be empty but is " + s, s.isEmpty());
+			for (int i = 1; i <= 6; i++) {
+				Assert.assertEquals("yes", indexGetDocument(indexName, typeName, "tt-" + i).get("called"));
+			}
+			Mockito.verify(tested.providerService, Mockito.times(6)).runPreprocessors(Mockito.eq(sysContentType),
+					Mockito.eq(preprocessorsDef), Mockito.anyMap());
+			Mockito.verify(context).writeTaskLog("tid", "Processing content by 2 parallel scrolls.");
+			Mockito.verify(context).writeTaskLog("tid", "Processed 6 documents.");
+
+			// case - cancelled task processes nothing
+			Mockito.reset(context);
+			tested.setCanceled(true);
+			tested.performTask();
+			Mockito.verify(context).writeTaskLog("tid", "Processed 0 documents then cancelled.");
+		} finally {
+			finalizeESClientForUnitTest();
+		}
+	}
+
 	private void configProviderServiceMock(RenormalizeByContentTypeTask tested, List<Map<String, Object>> preprocessorsDef) {
 		Map<String, Object> typeDef = new HashMap<String, Object>();
 		typeDef.put(ProviderService.INPUT_PREPROCESSORS, preprocessorsDef);
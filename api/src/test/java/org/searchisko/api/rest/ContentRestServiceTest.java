@@ -5,41 +5,59 @@
  */
 package org.searchisko.api.rest;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
 
 import javax.enterprise.event.Event;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 
+import org.elasticsearch.action.get.GetResponse;
 import org.elasticsearch.common.settings.SettingsException;
 import org.hamcrest.CustomMatcher;
 import org.json.JSONException;
 import org.junit.Assert;
 import org.junit.Test;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.searchisko.api.ContentObjectFields;
-import org.searchisko.api.events.ContentBeforeIndexedEvent;
 import org.searchisko.api.events.ContentDeletedEvent;
-import org.searchisko.api.events.ContentStoredEvent;
+import org.searchisko.api.model.AppConfiguration;
+import org.searchisko.api.reindexer.ReindexingTaskFactory;
+import org.searchisko.api.reindexer.ReindexingTaskTypes;
 import org.searchisko.api.rest.exception.BadFieldException;
 import org.searchisko.api.rest.exception.NotAuthenticatedException;
 import org.searchisko.api.rest.exception.NotAuthorizedException;
 import org.searchisko.api.rest.exception.OperationUnavailableException;
 import org.searchisko.api.rest.exception.RequiredFieldException;
 import org.searchisko.api.security.AuthenticatedUserType;
+import org.searchisko.api.service.AppConfigurationService;
 import org.searchisko.api.service.AuthenticationUtilService;
 import org.searchisko.api.service.ContentManipulationLockService;
+import org.searchisko.api.service.ContentPushService;
 import org.searchisko.api.service.ProviderService;
 import org.searchisko.api.service.ProviderService.ProviderContentTypeInfo;
 import org.searchisko.api.service.ProviderServiceTest;
+import org.searchisko.api.service.TaskService;
+import org.searchisko.api.tasker.TaskManager;
+import org.searchisko.api.tasker.TaskStatus;
+import org.searchisko.api.tasker.TaskStatusInfo;
 import org.searchisko.api.testtools.ESRealClientTestBase;
 import org.searchisko.api.testtools.TestUtils;
 import org.searchisko.persistence.service.ContentPersistenceService;
+import org.searchisko.persistence.service.JdbcIngestQueueService;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -72,71 +90,6 @@ public class ContentRestServiceTest extends ESRealClientTestBase {
 	private static final String INDEX_NAME = "index_name";
 	private static final List<Map<String, Object>> PREPROCESSORS = new ArrayList<Map<String, Object>>();
 
-	@SuppressWarnings("unchecked")
-	@Test
-	public void processFieldSysVisibleForRoles() {
-		ContentRestService tested = getTested(false);
-
-		Map<String, Object> content = new HashMap<>();
-
-		// case - no given field present at all
-		tested.processFieldSysVisibleForRoles(content);
-		Assert.assertEquals(0, content.size());
-
-		// case - empty list is removed
-		{
-			content.put(ContentObjectFields.SYS_VISIBLE_FOR_ROLES, new ArrayList<>());
-			tested.processFieldSysVisibleForRoles(content);
-			Assert.assertEquals(0, content.size());
-
-			ArrayList<String> l = new ArrayList<>();
-			l.add("");
-			content.put(ContentObjectFields.SYS_VISIBLE_FOR_ROLES, l);
-			tested.processFieldSysVisibleForRoles(content);
-			Assert.assertEquals(0, content.size());
-		}
-
-		// case - list is preserved, empty strings removed, strings trimmed
-		{
-			List<String> l = new ArrayList<>();
-			l.add("role1");
-			l.add("");
-			l.add("role2 ");
-			content.put(ContentObjectFields.SYS_VISIBLE_FOR_ROLES, l);
-			tested.processFieldSysVisibleForRoles(content);
-			Assert.assertEquals(1, content.size());
-			List<String> ret = (List<String>) content.get(ContentObjectFields.SYS_VISIBLE_FOR_ROLES);
-			Assert.assertEquals(2, ret.size());
-			Assert.assertTrue(ret.contains("role1"));
-			Assert.assertTrue(ret.contains("role2"));
-		}
-
-		// case - one string is converted to list
-		content.put(ContentObjectFields.SYS_VISIBLE_FOR_ROLES, "role1");
-		tested.processFieldSysVisibleForRoles(content);
-		Assert.assertEquals(1, content.size());
-		List<String> ret = (List<String>) content.get(ContentObjectFields.SYS_VISIBLE_FOR_ROLES);
-		Assert.assertEquals(1, ret.size());
-		Assert.assertTrue(ret.contains("role1"));
-
-		// case - bad type in data throws exception
-		try {
-			content.put(ContentObjectFields.SYS_VISIBLE_FOR_ROLES, new Integer(1));
-			tested.processFieldSysVisibleForRoles(content);
-			Assert.fail("BadFieldException expected");
-		} catch (BadFieldException e) {
-			// OK
-		}
-		try {
-			content.put(ContentObjectFields.SYS_VISIBLE_FOR_ROLES, new HashMap<>());
-			tested.processFieldSysVisibleForRoles(content);
-			Assert.fail("BadFieldException expected");
-		} catch (BadFieldException e) {
-			// OK
-		}
-
-	}
-
 	@Test
 	public void getTypeInfoWithManagePermissionCheck() {
 		ContentRestService tested = getTested(false);
@@ -216,20 +169,6 @@ public class ContentRestServiceTest extends ESRealClientTestBase {
 		getTested(false).pushContent("", "1", content);
 	}
 
-	@Test(expected = RequiredFieldException.class)
-	public void pushContent_invalidParams_3() throws Exception {
-		Map<String, Object> content = new HashMap<String, Object>();
-		content.put("test", "test");
-		getTested(false).pushContent(TYPE_KNOWN, null, content);
-	}
-
-	@Test(expected = RequiredFieldException.class)
-	public void pushContent_invalidParams_4() throws Exception {
-		Map<String, Object> content = new HashMap<String, Object>();
-		content.put("test", "test");
-		getTested(false).pushContent(TYPE_KNOWN, "", content);
-	}
-
 	@Test(expected = BadFieldException.class)
 	public void pushContent_invalidParams_id_1() throws Exception {
 		Map<String, Object> content = new HashMap<String, Object>();
@@ -251,17 +190,6 @@ public class ContentRestServiceTest extends ESRealClientTestBase {
 		getTested(false).pushContent("id*with*star", "1", content);
 	}
 
-	@Test(expected = BadFieldException.class)
-	public void pushContent_invalidParams_MissingContent1() throws Exception {
-		getTested(false).pushContent(TYPE_KNOWN, "1", null);
-	}
-
-	@Test(expected = BadFieldException.class)
-	public void pushContent_invalidParams_MissingContent2() throws Exception {
-		Map<String, Object> content = new HashMap<String, Object>();
-		getTested(false).pushContent(TYPE_KNOWN, "1", content);
-	}
-
 	@Test(expected = BadFieldException.class)
 	public void pushContent_invalidParams_UnknownType() throws Exception {
 		// case - type is unknown
@@ -270,31 +198,6 @@ public class ContentRestServiceTest extends ESRealClientTestBase {
 		getTested(false).pushContent(TYPE_UNKNOWN, "1", content);
 	}
 
-	@Test(expected = Exception.class)
-	public void pushContent_invalidParams_TypeInvalid() throws Exception {
-		// case - type configuration is invalid - do not contains index name and/or index type
-		Map<String, Object> content = new HashMap<String, Object>();
-		content.put("test", "test");
-		getTested(false).pushContent(TYPE_INVALID, "1", content);
-	}
-
-	@Test(expected = Exception.class)
-	public void pushContent_invalidParams_TypeInvalid2() throws Exception {
-		// case - type configuration is invalid - do not contains sys_type definition
-		Map<String, Object> content = new HashMap<String, Object>();
-		content.put("test", "test");
-		getTested(false).pushContent("invalid_2", "1", content);
-	}
-
-	@Test(expected = Exception.class)
-	public void pushContent_invalidParams_1SCCTMandatory() throws Exception {
-		// case - sys_content_content-type not defined if input value contains sys_content
-		Map<String, Object> content = new HashMap<String, Object>();
-		content.put("test", "test");
-		content.put(ContentObjectFields.SYS_CONTENT, "some content");
-		getTested(false).pushContent(TYPE_INVALID_CONTENT_TYPE, "1", content);
-	}
-
 	@Test(expected = NotAuthorizedException.class)
 	public void pushContent_noPermission() throws Exception {
 		ContentRestService tested = getTested(false);
@@ -314,109 +217,115 @@ public class ContentRestServiceTest extends ESRealClientTestBase {
 		tested.pushContent(TYPE_KNOWN, "1", content);
 	}
 
+	@Test
+	public void pushContent() throws Exception {
+		ContentRestService tested = getTested(false);
+		ProviderContentTypeInfo typeInfo = tested.providerService.findContentType(TYPE_KNOWN);
+		Map<String, Object> content = new HashMap<String, Object>();
+		content.put("test", "testvalue");
+		Map<String, Object> status = new LinkedHashMap<>();
+		status.put("status", "insert");
+		status.put("message", "Content inserted successfully.");
+		when(tested.contentPushService.pushContent(typeInfo, "1", content)).thenReturn(status);
+
+		Response r = assertResponseStatus(tested.pushContent(TYPE_KNOWN, "1", content), Response.Status.OK);
+		assertEquals(status, r.getEntity());
+		verify(tested.contentPushService).pushContent(typeInfo, "1", content);
+		verifyNoMoreInteractions(tested.contentPushService);
+	}
+
+	@Test(expected = BadFieldException.class)
+	public void patchContent_invalidParams_MissingContent() throws Exception {
+		getTested(false).patchContent(TYPE_KNOWN, "1", new HashMap<String, Object>());
+	}
+
+	@Test(expected = NotAuthorizedException.class)
+	public void patchContent_noPermission() throws Exception {
+		ContentRestService tested = getTested(false);
+		Mockito.doThrow(new NotAuthorizedException("no perm")).when(tested.authenticationUtilService)
+				.checkProviderManagementPermission(Mockito.anyString());
+		Map<String, Object> patch = new HashMap<String, Object>();
+		patch.put("test", "value");
+		tested.patchContent(TYPE_KNOWN, "1", patch);
+	}
+
 	@SuppressWarnings("unchecked")
 	@Test
-	public void pushContent_noPersistence() throws Exception {
+	public void patchContent() throws Exception {
 		try {
 			ContentRestService tested = getTested(true);
-			Map<String, Object> content = new HashMap<String, Object>();
 
-			// case - insert when index is not found
+			// case - no persistence, content is read from index and updated there
 			String sys_content_type = TYPE_KNOWN;
+			String sysId = tested.providerService.generateSysId(sys_content_type, "1");
+			ProviderContentTypeInfo typeInfo = tested.providerService.findContentType(sys_content_type);
 			{
-				reset(tested.contentPersistenceService, tested.eventContentStored);
 				indexDelete(INDEX_NAME);
-				content.clear();
-				content.put("test", "testvalue");
-				content.put(ContentObjectFields.SYS_VISIBLE_FOR_ROLES, "role1");
-				String sysId = tested.providerService.generateSysId(sys_content_type, "1");
-				Response r = assertResponseStatus(tested.pushContent(sys_content_type, "1", content), Response.Status.OK);
-				assertEquals("insert", ((Map<String, String>) r.getEntity()).get("status"));
-				verify(tested.providerService).runPreprocessors(sys_content_type, PREPROCESSORS, content);
-				// verify enhancements called
-				verify(tested.eventBeforeIndexed).fire(prepareContentBeforeIndexedEventMatcher(sysId, content));
+				indexInsertDocument(INDEX_NAME, INDEX_TYPE, sysId, "{\"test\":\"testvalue\",\"other\":\"othervalue\","
+						+ "\"tags\":[\"tag1\",\"tag2\"],\"sys_tags\":[\"tag1\",\"tag2\"],\"sys_content_hash\":\"hash\"}");
+				indexFlushAndRefresh(INDEX_NAME);
+
+				// case - content not found
+				assertResponseStatus(tested.patchContent(sys_content_type, "2", createPatch()), Response.Status.NOT_FOUND);
+
+				reset(tested.contentPersistenceService, tested.contentPushService);
+				Map<String, String> ret = (Map<String, String>) assertResponseStatus(
+						tested.patchContent(sys_content_type, "1", createPatch()), Response.Status.OK).getEntity();
+				assertEquals("update", ret.get("status"));
+				assertEquals("Content updated successfully.", ret.get("message"));
+				// all preprocessors are run on merged content
+				verify(tested.providerService).runPreprocessors(Mockito.eq(sys_content_type), Mockito.anyList(),
+						Mockito.anyMap());
+				verify(tested.contentPushService).fireContentBeforeIndexedEvents(Mockito.anyMap());
+				verify(tested.contentPushService).invalidateSearchResultCache(typeInfo);
+				verify(tested.contentPushService).fireContentStoredEvents(Mockito.anyMap());
+				verifyNoMoreInteractions(tested.contentPushService);
+				verifyZeroInteractions(tested.contentPersistenceService);
 				indexFlushAndRefresh(INDEX_NAME);
-				Map<String, Object> doc = indexGetDocument(INDEX_NAME, INDEX_TYPE,
-						tested.providerService.generateSysId(sys_content_type, "1"));
-				assertNotNull(doc);
-				assertEquals("testvalue", doc.get("test"));
-				assertEquals("jbossorg", doc.get(ContentObjectFields.SYS_CONTENT_PROVIDER));
+				Map<String, Object> doc = indexGetDocument(INDEX_NAME, INDEX_TYPE, sysId);
+				assertEquals("patchedvalue", doc.get("test"));
+				assertEquals(null, doc.get("other"));
+				assertEquals(TestUtils.createListOfStrings("tag1", "tag2"), doc.get(ContentObjectFields.SYS_TAGS));
 				assertEquals("1", doc.get(ContentObjectFields.SYS_CONTENT_ID));
-				assertEquals(sys_content_type, doc.get(ContentObjectFields.SYS_CONTENT_TYPE));
-				assertEquals("my_sys_type", doc.get(ContentObjectFields.SYS_TYPE));
-				assertEquals(null, doc.get(ContentObjectFields.SYS_CONTENT_CONTENT_TYPE));
-				assertEquals(sysId, doc.get(ContentObjectFields.SYS_ID));
-				assertNotNull(doc.get(ContentObjectFields.SYS_UPDATED));
-				assertEquals(null, doc.get(ContentObjectFields.SYS_TAGS));
-				assertEquals(TestUtils.createListOfStrings("role1"), doc.get(ContentObjectFields.SYS_VISIBLE_FOR_ROLES));
-				verify(tested.eventContentStored).fire(prepareContentStoredEventMatcher(sysId));
-				verifyNoMoreInteractions(tested.contentPersistenceService);
+				// hash is removed so next push of same content as before patch is not skipped
+				assertEquals(null, doc.get(ContentObjectFields.SYS_CONTENT_HASH));
 			}
 
-			// case - insert when index is found, fill sys_updated if not provided in content, process tags provided in
-			// content, fill sys_content_content-type because sys_content is present
+			// case - content changed concurrently since it was read, so conflict is returned and nothing is changed
 			{
-				reset(tested.providerService, tested.contentPersistenceService, tested.eventContentStored,
-						tested.eventBeforeIndexed);
-				setupProviderServiceMock(tested.providerService);
-				content.put("test2", "testvalue2");
-				content.put(ContentObjectFields.SYS_CONTENT, "sys content");
-				content.remove(ContentObjectFields.SYS_UPDATED);
-				String[] tags = new String[] { "tag_value" };
-				content.put("tags", tags);
-				Response r = assertResponseStatus(tested.pushContent(sys_content_type, "2", content), Response.Status.OK);
-				String sysId = tested.providerService.generateSysId(sys_content_type, "2");
-				verify(tested.eventBeforeIndexed).fire(prepareContentBeforeIndexedEventMatcher(sysId, content));
-				assertEquals("insert", ((Map<String, String>) r.getEntity()).get("status"));
-				verify(tested.providerService).runPreprocessors(sys_content_type, PREPROCESSORS, content);
+				reset(tested.contentPersistenceService, tested.contentPushService);
+				GetResponse stale = tested.getIndexedContent(INDEX_NAME, INDEX_TYPE, sysId, true);
+				indexInsertDocument(INDEX_NAME, INDEX_TYPE, sysId, "{\"test\":\"concurrentvalue\"}");
 				indexFlushAndRefresh(INDEX_NAME);
-				Map<String, Object> doc = indexGetDocument(INDEX_NAME, INDEX_TYPE, sysId);
-				assertNotNull(doc);
-				assertEquals("testvalue", doc.get("test"));
-				assertEquals("testvalue2", doc.get("test2"));
-				assertEquals("jbossorg", doc.get(ContentObjectFields.SYS_CONTENT_PROVIDER));
-				assertEquals("2", doc.get(ContentObjectFields.SYS_CONTENT_ID));
-				assertEquals(sys_content_type, doc.get(ContentObjectFields.SYS_CONTENT_TYPE));
-				assertEquals("my_sys_type", doc.get(ContentObjectFields.SYS_TYPE));
-				assertEquals("text/plain", doc.get(ContentObjectFields.SYS_CONTENT_CONTENT_TYPE));
-				String expectedContentId = tested.providerService.generateSysId(sys_content_type, "2");
-
-				assertEquals(expectedContentId, doc.get(ContentObjectFields.SYS_ID));
-				assertNotNull(doc.get(ContentObjectFields.SYS_UPDATED));
-				assertEquals("tag_value", ((List<String>) doc.get(ContentObjectFields.SYS_TAGS)).get(0));
-				verify(tested.eventContentStored).fire(prepareContentStoredEventMatcher(expectedContentId));
-				verifyNoMoreInteractions(tested.contentPersistenceService);
+				ContentRestService testedSpy = Mockito.spy(tested);
+				Mockito.doReturn(stale).when(testedSpy).getIndexedContent(INDEX_NAME, INDEX_TYPE, sysId, true);
+				assertResponseStatus(testedSpy.patchContent(sys_content_type, "1", createPatch()), Response.Status.CONFLICT);
+				verify(tested.contentPushService, Mockito.never()).fireContentStoredEvents(Mockito.anyMap());
+				indexFlushAndRefresh(INDEX_NAME);
+				assertEquals("concurrentvalue", indexGetDocument(INDEX_NAME, INDEX_TYPE, sysId).get("test"));
 			}
 
-			// case - rewrite document in index
+			// case - persistence, content is read from it and stored back, whole content is indexed if missing in index
+			sys_content_type = TYPE_PERSIST;
+			sysId = tested.providerService.generateSysId(sys_content_type, "1");
 			{
-				reset(tested.providerService, tested.contentPersistenceService, tested.eventContentStored,
-						tested.eventBeforeIndexed);
-				setupProviderServiceMock(tested.providerService);
-				content.clear();
-				content.put("test3", "testvalue3");
-				Response r = assertResponseStatus(tested.pushContent(sys_content_type, "1", content), Response.Status.OK);
-				String sysId = tested.providerService.generateSysId(sys_content_type, "1");
-				verify(tested.eventBeforeIndexed).fire(prepareContentBeforeIndexedEventMatcher(sysId, content));
-				assertEquals("update", ((Map<String, String>) r.getEntity()).get("status"));
-				verify(tested.providerService).runPreprocessors(sys_content_type, PREPROCESSORS, content);
+				reset(tested.contentPersistenceService, tested.contentPushService);
+				Map<String, Object> stored = createUnchangedTestContent("testvalue");
+				stored.put(ContentObjectFields.SYS_CONTENT_HASH, "hash");
+				Mockito.when(tested.contentPersistenceService.get(sysId, sys_content_type)).thenReturn(stored);
+
+				assertResponseStatus(tested.patchContent(sys_content_type, "1", createPatch()), Response.Status.OK);
+				verify(tested.contentPersistenceService).get(sysId, sys_content_type);
+				verify(tested.contentPersistenceService).store(sysId, sys_content_type, stored);
+				verifyNoMoreInteractions(tested.contentPersistenceService);
+				verify(tested.contentPushService).fireContentStoredEvents(Collections.singletonMap(sysId, stored));
+				assertEquals("patchedvalue", stored.get("test"));
+				assertFalse(stored.containsKey(ContentObjectFields.SYS_CONTENT_HASH));
 				indexFlushAndRefresh(INDEX_NAME);
 				Map<String, Object> doc = indexGetDocument(INDEX_NAME, INDEX_TYPE, sysId);
-				assertNotNull(doc);
-				assertEquals(null, doc.get("test"));
-				assertEquals("testvalue3", doc.get("test3"));
-				assertEquals("jbossorg", doc.get(ContentObjectFields.SYS_CONTENT_PROVIDER));
-				assertEquals("1", doc.get(ContentObjectFields.SYS_CONTENT_ID));
-				assertEquals(sys_content_type, doc.get(ContentObjectFields.SYS_CONTENT_TYPE));
+				assertEquals("patchedvalue", doc.get("test"));
 				assertEquals("my_sys_type", doc.get(ContentObjectFields.SYS_TYPE));
-				assertEquals(null, doc.get(ContentObjectFields.SYS_CONTENT_CONTENT_TYPE));
-				String expectedContentId = tested.providerService.generateSysId(sys_content_type, "1");
-				assertEquals(expectedContentId, doc.get(ContentObjectFields.SYS_ID));
-				assertNotNull(doc.get(ContentObjectFields.SYS_UPDATED));
-				assertEquals(null, doc.get(ContentObjectFields.SYS_TAGS));
-
-				verify(tested.eventContentStored).fire(prepareContentStoredEventMatcher(expectedContentId));
-				verifyNoMoreInteractions(tested.contentPersistenceService);
+				assertEquals(TestUtils.createListOfStrings("tag1", "tag2"), doc.get("tags"));
 			}
 		} finally {
 			indexDelete(INDEX_NAME);
@@ -424,135 +333,279 @@ public class ContentRestServiceTest extends ESRealClientTestBase {
 		}
 	}
 
-	private ContentBeforeIndexedEvent prepareContentBeforeIndexedEventMatcher(final String expectedId,
-			final Map<String, Object> expectedContentObject) {
-		return Mockito.argThat(new CustomMatcher<ContentBeforeIndexedEvent>("ContentBeforeIndexedEvent [contentId="
-				+ expectedId + " data=" + expectedContentObject + "]") {
+	@Test
+	public void createPartialDocument() throws Exception {
+		ContentRestService tested = getTested(false);
+		Map<String, Object> original = new HashMap<>();
+		original.put("same", "v");
+		original.put("changed", "v");
+		original.put("removed", "v");
+		Map<String, Object> originalMap = new HashMap<>();
+		originalMap.put("k1", "v1");
+		original.put("map", originalMap);
 
-			@Override
-			public boolean matches(Object paramObject) {
-				ContentBeforeIndexedEvent e = (ContentBeforeIndexedEvent) paramObject;
-				return e.getContentId().equals(expectedId) && e.getContentData() == expectedContentObject;
-			}
+		Map<String, Object> content = new HashMap<>();
+		content.put("same", "v");
+		content.put("changed", "v2");
+		content.put("added", "v");
+		Map<String, Object> contentMap = new HashMap<>();
+		contentMap.put("k1", "v1");
+		content.put("map", contentMap);
+
+		Map<String, Object> partial = tested.createPartialDocument(original, content);
+		assertEquals(3, partial.size());
+		assertEquals("v2", partial.get("changed"));
+		assertEquals("v", partial.get("added"));
+		Assert.assertTrue(partial.containsKey("removed"));
+		assertEquals(null, partial.get("removed"));
+
+		// case - value removed from object can't be updated by partial document
+		contentMap.remove("k1");
+		contentMap.put("k2", "v2");
+		assertEquals(null, tested.createPartialDocument(original, content));
+	}
 
-		});
+	private Map<String, Object> createPatch() {
+		Map<String, Object> patch = new HashMap<>();
+		patch.put("test", "patchedvalue");
+		patch.put("other", null);
+		return patch;
+	}
+
+	private Map<String, Object> createUnchangedTestContent(String value) {
+		Map<String, Object> content = new HashMap<>();
+		content.put("test", value);
+		content.put("tags", TestUtils.createListOfStrings("tag1", "tag2"));
+		return content;
+	}
+
+	@Test(expected = NotAuthorizedException.class)
+	public void pushContentBulkAsync_noPermission() throws Exception {
+		ContentRestService tested = getTested(false);
+		Mockito.doThrow(new NotAuthorizedException("no perm")).when(tested.authenticationUtilService)
+				.checkProviderManagementPermission(ProviderServiceTest.TEST_PROVIDER_NAME);
+		tested.pushContentBulkAsync(TYPE_KNOWN, createBulkContent("1"));
 	}
 
 	@SuppressWarnings("unchecked")
 	@Test
-	public void pushContent_persistence() throws Exception {
+	public void pushContentBulkAsync() throws Exception {
+		ContentRestService tested = getTested(false);
+
+		// case - no content
 		try {
-			ContentRestService tested = getTested(true);
-			Map<String, Object> content = new HashMap<String, Object>();
+			tested.pushContentBulkAsync(TYPE_KNOWN, new HashMap<String, Object>());
+			Assert.fail("BadFieldException expected");
+		} catch (BadFieldException e) {
+			// OK
+		}
 
-			// case - insert when index is not found, remove sys_content_content-type because sys_content not present
-			String sys_content_type = TYPE_PERSIST;
+		// case - content is not JSON structure
+		try {
+			Map<String, Object> content = createBulkContent("1");
+			content.put("2", "not structure");
+			tested.pushContentBulkAsync(TYPE_KNOWN, content);
+			Assert.fail("BadFieldException expected");
+		} catch (BadFieldException e) {
+			// OK
+		}
+		verifyZeroInteractions(tested.ingestQueueService);
 
-			{
-				Mockito.reset(tested.contentPersistenceService, tested.eventContentStored, tested.eventBeforeIndexed);
-				indexDelete(INDEX_NAME);
-				content.clear();
-				content.put("test", "testvalue");
-				content.put(ContentObjectFields.SYS_VISIBLE_FOR_ROLES, new ArrayList<String>());
-				content.put(ContentObjectFields.SYS_CONTENT_CONTENT_TYPE, "text/html");
-				Response r = assertResponseStatus(tested.pushContent(sys_content_type, "1", content), Response.Status.OK);
-				// verify enhancements called
-				String sysId = tested.providerService.generateSysId(sys_content_type, "1");
-				verify(tested.eventBeforeIndexed).fire(prepareContentBeforeIndexedEventMatcher(sysId, content));
-				assertEquals("insert", ((Map<String, String>) r.getEntity()).get("status"));
-				indexFlushAndRefresh(INDEX_NAME);
-				Map<String, Object> doc = indexGetDocument(INDEX_NAME, INDEX_TYPE,
-						tested.providerService.generateSysId(sys_content_type, "1"));
-				assertNotNull(doc);
-				assertEquals("testvalue", doc.get("test"));
-				assertEquals("jbossorg", doc.get(ContentObjectFields.SYS_CONTENT_PROVIDER));
-				assertEquals("1", doc.get(ContentObjectFields.SYS_CONTENT_ID));
-				assertEquals(sys_content_type, doc.get(ContentObjectFields.SYS_CONTENT_TYPE));
-				assertEquals("my_sys_type", doc.get(ContentObjectFields.SYS_TYPE));
-				assertEquals(null, doc.get(ContentObjectFields.SYS_CONTENT_CONTENT_TYPE));
-				String expectedContentId = tested.providerService.generateSysId(sys_content_type, "1");
-				assertEquals(expectedContentId, doc.get(ContentObjectFields.SYS_ID));
-				assertNotNull(doc.get(ContentObjectFields.SYS_UPDATED));
-				assertFalse(doc.containsKey(ContentObjectFields.SYS_VISIBLE_FOR_ROLES));
-				assertEquals(null, doc.get(ContentObjectFields.SYS_TAGS));
-				verify(tested.contentPersistenceService).store(tested.providerService.generateSysId(sys_content_type, "1"),
-						sys_content_type, content);
-				verify(tested.eventContentStored).fire(prepareContentStoredEventMatcher(expectedContentId));
-				verifyNoMoreInteractions(tested.contentPersistenceService);
-			}
+		// case - queue is full and no orphaned queue to remove
+		Mockito.when(tested.ingestQueueService.count(null)).thenReturn(9);
+		try {
+			tested.pushContentBulkAsync(TYPE_KNOWN, createBulkContent("1", "2"));
+			Assert.fail("OperationUnavailableException expected");
+		} catch (OperationUnavailableException e) {
+			// OK
+		}
+		verify(tested.ingestQueueService).count(null);
+		verify(tested.ingestQueueService).listQueueIds(Mockito.any(Date.class));
+		verifyNoMoreInteractions(tested.ingestQueueService);
+
+		// case - queue filled by concurrent request so content is not put into it
+		reset(tested.ingestQueueService);
+		Mockito.when(tested.ingestQueueService.count(null)).thenReturn(8);
+		Mockito.when(tested.ingestQueueService.enqueue(Mockito.anyMap(), Mockito.eq(10))).thenReturn(null);
+		try {
+			tested.pushContentBulkAsync(TYPE_KNOWN, createBulkContent("1", "2"));
+			Assert.fail("OperationUnavailableException expected");
+		} catch (OperationUnavailableException e) {
+			// OK
+		}
+		verify(tested.ingestQueueService).enqueue(Mockito.anyMap(), Mockito.eq(10));
+		Mockito.verify(tested.ingestQueueService, Mockito.never()).removeQueue(Mockito.anyString());
+
+		// case - content accepted
+		reset(tested.ingestQueueService);
+		Mockito.when(tested.ingestQueueService.count(null)).thenReturn(8);
+		Mockito.when(tested.ingestQueueService.enqueue(Mockito.anyMap(), Mockito.eq(10))).thenReturn("qid");
+		Map<String, Object> taskConfig = new HashMap<>();
+		taskConfig.put(ReindexingTaskFactory.CFG_SYS_CONTENT_TYPE, TYPE_KNOWN);
+		taskConfig.put(ReindexingTaskFactory.CFG_INGEST_QUEUE_ID, "qid");
+		Mockito.when(
+				tested.taskService.getTaskManager().createTask(ReindexingTaskTypes.PROCESS_INGEST_JOB.getTaskType(),
+						taskConfig)).thenReturn("jobid");
+		Response r = assertResponseStatus(tested.pushContentBulkAsync(TYPE_KNOWN, createBulkContent("1", "2")),
+				Response.Status.ACCEPTED);
+		Map<String, Object> ret = (Map<String, Object>) r.getEntity();
+		assertEquals("jobid", ret.get("job_id"));
+		assertEquals("accepted", ret.get("status"));
+		verify(tested.ingestQueueService).enqueue(Mockito.anyMap(), Mockito.eq(10));
+		Mockito.verify(tested.ingestQueueService, Mockito.never()).removeQueue(Mockito.anyString());
+
+		// case - task creation failed so queue is removed
+		Mockito.when(tested.taskService.getTaskManager().createTask(Mockito.anyString(), Mockito.anyMap())).thenThrow(
+				new RuntimeException("test"));
+		try {
+			tested.pushContentBulkAsync(TYPE_KNOWN, createBulkContent("1", "2"));
+			Assert.fail("RuntimeException expected");
+		} catch (RuntimeException e) {
+			// OK
+		}
+		verify(tested.ingestQueueService).removeQueue("qid");
+	}
 
-			// case - insert when index is found, fill sys_updated if not provided in content, process tags provided in
-			// content, rewrite sys_content_content-type because sys_content is present
-			{
-				reset(tested.providerService, tested.contentPersistenceService, tested.eventContentStored,
-						tested.eventBeforeIndexed);
-				setupProviderServiceMock(tested.providerService);
-				content.put("test2", "testvalue2");
-				content.put(ContentObjectFields.SYS_CONTENT, "sys content");
-				content.put(ContentObjectFields.SYS_CONTENT_CONTENT_TYPE, "text/html");
-				content.remove(ContentObjectFields.SYS_UPDATED);
-				String[] tags = new String[] { "tag_value" };
-				content.put("tags", tags);
-				Response r = assertResponseStatus(tested.pushContent(sys_content_type, "2", content), Response.Status.OK);
-				// verify enhancements called
-				String sysId = tested.providerService.generateSysId(sys_content_type, "2");
-				verify(tested.eventBeforeIndexed).fire(prepareContentBeforeIndexedEventMatcher(sysId, content));
-				assertEquals("insert", ((Map<String, String>) r.getEntity()).get("status"));
-				indexFlushAndRefresh(INDEX_NAME);
-				Map<String, Object> doc = indexGetDocument(INDEX_NAME, INDEX_TYPE, sysId);
-				assertNotNull(doc);
-				assertEquals("testvalue", doc.get("test"));
-				assertEquals("testvalue2", doc.get("test2"));
-				assertEquals("jbossorg", doc.get(ContentObjectFields.SYS_CONTENT_PROVIDER));
-				assertEquals("2", doc.get(ContentObjectFields.SYS_CONTENT_ID));
-				assertEquals(sys_content_type, doc.get(ContentObjectFields.SYS_CONTENT_TYPE));
-				assertEquals("my_sys_type", doc.get(ContentObjectFields.SYS_TYPE));
-				assertEquals("text/plain", doc.get(ContentObjectFields.SYS_CONTENT_CONTENT_TYPE));
-				String expectedContentId = tested.providerService.generateSysId(sys_content_type, "2");
-				assertEquals(expectedContentId, doc.get(ContentObjectFields.SYS_ID));
-				assertNotNull(doc.get(ContentObjectFields.SYS_UPDATED));
-				assertEquals("tag_value", ((List<String>) doc.get(ContentObjectFields.SYS_TAGS)).get(0));
-				verify(tested.contentPersistenceService).store(tested.providerService.generateSysId(sys_content_type, "2"),
-						sys_content_type, content);
-
-				verify(tested.eventContentStored).fire(prepareContentStoredEventMatcher(expectedContentId));
-				verifyNoMoreInteractions(tested.contentPersistenceService);
-			}
+	@Test
+	public void removeOrphanedIngestQueues() {
+		ContentRestService tested = getTested(false);
+		TaskManager taskManager = tested.taskService.getTaskManager();
+
+		List<TaskStatusInfo> tasks = new ArrayList<>();
+		TaskStatusInfo tsi = new TaskStatusInfo();
+		Map<String, Object> taskConfig = new HashMap<>();
+		taskConfig.put(ReindexingTaskFactory.CFG_INGEST_QUEUE_ID, "qid_active");
+		tsi.setTaskConfig(taskConfig);
+		tasks.add(tsi);
+		Mockito.when(
+				taskManager.listTasks(ReindexingTaskTypes.PROCESS_INGEST_JOB.getTaskType(),
+						Arrays.asList(TaskStatus.NEW, TaskStatus.RUNNING, TaskStatus.FAILOVER), 0, 0)).thenReturn(tasks);
+		Mockito.when(tested.ingestQueueService.listQueueIds(Mockito.any(Date.class))).thenReturn(
+				new LinkedHashSet<>(Arrays.asList("qid_active", "qid_orphan")));
+
+		assertEquals(1, tested.removeOrphanedIngestQueues());
+		verify(tested.ingestQueueService).removeQueue("qid_orphan");
+		Mockito.verify(tested.ingestQueueService, Mockito.never()).removeQueue("qid_active");
+	}
 
-			// case - rewrite document in index
-			{
-				reset(tested.providerService, tested.contentPersistenceService, tested.eventContentStored,
-						tested.eventBeforeIndexed);
-				setupProviderServiceMock(tested.providerService);
-				content.clear();
-				content.put("test3", "testvalue3");
-				Response r = assertResponseStatus(tested.pushContent(sys_content_type, "1", content), Response.Status.OK);
-				// verify enhancements called
-				String sysId = tested.providerService.generateSysId(sys_content_type, "1");
-				verify(tested.eventBeforeIndexed).fire(prepareContentBeforeIndexedEventMatcher(sysId, content));
-				assertEquals("update", ((Map<String, String>) r.getEntity()).get("status"));
-				indexFlushAndRefresh(INDEX_NAME);
-				Map<String, Object> doc = indexGetDocument(INDEX_NAME, INDEX_TYPE, sysId);
-				assertNotNull(doc);
-				assertEquals(null, doc.get("test"));
-				assertEquals("testvalue3", doc.get("test3"));
-				assertEquals("jbossorg", doc.get(ContentObjectFields.SYS_CONTENT_PROVIDER));
-				assertEquals("1", doc.get(ContentObjectFields.SYS_CONTENT_ID));
-				assertEquals(sys_content_type, doc.get(ContentObjectFields.SYS_CONTENT_TYPE));
-				assertEquals("my_sys_type", doc.get(ContentObjectFields.SYS_TYPE));
-				assertEquals(null, doc.get(ContentObjectFields.SYS_CONTENT_CONTENT_TYPE));
-				assertEquals(tested.providerService.generateSysId(sys_content_type, "1"), doc.get(ContentObjectFields.SYS_ID));
-				assertNotNull(doc.get(ContentObjectFields.SYS_UPDATED));
-				assertEquals(null, doc.get(ContentObjectFields.SYS_TAGS));
-				String expectedContentId = tested.providerService.generateSysId(sys_content_type, "1");
-				verify(tested.contentPersistenceService).store(expectedContentId, sys_content_type, content);
-				verify(tested.eventContentStored).fire(prepareContentStoredEventMatcher(expectedContentId));
-				verifyNoMoreInteractions(tested.contentPersistenceService);
-			}
-		} finally {
-			indexDelete(INDEX_NAME);
-			finalizeESClientForUnitTest();
+	@Test
+	public void getPushContentAsyncJob() throws Exception {
+		ContentRestService tested = getTested(false);
+		TaskManager taskManager = tested.taskService.getTaskManager();
+
+		// case - unknown job
+		assertResponseStatus(tested.getPushContentAsyncJob(TYPE_KNOWN, "jobid"), Response.Status.NOT_FOUND);
+
+		// case - job of other type of task
+		TaskStatusInfo tsi = new TaskStatusInfo();
+		tsi.setId("jobid");
+		tsi.setTaskType(ReindexingTaskTypes.REINDEX_PROJECT.getTaskType());
+		tsi.setTaskStatus(TaskStatus.RUNNING);
+		Map<String, Object> taskConfig = new HashMap<>();
+		taskConfig.put(ReindexingTaskFactory.CFG_SYS_CONTENT_TYPE, TYPE_KNOWN);
+		taskConfig.put(ReindexingTaskFactory.CFG_INGEST_QUEUE_ID, "qid");
+		tsi.setTaskConfig(taskConfig);
+		Mockito.when(taskManager.getTaskStatusInfo("jobid")).thenReturn(tsi);
+		assertResponseStatus(tested.getPushContentAsyncJob(TYPE_KNOWN, "jobid"), Response.Status.NOT_FOUND);
+
+		// case - job of other content type
+		tsi.setTaskType(ReindexingTaskTypes.PROCESS_INGEST_JOB.getTaskType());
+		assertResponseStatus(tested.getPushContentAsyncJob(TYPE_PERSIST, "jobid"), Response.Status.NOT_FOUND);
+
+		// case - job found
+		Mockito.when(tested.ingestQueueService.count("qid")).thenReturn(5);
+		@SuppressWarnings("unchecked")
+		Map<String, Object> ret = (Map<String, Object>) tested.getPushContentAsyncJob(TYPE_KNOWN, "jobid");
+		assertEquals("jobid", ret.get("job_id"));
+		assertEquals("RUNNING", ret.get("status"));
+		assertEquals(5, ret.get("queued_count"));
+	}
+
+	private Map<String, Object> createBulkContent(String... ids) {
+		Map<String, Object> ret = new LinkedHashMap<>();
+		for (String id : ids) {
+			ret.put(id, createUnchangedTestContent("value" + id));
 		}
+		return ret;
+	}
+
+	@Test(expected = NotAuthorizedException.class)
+	public void pushContentBulkStream_noPermission() throws Exception {
+		ContentRestService tested = getTested(false);
+		Mockito.doThrow(new NotAuthorizedException("no perm")).when(tested.authenticationUtilService)
+				.checkProviderManagementPermission(ProviderServiceTest.TEST_PROVIDER_NAME);
+		tested.pushContentBulkStream(TYPE_KNOWN, new ByteArrayInputStream(new byte[0]));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void pushContentBulkStream() throws Exception {
+		ContentRestService tested = getTested(false);
+		String sys_content_type = TYPE_KNOWN;
+		ProviderContentTypeInfo typeInfo = tested.providerService.findContentType(sys_content_type);
+
+		Assert.assertTrue(tested.pushContentBulkStream(sys_content_type, new ByteArrayInputStream(new byte[0])) instanceof
+				StreamingOutput);
+
+		// content pushed in chunks, status is insert for first push of content and update for next one
+		final Map<String, Map<String, Object>> pushed = new HashMap<>();
+		Mockito.doAnswer(new Answer<Void>() {
+			@Override
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				Map<String, Object> chunk = (Map<String, Object>) invocation.getArguments()[1];
+				Map<String, Object> ret = (Map<String, Object>) invocation.getArguments()[2];
+				for (String contentId : chunk.keySet()) {
+					Map<String, Object> status = new LinkedHashMap<>();
+					if (pushed.containsKey(contentId)) {
+						status.put("status", "update");
+						status.put("message", "Content updated successfully.");
+					} else {
+						status.put("status", "insert");
+						status.put("message", "Content inserted successfully.");
+					}
+					pushed.put(contentId, (Map<String, Object>) chunk.get(contentId));
+					ret.put(contentId, status);
+				}
+				return null;
+			}
+		}).when(tested.contentPushService).pushContentBulk(Mockito.eq(typeInfo), Mockito.anyMap(), Mockito.anyMap());
+
+		String input = "{\"sys_content_id\":\"1\",\"test\":\"value1\"}\n"
+				+ "{\"sys_content_id\":\"2\",\"test\":\"value2\"}\n" + "[\"not object\"]\n"
+				+ "{\"test\":\"no id\"}\n" + "{\"sys_content_id\":\"3\",\"test\":\"value3\"}\n"
+				+ "{\"sys_content_id\":\"3\",\"test\":\"value3_2\"}\n" + "{\"sys_content_id\":\"4\",broken\n";
+
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		tested.pushContentBulkStreamImpl(typeInfo, new ByteArrayInputStream(input.getBytes("UTF-8")), output, 2);
+
+		String[] lines = output.toString("UTF-8").split("\n");
+		Assert.assertEquals(7, lines.length);
+		TestUtils.assertJsonContent(
+				"{\"sys_content_id\":\"1\",\"status\":\"insert\",\"message\":\"Content inserted successfully.\"}",
+				lines[0]);
+		TestUtils.assertJsonContent(
+				"{\"sys_content_id\":\"2\",\"status\":\"insert\",\"message\":\"Content inserted successfully.\"}",
+				lines[1]);
+		TestUtils.assertJsonContent(
+				"{\"sys_content_id\":null,\"status\":\"error\",\"message\":\"content must be JSON structure\"}", lines[2]);
+		TestUtils.assertJsonContent(
+				"{\"sys_content_id\":null,\"status\":\"error\",\"message\":\"sys_content_id field is required\"}",
+				lines[3]);
+		TestUtils.assertJsonContent(
+				"{\"sys_content_id\":\"3\",\"status\":\"insert\",\"message\":\"Content inserted successfully.\"}",
+				lines[4]);
+		TestUtils.assertJsonContent(
+				"{\"sys_content_id\":\"3\",\"status\":\"update\",\"message\":\"Content updated successfully.\"}",
+				lines[5]);
+		Assert.assertTrue(lines[6].contains("Invalid JSON, processing stopped"));
+
+		// case - same content in one stream is pushed in separate chunks in order of appearance
+		verify(tested.contentPushService, Mockito.times(3)).pushContentBulk(Mockito.eq(typeInfo), Mockito.anyMap(),
+				Mockito.anyMap());
+		Assert.assertEquals("value1", pushed.get("1").get("test"));
+		Assert.assertEquals("value3_2", pushed.get("3").get("test"));
+		Assert.assertFalse(pushed.get("3").containsKey(ContentObjectFields.SYS_CONTENT_ID));
+		Assert.assertFalse(pushed.containsKey("4"));
 	}
 
 	@Test(expected = NotAuthorizedException.class)
@@ -580,223 +633,28 @@ public class ContentRestServiceTest extends ESRealClientTestBase {
 
 	@SuppressWarnings("unchecked")
 	@Test
-	public void pushContentBulk_noPersistence() throws Exception {
-		try {
-			ContentRestService tested = getTested(true);
-
-			String sys_content_type = TYPE_KNOWN;
-
-			// case - insert/update, fill sys_updated if not provided in content, process tags provided in
-			// content, fill sys_content_content-type because sys_content is present
-			{
-				String sysId_1 = tested.providerService.generateSysId(sys_content_type, "1");
-				String sysId_2 = tested.providerService.generateSysId(sys_content_type, "2");
-
-				indexInsertDocument(INDEX_NAME, INDEX_TYPE, sysId_1, "{\"test\":\"old\"}");
-				indexFlushAndRefresh(INDEX_NAME);
-
-				reset(tested.providerService, tested.contentPersistenceService, tested.eventContentStored,
-						tested.eventBeforeIndexed);
-				setupProviderServiceMock(tested.providerService);
-				Map<String, Object> contentStructure = new LinkedHashMap<>();
-
-				// empty content means error
-				contentStructure.put("empty_content", new HashMap<>());
-
-				Map<String, Object> content_1 = new HashMap<>();
-				contentStructure.put("1", content_1);
-				content_1.put("test", "testvalue");
-				content_1.put(ContentObjectFields.SYS_CONTENT, "sys content");
-				content_1.remove(ContentObjectFields.SYS_UPDATED);
-				String[] tags = new String[] { "tag_value" };
-				content_1.put("tags", tags);
-
-				Map<String, Object> content_2 = new HashMap<>();
-				contentStructure.put("2", content_2);
-				content_2.put("test2", "testvalue2");
-				content_2.put(ContentObjectFields.SYS_CONTENT, "sys content");
-				content_2.remove(ContentObjectFields.SYS_UPDATED);
-				String[] tags2 = new String[] { "tag_value" };
-				content_2.put("tags", tags2);
-
-				// validation of id format
-				contentStructure.put("_bad_id_format", content_2);
-				contentStructure.put("bad_id,format", content_2);
-				contentStructure.put("bad_id*format", content_2);
-
-				Map<String, Map<String, Object>> ret = (Map<String, Map<String, Object>>) tested.pushContentBulk(
-						sys_content_type, contentStructure);
-				Assert.assertEquals(6, ret.size());
-				assertBulkPushRetItem(ret.get("empty_content"), "error",
-						"fieldName=content, description=Some content for pushing must be defined");
-				assertBulkPushRetItem(ret.get("_bad_id_format"), "error",
-						"fieldName=contentId, description=contentId can't start with underscore or contain comma, star");
-				assertBulkPushRetItem(ret.get("bad_id,format"), "error",
-						"fieldName=contentId, description=contentId can't start with underscore or contain comma, star");
-				assertBulkPushRetItem(ret.get("bad_id*format"), "error",
-						"fieldName=contentId, description=contentId can't start with underscore or contain comma, star");
-
-				assertBulkPushRetItem(ret.get("1"), "update", "Content updated successfully.");
-				assertBulkPushRetItem(ret.get("2"), "insert", "Content inserted successfully.");
-
-				verify(tested.eventBeforeIndexed).fire(prepareContentBeforeIndexedEventMatcher(sysId_1, content_1));
-				verify(tested.eventBeforeIndexed).fire(prepareContentBeforeIndexedEventMatcher(sysId_2, content_2));
-				verify(tested.providerService).runPreprocessors(sys_content_type, PREPROCESSORS, content_1);
-				verify(tested.providerService).runPreprocessors(sys_content_type, PREPROCESSORS, content_2);
-				verify(tested.eventContentStored).fire(prepareContentStoredEventMatcher(sysId_1));
-				verify(tested.eventContentStored).fire(prepareContentStoredEventMatcher(sysId_2));
-				verifyNoMoreInteractions(tested.contentPersistenceService, tested.eventBeforeIndexed,
-						tested.eventContentDeleted, tested.eventContentStored);
-
-				indexFlushAndRefresh(INDEX_NAME);
-
-				// assert documents in index
-				{
-					Map<String, Object> doc = indexGetDocument(INDEX_NAME, INDEX_TYPE, sysId_2);
-					assertNotNull(doc);
-					assertEquals("testvalue2", doc.get("test2"));
-					assertEquals("jbossorg", doc.get(ContentObjectFields.SYS_CONTENT_PROVIDER));
-					assertEquals("2", doc.get(ContentObjectFields.SYS_CONTENT_ID));
-					assertEquals(sys_content_type, doc.get(ContentObjectFields.SYS_CONTENT_TYPE));
-					assertEquals("my_sys_type", doc.get(ContentObjectFields.SYS_TYPE));
-					assertEquals("text/plain", doc.get(ContentObjectFields.SYS_CONTENT_CONTENT_TYPE));
-					assertEquals(sysId_2, doc.get(ContentObjectFields.SYS_ID));
-					assertNotNull(doc.get(ContentObjectFields.SYS_UPDATED));
-					assertEquals("tag_value", ((List<String>) doc.get(ContentObjectFields.SYS_TAGS)).get(0));
-				}
-				{
-					Map<String, Object> doc = indexGetDocument(INDEX_NAME, INDEX_TYPE, sysId_1);
-					assertNotNull(doc);
-					assertEquals("testvalue", doc.get("test"));
-					assertEquals("jbossorg", doc.get(ContentObjectFields.SYS_CONTENT_PROVIDER));
-				}
-			}
-
-		} finally {
-			indexDelete(INDEX_NAME);
-			finalizeESClientForUnitTest();
-		}
-	}
-
-	@SuppressWarnings("unchecked")
-	@Test
-	public void pushContentBulk_persistence() throws Exception {
-		try {
-			ContentRestService tested = getTested(true);
-
-			String sys_content_type = TYPE_PERSIST;
-
-			// case - insert/update, fill sys_updated if not provided in content, process tags provided in
-			// content, fill sys_content_content-type because sys_content is present
-			{
-				String sysId_1 = tested.providerService.generateSysId(sys_content_type, "1");
-				String sysId_2 = tested.providerService.generateSysId(sys_content_type, "2");
-
-				indexInsertDocument(INDEX_NAME, INDEX_TYPE, sysId_1, "{\"test\":\"old\"}");
-				indexFlushAndRefresh(INDEX_NAME);
-
-				reset(tested.providerService, tested.contentPersistenceService, tested.eventContentStored,
-						tested.eventBeforeIndexed);
-				setupProviderServiceMock(tested.providerService);
-				Map<String, Object> contentStructure = new LinkedHashMap<>();
-
-				// empty content means error
-				contentStructure.put("empty_content", new HashMap<>());
-
-				Map<String, Object> content_1 = new HashMap<>();
-				contentStructure.put("1", content_1);
-				content_1.put("test", "testvalue");
-				content_1.put(ContentObjectFields.SYS_CONTENT, "sys content");
-				content_1.remove(ContentObjectFields.SYS_UPDATED);
-				String[] tags = new String[] { "tag_value" };
-				content_1.put("tags", tags);
-
-				Map<String, Object> content_2 = new HashMap<>();
-				contentStructure.put("2", content_2);
-				content_2.put("test2", "testvalue2");
-				content_2.put(ContentObjectFields.SYS_CONTENT, "sys content");
-				content_2.remove(ContentObjectFields.SYS_UPDATED);
-				String[] tags2 = new String[] { "tag_value" };
-				content_2.put("tags", tags2);
-
-				// validation of id format
-				contentStructure.put("_bad_id_format", content_2);
-				contentStructure.put("bad_id,format", content_2);
-				contentStructure.put("bad_id*format", content_2);
-
-				Map<String, Map<String, Object>> ret = (Map<String, Map<String, Object>>) tested.pushContentBulk(
-						sys_content_type, contentStructure);
-				Assert.assertEquals(6, ret.size());
-				assertBulkPushRetItem(ret.get("empty_content"), "error",
-						"fieldName=content, description=Some content for pushing must be defined");
-				assertBulkPushRetItem(ret.get("_bad_id_format"), "error",
-						"fieldName=contentId, description=contentId can't start with underscore or contain comma, star");
-				assertBulkPushRetItem(ret.get("bad_id,format"), "error",
-						"fieldName=contentId, description=contentId can't start with underscore or contain comma, star");
-				assertBulkPushRetItem(ret.get("bad_id*format"), "error",
-						"fieldName=contentId, description=contentId can't start with underscore or contain comma, star");
-
-				assertBulkPushRetItem(ret.get("1"), "update", "Content updated successfully.");
-				assertBulkPushRetItem(ret.get("2"), "insert", "Content inserted successfully.");
-
-				verify(tested.eventBeforeIndexed).fire(prepareContentBeforeIndexedEventMatcher(sysId_1, content_1));
-				verify(tested.eventBeforeIndexed).fire(prepareContentBeforeIndexedEventMatcher(sysId_2, content_2));
-				verify(tested.providerService).runPreprocessors(sys_content_type, null, content_1);
-				verify(tested.providerService).runPreprocessors(sys_content_type, null, content_2);
-				verify(tested.contentPersistenceService).store(sysId_1, sys_content_type, content_1);
-				verify(tested.contentPersistenceService).store(sysId_2, sys_content_type, content_2);
-				verify(tested.eventContentStored).fire(prepareContentStoredEventMatcher(sysId_1));
-				verify(tested.eventContentStored).fire(prepareContentStoredEventMatcher(sysId_2));
-				verifyNoMoreInteractions(tested.contentPersistenceService, tested.eventBeforeIndexed,
-						tested.eventContentDeleted, tested.eventContentStored);
-
-				indexFlushAndRefresh(INDEX_NAME);
-
-				// assert documents in index
-				{
-					Map<String, Object> doc = indexGetDocument(INDEX_NAME, INDEX_TYPE, sysId_2);
-					assertNotNull(doc);
-					assertEquals("testvalue2", doc.get("test2"));
-					assertEquals("jbossorg", doc.get(ContentObjectFields.SYS_CONTENT_PROVIDER));
-					assertEquals("2", doc.get(ContentObjectFields.SYS_CONTENT_ID));
-					assertEquals(sys_content_type, doc.get(ContentObjectFields.SYS_CONTENT_TYPE));
-					assertEquals("my_sys_type", doc.get(ContentObjectFields.SYS_TYPE));
-					assertEquals("text/plain", doc.get(ContentObjectFields.SYS_CONTENT_CONTENT_TYPE));
-					assertEquals(sysId_2, doc.get(ContentObjectFields.SYS_ID));
-					assertNotNull(doc.get(ContentObjectFields.SYS_UPDATED));
-					assertEquals("tag_value", ((List<String>) doc.get(ContentObjectFields.SYS_TAGS)).get(0));
-				}
-				{
-					Map<String, Object> doc = indexGetDocument(INDEX_NAME, INDEX_TYPE, sysId_1);
-					assertNotNull(doc);
-					assertEquals("testvalue", doc.get("test"));
-					assertEquals("jbossorg", doc.get(ContentObjectFields.SYS_CONTENT_PROVIDER));
-				}
-			}
-
-		} finally {
-			indexDelete(INDEX_NAME);
-			finalizeESClientForUnitTest();
-		}
-	}
-
-	private void assertBulkPushRetItem(Map<String, Object> map, String expectedStatus, String expectedMessage) {
-		Assert.assertNotNull(map);
-		Assert.assertEquals(expectedStatus, map.get(ContentRestService.RETFIELD_STATUS));
-		Assert.assertEquals(expectedMessage, map.get(ContentRestService.RETFIELD_MESSAGE));
-	}
-
-	private ContentStoredEvent prepareContentStoredEventMatcher(final String expectedContentId) {
-		return Mockito.argThat(new CustomMatcher<ContentStoredEvent>("ContentStoredEvent [contributorId="
-				+ expectedContentId + "]") {
-
+	public void pushContentBulk() throws Exception {
+		ContentRestService tested = getTested(false);
+		ProviderContentTypeInfo typeInfo = tested.providerService.findContentType(TYPE_KNOWN);
+		Map<String, Object> contentStructure = createBulkContent("1", "2");
+		Mockito.doAnswer(new Answer<Void>() {
 			@Override
-			public boolean matches(Object paramObject) {
-				ContentStoredEvent e = (ContentStoredEvent) paramObject;
-				return e.getContentId().equals(expectedContentId) && e.getContentData() != null;
+			public Void answer(InvocationOnMock invocation) throws Throwable {
+				Map<String, Object> ret = (Map<String, Object>) invocation.getArguments()[2];
+				ret.put("1", "status1");
+				ret.put("2", "status2");
+				return null;
 			}
-
-		});
+		}).when(tested.contentPushService).pushContentBulk(Mockito.eq(typeInfo), Mockito.eq(contentStructure),
+				Mockito.anyMap());
+
+		Map<String, Object> ret = (Map<String, Object>) tested.pushContentBulk(TYPE_KNOWN, contentStructure);
+		Assert.assertEquals(2, ret.size());
+		Assert.assertEquals("status1", ret.get("1"));
+		Assert.assertEquals("status2", ret.get("2"));
+		verify(tested.contentPushService).pushContentBulk(Mockito.eq(typeInfo), Mockito.eq(contentStructure),
+				Mockito.anyMap());
+		verifyNoMoreInteractions(tested.contentPushService);
 	}
 
 	private ContentDeletedEvent prepareContentDeletedEventMatcher(final String expectedContentId) {
@@ -1292,10 +1150,17 @@ public class ContentRestServiceTest extends ESRealClientTestBase {
 		tested.authenticationUtilService = mock(AuthenticationUtilService.class);
 
 		tested.contentManipulationLockService = Mockito.mock(ContentManipulationLockService.class);
+		tested.contentPushService = mock(ContentPushService.class);
 
 		tested.eventContentDeleted = mock(Event.class);
-		tested.eventContentStored = mock(Event.class);
-		tested.eventBeforeIndexed = mock(Event.class);
+
+		tested.ingestQueueService = mock(JdbcIngestQueueService.class);
+		tested.taskService = mock(TaskService.class);
+		when(tested.taskService.getTaskManager()).thenReturn(mock(TaskManager.class));
+		tested.appConfigurationService = mock(AppConfigurationService.class);
+		AppConfiguration ac = new AppConfiguration("/tmp");
+		ac.setIngestQueueMaxSize(10);
+		when(tested.appConfigurationService.getAppConfiguration()).thenReturn(ac);
 
 		when(tested.authenticationUtilService.getAuthenticatedProvider())
 				.thenReturn(ProviderServiceTest.TEST_PROVIDER_NAME);
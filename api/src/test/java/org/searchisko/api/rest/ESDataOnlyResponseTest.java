@@ -7,6 +7,7 @@ package org.searchisko.api.rest;
 
 import java.io.IOException;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import javax.ws.rs.WebApplicationException;
@@ -54,6 +55,29 @@ public class ESDataOnlyResponseTest {
 		}
 	}
 
+	@Test
+	public void write_fromData() throws WebApplicationException, IOException, JSONException {
+
+		{
+			ESDataOnlyResponse tested = ESDataOnlyResponse.fromData(new LinkedHashMap<String, Map<String, Object>>());
+			TestUtils.assetJsonStreamingOutputContent("{\"total\":0,\"hits\":[]}", tested);
+		}
+
+		{
+			Map<String, Map<String, Object>> data = new LinkedHashMap<>();
+			Map<String, Object> d1 = new HashMap<>();
+			d1.put("sys_name", "name1");
+			data.put("1", d1);
+			Map<String, Object> d2 = new HashMap<>();
+			d2.put("sys_name", "myname");
+			data.put("35", d2);
+			ESDataOnlyResponse tested = ESDataOnlyResponse.fromData(data);
+			TestUtils.assetJsonStreamingOutputContent(
+					"{\"total\":2,\"hits\":[{\"id\":\"1\",\"data\":{\"sys_name\":\"name1\"}},{\"id\":\"35\",\"data\":{\"sys_name\":\"myname\"}}]}",
+					tested);
+		}
+	}
+
 	@Test
 	public void write_filtering() throws WebApplicationException, IOException, JSONException {
 
@@ -6,6 +6,7 @@
 package org.searchisko.api.rest;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 
 import javax.ws.rs.core.Response.Status;
@@ -257,6 +258,42 @@ public class ProjectRestServiceTest {
 		}
 	}
 
+	@Test
+	public void search_fromSnapshot() throws Exception {
+		ProjectRestService tested = new ProjectRestService();
+		tested.projectService = Mockito.mock(ProjectService.class);
+		RestEntityServiceBaseTest.mockLogger(tested);
+		Mockito.when(tested.projectService.isSnapshotAvailable()).thenReturn(true);
+
+		Map<String, Map<String, Object>> projects = new LinkedHashMap<>();
+		Map<String, Object> project = new HashMap<>();
+		project.put("code", "testcode");
+		projects.put("testcode", project);
+
+		// case - by code
+		{
+			Mockito.when(tested.projectService.findProjectsByCode("testcode")).thenReturn(projects);
+			StreamingOutput ret = (StreamingOutput) tested.search(TestUtils.prepareUriInfiWithParams(
+					ProjectRestService.PARAM_CODE, "testcode"));
+			TestUtils.assetJsonStreamingOutputContent(
+					"{\"total\":1,\"hits\":[{\"id\":\"testcode\",\"data\":{\"code\":\"testcode\"}}]}", ret);
+		}
+
+		Mockito.verify(tested.projectService, Mockito.never()).findByCode(Mockito.anyString());
+
+		// case - by other identifier, no result in snapshot so fallback to search in index
+		{
+			Mockito.when(tested.projectService.findProjectsByTypeSpecificCode("idType", "IdValue")).thenReturn(
+					new LinkedHashMap<String, Map<String, Object>>());
+			SearchResponse sr = ESDataOnlyResponseTest.mockSearchResponse("ve", "email@em", null, null);
+			Mockito.when(tested.projectService.findByTypeSpecificCode("idType", "IdValue")).thenReturn(sr);
+			StreamingOutput ret = (StreamingOutput) tested.search(TestUtils.prepareUriInfiWithParams("idType", "IdValue"));
+			Mockito.verify(tested.projectService).findByTypeSpecificCode("idType", "IdValue");
+			TestUtils.assetJsonStreamingOutputContent(
+					"{\"total\":1,\"hits\":[{\"id\":\"ve\",\"data\":{\"sys_name\":\"email@em\",\"sys_id\":\"ve\"}}]}", ret);
+		}
+	}
+
 	protected ProjectRestService getTested() {
 		ProjectRestService tested = new ProjectRestService();
 		RestEntityServiceBaseTest.mockLogger(tested);
@@ -5,28 +5,43 @@
  */
 package org.searchisko.api.rest;
 
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.MultiSearchResponse;
+import org.elasticsearch.action.search.SearchPhaseExecutionException;
 import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.ShardSearchFailure;
 import org.elasticsearch.common.xcontent.ToXContent.Params;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.indices.IndexMissingException;
 import org.jboss.resteasy.specimpl.MultivaluedMapImpl;
+import org.jboss.resteasy.spi.AsynchronousResponse;
+import org.junit.Assert;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.searchisko.api.model.QuerySettings;
 import org.searchisko.api.rest.exception.BadFieldException;
 import org.searchisko.api.rest.exception.RequiredFieldException;
+import org.searchisko.api.service.AuthenticationUtilService;
+import org.searchisko.api.service.RegisteredQueryService;
 import org.searchisko.api.service.SearchService;
 import org.searchisko.api.service.StatsRecordType;
 import org.searchisko.api.testtools.TestUtils;
 import org.searchisko.api.util.QuerySettingsParser;
 
 import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
 import javax.ws.rs.core.UriInfo;
+import javax.ws.rs.ext.ExceptionMapper;
+import javax.ws.rs.ext.Providers;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.logging.Logger;
 
 /**
@@ -39,7 +54,7 @@ public class SearchRestServiceTest {
 	@Test(expected = BadFieldException.class)
 	public void search_inputParam_1() throws IOException {
 		SearchRestService tested = getTested();
-		tested.search(null);
+		tested.search(null, Mockito.mock(AsynchronousResponse.class));
 	}
 
 	@Test(expected = BadFieldException.class)
@@ -53,11 +68,11 @@ public class SearchRestServiceTest {
 		Mockito.when(uriInfo.getQueryParameters()).thenReturn(qp);
 		Mockito.when(tested.querySettingsParser.parseUriParams(qp)).thenThrow(
 				new IllegalArgumentException("test exception"));
-		Object response = tested.search(uriInfo);
-		TestUtils.assertResponseStatus(response, Status.BAD_REQUEST);
+		tested.search(uriInfo, Mockito.mock(AsynchronousResponse.class));
 		Mockito.verifyNoMoreInteractions(tested.searchService);
 	}
 
+	@SuppressWarnings("unchecked")
 	@Test
 	public void search() throws IOException {
 		SearchRestService tested = getTested();
@@ -79,19 +94,21 @@ public class SearchRestServiceTest {
 					return null;
 				}
 			}).when(sr).toXContent(Mockito.any(XContentBuilder.class), Mockito.any(Params.class));
-			Mockito.when(
-					tested.searchService.performSearch(Mockito.eq(qs), Mockito.notNull(String.class),
-							Mockito.eq(StatsRecordType.SEARCH))).thenReturn(sr);
+			mockPerformSearchAsyncResponse(tested, qs, sr);
 			Mockito.when(tested.searchService.getIntervalValuesForDateHistogramAggregations(Mockito.eq(qs))).thenReturn(
 					new HashMap<String, String>());
-			Object response = tested.search(uriInfo);
+			AsynchronousResponse asynchronousResponse = Mockito.mock(AsynchronousResponse.class);
+			tested.search(uriInfo, asynchronousResponse);
 			Mockito.verify(uriInfo).getQueryParameters();
 			Mockito.verify(tested.querySettingsParser).parseUriParams(qp);
-			Mockito.verify(tested.searchService).performSearch(Mockito.eq(qs), Mockito.notNull(String.class),
-					Mockito.eq(StatsRecordType.SEARCH));
+			Mockito.verify(tested.searchService).performSearchAsync(Mockito.eq(qs), Mockito.notNull(String.class),
+					Mockito.eq(StatsRecordType.SEARCH), Mockito.any(ActionListener.class));
 			Mockito.verify(tested.searchService).getIntervalValuesForDateHistogramAggregations(Mockito.eq(qs));
 			Mockito.verifyNoMoreInteractions(tested.searchService);
-			TestUtils.assetStreamingOutputContentRegexp("\\{\"uuid\":\".+\",\"testfield\":\"testvalue\"\\}", response);
+			Response response = getAsynchronousResponse(asynchronousResponse);
+			TestUtils.assertResponseStatus(response, Status.OK);
+			TestUtils.assetStreamingOutputContentRegexp("\\{\"uuid\":\".+\",\"testfield\":\"testvalue\"\\}",
+					response.getEntity());
 		}
 
 		// case - error handling for index not found exception
@@ -102,16 +119,17 @@ public class SearchRestServiceTest {
 			Mockito.when(uriInfo.getQueryParameters()).thenReturn(qp);
 			QuerySettings qs = new QuerySettings();
 			Mockito.when(tested.querySettingsParser.parseUriParams(qp)).thenReturn(qs);
-			Mockito.when(
-					tested.searchService.performSearch(Mockito.eq(qs), Mockito.notNull(String.class),
-							Mockito.eq(StatsRecordType.SEARCH))).thenThrow(new IndexMissingException(null));
-			Object response = tested.search(uriInfo);
-			TestUtils.assertResponseStatus(response, Status.NOT_FOUND);
+			Mockito.when(tested.searchService.getIntervalValuesForDateHistogramAggregations(Mockito.eq(qs))).thenReturn(
+					new HashMap<String, String>());
+			mockPerformSearchAsyncFailure(tested, qs, new IndexMissingException(null));
+			AsynchronousResponse asynchronousResponse = Mockito.mock(AsynchronousResponse.class);
+			tested.search(uriInfo, asynchronousResponse);
+			TestUtils.assertResponseStatus(getAsynchronousResponse(asynchronousResponse), Status.NOT_FOUND);
 		}
 	}
 
 	// case - error handling for other exceptions
-	@Test(expected = RuntimeException.class)
+	@Test
 	public void search_exceptionFromService() {
 		SearchRestService tested = getTested();
 
@@ -121,10 +139,240 @@ public class SearchRestServiceTest {
 		Mockito.when(uriInfo.getQueryParameters()).thenReturn(qp);
 		QuerySettings qs = new QuerySettings();
 		Mockito.when(tested.querySettingsParser.parseUriParams(qp)).thenReturn(qs);
-		Mockito.when(
-				tested.searchService.performSearch(Mockito.eq(qs), Mockito.notNull(String.class),
-						Mockito.eq(StatsRecordType.SEARCH))).thenThrow(new RuntimeException());
-		tested.search(uriInfo);
+		Mockito.when(tested.searchService.getIntervalValuesForDateHistogramAggregations(Mockito.eq(qs))).thenReturn(
+				new HashMap<String, String>());
+		mockPerformSearchAsyncFailure(tested, qs, new RuntimeException());
+		AsynchronousResponse asynchronousResponse = Mockito.mock(AsynchronousResponse.class);
+		tested.search(uriInfo, asynchronousResponse);
+		TestUtils.assertResponseStatus(getAsynchronousResponse(asynchronousResponse), Status.INTERNAL_SERVER_ERROR);
+	}
+
+	// case - error handling when ExceptionMapper fails, response must be resumed anyway
+	@SuppressWarnings("unchecked")
+	@Test
+	public void search_exceptionMapperFails() {
+		SearchRestService tested = getTested();
+		tested.providers = Mockito.mock(Providers.class);
+		ExceptionMapper<SearchPhaseExecutionException> mapper = Mockito.mock(ExceptionMapper.class);
+		Mockito.when(mapper.toResponse(Mockito.any(SearchPhaseExecutionException.class))).thenThrow(
+				new IllegalStateException("no request context"));
+		Mockito.when(tested.providers.getExceptionMapper(SearchPhaseExecutionException.class)).thenReturn(mapper);
+
+		UriInfo uriInfo = Mockito.mock(UriInfo.class);
+		MultivaluedMap<String, String> qp = new MultivaluedMapImpl<String, String>();
+		Mockito.when(uriInfo.getQueryParameters()).thenReturn(qp);
+		QuerySettings qs = new QuerySettings();
+		Mockito.when(tested.querySettingsParser.parseUriParams(qp)).thenReturn(qs);
+		Mockito.when(tested.searchService.getIntervalValuesForDateHistogramAggregations(Mockito.eq(qs))).thenReturn(
+				new HashMap<String, String>());
+		mockPerformSearchAsyncFailure(tested, qs, new SearchPhaseExecutionException("query", "failed",
+				new ShardSearchFailure[0]));
+		AsynchronousResponse asynchronousResponse = Mockito.mock(AsynchronousResponse.class);
+		tested.search(uriInfo, asynchronousResponse);
+		TestUtils.assertResponseStatus(getAsynchronousResponse(asynchronousResponse), Status.INTERNAL_SERVER_ERROR);
+		// mapper is resolved on request thread before search is started
+		Mockito.verify(tested.providers).getExceptionMapper(SearchPhaseExecutionException.class);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void searchRegisteredQuery() throws IOException {
+		SearchRestService tested = getTested();
+		tested.registeredQueryService = Mockito.mock(RegisteredQueryService.class);
+		tested.authenticationUtilService = Mockito.mock(AuthenticationUtilService.class);
+
+		// case - unknown registered query
+		{
+			AsynchronousResponse asynchronousResponse = Mockito.mock(AsynchronousResponse.class);
+			tested.searchRegisteredQuery("unknown", Mockito.mock(UriInfo.class), asynchronousResponse);
+			TestUtils.assertResponseStatus(getAsynchronousResponse(asynchronousResponse), Status.NOT_FOUND);
+			Mockito.verifyZeroInteractions(tested.searchService);
+		}
+
+		// case - search performed
+		{
+			Mockito.when(tested.registeredQueryService.get("rq")).thenReturn(new HashMap<String, Object>());
+			UriInfo uriInfo = Mockito.mock(UriInfo.class);
+			MultivaluedMap<String, String> qp = new MultivaluedMapImpl<String, String>();
+			Mockito.when(uriInfo.getQueryParameters()).thenReturn(qp);
+			Mockito.when(tested.querySettingsParser.parseUriParams(qp)).thenReturn(new QuerySettings());
+			final SearchResponse sr = Mockito.mock(SearchResponse.class);
+			Mockito.doAnswer(new Answer<Object>() {
+				@Override
+				public Object answer(InvocationOnMock invocation) throws Throwable {
+					((ActionListener<SearchResponse>) invocation.getArguments()[3]).onResponse(sr);
+					return null;
+				}
+			}).when(tested.searchService).performSearchTemplateAsync(Mockito.eq("rq"), Mockito.anyMap(),
+					Mockito.any(QuerySettings.Filters.class), Mockito.any(ActionListener.class));
+			AsynchronousResponse asynchronousResponse = Mockito.mock(AsynchronousResponse.class);
+			tested.searchRegisteredQuery("rq", uriInfo, asynchronousResponse);
+			Response response = getAsynchronousResponse(asynchronousResponse);
+			TestUtils.assertResponseStatus(response, Status.OK);
+			TestUtils.assetStreamingOutputContentRegexp("\\{\"uuid\":\".+\"\\}", response.getEntity());
+		}
+	}
+
+	@Test
+	public void parseMultiSearchRequest() {
+		SearchRestService tested = getTested();
+
+		// case - invalid requests
+		try {
+			tested.parseMultiSearchRequest(null);
+			Assert.fail("RequiredFieldException expected");
+		} catch (RequiredFieldException e) {
+			// OK
+		}
+		Map<String, Object> data = new HashMap<>();
+		try {
+			tested.parseMultiSearchRequest(data);
+			Assert.fail("RequiredFieldException expected");
+		} catch (RequiredFieldException e) {
+			// OK
+		}
+		data.put(SearchRestService.MULTI_SEARCH_SEARCHES_KEY, "bad");
+		try {
+			tested.parseMultiSearchRequest(data);
+			Assert.fail("BadFieldException expected");
+		} catch (BadFieldException e) {
+			// OK
+		}
+		List<Object> searches = new ArrayList<>();
+		data.put(SearchRestService.MULTI_SEARCH_SEARCHES_KEY, searches);
+		try {
+			tested.parseMultiSearchRequest(data);
+			Assert.fail("RequiredFieldException expected");
+		} catch (RequiredFieldException e) {
+			// OK
+		}
+		searches.add("bad");
+		try {
+			tested.parseMultiSearchRequest(data);
+			Assert.fail("BadFieldException expected");
+		} catch (BadFieldException e) {
+			// OK
+		}
+		searches.clear();
+		for (int i = 0; i <= SearchRestService.MULTI_SEARCH_MAX_SEARCHES; i++) {
+			searches.add(new HashMap<String, Object>());
+		}
+		try {
+			tested.parseMultiSearchRequest(data);
+			Assert.fail("BadFieldException expected");
+		} catch (BadFieldException e) {
+			// OK
+		}
+
+		// case - valid request with single and multi value params
+		searches.clear();
+		Map<String, Object> s1 = new HashMap<>();
+		s1.put("query", "test");
+		s1.put("size", 5);
+		List<Object> types = new ArrayList<>();
+		types.add("blogpost");
+		types.add("forumthread");
+		s1.put("sys_type", types);
+		searches.add(s1);
+		searches.add(new HashMap<String, Object>());
+		List<MultivaluedMap<String, String>> ret = tested.parseMultiSearchRequest(data);
+		Assert.assertEquals(2, ret.size());
+		Assert.assertEquals("test", ret.get(0).getFirst("query"));
+		Assert.assertEquals("5", ret.get(0).getFirst("size"));
+		Assert.assertEquals(types, ret.get(0).get("sys_type"));
+		Assert.assertTrue(ret.get(1).isEmpty());
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void multiSearch() throws IOException {
+		SearchRestService tested = getTested();
+
+		Map<String, Object> data = new HashMap<>();
+		List<Object> searches = new ArrayList<>();
+		Map<String, Object> s1 = new HashMap<>();
+		s1.put("query", "test");
+		searches.add(s1);
+		searches.add(new HashMap<String, Object>());
+		data.put(SearchRestService.MULTI_SEARCH_SEARCHES_KEY, searches);
+
+		final QuerySettings qs1 = new QuerySettings();
+		final QuerySettings qs2 = new QuerySettings();
+		Mockito.when(tested.querySettingsParser.parseUriParams(Mockito.any(MultivaluedMap.class))).thenReturn(qs1, qs2);
+
+		// case - responses rendered in order with own uuid
+		{
+			final SearchResponse sr = Mockito.mock(SearchResponse.class);
+			Mockito.doAnswer(new Answer<Object>() {
+				@Override
+				public Object answer(InvocationOnMock invocation) throws Throwable {
+					List<QuerySettings> qsList = (List<QuerySettings>) invocation.getArguments()[0];
+					Assert.assertEquals(2, qsList.size());
+					Assert.assertSame(qs1, qsList.get(0));
+					Assert.assertSame(qs2, qsList.get(1));
+					MultiSearchResponse.Item[] items = new MultiSearchResponse.Item[] { new MultiSearchResponse.Item(sr, null),
+							new MultiSearchResponse.Item(null, "failed") };
+					((ActionListener<MultiSearchResponse>) invocation.getArguments()[4]).onResponse(new MultiSearchResponse(
+							items));
+					return null;
+				}
+			}).when(tested.searchService).performMultiSearchAsync(Mockito.anyList(), Mockito.anyList(),
+					Mockito.eq(StatsRecordType.SEARCH), Mockito.anyList(), Mockito.any(ActionListener.class));
+			AsynchronousResponse asynchronousResponse = Mockito.mock(AsynchronousResponse.class);
+			tested.multiSearch(data, asynchronousResponse);
+			Response response = getAsynchronousResponse(asynchronousResponse);
+			TestUtils.assertResponseStatus(response, Status.OK);
+			TestUtils.assetStreamingOutputContentRegexp(
+					"\\{\"responses\":\\[\\{\"uuid\":\".+\"\\},\\{\"uuid\":\".+\",\"error\":\"failed\"\\}\\]\\}",
+					response.getEntity());
+		}
+
+		// case - failure of whole multi search
+		{
+			Mockito.reset(tested.searchService);
+			Mockito.doAnswer(new Answer<Object>() {
+				@Override
+				public Object answer(InvocationOnMock invocation) throws Throwable {
+					((ActionListener<MultiSearchResponse>) invocation.getArguments()[4]).onFailure(new IndexMissingException(
+							null));
+					return null;
+				}
+			}).when(tested.searchService).performMultiSearchAsync(Mockito.anyList(), Mockito.anyList(),
+					Mockito.eq(StatsRecordType.SEARCH), Mockito.anyList(), Mockito.any(ActionListener.class));
+			AsynchronousResponse asynchronousResponse = Mockito.mock(AsynchronousResponse.class);
+			tested.multiSearch(data, asynchronousResponse);
+			TestUtils.assertResponseStatus(getAsynchronousResponse(asynchronousResponse), Status.NOT_FOUND);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void mockPerformSearchAsyncResponse(SearchRestService tested, QuerySettings qs, final SearchResponse sr) {
+		Mockito.doAnswer(new Answer<Object>() {
+			@Override
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				((ActionListener<SearchResponse>) invocation.getArguments()[3]).onResponse(sr);
+				return null;
+			}
+		}).when(tested.searchService).performSearchAsync(Mockito.eq(qs), Mockito.notNull(String.class),
+				Mockito.eq(StatsRecordType.SEARCH), Mockito.any(ActionListener.class));
+	}
+
+	@SuppressWarnings("unchecked")
+	private void mockPerformSearchAsyncFailure(SearchRestService tested, QuerySettings qs, final Throwable e) {
+		Mockito.doAnswer(new Answer<Object>() {
+			@Override
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				((ActionListener<SearchResponse>) invocation.getArguments()[3]).onFailure(e);
+				return null;
+			}
+		}).when(tested.searchService).performSearchAsync(Mockito.eq(qs), Mockito.notNull(String.class),
+				Mockito.eq(StatsRecordType.SEARCH), Mockito.any(ActionListener.class));
+	}
+
+	private Response getAsynchronousResponse(AsynchronousResponse asynchronousResponse) {
+		ArgumentCaptor<Response> captor = ArgumentCaptor.forClass(Response.class);
+		Mockito.verify(asynchronousResponse).setResponse(captor.capture());
+		return captor.getValue();
 	}
 
 	@Test(expected = RequiredFieldException.class)
@@ -33,6 +33,10 @@ public class AppConfigurationServiceTest {
 		Assert.assertEquals(ClientType.EMBEDDED, tested.getAppConfiguration().getClientType());
 		Assert.assertEquals("/test/path", tested.getAppConfiguration().getAppDataPath());
 		Assert.assertEquals(true, tested.getAppConfiguration().isProviderCreateInitData());
+		Assert.assertEquals(true, tested.getAppConfiguration().getSearchResultCacheConfig().isEnabled());
+		Assert.assertEquals(100, tested.getAppConfiguration().getSearchResultCacheConfig().getSize());
+		Assert.assertEquals(30, tested.getAppConfiguration().getSearchResultCacheConfig().getTtl());
+		Assert.assertEquals(false, tested.getAppConfiguration().isSearchCoalescingEnabled());
 
 		// case - successful load 2 with overlay applied
 		tested.appConfiguration = null;
@@ -41,6 +45,8 @@ public class AppConfigurationServiceTest {
 		Assert.assertEquals(ClientType.TRANSPORT, tested.getAppConfiguration().getClientType());
 		Assert.assertEquals("/test/path/2", tested.getAppConfiguration().getAppDataPath());
 		Assert.assertEquals(false, tested.getAppConfiguration().isProviderCreateInitData());
+		Assert.assertEquals(false, tested.getAppConfiguration().getSearchResultCacheConfig().isEnabled());
+		Assert.assertEquals(true, tested.getAppConfiguration().isSearchCoalescingEnabled());
 
 		// case - exception if file not found
 		tested.appConfiguration = null;
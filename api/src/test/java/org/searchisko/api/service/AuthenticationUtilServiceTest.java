@@ -7,7 +7,10 @@ package org.searchisko.api.service;
 
 import java.security.Principal;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.logging.Logger;
 
@@ -538,6 +541,35 @@ public class AuthenticationUtilServiceTest {
 		}
 	}
 
+	@Test
+	public void getUserSecurityContextKey() {
+		AuthenticationUtilService tested = getTested();
+
+		// case - not authenticated
+		Mockito.when(tested.httpRequest.getUserPrincipal()).thenReturn(null);
+		Assert.assertEquals("", tested.getUserSecurityContextKey());
+
+		// case - principal with roles, key is same for same set of roles
+		ContributorPrincipal p1 = new ContributorPrincipal("user1");
+		p1.setRoles(new HashSet<>(Arrays.asList(ROLE2, ROLE1)));
+		Mockito.when(tested.httpRequest.getUserPrincipal()).thenReturn(p1);
+		String key1 = tested.getUserSecurityContextKey();
+
+		ContributorPrincipal p2 = new ContributorPrincipal("user2");
+		p2.setRoles(new LinkedHashSet<>(Arrays.asList(ROLE1, ROLE2)));
+		Mockito.when(tested.httpRequest.getUserPrincipal()).thenReturn(p2);
+		Assert.assertEquals(key1, tested.getUserSecurityContextKey());
+
+		p2.setRoles(new HashSet<>(Arrays.asList(ROLE1)));
+		Assert.assertFalse(key1.equals(tested.getUserSecurityContextKey()));
+
+		// case - other principal, key is unique for user
+		Principal p = Mockito.mock(Principal.class);
+		Mockito.when(p.getName()).thenReturn("user1");
+		Mockito.when(tested.httpRequest.getUserPrincipal()).thenReturn(p);
+		Assert.assertEquals("user:user1", tested.getUserSecurityContextKey());
+	}
+
 	private AuthenticationUtilService getTested() {
 		AuthenticationUtilService tested = new AuthenticationUtilService();
 		tested.log = Logger.getLogger("testlogger");
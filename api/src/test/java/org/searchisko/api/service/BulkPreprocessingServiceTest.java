@@ -0,0 +1,191 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.searchisko.api.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import javax.ejb.SessionContext;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.searchisko.api.model.AppConfiguration;
+
+/**
+ * Unit test for {@link BulkPreprocessingService}.
+ *
+ * @author Vlastimil Elias (velias at redhat dot com)
+ */
+public class BulkPreprocessingServiceTest {
+
+	@Test
+	public void submit_disabled() throws Exception {
+		BulkPreprocessingService tested = getTested(1);
+		try {
+			Assert.assertFalse(tested.isEnabled());
+			Future<String> f = tested.submit(new Callable<String>() {
+				@Override
+				public String call() throws Exception {
+					return Thread.currentThread().getName();
+				}
+			});
+			// performed in caller's thread
+			Assert.assertTrue(f.isDone());
+			Assert.assertEquals(Thread.currentThread().getName(), f.get());
+			Assert.assertEquals(0L, tested.getStatistics().get("submitted_count"));
+		} finally {
+			tested.destroy();
+		}
+	}
+
+	@Test
+	public void submit_parallel() throws Exception {
+		BulkPreprocessingService tested = getTested(3);
+		try {
+			Assert.assertTrue(tested.isEnabled());
+			// all three tasks must run at the same time to finish
+			final CountDownLatch latch = new CountDownLatch(3);
+			List<Future<String>> futures = new ArrayList<>();
+			for (int i = 0; i < 3; i++) {
+				futures.add(tested.submit(new Callable<String>() {
+					@Override
+					public String call() throws Exception {
+						latch.countDown();
+						if (!latch.await(5, TimeUnit.SECONDS))
+							throw new Exception("not parallel");
+						return Thread.currentThread().getName();
+					}
+				}));
+			}
+			for (Future<String> f : futures) {
+				Assert.assertTrue(f.get().startsWith("Bulk preprocessing thread"));
+			}
+			Assert.assertEquals(3L, tested.getStatistics().get("submitted_count"));
+			Assert.assertEquals(3, tested.getStatistics().get("threads"));
+		} finally {
+			tested.destroy();
+		}
+	}
+
+	@Test
+	public void submit_permitsExhausted() throws Exception {
+		BulkPreprocessingService tested = getTested(2);
+		try {
+			final CountDownLatch release = new CountDownLatch(1);
+			List<Future<String>> futures = new ArrayList<>();
+			for (int i = 0; i < 2; i++) {
+				futures.add(tested.submit(new Callable<String>() {
+					@Override
+					public String call() throws Exception {
+						release.await(5, TimeUnit.SECONDS);
+						return Thread.currentThread().getName();
+					}
+				}));
+			}
+			// no permit is available, so performed in caller's thread
+			Future<String> f = tested.submit(new Callable<String>() {
+				@Override
+				public String call() throws Exception {
+					return Thread.currentThread().getName();
+				}
+			});
+			Assert.assertTrue(f.isDone());
+			Assert.assertEquals(Thread.currentThread().getName(), f.get());
+			Assert.assertEquals(2, tested.getStatistics().get("active_threads"));
+			release.countDown();
+			for (Future<String> fp : futures) {
+				Assert.assertTrue(fp.get().startsWith("Bulk preprocessing thread"));
+			}
+			Assert.assertEquals(2L, tested.getStatistics().get("submitted_count"));
+			Assert.assertEquals(1L, tested.getStatistics().get("caller_runs_count"));
+			Assert.assertEquals(2, tested.permits.availablePermits());
+		} finally {
+			tested.destroy();
+		}
+	}
+
+	@Test
+	public void submit_asyncUnavailable() throws Exception {
+		BulkPreprocessingService tested = new BulkPreprocessingService();
+		tested.log = Logger.getLogger("testlogger");
+		tested.appConfigurationService = Mockito.mock(AppConfigurationService.class);
+		AppConfiguration ac = new AppConfiguration("/tmp");
+		ac.setContentPushBulkPreprocessingThreads(2);
+		Mockito.when(tested.appConfigurationService.getAppConfiguration()).thenReturn(ac);
+		tested.init();
+		tested.sessionContext = Mockito.mock(SessionContext.class);
+		Mockito.when(tested.sessionContext.getBusinessObject(BulkPreprocessingService.class)).thenThrow(
+				new IllegalStateException("test"));
+		try {
+			// performed in caller's thread and permit is returned
+			Future<String> f = tested.submit(new Callable<String>() {
+				@Override
+				public String call() throws Exception {
+					return Thread.currentThread().getName();
+				}
+			});
+			Assert.assertEquals(Thread.currentThread().getName(), f.get());
+			Assert.assertEquals(2, tested.permits.availablePermits());
+			Assert.assertEquals(1L, tested.getStatistics().get("caller_runs_count"));
+		} finally {
+			tested.destroy();
+		}
+	}
+
+	@Test
+	public void submit_exception() throws Exception {
+		BulkPreprocessingService tested = getTested(2);
+		try {
+			Future<String> f = tested.submit(new Callable<String>() {
+				@Override
+				public String call() throws Exception {
+					throw new IllegalStateException("test");
+				}
+			});
+			try {
+				f.get();
+				Assert.fail("ExecutionException expected");
+			} catch (ExecutionException e) {
+				Assert.assertEquals("test", e.getCause().getMessage());
+			}
+		} finally {
+			tested.destroy();
+		}
+	}
+
+	/**
+	 * Create tested service with {@link BulkPreprocessingService#getAsyncProxy()} emulating container, which runs
+	 * asynchronous methods in new thread.
+	 */
+	protected static BulkPreprocessingService getTested(int threads) {
+		BulkPreprocessingService tested = new BulkPreprocessingService() {
+			@Override
+			protected BulkPreprocessingService getAsyncProxy() {
+				return new BulkPreprocessingService() {
+					@Override
+					public void runAsync(Runnable work) {
+						new Thread(work, "Bulk preprocessing thread").start();
+					}
+				};
+			}
+		};
+		tested.log = Logger.getLogger("testlogger");
+		tested.appConfigurationService = Mockito.mock(AppConfigurationService.class);
+		AppConfiguration ac = new AppConfiguration("/tmp");
+		ac.setContentPushBulkPreprocessingThreads(threads);
+		Mockito.when(tested.appConfigurationService.getAppConfiguration()).thenReturn(ac);
+		tested.init();
+		return tested;
+	}
+
+}
@@ -16,6 +16,7 @@ import javax.ws.rs.core.StreamingOutput;
 import org.junit.Assert;
 import org.junit.Test;
 import org.mockito.Mockito;
+import org.searchisko.api.cache.SearchConfigCache;
 import org.searchisko.api.rest.ESDataOnlyResponse;
 import org.searchisko.api.testtools.ESRealClientTestBase;
 import org.searchisko.persistence.service.EntityService;
@@ -31,6 +32,7 @@ public class ConfigServiceTest extends ESRealClientTestBase {
 	private ConfigService getTested() {
 		ConfigService ret = new ConfigService();
 		ret.entityService = Mockito.mock(EntityService.class);
+		ret.searchConfigCache = Mockito.mock(SearchConfigCache.class);
 		ret.log = Logger.getLogger("testlogger");
 		return ret;
 	}
@@ -176,6 +178,28 @@ public class ConfigServiceTest extends ESRealClientTestBase {
 		Mockito.verify(tested.entityService).delete("1");
 	}
 
+	@Test
+	public void searchConfigCacheFlush() {
+		ConfigService tested = getTested();
+		Map<String, Object> entity = new HashMap<String, Object>();
+
+		// case - other documents do not flush cache
+		tested.create("1", entity);
+		tested.update("1", entity);
+		tested.delete("1");
+		Mockito.verifyZeroInteractions(tested.searchConfigCache);
+
+		// case - search configuration documents flush cache
+		tested.create(ConfigService.CFGNAME_SEARCH_FULLTEXT_QUERY_FIELDS, entity);
+		Mockito.verify(tested.searchConfigCache).flush();
+		Mockito.reset(tested.searchConfigCache);
+		tested.update(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS, entity);
+		Mockito.verify(tested.searchConfigCache).flush();
+		Mockito.reset(tested.searchConfigCache);
+		tested.delete(ConfigService.CFGNAME_SEARCH_FULLTEXT_AGGREGATIONS_FIELDS);
+		Mockito.verify(tested.searchConfigCache).flush();
+	}
+
 	@Test
 	public void listRequestInit() {
 		ConfigService tested = getTested();
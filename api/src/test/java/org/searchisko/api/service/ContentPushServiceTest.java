@@ -0,0 +1,957 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.searchisko.api.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import javax.enterprise.event.Event;
+
+import org.hamcrest.CustomMatcher;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.searchisko.api.ContentObjectFields;
+import org.searchisko.api.cache.SearchResultCache;
+import org.searchisko.api.events.ContentBatchBeforeIndexedEvent;
+import org.searchisko.api.events.ContentBatchStoredEvent;
+import org.searchisko.api.events.ContentBeforeIndexedEvent;
+import org.searchisko.api.events.ContentStoredEvent;
+import org.searchisko.api.rest.exception.BadFieldException;
+import org.searchisko.api.rest.exception.RequiredFieldException;
+import org.searchisko.api.service.ProviderService.ProviderContentTypeInfo;
+import org.searchisko.api.testtools.ESRealClientTestBase;
+import org.searchisko.api.testtools.TestUtils;
+import org.searchisko.persistence.service.ContentPersistenceService;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit test for {@link ContentPushService}
+ * 
+ * @author Vlastimil Elias (velias at redhat dot com)
+ */
+public class ContentPushServiceTest extends ESRealClientTestBase {
+
+	private static final String TYPE_INVALID = "invalid";
+	private static final String TYPE_INVALID_2 = "invalid_2";
+	private static final String TYPE_PERSIST = "persist";
+	private static final String TYPE_INVALID_CONTENT_TYPE = "invalid-content-type";
+	private static final String TYPE_KNOWN = "known";
+	private static final String INDEX_TYPE = "index_type";
+	private static final String INDEX_NAME = "index_name";
+	private static final List<Map<String, Object>> PREPROCESSORS = new ArrayList<Map<String, Object>>();
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void processFieldSysVisibleForRoles() {
+		ContentPushService tested = getTested(false);
+
+		Map<String, Object> content = new HashMap<>();
+
+		// case - no given field present at all
+		tested.processFieldSysVisibleForRoles(content);
+		Assert.assertEquals(0, content.size());
+
+		// case - empty list is removed
+		{
+			content.put(ContentObjectFields.SYS_VISIBLE_FOR_ROLES, new ArrayList<>());
+			tested.processFieldSysVisibleForRoles(content);
+			Assert.assertEquals(0, content.size());
+
+			ArrayList<String> l = new ArrayList<>();
+			l.add("");
+			content.put(ContentObjectFields.SYS_VISIBLE_FOR_ROLES, l);
+			tested.processFieldSysVisibleForRoles(content);
+			Assert.assertEquals(0, content.size());
+		}
+
+		// case - list is preserved, empty strings removed, strings trimmed
+		{
+			List<String> l = new ArrayList<>();
+			l.add("role1");
+			l.add("");
+			l.add("role2 ");
+			content.put(ContentObjectFields.SYS_VISIBLE_FOR_ROLES, l);
+			tested.processFieldSysVisibleForRoles(content);
+			Assert.assertEquals(1, content.size());
+			List<String> ret = (List<String>) content.get(ContentObjectFields.SYS_VISIBLE_FOR_ROLES);
+			Assert.assertEquals(2, ret.size());
+			Assert.assertTrue(ret.contains("role1"));
+			Assert.assertTrue(ret.contains("role2"));
+		}
+
+		// case - one string is converted to list
+		content.put(ContentObjectFields.SYS_VISIBLE_FOR_ROLES, "role1");
+		tested.processFieldSysVisibleForRoles(content);
+		Assert.assertEquals(1, content.size());
+		List<String> ret = (List<String>) content.get(ContentObjectFields.SYS_VISIBLE_FOR_ROLES);
+		Assert.assertEquals(1, ret.size());
+		Assert.assertTrue(ret.contains("role1"));
+
+		// case - bad type in data throws exception
+		try {
+			content.put(ContentObjectFields.SYS_VISIBLE_FOR_ROLES, new Integer(1));
+			tested.processFieldSysVisibleForRoles(content);
+			Assert.fail("BadFieldException expected");
+		} catch (BadFieldException e) {
+			// OK
+		}
+		try {
+			content.put(ContentObjectFields.SYS_VISIBLE_FOR_ROLES, new HashMap<>());
+			tested.processFieldSysVisibleForRoles(content);
+			Assert.fail("BadFieldException expected");
+		} catch (BadFieldException e) {
+			// OK
+		}
+
+	}
+
+	@Test(expected = RequiredFieldException.class)
+	public void pushContent_invalidParams_3() throws Exception {
+		Map<String, Object> content = new HashMap<String, Object>();
+		content.put("test", "test");
+		pushContent(getTested(false), TYPE_KNOWN, null, content);
+	}
+
+	@Test(expected = RequiredFieldException.class)
+	public void pushContent_invalidParams_4() throws Exception {
+		Map<String, Object> content = new HashMap<String, Object>();
+		content.put("test", "test");
+		pushContent(getTested(false), TYPE_KNOWN, "", content);
+	}
+
+	@Test(expected = BadFieldException.class)
+	public void pushContent_invalidParams_MissingContent1() throws Exception {
+		pushContent(getTested(false), TYPE_KNOWN, "1", null);
+	}
+
+	@Test(expected = BadFieldException.class)
+	public void pushContent_invalidParams_MissingContent2() throws Exception {
+		Map<String, Object> content = new HashMap<String, Object>();
+		pushContent(getTested(false), TYPE_KNOWN, "1", content);
+	}
+
+	@Test(expected = Exception.class)
+	public void pushContent_invalidParams_TypeInvalid() throws Exception {
+		// case - type configuration is invalid - do not contains index name and/or index type
+		Map<String, Object> content = new HashMap<String, Object>();
+		content.put("test", "test");
+		pushContent(getTested(false), TYPE_INVALID, "1", content);
+	}
+
+	@Test(expected = Exception.class)
+	public void pushContent_invalidParams_TypeInvalid2() throws Exception {
+		// case - type configuration is invalid - do not contains sys_type definition
+		Map<String, Object> content = new HashMap<String, Object>();
+		content.put("test", "test");
+		pushContent(getTested(false), TYPE_INVALID_2, "1", content);
+	}
+
+	@Test(expected = Exception.class)
+	public void pushContent_invalidParams_1SCCTMandatory() throws Exception {
+		// case - sys_content_content-type not defined if input value contains sys_content
+		Map<String, Object> content = new HashMap<String, Object>();
+		content.put("test", "test");
+		content.put(ContentObjectFields.SYS_CONTENT, "some content");
+		pushContent(getTested(false), TYPE_INVALID_CONTENT_TYPE, "1", content);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void pushContent_noPersistence() throws Exception {
+		try {
+			ContentPushService tested = getTested(true);
+			Map<String, Object> content = new HashMap<String, Object>();
+
+			// case - insert when index is not found
+			String sys_content_type = TYPE_KNOWN;
+			{
+				reset(tested.contentPersistenceService, tested.eventContentStored);
+				indexDelete(INDEX_NAME);
+				content.clear();
+				content.put("test", "testvalue");
+				content.put(ContentObjectFields.SYS_VISIBLE_FOR_ROLES, "role1");
+				String sysId = tested.providerService.generateSysId(sys_content_type, "1");
+				Map<String, Object> r = pushContent(tested, sys_content_type, "1", content);
+				assertEquals("insert", r.get("status"));
+				verify(tested.providerService).runPreprocessors(sys_content_type, PREPROCESSORS, content);
+				// verify enhancements called
+				verify(tested.eventBeforeIndexed).fire(prepareContentBeforeIndexedEventMatcher(sysId, content));
+				indexFlushAndRefresh(INDEX_NAME);
+				Map<String, Object> doc = indexGetDocument(INDEX_NAME, INDEX_TYPE,
+						tested.providerService.generateSysId(sys_content_type, "1"));
+				assertNotNull(doc);
+				assertEquals("testvalue", doc.get("test"));
+				assertEquals("jbossorg", doc.get(ContentObjectFields.SYS_CONTENT_PROVIDER));
+				assertEquals("1", doc.get(ContentObjectFields.SYS_CONTENT_ID));
+				assertEquals(sys_content_type, doc.get(ContentObjectFields.SYS_CONTENT_TYPE));
+				assertEquals("my_sys_type", doc.get(ContentObjectFields.SYS_TYPE));
+				assertEquals(null, doc.get(ContentObjectFields.SYS_CONTENT_CONTENT_TYPE));
+				assertEquals(sysId, doc.get(ContentObjectFields.SYS_ID));
+				assertNotNull(doc.get(ContentObjectFields.SYS_UPDATED));
+				assertEquals(null, doc.get(ContentObjectFields.SYS_TAGS));
+				assertEquals(TestUtils.createListOfStrings("role1"), doc.get(ContentObjectFields.SYS_VISIBLE_FOR_ROLES));
+				verify(tested.eventContentStored).fire(prepareContentStoredEventMatcher(sysId));
+				verify(tested.searchResultCache).invalidate(Collections.singleton(INDEX_NAME));
+				verifyNoMoreInteractions(tested.contentPersistenceService);
+			}
+
+			// case - insert when index is found, fill sys_updated if not provided in content, process tags provided in
+			// content, fill sys_content_content-type because sys_content is present
+			{
+				reset(tested.providerService, tested.contentPersistenceService, tested.eventContentStored,
+						tested.eventBeforeIndexed);
+				setupProviderServiceMock(tested.providerService);
+				content.put("test2", "testvalue2");
+				content.put(ContentObjectFields.SYS_CONTENT, "sys content");
+				content.remove(ContentObjectFields.SYS_UPDATED);
+				String[] tags = new String[] { "tag_value" };
+				content.put("tags", tags);
+				Map<String, Object> r = pushContent(tested, sys_content_type, "2", content);
+				String sysId = tested.providerService.generateSysId(sys_content_type, "2");
+				verify(tested.eventBeforeIndexed).fire(prepareContentBeforeIndexedEventMatcher(sysId, content));
+				assertEquals("insert", r.get("status"));
+				verify(tested.providerService).runPreprocessors(sys_content_type, PREPROCESSORS, content);
+				indexFlushAndRefresh(INDEX_NAME);
+				Map<String, Object> doc = indexGetDocument(INDEX_NAME, INDEX_TYPE, sysId);
+				assertNotNull(doc);
+				assertEquals("testvalue", doc.get("test"));
+				assertEquals("testvalue2", doc.get("test2"));
+				assertEquals("jbossorg", doc.get(ContentObjectFields.SYS_CONTENT_PROVIDER));
+				assertEquals("2", doc.get(ContentObjectFields.SYS_CONTENT_ID));
+				assertEquals(sys_content_type, doc.get(ContentObjectFields.SYS_CONTENT_TYPE));
+				assertEquals("my_sys_type", doc.get(ContentObjectFields.SYS_TYPE));
+				assertEquals("text/plain", doc.get(ContentObjectFields.SYS_CONTENT_CONTENT_TYPE));
+				String expectedContentId = tested.providerService.generateSysId(sys_content_type, "2");
+
+				assertEquals(expectedContentId, doc.get(ContentObjectFields.SYS_ID));
+				assertNotNull(doc.get(ContentObjectFields.SYS_UPDATED));
+				assertEquals("tag_value", ((List<String>) doc.get(ContentObjectFields.SYS_TAGS)).get(0));
+				verify(tested.eventContentStored).fire(prepareContentStoredEventMatcher(expectedContentId));
+				verifyNoMoreInteractions(tested.contentPersistenceService);
+			}
+
+			// case - rewrite document in index
+			{
+				reset(tested.providerService, tested.contentPersistenceService, tested.eventContentStored,
+						tested.eventBeforeIndexed);
+				setupProviderServiceMock(tested.providerService);
+				content.clear();
+				content.put("test3", "testvalue3");
+				Map<String, Object> r = pushContent(tested, sys_content_type, "1", content);
+				String sysId = tested.providerService.generateSysId(sys_content_type, "1");
+				verify(tested.eventBeforeIndexed).fire(prepareContentBeforeIndexedEventMatcher(sysId, content));
+				assertEquals("update", r.get("status"));
+				verify(tested.providerService).runPreprocessors(sys_content_type, PREPROCESSORS, content);
+				indexFlushAndRefresh(INDEX_NAME);
+				Map<String, Object> doc = indexGetDocument(INDEX_NAME, INDEX_TYPE, sysId);
+				assertNotNull(doc);
+				assertEquals(null, doc.get("test"));
+				assertEquals("testvalue3", doc.get("test3"));
+				assertEquals("jbossorg", doc.get(ContentObjectFields.SYS_CONTENT_PROVIDER));
+				assertEquals("1", doc.get(ContentObjectFields.SYS_CONTENT_ID));
+				assertEquals(sys_content_type, doc.get(ContentObjectFields.SYS_CONTENT_TYPE));
+				assertEquals("my_sys_type", doc.get(ContentObjectFields.SYS_TYPE));
+				assertEquals(null, doc.get(ContentObjectFields.SYS_CONTENT_CONTENT_TYPE));
+				String expectedContentId = tested.providerService.generateSysId(sys_content_type, "1");
+				assertEquals(expectedContentId, doc.get(ContentObjectFields.SYS_ID));
+				assertNotNull(doc.get(ContentObjectFields.SYS_UPDATED));
+				assertEquals(null, doc.get(ContentObjectFields.SYS_TAGS));
+
+				verify(tested.eventContentStored).fire(prepareContentStoredEventMatcher(expectedContentId));
+				verifyNoMoreInteractions(tested.contentPersistenceService);
+			}
+		} finally {
+			indexDelete(INDEX_NAME);
+			finalizeESClientForUnitTest();
+		}
+	}
+
+	private ContentBeforeIndexedEvent prepareContentBeforeIndexedEventMatcher(final String expectedId,
+			final Map<String, Object> expectedContentObject) {
+		return Mockito.argThat(new CustomMatcher<ContentBeforeIndexedEvent>("ContentBeforeIndexedEvent [contentId="
+				+ expectedId + " data=" + expectedContentObject + "]") {
+
+			@Override
+			public boolean matches(Object paramObject) {
+				ContentBeforeIndexedEvent e = (ContentBeforeIndexedEvent) paramObject;
+				return e.getContentId().equals(expectedId) && e.getContentData() == expectedContentObject;
+			}
+
+		});
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void pushContent_persistence() throws Exception {
+		try {
+			ContentPushService tested = getTested(true);
+			Map<String, Object> content = new HashMap<String, Object>();
+
+			// case - insert when index is not found, remove sys_content_content-type because sys_content not present
+			String sys_content_type = TYPE_PERSIST;
+
+			{
+				Mockito.reset(tested.contentPersistenceService, tested.eventContentStored, tested.eventBeforeIndexed);
+				indexDelete(INDEX_NAME);
+				content.clear();
+				content.put("test", "testvalue");
+				content.put(ContentObjectFields.SYS_VISIBLE_FOR_ROLES, new ArrayList<String>());
+				content.put(ContentObjectFields.SYS_CONTENT_CONTENT_TYPE, "text/html");
+				Map<String, Object> r = pushContent(tested, sys_content_type, "1", content);
+				// verify enhancements called
+				String sysId = tested.providerService.generateSysId(sys_content_type, "1");
+				verify(tested.eventBeforeIndexed).fire(prepareContentBeforeIndexedEventMatcher(sysId, content));
+				assertEquals("insert", r.get("status"));
+				indexFlushAndRefresh(INDEX_NAME);
+				Map<String, Object> doc = indexGetDocument(INDEX_NAME, INDEX_TYPE,
+						tested.providerService.generateSysId(sys_content_type, "1"));
+				assertNotNull(doc);
+				assertEquals("testvalue", doc.get("test"));
+				assertEquals("jbossorg", doc.get(ContentObjectFields.SYS_CONTENT_PROVIDER));
+				assertEquals("1", doc.get(ContentObjectFields.SYS_CONTENT_ID));
+				assertEquals(sys_content_type, doc.get(ContentObjectFields.SYS_CONTENT_TYPE));
+				assertEquals("my_sys_type", doc.get(ContentObjectFields.SYS_TYPE));
+				assertEquals(null, doc.get(ContentObjectFields.SYS_CONTENT_CONTENT_TYPE));
+				String expectedContentId = tested.providerService.generateSysId(sys_content_type, "1");
+				assertEquals(expectedContentId, doc.get(ContentObjectFields.SYS_ID));
+				assertNotNull(doc.get(ContentObjectFields.SYS_UPDATED));
+				assertFalse(doc.containsKey(ContentObjectFields.SYS_VISIBLE_FOR_ROLES));
+				assertEquals(null, doc.get(ContentObjectFields.SYS_TAGS));
+				// content is not in index, so hash is not read from persistence
+				verify(tested.contentPersistenceService).store(tested.providerService.generateSysId(sys_content_type, "1"),
+						sys_content_type, content);
+				verify(tested.eventContentStored).fire(prepareContentStoredEventMatcher(expectedContentId));
+				verifyNoMoreInteractions(tested.contentPersistenceService);
+			}
+
+			// case - insert when index is found, fill sys_updated if not provided in content, process tags provided in
+			// content, rewrite sys_content_content-type because sys_content is present
+			{
+				reset(tested.providerService, tested.contentPersistenceService, tested.eventContentStored,
+						tested.eventBeforeIndexed);
+				setupProviderServiceMock(tested.providerService);
+				content.put("test2", "testvalue2");
+				content.put(ContentObjectFields.SYS_CONTENT, "sys content");
+				content.put(ContentObjectFields.SYS_CONTENT_CONTENT_TYPE, "text/html");
+				content.remove(ContentObjectFields.SYS_UPDATED);
+				String[] tags = new String[] { "tag_value" };
+				content.put("tags", tags);
+				Map<String, Object> r = pushContent(tested, sys_content_type, "2", content);
+				// verify enhancements called
+				String sysId = tested.providerService.generateSysId(sys_content_type, "2");
+				verify(tested.eventBeforeIndexed).fire(prepareContentBeforeIndexedEventMatcher(sysId, content));
+				assertEquals("insert", r.get("status"));
+				indexFlushAndRefresh(INDEX_NAME);
+				Map<String, Object> doc = indexGetDocument(INDEX_NAME, INDEX_TYPE, sysId);
+				assertNotNull(doc);
+				assertEquals("testvalue", doc.get("test"));
+				assertEquals("testvalue2", doc.get("test2"));
+				assertEquals("jbossorg", doc.get(ContentObjectFields.SYS_CONTENT_PROVIDER));
+				assertEquals("2", doc.get(ContentObjectFields.SYS_CONTENT_ID));
+				assertEquals(sys_content_type, doc.get(ContentObjectFields.SYS_CONTENT_TYPE));
+				assertEquals("my_sys_type", doc.get(ContentObjectFields.SYS_TYPE));
+				assertEquals("text/plain", doc.get(ContentObjectFields.SYS_CONTENT_CONTENT_TYPE));
+				String expectedContentId = tested.providerService.generateSysId(sys_content_type, "2");
+				assertEquals(expectedContentId, doc.get(ContentObjectFields.SYS_ID));
+				assertNotNull(doc.get(ContentObjectFields.SYS_UPDATED));
+				assertEquals("tag_value", ((List<String>) doc.get(ContentObjectFields.SYS_TAGS)).get(0));
+				verify(tested.contentPersistenceService).store(tested.providerService.generateSysId(sys_content_type, "2"),
+						sys_content_type, content);
+
+				verify(tested.eventContentStored).fire(prepareContentStoredEventMatcher(expectedContentId));
+				verifyNoMoreInteractions(tested.contentPersistenceService);
+			}
+
+			// case - rewrite document in index
+			{
+				reset(tested.providerService, tested.contentPersistenceService, tested.eventContentStored,
+						tested.eventBeforeIndexed);
+				setupProviderServiceMock(tested.providerService);
+				content.clear();
+				content.put("test3", "testvalue3");
+				Map<String, Object> r = pushContent(tested, sys_content_type, "1", content);
+				// verify enhancements called
+				String sysId = tested.providerService.generateSysId(sys_content_type, "1");
+				verify(tested.eventBeforeIndexed).fire(prepareContentBeforeIndexedEventMatcher(sysId, content));
+				assertEquals("update", r.get("status"));
+				indexFlushAndRefresh(INDEX_NAME);
+				Map<String, Object> doc = indexGetDocument(INDEX_NAME, INDEX_TYPE, sysId);
+				assertNotNull(doc);
+				assertEquals(null, doc.get("test"));
+				assertEquals("testvalue3", doc.get("test3"));
+				assertEquals("jbossorg", doc.get(ContentObjectFields.SYS_CONTENT_PROVIDER));
+				assertEquals("1", doc.get(ContentObjectFields.SYS_CONTENT_ID));
+				assertEquals(sys_content_type, doc.get(ContentObjectFields.SYS_CONTENT_TYPE));
+				assertEquals("my_sys_type", doc.get(ContentObjectFields.SYS_TYPE));
+				assertEquals(null, doc.get(ContentObjectFields.SYS_CONTENT_CONTENT_TYPE));
+				assertEquals(tested.providerService.generateSysId(sys_content_type, "1"), doc.get(ContentObjectFields.SYS_ID));
+				assertNotNull(doc.get(ContentObjectFields.SYS_UPDATED));
+				assertEquals(null, doc.get(ContentObjectFields.SYS_TAGS));
+				String expectedContentId = tested.providerService.generateSysId(sys_content_type, "1");
+				verify(tested.contentPersistenceService).getContentHash(expectedContentId, sys_content_type);
+				verify(tested.contentPersistenceService).store(expectedContentId, sys_content_type, content);
+				verify(tested.eventContentStored).fire(prepareContentStoredEventMatcher(expectedContentId));
+				verifyNoMoreInteractions(tested.contentPersistenceService);
+				assertEquals(content.get(ContentObjectFields.SYS_CONTENT_HASH), doc.get(ContentObjectFields.SYS_CONTENT_HASH));
+			}
+		} finally {
+			indexDelete(INDEX_NAME);
+			finalizeESClientForUnitTest();
+		}
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	@Test
+	public void pushContent_unchanged() throws Exception {
+		try {
+			ContentPushService tested = getTested(true);
+
+			// case - no persistence, hash of previous content is read from index
+			String sys_content_type = TYPE_KNOWN;
+			String sysId = tested.providerService.generateSysId(sys_content_type, "1");
+			{
+				indexDelete(INDEX_NAME);
+				assertEquals("insert", pushContent(tested, sys_content_type, "1", createUnchangedTestContent("testvalue")).get("status"));
+				indexFlushAndRefresh(INDEX_NAME);
+				Object sysUpdated = indexGetDocument(INDEX_NAME, INDEX_TYPE, sysId).get(ContentObjectFields.SYS_UPDATED);
+
+				reset(tested.contentPersistenceService, tested.eventContentStored, tested.eventBeforeIndexed,
+						tested.providerService);
+				setupProviderServiceMock(tested.providerService);
+				Map<String, Object> ret = pushContent(tested, sys_content_type, "1", createUnchangedTestContent("testvalue"));
+				assertEquals("unchanged", ret.get("status"));
+				assertEquals("Content not changed.", ret.get("message"));
+				verify(tested.providerService, Mockito.never()).runPreprocessors(Mockito.anyString(), Mockito.anyList(),
+						Mockito.anyMap());
+				verifyZeroInteractions(tested.contentPersistenceService, tested.eventContentStored,
+						tested.eventBeforeIndexed);
+				indexFlushAndRefresh(INDEX_NAME);
+				assertEquals(sysUpdated, indexGetDocument(INDEX_NAME, INDEX_TYPE, sysId).get(ContentObjectFields.SYS_UPDATED));
+
+				// case - changed content is processed
+				assertEquals("update", pushContent(tested, sys_content_type, "1", createUnchangedTestContent("testvalue2")).get("status"));
+				indexFlushAndRefresh(INDEX_NAME);
+
+				// case - bulk, hashes are read from index by one multi get
+				Map<String, Object> contentStructure = new LinkedHashMap<>();
+				contentStructure.put("1", createUnchangedTestContent("testvalue2"));
+				contentStructure.put("2", createUnchangedTestContent("testvalue2"));
+				Map<String, Map<String, Object>> bulkRet = pushContentBulk(tested, sys_content_type, contentStructure);
+				assertBulkPushRetItem(bulkRet.get("1"), "unchanged", "Content not changed.");
+				assertBulkPushRetItem(bulkRet.get("2"), "insert", "Content inserted successfully.");
+			}
+
+			// case - persistence, hash of previous content is read from index and must be same in persistence
+			sys_content_type = TYPE_PERSIST;
+			sysId = tested.providerService.generateSysId(sys_content_type, "1");
+			{
+				reset(tested.contentPersistenceService, tested.eventContentStored, tested.eventBeforeIndexed);
+				Map<String, Object> content = createUnchangedTestContent("testvalue");
+				pushContent(tested, sys_content_type, "1", content);
+				String hash = (String) content.get(ContentObjectFields.SYS_CONTENT_HASH);
+				assertNotNull(hash);
+
+				reset(tested.contentPersistenceService, tested.eventContentStored, tested.eventBeforeIndexed);
+				Mockito.when(tested.contentPersistenceService.getContentHash(sysId, sys_content_type)).thenReturn(hash);
+				assertEquals("unchanged", pushContent(tested, sys_content_type, "1", createUnchangedTestContent("testvalue")).get("status"));
+				verify(tested.contentPersistenceService).getContentHash(sysId, sys_content_type);
+				verifyNoMoreInteractions(tested.contentPersistenceService);
+				verifyZeroInteractions(tested.eventContentStored, tested.eventBeforeIndexed);
+
+				// case - bulk, unchanged content is skipped
+				Map<String, String> hashes = new HashMap<>();
+				hashes.put(sysId, hash);
+				Mockito.when(
+						tested.contentPersistenceService.getContentHashes(Mockito.anyCollectionOf(String.class),
+								Mockito.eq(sys_content_type))).thenReturn(hashes);
+				Map<String, Object> contentStructure = new LinkedHashMap<>();
+				contentStructure.put("1", createUnchangedTestContent("testvalue"));
+				contentStructure.put("2", createUnchangedTestContent("testvalue"));
+				Map<String, Map<String, Object>> ret = pushContentBulk(tested, sys_content_type, contentStructure);
+				assertBulkPushRetItem(ret.get("1"), "unchanged", "Content not changed.");
+				assertBulkPushRetItem(ret.get("2"), "insert", "Content inserted successfully.");
+				Map<String, Map<String, Object>> expectedStored = new LinkedHashMap<>();
+				expectedStored.put(tested.providerService.generateSysId(sys_content_type, "2"),
+						(Map<String, Object>) contentStructure.get("2"));
+				verify(tested.contentPersistenceService).storeBatch(sys_content_type, expectedStored);
+				ArgumentCaptor<Collection> hashIds = ArgumentCaptor.forClass(Collection.class);
+				verify(tested.contentPersistenceService).getContentHashes(hashIds.capture(), Mockito.eq(sys_content_type));
+				Assert.assertEquals(1, hashIds.getValue().size());
+				Assert.assertTrue(hashIds.getValue().contains(sysId));
+
+				// case - content lost from index is indexed again even if hash in persistence is same
+				indexDelete(INDEX_NAME);
+				reset(tested.contentPersistenceService, tested.eventContentStored, tested.eventBeforeIndexed);
+				Mockito.when(tested.contentPersistenceService.getContentHash(sysId, sys_content_type)).thenReturn(hash);
+				assertEquals("insert", pushContent(tested, sys_content_type, "1", createUnchangedTestContent("testvalue")).get("status"));
+				indexFlushAndRefresh(INDEX_NAME);
+				assertNotNull(indexGetDocument(INDEX_NAME, INDEX_TYPE, sysId));
+
+				// case - hash in persistence differs from index, so content is processed
+				reset(tested.contentPersistenceService, tested.eventContentStored, tested.eventBeforeIndexed);
+				Mockito.when(tested.contentPersistenceService.getContentHash(sysId, sys_content_type)).thenReturn("other");
+				assertEquals("update", pushContent(tested, sys_content_type, "1", createUnchangedTestContent("testvalue")).get("status"));
+			}
+		} finally {
+			indexDelete(INDEX_NAME);
+			finalizeESClientForUnitTest();
+		}
+	}
+
+	@Test
+	public void computeContentHash() throws Exception {
+		ContentPushService tested = getTested(false);
+		Map<String, Object> typeDef = new HashMap<>();
+		typeDef.put(ProviderService.SYS_TYPE, "issue");
+		ProviderContentTypeInfo typeInfo = ProviderServiceTest.createProviderContentTypeInfo(typeDef, TYPE_KNOWN);
+
+		String hash = tested.computeContentHash(typeInfo, createUnchangedTestContent("testvalue"));
+		assertNotNull(hash);
+		Assert.assertEquals(hash, tested.computeContentHash(typeInfo, createUnchangedTestContent("testvalue")));
+
+		// case - previous hash is ignored
+		Map<String, Object> content = createUnchangedTestContent("testvalue");
+		content.put(ContentObjectFields.SYS_CONTENT_HASH, "oldhash");
+		Assert.assertEquals(hash, tested.computeContentHash(typeInfo, content));
+		assertFalse(content.containsKey(ContentObjectFields.SYS_CONTENT_HASH));
+
+		// case - changed content
+		assertFalse(hash.equals(tested.computeContentHash(typeInfo, createUnchangedTestContent("testvalue2"))));
+
+		// case - changed type configuration
+		typeDef.put(ProviderService.SYS_TYPE, "blogpost");
+		assertFalse(hash.equals(tested.computeContentHash(typeInfo, createUnchangedTestContent("testvalue"))));
+		typeDef.put(ProviderService.SYS_TYPE, "issue");
+		typeDef.put(ProviderService.SYS_CONTENT_CONTENT_TYPE, "text/html");
+		assertFalse(hash.equals(tested.computeContentHash(typeInfo, createUnchangedTestContent("testvalue"))));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void pushContentBulk_noPersistence() throws Exception {
+		try {
+			ContentPushService tested = getTested(true);
+
+			String sys_content_type = TYPE_KNOWN;
+
+			// case - insert/update, fill sys_updated if not provided in content, process tags provided in
+			// content, fill sys_content_content-type because sys_content is present
+			{
+				String sysId_1 = tested.providerService.generateSysId(sys_content_type, "1");
+				String sysId_2 = tested.providerService.generateSysId(sys_content_type, "2");
+
+				indexInsertDocument(INDEX_NAME, INDEX_TYPE, sysId_1, "{\"test\":\"old\"}");
+				indexFlushAndRefresh(INDEX_NAME);
+
+				reset(tested.providerService, tested.contentPersistenceService, tested.eventContentStored,
+						tested.eventBeforeIndexed, tested.eventBatchBeforeIndexed, tested.eventBatchStored);
+				setupProviderServiceMock(tested.providerService);
+				Map<String, Object> contentStructure = new LinkedHashMap<>();
+
+				// empty content means error
+				contentStructure.put("empty_content", new HashMap<>());
+
+				Map<String, Object> content_1 = new HashMap<>();
+				contentStructure.put("1", content_1);
+				content_1.put("test", "testvalue");
+				content_1.put(ContentObjectFields.SYS_CONTENT, "sys content");
+				content_1.remove(ContentObjectFields.SYS_UPDATED);
+				String[] tags = new String[] { "tag_value" };
+				content_1.put("tags", tags);
+
+				Map<String, Object> content_2 = new HashMap<>();
+				contentStructure.put("2", content_2);
+				content_2.put("test2", "testvalue2");
+				content_2.put(ContentObjectFields.SYS_CONTENT, "sys content");
+				content_2.remove(ContentObjectFields.SYS_UPDATED);
+				String[] tags2 = new String[] { "tag_value" };
+				content_2.put("tags", tags2);
+
+				// validation of id format
+				contentStructure.put("_bad_id_format", content_2);
+				contentStructure.put("bad_id,format", content_2);
+				contentStructure.put("bad_id*format", content_2);
+
+				Map<String, Map<String, Object>> ret = pushContentBulk(tested, sys_content_type, contentStructure);
+				Assert.assertEquals(6, ret.size());
+				assertBulkPushRetItem(ret.get("empty_content"), "error",
+						"fieldName=content, description=Some content for pushing must be defined");
+				assertBulkPushRetItem(ret.get("_bad_id_format"), "error",
+						"fieldName=contentId, description=contentId can't start with underscore or contain comma, star");
+				assertBulkPushRetItem(ret.get("bad_id,format"), "error",
+						"fieldName=contentId, description=contentId can't start with underscore or contain comma, star");
+				assertBulkPushRetItem(ret.get("bad_id*format"), "error",
+						"fieldName=contentId, description=contentId can't start with underscore or contain comma, star");
+
+				assertBulkPushRetItem(ret.get("1"), "update", "Content updated successfully.");
+				assertBulkPushRetItem(ret.get("2"), "insert", "Content inserted successfully.");
+
+				verify(tested.eventBeforeIndexed).fire(prepareContentBeforeIndexedEventMatcher(sysId_1, content_1));
+				verify(tested.eventBeforeIndexed).fire(prepareContentBeforeIndexedEventMatcher(sysId_2, content_2));
+				verify(tested.providerService).runPreprocessors(sys_content_type, PREPROCESSORS, content_1);
+				verify(tested.providerService).runPreprocessors(sys_content_type, PREPROCESSORS, content_2);
+				verify(tested.eventContentStored).fire(prepareContentStoredEventMatcher(sysId_1));
+				verify(tested.eventContentStored).fire(prepareContentStoredEventMatcher(sysId_2));
+				verifyNoMoreInteractions(tested.contentPersistenceService, tested.eventBeforeIndexed,
+						tested.eventContentStored);
+
+				indexFlushAndRefresh(INDEX_NAME);
+
+				// assert documents in index
+				{
+					Map<String, Object> doc = indexGetDocument(INDEX_NAME, INDEX_TYPE, sysId_2);
+					assertNotNull(doc);
+					assertEquals("testvalue2", doc.get("test2"));
+					assertEquals("jbossorg", doc.get(ContentObjectFields.SYS_CONTENT_PROVIDER));
+					assertEquals("2", doc.get(ContentObjectFields.SYS_CONTENT_ID));
+					assertEquals(sys_content_type, doc.get(ContentObjectFields.SYS_CONTENT_TYPE));
+					assertEquals("my_sys_type", doc.get(ContentObjectFields.SYS_TYPE));
+					assertEquals("text/plain", doc.get(ContentObjectFields.SYS_CONTENT_CONTENT_TYPE));
+					assertEquals(sysId_2, doc.get(ContentObjectFields.SYS_ID));
+					assertNotNull(doc.get(ContentObjectFields.SYS_UPDATED));
+					assertEquals("tag_value", ((List<String>) doc.get(ContentObjectFields.SYS_TAGS)).get(0));
+				}
+				{
+					Map<String, Object> doc = indexGetDocument(INDEX_NAME, INDEX_TYPE, sysId_1);
+					assertNotNull(doc);
+					assertEquals("testvalue", doc.get("test"));
+					assertEquals("jbossorg", doc.get(ContentObjectFields.SYS_CONTENT_PROVIDER));
+				}
+			}
+
+		} finally {
+			indexDelete(INDEX_NAME);
+			finalizeESClientForUnitTest();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void pushContentBulk_preprocessingFailureCancelsOthers() throws Exception {
+		try {
+			ContentPushService tested = getTested(true);
+			tested.bulkPreprocessingService = mock(BulkPreprocessingService.class);
+			Future<Object> failed = mock(Future.class);
+			when(failed.get()).thenThrow(new ExecutionException(new IllegalStateException("test")));
+			Future<Object> other = mock(Future.class);
+			when(tested.bulkPreprocessingService.submit(Mockito.any(Callable.class))).thenReturn(failed, other);
+
+			Map<String, Object> contentStructure = new LinkedHashMap<>();
+			contentStructure.put("1", createUnchangedTestContent("value1"));
+			contentStructure.put("2", createUnchangedTestContent("value2"));
+			try {
+				pushContentBulk(tested, TYPE_KNOWN, contentStructure);
+				Assert.fail("IllegalStateException expected");
+			} catch (IllegalStateException e) {
+				// OK
+			}
+			verify(other).cancel(true);
+			verify(other, Mockito.never()).get();
+		} finally {
+			indexDelete(INDEX_NAME);
+			finalizeESClientForUnitTest();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void pushContentBulk_parallelPreprocessing() throws Exception {
+		BulkPreprocessingService bulkPreprocessingService = BulkPreprocessingServiceTest.getTested(3);
+		try {
+			ContentPushService tested = getTested(true);
+			tested.bulkPreprocessingService = bulkPreprocessingService;
+
+			String sys_content_type = TYPE_KNOWN;
+			Map<String, Object> contentStructure = new LinkedHashMap<>();
+			for (int i = 20; i > 0; i--) {
+				if (i == 10) {
+					contentStructure.put("not_structure", "value");
+					contentStructure.put("empty_content", new HashMap<>());
+				}
+				contentStructure.put("" + i, createUnchangedTestContent("value" + i));
+			}
+
+			Map<String, Map<String, Object>> ret = pushContentBulk(tested, sys_content_type, contentStructure);
+
+			// order of returned statuses is same as for sequential preprocessing - errors first, then indexed content in
+			// order it was pushed
+			List<String> expectedOrder = new ArrayList<>();
+			expectedOrder.add("not_structure");
+			expectedOrder.add("empty_content");
+			for (int i = 20; i > 0; i--) {
+				expectedOrder.add("" + i);
+			}
+			Assert.assertEquals(expectedOrder, new ArrayList<>(ret.keySet()));
+			assertBulkPushRetItem(ret.get("not_structure"), "error", "content must be JSON structure");
+			assertBulkPushRetItem(ret.get("empty_content"), "error",
+					"fieldName=content, description=Some content for pushing must be defined");
+			for (int i = 1; i <= 20; i++) {
+				assertBulkPushRetItem(ret.get("" + i), "insert", "Content inserted successfully.");
+				verify(tested.providerService).runPreprocessors(sys_content_type, PREPROCESSORS,
+						(Map<String, Object>) contentStructure.get("" + i));
+			}
+			verify(tested.eventContentStored, Mockito.times(20)).fire(Mockito.any(ContentStoredEvent.class));
+			Map<String, Object> stats = bulkPreprocessingService.getStatistics();
+			Assert.assertEquals(21L, (long) stats.get("submitted_count") + (long) stats.get("caller_runs_count"));
+		} finally {
+			bulkPreprocessingService.destroy();
+			indexDelete(INDEX_NAME);
+			finalizeESClientForUnitTest();
+		}
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	@Test
+	public void pushContentBulk_persistence() throws Exception {
+		try {
+			ContentPushService tested = getTested(true);
+
+			String sys_content_type = TYPE_PERSIST;
+
+			// case - insert/update, fill sys_updated if not provided in content, process tags provided in
+			// content, fill sys_content_content-type because sys_content is present
+			{
+				String sysId_1 = tested.providerService.generateSysId(sys_content_type, "1");
+				String sysId_2 = tested.providerService.generateSysId(sys_content_type, "2");
+
+				indexInsertDocument(INDEX_NAME, INDEX_TYPE, sysId_1, "{\"test\":\"old\"}");
+				indexFlushAndRefresh(INDEX_NAME);
+
+				reset(tested.providerService, tested.contentPersistenceService, tested.eventContentStored,
+						tested.eventBeforeIndexed, tested.eventBatchBeforeIndexed, tested.eventBatchStored);
+				setupProviderServiceMock(tested.providerService);
+				Map<String, Object> contentStructure = new LinkedHashMap<>();
+
+				// empty content means error
+				contentStructure.put("empty_content", new HashMap<>());
+
+				Map<String, Object> content_1 = new HashMap<>();
+				contentStructure.put("1", content_1);
+				content_1.put("test", "testvalue");
+				content_1.put(ContentObjectFields.SYS_CONTENT, "sys content");
+				content_1.remove(ContentObjectFields.SYS_UPDATED);
+				String[] tags = new String[] { "tag_value" };
+				content_1.put("tags", tags);
+
+				Map<String, Object> content_2 = new HashMap<>();
+				contentStructure.put("2", content_2);
+				content_2.put("test2", "testvalue2");
+				content_2.put(ContentObjectFields.SYS_CONTENT, "sys content");
+				content_2.remove(ContentObjectFields.SYS_UPDATED);
+				String[] tags2 = new String[] { "tag_value" };
+				content_2.put("tags", tags2);
+
+				// validation of id format
+				contentStructure.put("_bad_id_format", content_2);
+				contentStructure.put("bad_id,format", content_2);
+				contentStructure.put("bad_id*format", content_2);
+
+				Map<String, Map<String, Object>> ret = pushContentBulk(tested, sys_content_type, contentStructure);
+				Assert.assertEquals(6, ret.size());
+				assertBulkPushRetItem(ret.get("empty_content"), "error",
+						"fieldName=content, description=Some content for pushing must be defined");
+				assertBulkPushRetItem(ret.get("_bad_id_format"), "error",
+						"fieldName=contentId, description=contentId can't start with underscore or contain comma, star");
+				assertBulkPushRetItem(ret.get("bad_id,format"), "error",
+						"fieldName=contentId, description=contentId can't start with underscore or contain comma, star");
+				assertBulkPushRetItem(ret.get("bad_id*format"), "error",
+						"fieldName=contentId, description=contentId can't start with underscore or contain comma, star");
+
+				assertBulkPushRetItem(ret.get("1"), "update", "Content updated successfully.");
+				assertBulkPushRetItem(ret.get("2"), "insert", "Content inserted successfully.");
+
+				verify(tested.eventBeforeIndexed).fire(prepareContentBeforeIndexedEventMatcher(sysId_1, content_1));
+				verify(tested.eventBeforeIndexed).fire(prepareContentBeforeIndexedEventMatcher(sysId_2, content_2));
+				verify(tested.providerService).runPreprocessors(sys_content_type, null, content_1);
+				verify(tested.providerService).runPreprocessors(sys_content_type, null, content_2);
+				final Map<String, Map<String, Object>> expectedStored = new LinkedHashMap<>();
+				expectedStored.put(sysId_1, content_1);
+				expectedStored.put(sysId_2, content_2);
+				// case - no content in index has hash, so hashes are not read from persistence
+				verify(tested.contentPersistenceService, Mockito.never()).getContentHashes(Mockito.any(Collection.class),
+						Mockito.anyString());
+				verify(tested.contentPersistenceService, Mockito.never()).getContentHash(Mockito.anyString(),
+						Mockito.anyString());
+				verify(tested.contentPersistenceService).storeBatch(sys_content_type, expectedStored);
+				verify(tested.eventContentStored).fire(prepareContentStoredEventMatcher(sysId_1));
+				verify(tested.eventContentStored).fire(prepareContentStoredEventMatcher(sysId_2));
+				// case - batch events contain whole bulk
+				verify(tested.eventBatchBeforeIndexed).fire(
+						Mockito.argThat(new CustomMatcher<ContentBatchBeforeIndexedEvent>("ContentBatchBeforeIndexedEvent") {
+							@Override
+							public boolean matches(Object paramObject) {
+								return expectedStored.equals(((ContentBatchBeforeIndexedEvent) paramObject).getContents());
+							}
+						}));
+				verify(tested.eventBatchStored).fire(
+						Mockito.argThat(new CustomMatcher<ContentBatchStoredEvent>("ContentBatchStoredEvent") {
+							@Override
+							public boolean matches(Object paramObject) {
+								return expectedStored.equals(((ContentBatchStoredEvent) paramObject).getContents());
+							}
+						}));
+				verifyNoMoreInteractions(tested.contentPersistenceService, tested.eventBeforeIndexed,
+						tested.eventContentStored, tested.eventBatchBeforeIndexed,
+						tested.eventBatchStored);
+
+				indexFlushAndRefresh(INDEX_NAME);
+
+				// assert documents in index
+				{
+					Map<String, Object> doc = indexGetDocument(INDEX_NAME, INDEX_TYPE, sysId_2);
+					assertNotNull(doc);
+					assertEquals("testvalue2", doc.get("test2"));
+					assertEquals("jbossorg", doc.get(ContentObjectFields.SYS_CONTENT_PROVIDER));
+					assertEquals("2", doc.get(ContentObjectFields.SYS_CONTENT_ID));
+					assertEquals(sys_content_type, doc.get(ContentObjectFields.SYS_CONTENT_TYPE));
+					assertEquals("my_sys_type", doc.get(ContentObjectFields.SYS_TYPE));
+					assertEquals("text/plain", doc.get(ContentObjectFields.SYS_CONTENT_CONTENT_TYPE));
+					assertEquals(sysId_2, doc.get(ContentObjectFields.SYS_ID));
+					assertNotNull(doc.get(ContentObjectFields.SYS_UPDATED));
+					assertEquals("tag_value", ((List<String>) doc.get(ContentObjectFields.SYS_TAGS)).get(0));
+				}
+				{
+					Map<String, Object> doc = indexGetDocument(INDEX_NAME, INDEX_TYPE, sysId_1);
+					assertNotNull(doc);
+					assertEquals("testvalue", doc.get("test"));
+					assertEquals("jbossorg", doc.get(ContentObjectFields.SYS_CONTENT_PROVIDER));
+				}
+			}
+
+		} finally {
+			indexDelete(INDEX_NAME);
+			finalizeESClientForUnitTest();
+		}
+	}
+
+	private void assertBulkPushRetItem(Map<String, Object> map, String expectedStatus, String expectedMessage) {
+		Assert.assertNotNull(map);
+		Assert.assertEquals(expectedStatus, map.get(ContentPushService.RETFIELD_STATUS));
+		Assert.assertEquals(expectedMessage, map.get(ContentPushService.RETFIELD_MESSAGE));
+	}
+
+	private ContentStoredEvent prepareContentStoredEventMatcher(final String expectedContentId) {
+		return Mockito.argThat(new CustomMatcher<ContentStoredEvent>("ContentStoredEvent [contributorId="
+				+ expectedContentId + "]") {
+
+			@Override
+			public boolean matches(Object paramObject) {
+				ContentStoredEvent e = (ContentStoredEvent) paramObject;
+				return e.getContentId().equals(expectedContentId) && e.getContentData() != null;
+			}
+
+		});
+	}
+
+	private Map<String, Object> createUnchangedTestContent(String value) {
+		Map<String, Object> content = new HashMap<>();
+		content.put("test", value);
+		content.put("tags", TestUtils.createListOfStrings("tag1", "tag2"));
+		return content;
+	}
+
+	private Map<String, Object> pushContent(ContentPushService tested, String type, String contentId,
+			Map<String, Object> content) throws Exception {
+		return tested.pushContent(tested.providerService.findContentType(type), contentId, content);
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private Map<String, Map<String, Object>> pushContentBulk(ContentPushService tested, String type,
+			Map<String, Object> contentStructure) {
+		Map<String, Object> ret = new LinkedHashMap<>();
+		tested.pushContentBulk(tested.providerService.findContentType(type), contentStructure, ret);
+		return (Map) ret;
+	}
+
+	/**
+	 * Prepare tested instance with injected mocks.
+	 * 
+	 * @param initEsClient - searchClientService is initialized from
+	 *          {@link ESRealClientTestBase#prepareSearchClientServiceMock(String clusterName)} if this is true, so do not forget to clean
+	 *          up client in finally!
+	 * @return instance for test
+	 */
+	@SuppressWarnings("unchecked")
+	protected ContentPushService getTested(boolean initEsClient) {
+		ContentPushService tested = new ContentPushService();
+		if (initEsClient)
+			tested.searchClientService = prepareSearchClientServiceMock("ContentPushServiceTest");
+
+		tested.providerService = mock(ProviderService.class);
+		setupProviderServiceMock(tested.providerService);
+
+		tested.contentPersistenceService = mock(ContentPersistenceService.class);
+		tested.log = Logger.getLogger("testlogger");
+		tested.searchResultCache = mock(SearchResultCache.class);
+
+		tested.eventContentStored = mock(Event.class);
+		tested.eventBeforeIndexed = mock(Event.class);
+		tested.eventBatchBeforeIndexed = mock(Event.class);
+		tested.eventBatchStored = mock(Event.class);
+
+		return tested;
+	}
+
+	private void setupProviderServiceMock(ProviderService providerServiceMock) {
+		when(providerServiceMock.findContentType(TYPE_INVALID)).thenReturn(
+				ProviderServiceTest.createProviderContentTypeInfo(new HashMap<String, Object>(), TYPE_INVALID));
+		when(providerServiceMock.generateSysId(Mockito.anyString(), Mockito.anyString())).thenCallRealMethod();
+
+		Map<String, Object> typeDefKnown = new HashMap<String, Object>();
+		Map<String, Object> typeDefKnownIndex = new HashMap<String, Object>();
+		typeDefKnown.put(ProviderService.INDEX, typeDefKnownIndex);
+		typeDefKnownIndex.put("name", INDEX_NAME);
+		typeDefKnownIndex.put("type", INDEX_TYPE);
+		typeDefKnown.put("input_preprocessors", PREPROCESSORS);
+		typeDefKnown.put(ProviderService.SYS_TYPE, "my_sys_type");
+		typeDefKnown.put(ProviderService.SYS_CONTENT_CONTENT_TYPE, "text/plain");
+		when(providerServiceMock.findContentType(TYPE_KNOWN)).thenReturn(
+				ProviderServiceTest.createProviderContentTypeInfo(typeDefKnown, TYPE_KNOWN));
+
+		Map<String, Object> typeDefInvalid2 = new HashMap<String, Object>();
+		typeDefInvalid2.put(ProviderService.INDEX, typeDefKnownIndex);
+		when(providerServiceMock.findContentType(TYPE_INVALID_2)).thenReturn(
+				ProviderServiceTest.createProviderContentTypeInfo(typeDefInvalid2, TYPE_INVALID_2));
+
+		Map<String, Object> typeDefPersist = new HashMap<String, Object>();
+		Map<String, Object> typeDefPersistIndex = new HashMap<String, Object>();
+		typeDefPersist.put(ProviderService.INDEX, typeDefPersistIndex);
+		typeDefPersistIndex.put("name", INDEX_NAME);
+		typeDefPersistIndex.put("type", INDEX_TYPE);
+		typeDefPersist.put(ProviderService.SYS_TYPE, "my_sys_type");
+		typeDefPersist.put(ProviderService.PERSIST, "true");
+		typeDefPersist.put(ProviderService.SYS_CONTENT_CONTENT_TYPE, "text/plain");
+		when(providerServiceMock.findContentType(TYPE_PERSIST)).thenReturn(
+				ProviderServiceTest.createProviderContentTypeInfo(typeDefPersist, TYPE_PERSIST));
+
+		Map<String, Object> typeDefSysContent = new HashMap<String, Object>();
+		typeDefSysContent.put(ProviderService.INDEX, typeDefPersistIndex);
+		typeDefSysContent.put(ProviderService.SYS_TYPE, "my_sys_type");
+		when(providerServiceMock.findContentType(TYPE_INVALID_CONTENT_TYPE)).thenReturn(
+				ProviderServiceTest.createProviderContentTypeInfo(typeDefSysContent, TYPE_INVALID_CONTENT_TYPE));
+	}
+}
@@ -0,0 +1,99 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.searchisko.api.service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.elasticsearch.common.settings.SettingsException;
+import org.junit.Assert;
+import org.junit.Test;
+import org.searchisko.api.service.ProviderService.ProviderContentTypeInfo;
+import org.searchisko.api.testtools.TestUtils;
+
+/**
+ * Unit test for {@link ContentTypeRoutingTable}
+ *
+ * @author Vlastimil Elias (velias at redhat dot com)
+ */
+public class ContentTypeRoutingTableTest {
+
+	@Test
+	public void emptyTable() {
+		ContentTypeRoutingTable tested = new ContentTypeRoutingTable(null);
+		Assert.assertTrue(tested.isBuiltFrom(null));
+		Assert.assertNull(tested.getContentType("provider1_issue"));
+		Assert.assertNull(tested.getContentType(null));
+		Assert.assertTrue(tested.getContentTypes().isEmpty());
+
+		List<Map<String, Object>> all = new ArrayList<Map<String, Object>>();
+		tested = new ContentTypeRoutingTable(all);
+		Assert.assertTrue(tested.isBuiltFrom(all));
+		Assert.assertFalse(tested.isBuiltFrom(new ArrayList<Map<String, Object>>()));
+		Assert.assertTrue(tested.getContentTypes().isEmpty());
+	}
+
+	@Test
+	public void routing() throws IOException {
+		List<Map<String, Object>> all = new ArrayList<Map<String, Object>>();
+		all.add(TestUtils.loadJSONFromClasspathFile("/provider/provider_1.json"));
+		all.add(TestUtils.loadJSONFromClasspathFile("/provider/provider_2.json"));
+		// provider with same content type as some previous is ignored for this content type
+		Map<String, Object> duplicateProvider = TestUtils.loadJSONFromClasspathFile("/provider/provider_1.json");
+		duplicateProvider.put(ProviderService.NAME, "duplicate");
+		all.add(duplicateProvider);
+
+		ContentTypeRoutingTable tested = new ContentTypeRoutingTable(all);
+		Assert.assertTrue(tested.isBuiltFrom(all));
+		Assert.assertEquals(4, tested.getContentTypes().size());
+
+		Assert.assertNull(tested.getContentType("unknown"));
+
+		ProviderContentTypeInfo ret = tested.getContentType("provider1_mailing");
+		Assert.assertNotNull(ret);
+		Assert.assertEquals("provider1", ret.getProviderName());
+		Assert.assertEquals("mailing", ret.getSysType());
+		Assert.assertEquals("idx_provider1_mailing", ret.getIndexName());
+		Assert.assertEquals("t_provider1_mailing", ret.getIndexType());
+		Assert.assertEquals(4, ret.getPreprocessors().size());
+		Assert.assertNull(ret.getVisibilityRoles());
+		Assert.assertFalse(ret.isPersist());
+		// same instance is returned each time
+		Assert.assertSame(ret, tested.getContentType("provider1_mailing"));
+		Assert.assertSame(ret.getSearchIndices(), ret.getSearchIndices());
+
+		ret = tested.getContentType("provider2_issue");
+		Assert.assertEquals("provider2", ret.getProviderName());
+		Assert.assertEquals("issue2", ret.getSysType());
+	}
+
+	@Test(expected = SettingsException.class)
+	public void invalidProvider_type() throws IOException {
+		List<Map<String, Object>> all = new ArrayList<Map<String, Object>>();
+		all.add(TestUtils.loadJSONFromClasspathFile("/provider/provider_1.json"));
+		Map<String, Object> invalidProvider = new HashMap<String, Object>();
+		invalidProvider.put(ProviderService.NAME, "invalid");
+		invalidProvider.put(ProviderService.TYPE, "bad");
+		all.add(invalidProvider);
+		new ContentTypeRoutingTable(all);
+	}
+
+	@Test(expected = SettingsException.class)
+	public void invalidProvider_typeDef() throws IOException {
+		List<Map<String, Object>> all = new ArrayList<Map<String, Object>>();
+		Map<String, Object> types = new HashMap<String, Object>();
+		types.put("invalid_type", null);
+		Map<String, Object> invalidProvider = new HashMap<String, Object>();
+		invalidProvider.put(ProviderService.NAME, "invalid");
+		invalidProvider.put(ProviderService.TYPE, types);
+		all.add(invalidProvider);
+		new ContentTypeRoutingTable(all);
+	}
+
+}
@@ -0,0 +1,75 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.searchisko.api.service;
+
+import java.util.logging.Logger;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.searchisko.api.events.ContributorCodeChangedEvent;
+import org.searchisko.api.events.ContributorCreatedEvent;
+import org.searchisko.api.events.ContributorDeletedEvent;
+import org.searchisko.api.events.ContributorMergedEvent;
+import org.searchisko.api.events.ContributorUpdatedEvent;
+import org.searchisko.api.model.AppConfiguration;
+import org.searchisko.tools.content.ContributorLookupCache;
+
+/**
+ * Unit test for {@link ContributorLookupCacheService}.
+ *
+ * @author Vlastimil Elias (velias at redhat dot com)
+ */
+public class ContributorLookupCacheServiceTest {
+
+	@Test
+	public void init() {
+		ContributorLookupCacheService tested = getTested(100, 60);
+		Mockito.verify(tested.getLookupCache()).configure(100, 60000L);
+	}
+
+	@Test
+	public void eventHandlers() {
+		ContributorLookupCacheService tested = getTested(100, 60);
+		ContributorLookupCache cache = tested.getLookupCache();
+
+		tested.contributorCreatedEventHandler(new ContributorCreatedEvent("id", "code", null));
+		Mockito.verify(cache, Mockito.times(1)).flush();
+		tested.contributorUpdatedEventHandler(new ContributorUpdatedEvent("id", "code", null));
+		Mockito.verify(cache, Mockito.times(2)).flush();
+		tested.contributorMergedEventHandler(new ContributorMergedEvent("code1", "code2"));
+		Mockito.verify(cache, Mockito.times(3)).flush();
+		tested.contributorDeletedEventHandler(new ContributorDeletedEvent("id", "code"));
+		Mockito.verify(cache, Mockito.times(4)).flush();
+		tested.contributorCodeChangedEventHandler(new ContributorCodeChangedEvent("code1", "code2"));
+		Mockito.verify(cache, Mockito.times(5)).flush();
+	}
+
+	@Test
+	public void getStatistics() {
+		ContributorLookupCacheService tested = new ContributorLookupCacheService();
+		Assert.assertNotNull(tested.getStatistics().get("hit_rate"));
+	}
+
+	private ContributorLookupCacheService getTested(int size, int ttl) {
+		final ContributorLookupCache cache = Mockito.mock(ContributorLookupCache.class);
+		ContributorLookupCacheService tested = new ContributorLookupCacheService() {
+			@Override
+			protected ContributorLookupCache getLookupCache() {
+				return cache;
+			}
+		};
+		tested.log = Logger.getLogger("testlogger");
+		tested.appConfigurationService = Mockito.mock(AppConfigurationService.class);
+		AppConfiguration ac = new AppConfiguration("/tmp");
+		ac.setContributorLookupCacheSize(size);
+		ac.setContributorLookupCacheTtl(ttl);
+		Mockito.when(tested.appConfigurationService.getAppConfiguration()).thenReturn(ac);
+		tested.init();
+		return tested;
+	}
+
+}
@@ -7,7 +7,9 @@ package org.searchisko.api.service;
 
 import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
@@ -24,7 +26,8 @@ import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 import org.searchisko.api.ContentObjectFields;
-import org.searchisko.api.events.ContentBeforeIndexedEvent;
+import org.searchisko.api.events.ContentBatchBeforeIndexedEvent;
+import org.searchisko.api.model.AppConfiguration;
 import org.searchisko.api.events.ContributorCodeChangedEvent;
 import org.searchisko.persistence.jpa.model.Tag;
 
@@ -107,26 +110,26 @@ public class CustomTagServiceTest {
 	}
 
 	@Test
-	public void contentBeforeIndexedHandler() {
+	public void contentBatchBeforeIndexedHandler() {
 		CustomTagService tested = getTested();
 
 		// case - invalid event
-		tested.contentBeforeIndexedHandler(null);
+		tested.contentBatchBeforeIndexedHandler(null);
 		verifyZeroInteractions(tested.customTagPersistenceService);
 
 		reset(tested.customTagPersistenceService);
-		tested.contentBeforeIndexedHandler(new ContentBeforeIndexedEvent(null, null));
+		tested.contentBatchBeforeIndexedHandler(new ContentBatchBeforeIndexedEvent(null));
 		verifyZeroInteractions(tested.customTagPersistenceService);
 
 		reset(tested.customTagPersistenceService);
-		tested.contentBeforeIndexedHandler(new ContentBeforeIndexedEvent("id", null));
+		tested.contentBatchBeforeIndexedHandler(createEvent("id", null));
 		verifyZeroInteractions(tested.customTagPersistenceService);
 
 		reset(tested.customTagPersistenceService);
-		tested.contentBeforeIndexedHandler(new ContentBeforeIndexedEvent(null, new HashMap<String, Object>()));
+		tested.contentBatchBeforeIndexedHandler(createEvent(null, new HashMap<String, Object>()));
 		verifyZeroInteractions(tested.customTagPersistenceService);
 
-		// test of updateSysTagsField method
+		// test of updateSysTagsFields method
 
 		// case - copying of provider tag
 		{
@@ -136,34 +139,133 @@ public class CustomTagServiceTest {
 			listOfLabels.add("label1");
 			listOfLabels.add("label2");
 			content.put(ContentObjectFields.TAGS, listOfLabels);
-			Mockito.when(tested.customTagPersistenceService.getTagsByContent("id")).thenReturn(new ArrayList<Tag>());
-			tested.contentBeforeIndexedHandler(new ContentBeforeIndexedEvent("id", content));
+			Mockito.when(tested.customTagPersistenceService.getTagsByContents(Mockito.anyCollectionOf(String.class)))
+					.thenReturn(new HashMap<String, List<Tag>>());
+			tested.contentBatchBeforeIndexedHandler(createEvent("id", content));
 			Assert.assertEquals(listOfLabels, content.get(ContentObjectFields.SYS_TAGS));
 		}
 
-		// case - copying of custom tag
+		// case - copying of custom tags and merge with provider tags for whole batch by one lookup
 		{
 			reset(tested.customTagPersistenceService);
-			Map<String, Object> content = new HashMap<String, Object>();
-			content.put(ContentObjectFields.TAGS, null);
-			content.put(ContentObjectFields.SYS_ID, "contentId");
-			List<Tag> listOfTags = new ArrayList<Tag>();
-			listOfTags.add(new Tag("contentId", "contributorId", "label"));
-			Mockito.when(tested.customTagPersistenceService.getTagsByContent("contentId")).thenReturn(listOfTags);
-			tested.contentBeforeIndexedHandler(new ContentBeforeIndexedEvent("contentId", content));
-			List<String> listOfLabel = new ArrayList<String>();
-			listOfLabel.add("label");
-			Assert.assertEquals(listOfLabel, content.get(ContentObjectFields.SYS_TAGS));
+			Map<String, Map<String, Object>> contents = new LinkedHashMap<>();
+			Map<String, Object> content1 = new HashMap<String, Object>();
+			content1.put(ContentObjectFields.TAGS, null);
+			contents.put("contentId1", content1);
+			Map<String, Object> content2 = new HashMap<String, Object>();
+			List<String> listOfLabels = new ArrayList<String>();
+			listOfLabels.add("Label");
+			listOfLabels.add("label2");
+			content2.put(ContentObjectFields.TAGS, listOfLabels);
+			contents.put("contentId2", content2);
+			Map<String, Object> content3 = new HashMap<String, Object>();
+			contents.put("contentId3", content3);
+
+			Map<String, List<Tag>> tags = new HashMap<>();
+			tags.put("contentId1", Arrays.asList(new Tag("contentId1", "contributorId", "label")));
+			tags.put("contentId2", Arrays.asList(new Tag("contentId2", "contributorId", "label"), new Tag("contentId2",
+					"contributorId", "label3")));
+			Mockito.when(
+					tested.customTagPersistenceService.getTagsByContents(Arrays.asList("contentId1", "contentId2",
+							"contentId3"))).thenReturn(tags);
+
+			tested.contentBatchBeforeIndexedHandler(new ContentBatchBeforeIndexedEvent(contents));
+			Assert.assertEquals(Arrays.asList("label"), content1.get(ContentObjectFields.SYS_TAGS));
+			Assert.assertEquals(Arrays.asList("label", "label2", "label3"), content2.get(ContentObjectFields.SYS_TAGS));
+			Assert.assertEquals(new ArrayList<String>(), content3.get(ContentObjectFields.SYS_TAGS));
+			verify(tested.customTagPersistenceService).getTagsByContents(Mockito.anyCollectionOf(String.class));
+			Mockito.verifyNoMoreInteractions(tested.customTagPersistenceService);
 		}
+	}
+
+	@Test
+	public void updateSysTagsField() {
+		CustomTagService tested = getTested();
 
-		//TODO merge obou skupin i s osetrenim duplicit
+		Map<String, Object> content = new HashMap<String, Object>();
+		content.put(ContentObjectFields.SYS_ID, "contentId");
+		content.put(ContentObjectFields.TAGS, Arrays.asList("label2"));
+		Map<String, List<Tag>> tags = new HashMap<>();
+		tags.put("contentId", Arrays.asList(new Tag("contentId", "contributorId", "label")));
+		Mockito.when(tested.customTagPersistenceService.getTagsByContents(Arrays.asList("contentId"))).thenReturn(tags);
+		tested.updateSysTagsField(content);
+		Assert.assertEquals(Arrays.asList("label", "label2"), content.get(ContentObjectFields.SYS_TAGS));
+	}
+
+	@Test
+	public void tagIndex() {
+		CustomTagService tested = getTested();
+		tested.appConfigurationService.getAppConfiguration().setCustomTagsIndexReloadInterval(60);
+
+		List<Tag> allTags = new ArrayList<>();
+		allTags.add(new Tag("contentId1", "contributorId", "label1"));
+		allTags.add(new Tag("contentId1", "contributorId2", "label2"));
+		allTags.add(new Tag("contentId2", "contributorId", "label3"));
+		Mockito.when(tested.customTagPersistenceService.getAllTags()).thenReturn(allTags);
+
+		// case - index loaded on first use only
+		Map<String, Object> content1 = new HashMap<String, Object>();
+		Map<String, Object> content3 = new HashMap<String, Object>();
+		Map<String, Map<String, Object>> contents = new LinkedHashMap<>();
+		contents.put("contentId1", content1);
+		contents.put("contentId3", content3);
+		tested.updateSysTagsFields(contents);
+		Assert.assertEquals(Arrays.asList("label1", "label2"), content1.get(ContentObjectFields.SYS_TAGS));
+		Assert.assertEquals(new ArrayList<String>(), content3.get(ContentObjectFields.SYS_TAGS));
+
+		tested.updateSysTagsFields(contents);
+		verify(tested.customTagPersistenceService, Mockito.times(1)).getAllTags();
+		Mockito.verifyNoMoreInteractions(tested.customTagPersistenceService);
+		Assert.assertEquals(2, tested.getStatistics().get("size"));
+		Assert.assertEquals(2L, tested.getStatistics().get("index_lookup_count"));
+
+		// case - refresh of one content
+		reset(tested.customTagPersistenceService);
+		Mockito.when(tested.customTagPersistenceService.getTagsByContent("contentId3")).thenReturn(
+				Arrays.asList(new Tag("contentId3", "contributorId", "label4")));
+		tested.refreshTagIndex("contentId3");
+		Mockito.when(tested.customTagPersistenceService.getTagsByContent("contentId1")).thenReturn(new ArrayList<Tag>());
+		tested.refreshTagIndex("contentId1");
+		tested.updateSysTagsFields(contents);
+		Assert.assertEquals(new ArrayList<String>(), content1.get(ContentObjectFields.SYS_TAGS));
+		Assert.assertEquals(Arrays.asList("label4"), content3.get(ContentObjectFields.SYS_TAGS));
+
+		// case - content deleted
+		tested.contentDeletedEventHandler(new ContentDeletedEvent("contentId3"));
+		tested.updateSysTagsFields(contents);
+		Assert.assertEquals(new ArrayList<String>(), content3.get(ContentObjectFields.SYS_TAGS));
+
+		// case - reload after interval
+		reset(tested.customTagPersistenceService);
+		Mockito.when(tested.customTagPersistenceService.getAllTags()).thenReturn(allTags);
+		tested.tagIndexLoadTimestamp = System.currentTimeMillis() - 61000L;
+		tested.updateSysTagsFields(contents);
+		Assert.assertEquals(Arrays.asList("label1", "label2"), content1.get(ContentObjectFields.SYS_TAGS));
+		verify(tested.customTagPersistenceService).getAllTags();
+		Assert.assertEquals(2L, tested.getStatistics().get("reload_count"));
+		Assert.assertEquals(0L, tested.getStatistics().get("persistence_lookup_count"));
+	}
+
+	@Test
+	public void refreshTagIndex_indexDisabled() {
+		CustomTagService tested = getTested();
+		tested.refreshTagIndex("contentId");
+		verifyZeroInteractions(tested.customTagPersistenceService);
+		Assert.assertEquals(false, tested.getStatistics().get("enabled"));
+	}
 
+	private ContentBatchBeforeIndexedEvent createEvent(String id, Map<String, Object> content) {
+		Map<String, Map<String, Object>> contents = new HashMap<>();
+		contents.put(id, content);
+		return new ContentBatchBeforeIndexedEvent(contents);
 	}
 
 	private CustomTagService getTested() {
 		CustomTagService ret = new CustomTagService();
 		ret.customTagPersistenceService = mock(CustomTagPersistenceService.class);
 		ret.log = Logger.getLogger("testlogger");
+		ret.appConfigurationService = mock(AppConfigurationService.class);
+		Mockito.when(ret.appConfigurationService.getAppConfiguration()).thenReturn(new AppConfiguration("/tmp"));
 		return ret;
 	}
 
@@ -7,7 +7,14 @@ package org.searchisko.api.service;
 
 import java.util.logging.Logger;
 
+import org.elasticsearch.action.ActionFuture;
+import org.elasticsearch.action.admin.cluster.health.ClusterHealthRequest;
+import org.elasticsearch.action.admin.cluster.health.ClusterHealthResponse;
+import org.elasticsearch.action.admin.cluster.health.ClusterHealthStatus;
+import org.elasticsearch.client.AdminClient;
 import org.elasticsearch.client.Client;
+import org.elasticsearch.client.ClusterAdminClient;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.node.Node;
 import org.junit.Assert;
 import org.junit.Test;
@@ -41,6 +48,36 @@ public class ElasticsearchClientServiceTest {
 		Assert.assertEquals(tested.client, tested.getClient());
 	}
 
+	@SuppressWarnings("unchecked")
+	@Test
+	public void isClusterAvailable() {
+		ElasticsearchClientService tested = getTested();
+
+		// case - no client
+		Assert.assertFalse(tested.isClusterAvailable());
+
+		tested.client = Mockito.mock(Client.class);
+		AdminClient adminClientMock = Mockito.mock(AdminClient.class);
+		ClusterAdminClient clusterAdminClientMock = Mockito.mock(ClusterAdminClient.class);
+		ActionFuture<ClusterHealthResponse> futureMock = Mockito.mock(ActionFuture.class);
+		ClusterHealthResponse responseMock = Mockito.mock(ClusterHealthResponse.class);
+		Mockito.when(tested.client.admin()).thenReturn(adminClientMock);
+		Mockito.when(adminClientMock.cluster()).thenReturn(clusterAdminClientMock);
+		Mockito.when(clusterAdminClientMock.health(Mockito.any(ClusterHealthRequest.class))).thenReturn(futureMock);
+		Mockito.when(futureMock.actionGet(Mockito.any(TimeValue.class))).thenReturn(responseMock);
+
+		Mockito.when(responseMock.getStatus()).thenReturn(ClusterHealthStatus.GREEN);
+		Assert.assertTrue(tested.isClusterAvailable("idx"));
+		Mockito.when(responseMock.getStatus()).thenReturn(ClusterHealthStatus.YELLOW);
+		Assert.assertTrue(tested.isClusterAvailable("idx"));
+		Mockito.when(responseMock.getStatus()).thenReturn(ClusterHealthStatus.RED);
+		Assert.assertFalse(tested.isClusterAvailable("idx"));
+
+		// case - cluster not reachable
+		Mockito.when(futureMock.actionGet(Mockito.any(TimeValue.class))).thenThrow(new RuntimeException("timeout"));
+		Assert.assertFalse(tested.isClusterAvailable("idx"));
+	}
+
 	@Test
 	public void destroy() {
 		ElasticsearchClientService tested = getTested();
@@ -11,6 +11,7 @@ import java.util.logging.Logger;
 import org.junit.Assert;
 import org.junit.Test;
 import org.mockito.Mockito;
+import org.searchisko.api.cache.SearchConfigCache;
 
 /**
  * Unit test for {@link ParsedFilterConfigService}
@@ -75,7 +76,7 @@ public class ParsedFilterConfigServiceTest {
 	private ParsedFilterConfigService getTested() {
 		ParsedFilterConfigService tested = new ParsedFilterConfigService();
 		tested.log = Logger.getLogger("test logger");
-		tested.configService = Mockito.mock(ConfigService.class);
+		tested.searchConfigCache = Mockito.mock(SearchConfigCache.class);
 		return tested;
 	}
 
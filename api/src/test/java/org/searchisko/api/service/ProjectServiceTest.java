@@ -6,8 +6,10 @@
 package org.searchisko.api.service;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
@@ -20,8 +22,10 @@ import org.elasticsearch.client.Client;
 import org.junit.Assert;
 import org.junit.Test;
 import org.mockito.Mockito;
+import org.searchisko.api.model.AppConfiguration;
 import org.searchisko.api.rest.ESDataOnlyResponse;
 import org.searchisko.api.testtools.ESRealClientTestBase;
+import org.searchisko.persistence.service.ContentTuple;
 import org.searchisko.persistence.service.EntityService;
 import org.searchisko.persistence.service.ListRequest;
 
@@ -442,6 +446,100 @@ public class ProjectServiceTest extends ESRealClientTestBase {
 		}
 	}
 
+	/**
+	 * Mock persistence to return given projects from list request.
+	 */
+	protected static void mockListRequest(EntityService entityService, Map<String, Map<String, Object>> projects) {
+		List<ContentTuple<String, Map<String, Object>>> content = new ArrayList<>();
+		for (Map.Entry<String, Map<String, Object>> e : projects.entrySet()) {
+			content.add(new ContentTuple<String, Map<String, Object>>(e.getKey(), e.getValue()));
+		}
+		ListRequest lr1 = Mockito.mock(ListRequest.class);
+		Mockito.when(lr1.hasContent()).thenReturn(true);
+		Mockito.when(lr1.content()).thenReturn(content);
+		ListRequest lr2 = Mockito.mock(ListRequest.class);
+		Mockito.when(lr2.hasContent()).thenReturn(false);
+		Mockito.when(entityService.listRequestInit()).thenReturn(lr1);
+		Mockito.when(entityService.listRequestNext(lr1)).thenReturn(lr2);
+	}
+
+	private static Map<String, Object> createProject(String code, String jiraCode) {
+		Map<String, Object> project = new HashMap<>();
+		project.put(ProjectService.FIELD_CODE, code);
+		project.put(ProjectService.FIELD_NAME, code + " name");
+		Map<String, Object> tsc = new HashMap<>();
+		tsc.put("jbossorg_jira", Arrays.asList(jiraCode, jiraCode + "_2"));
+		project.put(ProjectService.FIELD_TYPE_SPECIFIC_CODE, tsc);
+		return project;
+	}
+
+	@Test
+	public void snapshot() {
+		Client client = prepareESClientForUnitTest("ProjectServiceTest_snapshot");
+		ProjectService tested = getTested(client);
+		tested.appConfigurationService = Mockito.mock(AppConfigurationService.class);
+		AppConfiguration ac = new AppConfiguration("/tmp");
+		Mockito.when(tested.appConfigurationService.getAppConfiguration()).thenReturn(ac);
+		try {
+			// case - snapshot switched off
+			ac.setProjectsSnapshotReloadInterval(0);
+			tested.init();
+			Assert.assertFalse(tested.isSnapshotAvailable());
+			Assert.assertNull(ProjectService.getSnapshot());
+			Assert.assertNull(tested.findProjectsByCode("jbossas"));
+			Assert.assertNull(tested.findProjectsByTypeSpecificCode("jbossorg_jira", "AS7"));
+			// no problem with changes
+			tested.delete("jbossas");
+
+			// case - snapshot loaded at startup
+			Map<String, Map<String, Object>> projects = new LinkedHashMap<>();
+			projects.put("jbossas", createProject("jbossas", "AS7"));
+			projects.put("jbosstools", createProject("jbosstools", "JBIDE"));
+			mockListRequest(tested.entityService, projects);
+			ac.setProjectsSnapshotReloadInterval(60);
+			tested.init();
+			Assert.assertTrue(tested.isSnapshotAvailable());
+			Assert.assertEquals(2, ProjectService.getSnapshot().getProjects().size());
+			Assert.assertEquals(2, tested.getSnapshotStatistics().get("size"));
+
+			Map<String, Map<String, Object>> ret = tested.findProjectsByCode("jbossas");
+			Assert.assertEquals(1, ret.size());
+			Assert.assertEquals("jbossas name", ret.get("jbossas").get(ProjectService.FIELD_NAME));
+			Assert.assertTrue(tested.findProjectsByCode("unknown").isEmpty());
+			ret = tested.findProjectsByTypeSpecificCode("jbossorg_jira", "JBIDE_2");
+			Assert.assertEquals(1, ret.size());
+			Assert.assertTrue(ret.containsKey("jbosstools"));
+			Assert.assertTrue(tested.findProjectsByTypeSpecificCode("jbossorg_jira", "JBIDE_").isEmpty());
+			Assert.assertTrue(tested.findProjectsByTypeSpecificCode("other", "JBIDE").isEmpty());
+
+			// case - snapshot replaced on create, update and delete
+			ProjectsSnapshot s1 = ProjectService.getSnapshot();
+			tested.create("spring", createProject("spring", "SPR"));
+			Assert.assertNotSame(s1, ProjectService.getSnapshot());
+			Assert.assertEquals(2, s1.getProjects().size());
+			Assert.assertEquals(1, tested.findProjectsByTypeSpecificCode("jbossorg_jira", "SPR").size());
+
+			tested.update("jbossas", createProject("jbossas", "WFLY"));
+			Assert.assertTrue(tested.findProjectsByTypeSpecificCode("jbossorg_jira", "AS7").isEmpty());
+			Assert.assertEquals(1, tested.findProjectsByTypeSpecificCode("jbossorg_jira", "WFLY").size());
+
+			tested.delete("jbosstools");
+			Assert.assertTrue(tested.findProjectsByCode("jbosstools").isEmpty());
+			Assert.assertEquals(2, ProjectService.getSnapshot().getProjects().size());
+
+			// case - periodic reload
+			tested.snapshotReloadTimeout();
+			Assert.assertEquals(2, ProjectService.getSnapshot().getProjects().size());
+			Assert.assertEquals(1, tested.findProjectsByCode("jbosstools").size());
+			Assert.assertTrue(tested.findProjectsByCode("spring").isEmpty());
+		} finally {
+			ac.setProjectsSnapshotReloadInterval(0);
+			tested.init();
+			indexDelete(ProjectService.SEARCH_INDEX_NAME);
+			finalizeESClientForUnitTest();
+		}
+	}
+
 	@Test
 	public void listRequestInit() {
 		ProjectService tested = getTested(null);
@@ -17,6 +17,7 @@ import javax.ws.rs.core.StreamingOutput;
 
 import org.elasticsearch.client.Client;
 import org.elasticsearch.common.settings.SettingsException;
+import org.jboss.elasticsearch.tools.content.StructuredContentPreprocessor;
 import org.junit.Assert;
 import org.junit.Test;
 import org.mockito.Mockito;
@@ -818,6 +819,70 @@ public class ProviderServiceTest extends ESRealClientTestBase {
 
 	}
 
+	@SuppressWarnings("unchecked")
+	@Test
+	public void getPreprocessorChain() throws IOException {
+		ProviderService tested = getTested();
+		tested.searchClientService = Mockito.mock(SearchClientService.class);
+		Client client = Mockito.mock(Client.class);
+		Mockito.when(tested.searchClientService.getClient()).thenReturn(client);
+
+		List<Map<String, Object>> preprocessorsDef = ProviderService.extractPreprocessors(
+				(Map<String, Object>) ((Map<String, Object>) TestUtils.loadJSONFromClasspathFile("/provider/provider_1.json")
+						.get("type")).get("provider1_mailing"), "provider1_mailing");
+
+		// case - chain is created and then reused for same definition
+		List<StructuredContentPreprocessor> chain = tested.getPreprocessorChain(TEST_TYPE_NAME, preprocessorsDef);
+		Assert.assertEquals(4, chain.size());
+		Assert.assertSame(chain, tested.getPreprocessorChain(TEST_TYPE_NAME, preprocessorsDef));
+
+		// case - other type has own chain
+		List<StructuredContentPreprocessor> chain2 = tested.getPreprocessorChain("other", preprocessorsDef);
+		Assert.assertNotSame(chain, chain2);
+		Assert.assertSame(chain2, tested.getPreprocessorChain("other", preprocessorsDef));
+
+		// case - chain is recreated if definition changes
+		List<Map<String, Object>> preprocessorsDef2 = new ArrayList<Map<String, Object>>(preprocessorsDef);
+		preprocessorsDef2.remove(0);
+		List<StructuredContentPreprocessor> chain3 = tested.getPreprocessorChain(TEST_TYPE_NAME, preprocessorsDef2);
+		Assert.assertEquals(3, chain3.size());
+		Assert.assertSame(chain3, tested.getPreprocessorChain(TEST_TYPE_NAME, preprocessorsDef2));
+
+		// case - chain is recreated after flush
+		tested.flushCaches();
+		List<StructuredContentPreprocessor> chain4 = tested.getPreprocessorChain(TEST_TYPE_NAME, preprocessorsDef2);
+		Assert.assertNotSame(chain3, chain4);
+		Assert.assertEquals(3, chain4.size());
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void runPreprocessors_chainReusedForEqualDefinitions() throws Exception {
+		ProviderService tested = Mockito.spy(getTested());
+		tested.searchClientService = Mockito.mock(SearchClientService.class);
+		Client client = Mockito.mock(Client.class);
+		Mockito.when(tested.searchClientService.getClient()).thenReturn(client);
+
+		// equal definitions from two distinct provider lists, as loaded by distinct bean instances
+		List<Map<String, Object>> preprocessorsDef1 = ProviderService.extractPreprocessors(
+				(Map<String, Object>) ((Map<String, Object>) TestUtils.loadJSONFromClasspathFile("/provider/provider_1.json")
+						.get("type")).get("provider1_mailing"), "provider1_mailing");
+		List<Map<String, Object>> preprocessorsDef2 = ProviderService.extractPreprocessors(
+				(Map<String, Object>) ((Map<String, Object>) TestUtils.loadJSONFromClasspathFile("/provider/provider_1.json")
+						.get("type")).get("provider1_mailing"), "provider1_mailing");
+		Assert.assertNotSame(preprocessorsDef1, preprocessorsDef2);
+
+		Map<String, Object> data = new HashMap<String, Object>();
+		tested.runPreprocessors(TEST_TYPE_NAME, preprocessorsDef1, data);
+		Assert.assertEquals("value1", data.get("name1"));
+		data = new HashMap<String, Object>();
+		tested.runPreprocessors(TEST_TYPE_NAME, preprocessorsDef2, data);
+		Assert.assertEquals("value1", data.get("name1"));
+		tested.runPreprocessors(TEST_TYPE_NAME, preprocessorsDef1, new HashMap<String, Object>());
+
+		Mockito.verify(tested, Mockito.times(1)).createPreprocessors(Mockito.anyList(), Mockito.eq(client));
+	}
+
 	@Test
 	public void findContentType() throws IOException {
 		ProviderService tested = getTested();
@@ -848,6 +913,19 @@ public class ProviderServiceTest extends ESRealClientTestBase {
 			Assert.assertNotNull(ret);
 			Assert.assertEquals("mailing2", ret.getTypeDef().get(ProviderService.SYS_TYPE));
 		}
+
+		// case - routing table is reused until flushed
+		{
+			ContentTypeRoutingTable table = tested.getRoutingTable();
+			Assert.assertSame(table, tested.getRoutingTable());
+			Assert.assertSame(tested.findContentType("provider1_mailing"), tested.findContentType("provider1_mailing"));
+			tested.flushCaches();
+			Assert.assertNotSame(table, tested.getRoutingTable());
+		}
+
+		// case - blank name
+		Assert.assertNull(tested.findContentType(null));
+		Assert.assertNull(tested.findContentType(" "));
 	}
 
 	@Test
@@ -0,0 +1,182 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.searchisko.api.service;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.SearchResponse;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+/**
+ * Unit test for {@link SearchCoalescingService}.
+ *
+ * @author Vlastimil Elias (velias at redhat dot com)
+ */
+public class SearchCoalescingServiceTest {
+
+	private SearchCoalescingService getTested() {
+		SearchCoalescingService tested = new SearchCoalescingService();
+		tested.log = Logger.getLogger("testlogger");
+		return tested;
+	}
+
+	@Test
+	public void performSearch_sequential() {
+		SearchCoalescingService tested = getTested();
+		final SearchResponse r1 = Mockito.mock(SearchResponse.class);
+		final SearchResponse r2 = Mockito.mock(SearchResponse.class);
+
+		Assert.assertSame(r1, tested.performSearch("k", new Callable<SearchResponse>() {
+			@Override
+			public SearchResponse call() {
+				return r1;
+			}
+		}));
+		// case - finished search is not shared
+		Assert.assertSame(r2, tested.performSearch("k", new Callable<SearchResponse>() {
+			@Override
+			public SearchResponse call() {
+				return r2;
+			}
+		}));
+		Assert.assertEquals(2L, tested.getStatistics().get("executed_count"));
+		Assert.assertEquals(0L, tested.getStatistics().get("coalesced_count"));
+		Assert.assertEquals(0, tested.getStatistics().get("in_flight"));
+	}
+
+	@Test
+	public void performSearch_exception() {
+		SearchCoalescingService tested = getTested();
+		try {
+			tested.performSearch("k", new Callable<SearchResponse>() {
+				@Override
+				public SearchResponse call() {
+					throw new ElasticsearchException("test");
+				}
+			});
+			Assert.fail("ElasticsearchException expected");
+		} catch (ElasticsearchException e) {
+			Assert.assertEquals("test", e.getMessage());
+		}
+		Assert.assertEquals(0, tested.getStatistics().get("in_flight"));
+	}
+
+	@Test
+	public void performSearch_concurrent() throws InterruptedException {
+		final SearchCoalescingService tested = getTested();
+		final SearchResponse r = Mockito.mock(SearchResponse.class);
+		final CountDownLatch leaderStarted = new CountDownLatch(1);
+		final CountDownLatch leaderRelease = new CountDownLatch(1);
+		final AtomicInteger calls = new AtomicInteger();
+		final Callable<SearchResponse> search = new Callable<SearchResponse>() {
+			@Override
+			public SearchResponse call() throws Exception {
+				calls.incrementAndGet();
+				leaderStarted.countDown();
+				leaderRelease.await(10, TimeUnit.SECONDS);
+				return r;
+			}
+		};
+
+		final AtomicReference<SearchResponse> leaderResponse = new AtomicReference<>();
+		Thread leader = new Thread() {
+			@Override
+			public void run() {
+				leaderResponse.set(tested.performSearch("k", search));
+			}
+		};
+		leader.start();
+		Assert.assertTrue(leaderStarted.await(10, TimeUnit.SECONDS));
+
+		final AtomicReference<SearchResponse> followerResponse = new AtomicReference<>();
+		Thread follower = new Thread() {
+			@Override
+			public void run() {
+				followerResponse.set(tested.performSearch("k", search));
+			}
+		};
+		follower.start();
+		for (int i = 0; i < 1000 && !Long.valueOf(1).equals(tested.getStatistics().get("coalesced_count")); i++) {
+			Thread.sleep(10);
+		}
+		leaderRelease.countDown();
+		leader.join(10000);
+		follower.join(10000);
+
+		Assert.assertSame(r, leaderResponse.get());
+		Assert.assertSame(r, followerResponse.get());
+		Assert.assertEquals(1, calls.get());
+		Assert.assertEquals(1L, tested.getStatistics().get("executed_count"));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void performSearchAsync() {
+		SearchCoalescingService tested = getTested();
+		final AtomicReference<ActionListener<SearchResponse>> searchListener = new AtomicReference<>();
+		SearchCoalescingService.AsyncSearch search = new SearchCoalescingService.AsyncSearch() {
+			@Override
+			public void execute(ActionListener<SearchResponse> listener) {
+				searchListener.set(listener);
+			}
+		};
+		SearchCoalescingService.AsyncSearch searchNotExpected = new SearchCoalescingService.AsyncSearch() {
+			@Override
+			public void execute(ActionListener<SearchResponse> listener) {
+				Assert.fail("Search must not be executed");
+			}
+		};
+
+		// case - second request joins running search and both get response
+		ActionListener<SearchResponse> l1 = Mockito.mock(ActionListener.class);
+		ActionListener<SearchResponse> l2 = Mockito.mock(ActionListener.class);
+		tested.performSearchAsync("k", search, l1);
+		tested.performSearchAsync("k", searchNotExpected, l2);
+		Assert.assertEquals(1, tested.getStatistics().get("in_flight"));
+		Mockito.verifyZeroInteractions(l1, l2);
+
+		SearchResponse r = Mockito.mock(SearchResponse.class);
+		searchListener.get().onResponse(r);
+		Mockito.verify(l1).onResponse(r);
+		Mockito.verify(l2).onResponse(r);
+		Assert.assertEquals(0, tested.getStatistics().get("in_flight"));
+		Assert.assertEquals(1L, tested.getStatistics().get("executed_count"));
+		Assert.assertEquals(1L, tested.getStatistics().get("coalesced_count"));
+
+		// case - finished search is not shared, failure is distributed to all listeners
+		ActionListener<SearchResponse> l3 = Mockito.mock(ActionListener.class);
+		ActionListener<SearchResponse> l4 = Mockito.mock(ActionListener.class);
+		tested.performSearchAsync("k", search, l3);
+		tested.performSearchAsync("k", searchNotExpected, l4);
+		ElasticsearchException e = new ElasticsearchException("test");
+		searchListener.get().onFailure(e);
+		Mockito.verify(l3).onFailure(e);
+		Mockito.verify(l4).onFailure(e);
+		Mockito.verifyNoMoreInteractions(l1, l2, l3, l4);
+		Assert.assertEquals(2L, tested.getStatistics().get("executed_count"));
+
+		// case - exception thrown when search is started is passed to listener
+		ActionListener<SearchResponse> l5 = Mockito.mock(ActionListener.class);
+		tested.performSearchAsync("k", new SearchCoalescingService.AsyncSearch() {
+			@Override
+			public void execute(ActionListener<SearchResponse> listener) {
+				throw new ElasticsearchException("start failed");
+			}
+		}, l5);
+		Mockito.verify(l5).onFailure(Mockito.any(ElasticsearchException.class));
+		Assert.assertEquals(0, tested.getStatistics().get("in_flight"));
+	}
+
+}
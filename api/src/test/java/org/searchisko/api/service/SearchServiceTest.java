@@ -14,8 +14,14 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.MultiSearchRequest;
+import org.elasticsearch.action.search.MultiSearchResponse;
 import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.common.joda.time.DateTime;
 import org.elasticsearch.common.joda.time.DateTimeZone;
@@ -27,6 +33,7 @@ import org.elasticsearch.search.sort.SortOrder;
 import org.json.JSONException;
 import org.junit.Assert;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
@@ -34,6 +41,7 @@ import org.searchisko.api.model.PastIntervalValue;
 import org.searchisko.api.model.QuerySettings;
 import org.searchisko.api.model.QuerySettings.Filters;
 import org.searchisko.api.model.SortByValue;
+import org.searchisko.api.model.TimeoutConfiguration;
 import org.searchisko.api.rest.exception.BadFieldException;
 import org.searchisko.api.rest.exception.NotAuthorizedException;
 import org.searchisko.api.security.Role;
@@ -63,6 +71,175 @@ public class SearchServiceTest extends SearchServiceTestBase {
 		tested.parsedFilterConfigService.prepareFiltersForRequest(filters);
 	}
 
+	@Test
+	public void performSearch_resultCache() {
+		ConfigService configService = Mockito.mock(ConfigService.class);
+		SearchService tested = getTested(configService);
+		tested.searchClientService = Mockito.mock(SearchClientService.class);
+
+		QuerySettings qs = new QuerySettings();
+		qs.setQuery("test");
+		SearchResponse cached = Mockito.mock(SearchResponse.class);
+
+		// case - cached response returned for anonymous user without search performed
+		Mockito.when(tested.searchResultCache.isEnabled()).thenReturn(true);
+		Mockito.when(tested.authenticationUtilService.isAuthenticatedUser()).thenReturn(false);
+		Mockito.when(tested.searchResultCache.get(qs.toCanonicalString())).thenReturn(cached);
+		Assert.assertSame(cached, tested.performSearch(qs, "uuid", StatsRecordType.SEARCH));
+		Mockito.verifyZeroInteractions(tested.searchClientService);
+		Mockito.verify(tested.statsClientService).writeStatisticsRecord(Mockito.eq(StatsRecordType.SEARCH),
+				Mockito.eq("uuid"), Mockito.eq(cached), Mockito.anyLong(), Mockito.eq(qs));
+
+		// case - cache not used for authenticated user
+		Mockito.reset(tested.searchResultCache);
+		Mockito.when(tested.searchResultCache.isEnabled()).thenReturn(true);
+		Mockito.when(tested.authenticationUtilService.isAuthenticatedUser()).thenReturn(true);
+		try {
+			tested.performSearch(qs, "uuid", StatsRecordType.SEARCH);
+		} catch (Exception e) {
+			// OK, search client is not available in this test
+		}
+		Mockito.verify(tested.searchResultCache).isEnabled();
+		Mockito.verifyNoMoreInteractions(tested.searchResultCache);
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void performSearch_coalescing() {
+		ConfigService configService = Mockito.mock(ConfigService.class);
+		SearchService tested = getTested(configService);
+		tested.searchClientService = Mockito.mock(SearchClientService.class);
+
+		QuerySettings qs = new QuerySettings();
+		qs.setQuery("test");
+		SearchResponse response = Mockito.mock(SearchResponse.class);
+
+		Mockito.when(tested.searchCoalescingService.isEnabled()).thenReturn(true);
+		Mockito.when(tested.authenticationUtilService.getUserSecurityContextKey()).thenReturn("roles:[role1]");
+		Mockito.when(
+				tested.searchCoalescingService.performSearch(Mockito.eq(qs.toCanonicalString() + "|roles:[role1]"),
+						Mockito.any(Callable.class))).thenReturn(response);
+
+		Assert.assertSame(response, tested.performSearch(qs, "uuid", StatsRecordType.SEARCH));
+		Mockito.verifyZeroInteractions(tested.searchClientService);
+		Mockito.verify(tested.statsClientService).writeStatisticsRecord(Mockito.eq(StatsRecordType.SEARCH),
+				Mockito.eq("uuid"), Mockito.eq(response), Mockito.anyLong(), Mockito.eq(qs));
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	@Test
+	public void performSearchAsync() {
+		ConfigService configService = Mockito.mock(ConfigService.class);
+		SearchService tested = getTested(configService);
+		tested.searchClientService = Mockito.mock(SearchClientService.class);
+
+		QuerySettings qs = new QuerySettings();
+		qs.setQuery("test");
+
+		// case - cached response passed to listener without search performed
+		{
+			SearchResponse cached = Mockito.mock(SearchResponse.class);
+			Mockito.when(tested.searchResultCache.isEnabled()).thenReturn(true);
+			Mockito.when(tested.authenticationUtilService.isAuthenticatedUser()).thenReturn(false);
+			Mockito.when(tested.searchResultCache.get(qs.toCanonicalString())).thenReturn(cached);
+			ActionListener<SearchResponse> listener = Mockito.mock(ActionListener.class);
+			tested.performSearchAsync(qs, "uuid", StatsRecordType.SEARCH, listener);
+			Mockito.verify(listener).onResponse(cached);
+			Mockito.verifyNoMoreInteractions(listener);
+			Mockito.verifyZeroInteractions(tested.searchClientService);
+			Mockito.verify(tested.statsClientService).writeStatisticsRecord(Mockito.eq(StatsRecordType.SEARCH),
+					Mockito.eq("uuid"), Mockito.eq(cached), Mockito.anyLong(), Mockito.eq(qs));
+		}
+
+		// case - coalesced search, statistics written when response arrives
+		{
+			Mockito.reset(tested.searchResultCache, tested.statsClientService);
+			Mockito.when(tested.searchCoalescingService.isEnabled()).thenReturn(true);
+			Mockito.when(tested.authenticationUtilService.getUserSecurityContextKey()).thenReturn("roles:[role1]");
+			ActionListener<SearchResponse> listener = Mockito.mock(ActionListener.class);
+			tested.performSearchAsync(qs, "uuid", StatsRecordType.SEARCH, listener);
+
+			ArgumentCaptor<ActionListener> captor = ArgumentCaptor.forClass(ActionListener.class);
+			Mockito.verify(tested.searchCoalescingService).performSearchAsync(
+					Mockito.eq(qs.toCanonicalString() + "|roles:[role1]"), Mockito.any(SearchCoalescingService.AsyncSearch.class),
+					captor.capture());
+			Mockito.verifyZeroInteractions(listener, tested.statsClientService);
+
+			SearchResponse response = Mockito.mock(SearchResponse.class);
+			captor.getValue().onResponse(response);
+			Mockito.verify(listener).onResponse(response);
+			Mockito.verify(tested.statsClientService).writeStatisticsRecord(Mockito.eq(StatsRecordType.SEARCH),
+					Mockito.eq("uuid"), Mockito.eq(response), Mockito.anyLong(), Mockito.eq(qs));
+
+			// case - failure passed to listener and written into statistics
+			ElasticsearchException e = new ElasticsearchException("test");
+			captor.getValue().onFailure(e);
+			Mockito.verify(listener).onFailure(e);
+			Mockito.verify(tested.statsClientService).writeStatisticsRecord(Mockito.eq(StatsRecordType.SEARCH),
+					Mockito.eq(e), Mockito.anyLong(), Mockito.eq(qs));
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void performMultiSearchAsync() throws IOException {
+		final Client client = Mockito.mock(Client.class);
+		ConfigService configService = mockConfigurationService();
+		SearchService tested = getTested(configService);
+		mockProviderConfiguration(tested, "/search/provider_1.json", "/search/provider_2.json");
+		tested.searchClientService = Mockito.mock(SearchClientService.class);
+		Mockito.when(tested.searchClientService.getClient()).thenReturn(client);
+		tested.timeout = Mockito.mock(TimeoutConfiguration.class);
+		Mockito.when(tested.authenticationUtilService.isAuthenticatedUser()).thenReturn(false);
+
+		QuerySettings qs1 = new QuerySettings();
+		qs1.setQuery("query 1");
+		qs1.getFiltersInit().acknowledgeUrlFilterCandidate("sys_type", "issue");
+		QuerySettings qs2 = new QuerySettings();
+		qs2.setQuery("query 2");
+		List<QuerySettings> qsList = new ArrayList<>();
+		qsList.add(qs1);
+		qsList.add(qs2);
+		List<String> uuids = new ArrayList<>();
+		uuids.add("uuid1");
+		uuids.add("uuid2");
+		List<Map<String, String>> afList = new ArrayList<>();
+		afList.add(new HashMap<String, String>());
+		afList.add(new HashMap<String, String>());
+
+		final SearchResponse sr1 = Mockito.mock(SearchResponse.class);
+		Mockito.doAnswer(new Answer<Object>() {
+			@Override
+			public Object answer(InvocationOnMock invocation) throws Throwable {
+				MultiSearchRequest request = (MultiSearchRequest) invocation.getArguments()[0];
+				Assert.assertEquals(2, request.requests().size());
+				MultiSearchResponse.Item[] items = new MultiSearchResponse.Item[] { new MultiSearchResponse.Item(sr1, null),
+						new MultiSearchResponse.Item(null, "failed") };
+				((ActionListener<MultiSearchResponse>) invocation.getArguments()[1]).onResponse(new MultiSearchResponse(items));
+				return null;
+			}
+		}).when(client).multiSearch(Mockito.any(MultiSearchRequest.class), Mockito.any(ActionListener.class));
+
+		ActionListener<MultiSearchResponse> listener = Mockito.mock(ActionListener.class);
+		tested.performMultiSearchAsync(qsList, uuids, StatsRecordType.SEARCH, afList, listener);
+
+		Mockito.verify(listener).onResponse(Mockito.any(MultiSearchResponse.class));
+		Mockito.verifyNoMoreInteractions(listener);
+		Mockito.verify(tested.statsClientService).writeStatisticsRecord(Mockito.eq(StatsRecordType.SEARCH),
+				Mockito.eq("uuid1"), Mockito.eq(sr1), Mockito.anyLong(), Mockito.eq(qs1));
+		Mockito.verify(tested.statsClientService).writeStatisticsRecord(Mockito.eq(StatsRecordType.SEARCH),
+				Mockito.any(ElasticsearchException.class), Mockito.anyLong(), Mockito.eq(qs2));
+		Mockito.verifyNoMoreInteractions(tested.statsClientService);
+		Assert.assertTrue(afList.get(0).isEmpty());
+
+		// case - failure when request is built is passed to listener
+		Mockito.reset(listener);
+		Mockito.when(tested.searchClientService.getClient()).thenThrow(new ElasticsearchException("no client"));
+		tested.performMultiSearchAsync(qsList, uuids, StatsRecordType.SEARCH, afList, listener);
+		Mockito.verify(listener).onFailure(Mockito.any(ElasticsearchException.class));
+		Mockito.verifyNoMoreInteractions(listener);
+	}
+
 	@Test
 	public void getSearchResponseAdditionalFields() throws ReflectiveOperationException {
 
@@ -115,6 +292,10 @@ public class SearchServiceTest extends SearchServiceTestBase {
 		Assert.assertEquals("aaaa|bb|zzzzz||true", SearchService.prepareIndexNamesCacheKey(sysTypesRequested, true));
 		Assert.assertEquals("aaaa|bb|zzzzz||false", SearchService.prepareIndexNamesCacheKey(sysTypesRequested, false));
 
+		// case - key for authenticated user contains security context
+		Assert.assertEquals("roles:[a, b]|||aaaa|bb|zzzzz||false",
+				SearchService.prepareIndexNamesCacheKey("roles:[a, b]", sysTypesRequested, false));
+		Assert.assertEquals("roles:[a]|||_all||true", SearchService.prepareIndexNamesCacheKey("roles:[a]", null, true));
 	}
 
 	@Test
@@ -411,36 +592,34 @@ public class SearchServiceTest extends SearchServiceTestBase {
 
 		// case - fulltext parameter requested, no fulltext fields configured
 		{
-			Mockito.reset(tested.configService);
-			Mockito.when(tested.configService.get(ConfigService.CFGNAME_SEARCH_FULLTEXT_QUERY_FIELDS)).thenReturn(null);
+			Mockito.reset(configService);
+			Mockito.when(configService.get(ConfigService.CFGNAME_SEARCH_FULLTEXT_QUERY_FIELDS)).thenReturn(null);
 			querySettings.setQuery("my query string");
 			QueryBuilder qbRes = tested.prepareQueryBuilder(querySettings);
 			TestUtils.assertJsonContentFromClasspathFile("/search/query_fulltext.json", qbRes.toString());
-			Mockito.verify(tested.configService).get(ConfigService.CFGNAME_SEARCH_FULLTEXT_QUERY_FIELDS);
-			Mockito.verifyNoMoreInteractions(tested.configService);
+			Mockito.verify(configService).get(ConfigService.CFGNAME_SEARCH_FULLTEXT_QUERY_FIELDS);
 		}
 
 		// case - fulltext parameter requested, some fulltext fields configured (one with invalid format)
 		{
-			Mockito.reset(tested.configService);
-			Mockito.when(tested.configService.get(ConfigService.CFGNAME_SEARCH_FULLTEXT_QUERY_FIELDS)).thenReturn(
+			Mockito.reset(configService);
+			Mockito.when(configService.get(ConfigService.CFGNAME_SEARCH_FULLTEXT_QUERY_FIELDS)).thenReturn(
 					TestUtils.loadJSONFromClasspathFile("/search/search_fulltext_query_fields.json"));
 			querySettings.setQuery("my query string");
 			QueryBuilder qbRes = tested.prepareQueryBuilder(querySettings);
 			TestUtils.assertJsonContentFromClasspathFile("/search/query_fulltext_fields.json", qbRes.toString());
-			Mockito.verify(tested.configService).get(ConfigService.CFGNAME_SEARCH_FULLTEXT_QUERY_FIELDS);
-			Mockito.verifyNoMoreInteractions(tested.configService);
+			Mockito.verify(configService).get(ConfigService.CFGNAME_SEARCH_FULLTEXT_QUERY_FIELDS);
 		}
 
 		// case - no fulltext parameter requested, some fulltext fields configured which has no effect
 		{
 			querySettings.setQuery(null);
-			Mockito.reset(tested.configService);
-			Mockito.when(tested.configService.get(ConfigService.CFGNAME_SEARCH_FULLTEXT_QUERY_FIELDS)).thenReturn(
+			Mockito.reset(configService);
+			Mockito.when(configService.get(ConfigService.CFGNAME_SEARCH_FULLTEXT_QUERY_FIELDS)).thenReturn(
 					TestUtils.loadJSONFromClasspathFile("/search/search_fulltext_query_fields.json"));
 			QueryBuilder qbRes = tested.prepareQueryBuilder(querySettings);
 			TestUtils.assertJsonContentFromClasspathFile("/search/query_match_all.json", qbRes.toString());
-			Mockito.verifyZeroInteractions(tested.configService);
+			Mockito.verifyZeroInteractions(configService);
 		}
 	}
 
@@ -464,31 +643,31 @@ public class SearchServiceTest extends SearchServiceTestBase {
 
 		// case - highlight requested but no fulltext query requested so nothing done
 		{
-			Mockito.reset(srbMock, tested.configService);
+			Mockito.reset(srbMock, configService);
 			querySettings.setQuery(null);
 			querySettings.setQueryHighlight(true);
 			tested.setSearchRequestHighlight(querySettings, srbMock);
 			Mockito.verifyZeroInteractions(srbMock);
-			Mockito.verifyZeroInteractions(tested.configService);
+			Mockito.verifyZeroInteractions(configService);
 		}
 
 		// case - highlight requested not requested, fulltext query requested, nothing done
 		{
-			Mockito.reset(srbMock, tested.configService);
+			Mockito.reset(srbMock, configService);
 			querySettings.setQuery("query");
 			querySettings.setQueryHighlight(false);
 			tested.setSearchRequestHighlight(querySettings, srbMock);
 			Mockito.verifyZeroInteractions(srbMock);
-			Mockito.verifyZeroInteractions(tested.configService);
+			Mockito.verifyZeroInteractions(configService);
 		}
 
 		// case - highlight and fulltext query requested, configuration OK
 		{
-			Mockito.reset(srbMock, tested.configService);
+			Mockito.reset(srbMock, configService);
 			querySettings.setQuery("query");
 			querySettings.setQueryHighlight(true);
 			Map<String, Object> cfg = TestUtils.loadJSONFromClasspathFile("/search/search_fulltext_highlight_fields.json");
-			Mockito.when(tested.configService.get(ConfigService.CFGNAME_SEARCH_FULLTEXT_HIGHLIGHT_FIELDS)).thenReturn(cfg);
+			Mockito.when(configService.get(ConfigService.CFGNAME_SEARCH_FULLTEXT_HIGHLIGHT_FIELDS)).thenReturn(cfg);
 			tested.setSearchRequestHighlight(querySettings, srbMock);
 			Mockito.verify(srbMock).setHighlighterPreTags("<span class='hlt'>");
 			Mockito.verify(srbMock).setHighlighterPostTags("</span>");
@@ -497,16 +676,15 @@ public class SearchServiceTest extends SearchServiceTestBase {
 			Mockito.verify(srbMock).addHighlightedField("sys_description", 2, 3, 20);
 			Mockito.verify(srbMock).addHighlightedField("sys_contributors.fulltext", 5, 10, 30);
 			Mockito.verifyNoMoreInteractions(srbMock);
-			Mockito.verify(tested.configService).get(ConfigService.CFGNAME_SEARCH_FULLTEXT_HIGHLIGHT_FIELDS);
-			Mockito.verifyNoMoreInteractions(tested.configService);
+			Mockito.verify(configService).get(ConfigService.CFGNAME_SEARCH_FULLTEXT_HIGHLIGHT_FIELDS);
 		}
 
 		// cases - highlight and fulltext query requested, distinct configuration errors
 		{
-			Mockito.reset(srbMock, tested.configService);
+			Mockito.reset(srbMock, configService);
 			querySettings.setQuery("query");
 			querySettings.setQueryHighlight(true);
-			Mockito.when(tested.configService.get(ConfigService.CFGNAME_SEARCH_FULLTEXT_HIGHLIGHT_FIELDS)).thenReturn(null);
+			Mockito.when(configService.get(ConfigService.CFGNAME_SEARCH_FULLTEXT_HIGHLIGHT_FIELDS)).thenReturn(null);
 			try {
 				tested.setSearchRequestHighlight(querySettings, srbMock);
 				Assert.fail("SettingsException expected");
@@ -515,10 +693,10 @@ public class SearchServiceTest extends SearchServiceTestBase {
 			}
 		}
 		{
-			Mockito.reset(srbMock, tested.configService);
+			Mockito.reset(srbMock, configService);
 			querySettings.setQuery("query");
 			querySettings.setQueryHighlight(true);
-			Mockito.when(tested.configService.get(ConfigService.CFGNAME_SEARCH_FULLTEXT_HIGHLIGHT_FIELDS)).thenReturn(
+			Mockito.when(configService.get(ConfigService.CFGNAME_SEARCH_FULLTEXT_HIGHLIGHT_FIELDS)).thenReturn(
 					new HashMap<String, Object>());
 			try {
 				tested.setSearchRequestHighlight(querySettings, srbMock);
@@ -528,12 +706,12 @@ public class SearchServiceTest extends SearchServiceTestBase {
 			}
 		}
 		{
-			Mockito.reset(srbMock, tested.configService);
+			Mockito.reset(srbMock, configService);
 			querySettings.setQuery("query");
 			querySettings.setQueryHighlight(true);
 			Map<String, Object> cfg = TestUtils.loadJSONFromClasspathFile("/search/search_fulltext_highlight_fields.json");
 			cfg.put("sys_title", "badclass");
-			Mockito.when(tested.configService.get(ConfigService.CFGNAME_SEARCH_FULLTEXT_HIGHLIGHT_FIELDS)).thenReturn(cfg);
+			Mockito.when(configService.get(ConfigService.CFGNAME_SEARCH_FULLTEXT_HIGHLIGHT_FIELDS)).thenReturn(cfg);
 			try {
 				tested.setSearchRequestHighlight(querySettings, srbMock);
 				Assert.fail("SettingsException expected");
@@ -542,14 +720,14 @@ public class SearchServiceTest extends SearchServiceTestBase {
 			}
 		}
 		{
-			Mockito.reset(srbMock, tested.configService);
+			Mockito.reset(srbMock, configService);
 			querySettings.setQuery("query");
 			querySettings.setQueryHighlight(true);
 			Map<String, Object> cfg = TestUtils.loadJSONFromClasspathFile("/search/search_fulltext_highlight_fields.json");
 			Map<String, String> c = (Map<String, String>) cfg.get("sys_title");
 			// no integer parameter
 			c.put("fragment_size", "no integer");
-			Mockito.when(tested.configService.get(ConfigService.CFGNAME_SEARCH_FULLTEXT_HIGHLIGHT_FIELDS)).thenReturn(cfg);
+			Mockito.when(configService.get(ConfigService.CFGNAME_SEARCH_FULLTEXT_HIGHLIGHT_FIELDS)).thenReturn(cfg);
 			try {
 				tested.setSearchRequestHighlight(querySettings, srbMock);
 				Assert.fail("SettingsException expected");
@@ -558,14 +736,14 @@ public class SearchServiceTest extends SearchServiceTestBase {
 			}
 		}
 		{
-			Mockito.reset(srbMock, tested.configService);
+			Mockito.reset(srbMock, configService);
 			querySettings.setQuery("query");
 			querySettings.setQueryHighlight(true);
 			Map<String, Object> cfg = TestUtils.loadJSONFromClasspathFile("/search/search_fulltext_highlight_fields.json");
 			Map<String, String> c = (Map<String, String>) cfg.get("sys_title");
 			// empty parameter
 			c.put("number_of_fragments", "");
-			Mockito.when(tested.configService.get(ConfigService.CFGNAME_SEARCH_FULLTEXT_HIGHLIGHT_FIELDS)).thenReturn(cfg);
+			Mockito.when(configService.get(ConfigService.CFGNAME_SEARCH_FULLTEXT_HIGHLIGHT_FIELDS)).thenReturn(cfg);
 			try {
 				tested.setSearchRequestHighlight(querySettings, srbMock);
 				Assert.fail("SettingsException expected");
@@ -574,14 +752,14 @@ public class SearchServiceTest extends SearchServiceTestBase {
 			}
 		}
 		{
-			Mockito.reset(srbMock, tested.configService);
+			Mockito.reset(srbMock, configService);
 			querySettings.setQuery("query");
 			querySettings.setQueryHighlight(true);
 			Map<String, Object> cfg = TestUtils.loadJSONFromClasspathFile("/search/search_fulltext_highlight_fields.json");
 			Map<String, String> c = (Map<String, String>) cfg.get("sys_title");
 			// no integer parameter
 			c.put("fragment_offset", "no integer");
-			Mockito.when(tested.configService.get(ConfigService.CFGNAME_SEARCH_FULLTEXT_HIGHLIGHT_FIELDS)).thenReturn(cfg);
+			Mockito.when(configService.get(ConfigService.CFGNAME_SEARCH_FULLTEXT_HIGHLIGHT_FIELDS)).thenReturn(cfg);
 			try {
 				tested.setSearchRequestHighlight(querySettings, srbMock);
 				Assert.fail("SettingsException expected");
@@ -729,74 +907,69 @@ public class SearchServiceTest extends SearchServiceTestBase {
 
 		// case - no fields requested so defaults loaded from configuration but null
 		{
-			Mockito.reset(srbMock, tested.configService);
-			Mockito.when(tested.configService.get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS)).thenReturn(null);
+			Mockito.reset(srbMock, configService);
+			Mockito.when(configService.get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS)).thenReturn(null);
 			QuerySettings querySettings = new QuerySettings();
 			tested.setSearchRequestFields(querySettings, srbMock);
-			Mockito.verify(tested.configService).get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS);
+			Mockito.verify(configService).get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS);
 			Mockito.verifyNoMoreInteractions(srbMock);
-			Mockito.verifyNoMoreInteractions(tested.configService);
 		}
 
 		// case - no fields requested so defaults loaded from configuration but do not contains correct key
 		{
-			Mockito.reset(srbMock, tested.configService);
+			Mockito.reset(srbMock, configService);
 			Map<String, Object> mockConfig = new HashMap<>();
-			Mockito.when(tested.configService.get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS)).thenReturn(mockConfig);
+			Mockito.when(configService.get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS)).thenReturn(mockConfig);
 			QuerySettings querySettings = new QuerySettings();
 			tested.setSearchRequestFields(querySettings, srbMock);
-			Mockito.verify(tested.configService).get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS);
+			Mockito.verify(configService).get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS);
 			Mockito.verifyNoMoreInteractions(srbMock);
-			Mockito.verifyNoMoreInteractions(tested.configService);
 		}
 
 		// case - no fields requested so defaults loaded from configuration, contains correct key with String value
 		{
-			Mockito.reset(srbMock, tested.configService);
+			Mockito.reset(srbMock, configService);
 			Map<String, Object> mockConfig = new HashMap<>();
 			mockConfig.put(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS, "aa");
-			Mockito.when(tested.configService.get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS)).thenReturn(mockConfig);
+			Mockito.when(configService.get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS)).thenReturn(mockConfig);
 			QuerySettings querySettings = new QuerySettings();
 			tested.setSearchRequestFields(querySettings, srbMock);
-			Mockito.verify(tested.configService).get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS);
+			Mockito.verify(configService).get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS);
 			Mockito.verify(srbMock).addFields(new String[] { "aa" });
 			Mockito.verifyNoMoreInteractions(srbMock);
-			Mockito.verifyNoMoreInteractions(tested.configService);
 		}
 
 		// case - no fields requested so defaults loaded from configuration, contains correct key with List value
 		{
-			Mockito.reset(srbMock, tested.configService);
+			Mockito.reset(srbMock, configService);
 			Map<String, Object> mockConfig = new HashMap<>();
 			List<String> cfgList = new ArrayList<>();
 			cfgList.add("bb");
 			cfgList.add("cc");
 			mockConfig.put(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS, cfgList);
-			Mockito.when(tested.configService.get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS)).thenReturn(mockConfig);
+			Mockito.when(configService.get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS)).thenReturn(mockConfig);
 			QuerySettings querySettings = new QuerySettings();
 			tested.setSearchRequestFields(querySettings, srbMock);
-			Mockito.verify(tested.configService).get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS);
+			Mockito.verify(configService).get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS);
 			Mockito.verify(srbMock).addFields("bb", "cc");
 			Mockito.verifyNoMoreInteractions(srbMock);
-			Mockito.verifyNoMoreInteractions(tested.configService);
 		}
 
 		// case - fields requested
 		{
-			Mockito.reset(srbMock, tested.configService);
+			Mockito.reset(srbMock, configService);
 			QuerySettings querySettings = new QuerySettings();
 			querySettings.addField("aa");
 			querySettings.addField("bb");
 			tested.setSearchRequestFields(querySettings, srbMock);
 			Mockito.verify(srbMock).addFields("aa", "bb");
 			Mockito.verifyNoMoreInteractions(srbMock);
-			Mockito.verify(tested.configService).get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS);
-			Mockito.verifyZeroInteractions(tested.configService);
+			Mockito.verify(configService).get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS);
 		}
 
 		// case - fields requested but * used there which is invalid
 		{
-			Mockito.reset(srbMock, tested.configService);
+			Mockito.reset(srbMock, configService);
 			QuerySettings querySettings = new QuerySettings();
 			querySettings.addField("aa");
 			querySettings.addField("*");
@@ -834,53 +1007,50 @@ public class SearchServiceTest extends SearchServiceTestBase {
 
 		// case - no fields requested so defaults loaded from configuration, but no any available for current user
 		{
-			Mockito.reset(srbMock, tested.configService, tested.authenticationUtilService);
+			Mockito.reset(srbMock, configService, tested.authenticationUtilService);
 			mockAuthenticatedUserWithRole(tested, "role2");
-			Mockito.when(tested.configService.get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS)).thenReturn(mockConfig);
+			Mockito.when(configService.get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS)).thenReturn(mockConfig);
 			QuerySettings querySettings = new QuerySettings();
 
 			try {
 				tested.setSearchRequestFields(querySettings, srbMock);
 				Assert.fail("NotAuthorizedException expected");
 			} catch (NotAuthorizedException e) {
-				Mockito.verify(tested.configService).get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS);
+				Mockito.verify(configService).get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS);
 				Mockito.verifyNoMoreInteractions(srbMock);
-				Mockito.verifyNoMoreInteractions(tested.configService);
 			}
 		}
 
 		// case - no fields requested so defaults loaded from configuration, some available for current user
 		rolesSettings.put("bb", TestUtils.createListOfStrings("role1", "role2"));
 		{
-			Mockito.reset(srbMock, tested.configService, tested.authenticationUtilService);
+			Mockito.reset(srbMock, configService, tested.authenticationUtilService);
 			mockAuthenticatedUserWithRole(tested, "role2");
-			Mockito.when(tested.configService.get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS)).thenReturn(mockConfig);
+			Mockito.when(configService.get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS)).thenReturn(mockConfig);
 			QuerySettings querySettings = new QuerySettings();
 			tested.setSearchRequestFields(querySettings, srbMock);
-			Mockito.verify(tested.configService).get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS);
+			Mockito.verify(configService).get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS);
 			Mockito.verify(srbMock).addFields("bb");
 			Mockito.verifyNoMoreInteractions(srbMock);
-			Mockito.verifyNoMoreInteractions(tested.configService);
 		}
 
 		// case - no fields requested so defaults loaded from configuration, all available for admin role
 		{
-			Mockito.reset(srbMock, tested.configService, tested.authenticationUtilService);
+			Mockito.reset(srbMock, configService, tested.authenticationUtilService);
 			mockAuthenticatedUserWithRole(tested, Role.ADMIN);
-			Mockito.when(tested.configService.get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS)).thenReturn(mockConfig);
+			Mockito.when(configService.get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS)).thenReturn(mockConfig);
 			QuerySettings querySettings = new QuerySettings();
 			tested.setSearchRequestFields(querySettings, srbMock);
-			Mockito.verify(tested.configService).get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS);
+			Mockito.verify(configService).get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS);
 			Mockito.verify(srbMock).addFields("bb", "cc");
 			Mockito.verifyNoMoreInteractions(srbMock);
-			Mockito.verifyNoMoreInteractions(tested.configService);
 		}
 
 		// case - fields requested, but no any available for current user
 		{
-			Mockito.reset(srbMock, tested.configService, tested.authenticationUtilService);
+			Mockito.reset(srbMock, configService, tested.authenticationUtilService);
 			mockAuthenticatedUserWithRole(tested, "role2");
-			Mockito.when(tested.configService.get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS)).thenReturn(mockConfig);
+			Mockito.when(configService.get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS)).thenReturn(mockConfig);
 			QuerySettings querySettings = new QuerySettings();
 			querySettings.addField("aa");
 			querySettings.addField("cc");
@@ -888,41 +1058,38 @@ public class SearchServiceTest extends SearchServiceTestBase {
 				tested.setSearchRequestFields(querySettings, srbMock);
 				Assert.fail("NotAuthorizedException expected");
 			} catch (NotAuthorizedException e) {
-				Mockito.verify(tested.configService).get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS);
+				Mockito.verify(configService).get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS);
 				Mockito.verifyNoMoreInteractions(srbMock);
-				Mockito.verifyNoMoreInteractions(tested.configService);
 			}
 		}
 
 		// case - fields requested, some available for current user
 		{
-			Mockito.reset(srbMock, tested.configService, tested.authenticationUtilService);
+			Mockito.reset(srbMock, configService, tested.authenticationUtilService);
 			mockAuthenticatedUserWithRole(tested, "role1");
-			Mockito.when(tested.configService.get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS)).thenReturn(mockConfig);
+			Mockito.when(configService.get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS)).thenReturn(mockConfig);
 			QuerySettings querySettings = new QuerySettings();
 			querySettings.addField("aa");
 			querySettings.addField("bb");
 			tested.setSearchRequestFields(querySettings, srbMock);
-			Mockito.verify(tested.configService).get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS);
+			Mockito.verify(configService).get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS);
 			Mockito.verify(srbMock).addFields("aa", "bb");
 			Mockito.verifyNoMoreInteractions(srbMock);
-			Mockito.verifyNoMoreInteractions(tested.configService);
 		}
 
 		// case - fields requested, all available for admin role
 		{
-			Mockito.reset(srbMock, tested.configService, tested.authenticationUtilService);
+			Mockito.reset(srbMock, configService, tested.authenticationUtilService);
 			mockAuthenticatedUserWithRole(tested, Role.ADMIN);
-			Mockito.when(tested.configService.get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS)).thenReturn(mockConfig);
+			Mockito.when(configService.get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS)).thenReturn(mockConfig);
 			QuerySettings querySettings = new QuerySettings();
 			querySettings.addField("aa");
 			querySettings.addField("bb");
 			querySettings.addField("cc");
 			tested.setSearchRequestFields(querySettings, srbMock);
-			Mockito.verify(tested.configService).get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS);
+			Mockito.verify(configService).get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS);
 			Mockito.verify(srbMock).addFields("aa", "bb", "cc");
 			Mockito.verifyNoMoreInteractions(srbMock);
-			Mockito.verifyNoMoreInteractions(tested.configService);
 		}
 
 	}
@@ -951,16 +1118,15 @@ public class SearchServiceTest extends SearchServiceTestBase {
 		// case - check source filtering is applied if not any field is requested, as elasticsearch returns source in
 		// this case
 		{
-			Mockito.reset(srbMock, tested.configService, tested.authenticationUtilService);
-			Mockito.when(tested.configService.get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS)).thenReturn(mockConfig);
+			Mockito.reset(srbMock, configService, tested.authenticationUtilService);
+			Mockito.when(configService.get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS)).thenReturn(mockConfig);
 			Mockito.when(srbMock.setFetchSource(Mockito.any(String[].class), Mockito.any(String[].class))).thenAnswer(
 					new SourceExcludeMatcher(srbMock, TestUtils.createListOfStrings("*.aa", "bb", "cc.*", "dd")));
 
 			tested.setSearchRequestFields(querySettings, srbMock);
-			Mockito.verify(tested.configService).get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS);
+			Mockito.verify(configService).get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS);
 			Mockito.verify(srbMock).setFetchSource(Mockito.any(String[].class), Mockito.any(String[].class));
 			Mockito.verifyNoMoreInteractions(srbMock);
-			Mockito.verifyNoMoreInteractions(tested.configService);
 		}
 
 		// set _source field as requested for other tests
@@ -968,74 +1134,69 @@ public class SearchServiceTest extends SearchServiceTestBase {
 
 		// case - source filtering not applied when not configured
 		{
-			Mockito.reset(srbMock, tested.configService, tested.authenticationUtilService);
+			Mockito.reset(srbMock, configService, tested.authenticationUtilService);
 			mockAuthenticatedUserWithRole(tested, "role1");
-			Mockito.when(tested.configService.get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS)).thenReturn(
+			Mockito.when(configService.get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS)).thenReturn(
 					new HashMap<String, Object>());
 
 			tested.setSearchRequestFields(querySettings, srbMock);
-			Mockito.verify(tested.configService).get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS);
+			Mockito.verify(configService).get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS);
 			Mockito.verify(srbMock).addFields("_source");
 			Mockito.verifyNoMoreInteractions(srbMock);
-			Mockito.verifyNoMoreInteractions(tested.configService);
 		}
 
 		// case - filtering configured, anonymous user has filtered source
 		{
-			Mockito.reset(srbMock, tested.configService, tested.authenticationUtilService);
-			Mockito.when(tested.configService.get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS)).thenReturn(mockConfig);
+			Mockito.reset(srbMock, configService, tested.authenticationUtilService);
+			Mockito.when(configService.get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS)).thenReturn(mockConfig);
 			Mockito.when(srbMock.setFetchSource(Mockito.any(String[].class), Mockito.any(String[].class))).thenAnswer(
 					new SourceExcludeMatcher(srbMock, TestUtils.createListOfStrings("*.aa", "bb", "cc.*", "dd")));
 
 			tested.setSearchRequestFields(querySettings, srbMock);
-			Mockito.verify(tested.configService).get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS);
+			Mockito.verify(configService).get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS);
 			Mockito.verify(srbMock).addFields("_source");
 			Mockito.verify(srbMock).setFetchSource(Mockito.any(String[].class), Mockito.any(String[].class));
 			Mockito.verifyNoMoreInteractions(srbMock);
-			Mockito.verifyNoMoreInteractions(tested.configService);
 		}
 
 		// case - filtering configured, role1 and role2 users have filtered parts of source
 		{
-			Mockito.reset(srbMock, tested.configService, tested.authenticationUtilService);
+			Mockito.reset(srbMock, configService, tested.authenticationUtilService);
 			mockAuthenticatedUserWithRole(tested, "role1");
-			Mockito.when(tested.configService.get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS)).thenReturn(mockConfig);
+			Mockito.when(configService.get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS)).thenReturn(mockConfig);
 			Mockito.when(srbMock.setFetchSource(Mockito.any(String[].class), Mockito.any(String[].class))).thenAnswer(
 					new SourceExcludeMatcher(srbMock, TestUtils.createListOfStrings("dd")));
 
 			tested.setSearchRequestFields(querySettings, srbMock);
-			Mockito.verify(tested.configService).get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS);
+			Mockito.verify(configService).get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS);
 			Mockito.verify(srbMock).addFields("_source");
 			Mockito.verify(srbMock).setFetchSource(Mockito.any(String[].class), Mockito.any(String[].class));
 			Mockito.verifyNoMoreInteractions(srbMock);
-			Mockito.verifyNoMoreInteractions(tested.configService);
 		}
 		{
-			Mockito.reset(srbMock, tested.configService, tested.authenticationUtilService);
+			Mockito.reset(srbMock, configService, tested.authenticationUtilService);
 			mockAuthenticatedUserWithRole(tested, "role2");
-			Mockito.when(tested.configService.get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS)).thenReturn(mockConfig);
+			Mockito.when(configService.get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS)).thenReturn(mockConfig);
 			Mockito.when(srbMock.setFetchSource(Mockito.any(String[].class), Mockito.any(String[].class))).thenAnswer(
 					new SourceExcludeMatcher(srbMock, TestUtils.createListOfStrings("bb", "*.aa")));
 
 			tested.setSearchRequestFields(querySettings, srbMock);
-			Mockito.verify(tested.configService).get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS);
+			Mockito.verify(configService).get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS);
 			Mockito.verify(srbMock).addFields("_source");
 			Mockito.verify(srbMock).setFetchSource(Mockito.any(String[].class), Mockito.any(String[].class));
 			Mockito.verifyNoMoreInteractions(srbMock);
-			Mockito.verifyNoMoreInteractions(tested.configService);
 		}
 
 		// case - filtering configured, admin can see all fields, no any source filtering applied
 		{
-			Mockito.reset(srbMock, tested.configService, tested.authenticationUtilService);
+			Mockito.reset(srbMock, configService, tested.authenticationUtilService);
 			mockAuthenticatedUserWithRole(tested, Role.ADMIN);
-			Mockito.when(tested.configService.get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS)).thenReturn(mockConfig);
+			Mockito.when(configService.get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS)).thenReturn(mockConfig);
 
 			tested.setSearchRequestFields(querySettings, srbMock);
-			Mockito.verify(tested.configService).get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS);
+			Mockito.verify(configService).get(ConfigService.CFGNAME_SEARCH_RESPONSE_FIELDS);
 			Mockito.verify(srbMock).addFields("_source");
 			Mockito.verifyNoMoreInteractions(srbMock);
-			Mockito.verifyNoMoreInteractions(tested.configService);
 		}
 	}
 
@@ -6,6 +6,7 @@
 package org.searchisko.api.service;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Logger;
@@ -13,7 +14,12 @@ import java.util.logging.Logger;
 import org.elasticsearch.common.joda.time.format.DateTimeFormatter;
 import org.elasticsearch.common.joda.time.format.ISODateTimeFormat;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.searchisko.api.cache.IndexNamesCache;
+import org.searchisko.api.cache.SearchResultCache;
+import org.searchisko.api.cache.SearchConfigCache;
+import org.searchisko.api.model.SearchConfigSnapshot;
 import org.searchisko.api.testtools.TestUtils;
 
 /**
@@ -33,6 +39,12 @@ public abstract class SearchServiceTestBase {
 				.thenCallRealMethod();
 		if (role != null)
 			Mockito.when(tested.authenticationUtilService.isUserInRole(role)).thenReturn(true);
+		Mockito.when(tested.authenticationUtilService.getUserSecurityContextKey()).thenReturn(
+				mockedSecurityContextKey(role));
+	}
+
+	protected String mockedSecurityContextKey(String role) {
+		return "roles:[" + (role != null ? role : "") + "]";
 	}
 
 	@SuppressWarnings("unchecked")
@@ -53,7 +65,8 @@ public abstract class SearchServiceTestBase {
 
 		}
 		Mockito.when(tested.providerService.getAll()).thenReturn(mockedProvidersList);
-
+		Mockito.when(tested.providerService.getRoutingTable()).thenReturn(
+				new ContentTypeRoutingTable(mockedProvidersList));
 	}
 
 	protected ConfigService mockConfigurationService() {
@@ -65,16 +78,37 @@ public abstract class SearchServiceTestBase {
 		return configService;
 	}
 
+	/**
+	 * Mock {@link SearchConfigCache} so it always creates new snapshot from actual values returned from mocked
+	 * {@link ConfigService}. So tests can change configuration between calls.
+	 */
+	protected SearchConfigCache mockSearchConfigCache(final ConfigService configService) {
+		SearchConfigCache cache = Mockito.mock(SearchConfigCache.class);
+		Mockito.when(cache.getSnapshot()).thenAnswer(new Answer<SearchConfigSnapshot>() {
+			@Override
+			public SearchConfigSnapshot answer(InvocationOnMock invocation) throws Throwable {
+				Map<String, Map<String, Object>> documents = new HashMap<>();
+				for (String documentName : SearchConfigCache.SNAPSHOT_DOCUMENTS) {
+					documents.put(documentName, configService.get(documentName));
+				}
+				return new SearchConfigSnapshot(1, documents);
+			}
+		});
+		return cache;
+	}
+
 	protected SearchService getTested(ConfigService configService) {
 		SearchService tested = new SearchService();
 		tested.providerService = Mockito.mock(ProviderService.class);
 		tested.log = Logger.getLogger("testlogger");
 		tested.indexNamesCache = Mockito.mock(IndexNamesCache.class);
+		tested.searchResultCache = Mockito.mock(SearchResultCache.class);
+		tested.searchCoalescingService = Mockito.mock(SearchCoalescingService.class);
 		if (configService != null) {
-			tested.configService = configService;
+			tested.searchConfigCache = mockSearchConfigCache(configService);
 			tested.parsedFilterConfigService = new ParsedFilterConfigService();
 			tested.parsedFilterConfigService.log = Logger.getLogger("testloggercs");
-			tested.parsedFilterConfigService.configService = configService;
+			tested.parsedFilterConfigService.searchConfigCache = tested.searchConfigCache;
 		}
 		tested.authenticationUtilService = Mockito.mock(AuthenticationUtilService.class);
 		tested.statsClientService = Mockito.mock(StatsClientService.class);
@@ -49,12 +49,13 @@ public class SearchServiceTest_setSearchRequestIndicesAndTypes extends SearchSer
 		try {
 			Mockito.when(tested.indexNamesCache.get(Mockito.anyString())).thenReturn(null);
 			List<Map<String, Object>> mockedProvidersList = new ArrayList<>();
-			Mockito.when(tested.providerService.getAll()).thenReturn(mockedProvidersList);
+			Mockito.when(tested.providerService.getRoutingTable()).thenReturn(
+					new ContentTypeRoutingTable(mockedProvidersList));
 			tested.setSearchRequestIndicesAndTypes(querySettings.getFilters(), querySettings.getAggregations(), searchRequestBuilderMock);
 			Assert.fail("SettingsException expected");
 		} catch (SettingsException e) {
 			Mockito.verify(tested.indexNamesCache).get("_all||false");
-			Mockito.verify(tested.providerService).getAll();
+			Mockito.verify(tested.providerService).getRoutingTable();
 			Mockito.verifyNoMoreInteractions(searchRequestBuilderMock);
 		}
 
@@ -66,7 +67,7 @@ public class SearchServiceTest_setSearchRequestIndicesAndTypes extends SearchSer
 
 			tested.setSearchRequestIndicesAndTypes(querySettings.getFilters(), querySettings.getAggregations(), searchRequestBuilderMock);
 			Mockito.verify(tested.indexNamesCache).get("_all||false");
-			Mockito.verify(tested.providerService).getAll();
+			Mockito.verify(tested.providerService).getRoutingTable();
 			Mockito.verify(searchRequestBuilderMock).setIndices("idx_provider1_issue", "idx_provider1_mailing1",
 					"idx_provider1_mailing2", "idx_provider2_issue1", "idx_provider2_issue2", "idx_provider2_mailing");
 			Mockito.verify(tested.indexNamesCache).put(Mockito.eq("_all||false"), Mockito.anySet());
@@ -202,7 +203,7 @@ public class SearchServiceTest_setSearchRequestIndicesAndTypes extends SearchSer
 			Mockito.verify(tested.indexNamesCache).put(
 					Mockito.eq(SearchService.prepareIndexNamesCacheKey(sysTypesRequested, false)), Mockito.anySet());
 			Mockito.verifyNoMoreInteractions(tested.indexNamesCache);
-			Mockito.verify(tested.providerService).getAll();
+			Mockito.verify(tested.providerService).getRoutingTable();
 			Mockito.verify(searchRequestBuilderMock).setIndices("idx_provider1_issue", "idx_provider2_issue1",
 					"idx_provider2_issue2");
 			Mockito.verifyNoMoreInteractions(searchRequestBuilderMock);
@@ -224,7 +225,7 @@ public class SearchServiceTest_setSearchRequestIndicesAndTypes extends SearchSer
 			} catch (IllegalArgumentException e) {
 				Assert.assertEquals("Unsupported content sys_type", e.getMessage());
 				Mockito.verify(tested.indexNamesCache).get(SearchService.prepareIndexNamesCacheKey(sysTypesRequested, false));
-				Mockito.verify(tested.providerService).getAll();
+				Mockito.verify(tested.providerService).getRoutingTable();
 				Mockito.verifyNoMoreInteractions(searchRequestBuilderMock, tested.providerService, tested.indexNamesCache);
 			}
 		}
@@ -244,7 +245,7 @@ public class SearchServiceTest_setSearchRequestIndicesAndTypes extends SearchSer
 			Mockito.verify(tested.indexNamesCache).put(
 					Mockito.eq(SearchService.prepareIndexNamesCacheKey(sysTypesRequested, false)), Mockito.anySet());
 			Mockito.verifyNoMoreInteractions(tested.indexNamesCache);
-			Mockito.verify(tested.providerService).getAll();
+			Mockito.verify(tested.providerService).getRoutingTable();
 			Mockito.verify(searchRequestBuilderMock).setIndices("idx_provider1_cosi1", "idx_provider1_cosi2",
 					"idx_provider2_cosi1", "idx_provider2_cosi2");
 			Mockito.verifyNoMoreInteractions(searchRequestBuilderMock);
@@ -266,7 +267,7 @@ public class SearchServiceTest_setSearchRequestIndicesAndTypes extends SearchSer
 			Mockito.verify(tested.indexNamesCache).put(
 					Mockito.eq(SearchService.prepareIndexNamesCacheKey(sysTypesRequested, false)), Mockito.anySet());
 			Mockito.verifyNoMoreInteractions(tested.indexNamesCache);
-			Mockito.verify(tested.providerService).getAll();
+			Mockito.verify(tested.providerService).getRoutingTable();
 			Mockito.verify(searchRequestBuilderMock).setIndices("idx_provider1_issue", "idx_provider1_cosi1",
 					"idx_provider1_cosi2", "idx_provider2_issue1", "idx_provider2_issue2", "idx_provider2_cosi1",
 					"idx_provider2_cosi2");
@@ -290,7 +291,7 @@ public class SearchServiceTest_setSearchRequestIndicesAndTypes extends SearchSer
 			Mockito.verify(tested.indexNamesCache).put(
 					Mockito.eq(SearchService.prepareIndexNamesCacheKey(sysTypesRequested, true)), Mockito.anySet());
 			Mockito.verifyNoMoreInteractions(tested.indexNamesCache);
-			Mockito.verify(tested.providerService).getAll();
+			Mockito.verify(tested.providerService).getRoutingTable();
 			Mockito.verify(searchRequestBuilderMock).setIndices("idx_provider1_issue", "idx_provider1_mailing1",
 					"idx_provider1_mailing2", "idx_provider2_issue1", "idx_provider2_issue2", "idx_provider2_mailing");
 			Mockito.verifyNoMoreInteractions(searchRequestBuilderMock);
@@ -315,7 +316,7 @@ public class SearchServiceTest_setSearchRequestIndicesAndTypes extends SearchSer
 			Mockito.verify(tested.indexNamesCache).put(
 					Mockito.eq(SearchService.prepareIndexNamesCacheKey(sysTypesRequested, true)), Mockito.anySet());
 			Mockito.verifyNoMoreInteractions(tested.indexNamesCache);
-			Mockito.verify(tested.providerService).getAll();
+			Mockito.verify(tested.providerService).getRoutingTable();
 			Mockito.verify(searchRequestBuilderMock).setIndices("idx_provider1_issue", "idx_provider1_mailing1",
 					"idx_provider1_mailing2", "idx_provider1_cosi1", "idx_provider1_cosi2", "idx_provider2_issue1",
 					"idx_provider2_issue2", "idx_provider2_mailing", "idx_provider2_cosi1", "idx_provider2_cosi2");
@@ -373,10 +374,13 @@ public class SearchServiceTest_setSearchRequestIndicesAndTypes extends SearchSer
 
 			tested.setSearchRequestIndicesAndTypes(querySettings.getFilters(), querySettings.getAggregations(), searchRequestBuilderMock);
 
-			Mockito.verify(tested.providerService).getAll();
+			Mockito.verify(tested.providerService).getRoutingTable();
 			Mockito.verify(searchRequestBuilderMock).setIndices("idx_provider1_issue", "idx_provider1_mailing1",
 					"idx_provider1_mailing2", "idx_provider2_issue1", "idx_provider2_issue2", "idx_provider2_mailing");
-			// NO CACHE USED !!!
+			// cache used with key containing roles of user
+			String cacheKey = SearchService.prepareIndexNamesCacheKey(mockedSecurityContextKey(null), null, false);
+			Mockito.verify(tested.indexNamesCache).get(cacheKey);
+			Mockito.verify(tested.indexNamesCache).put(Mockito.eq(cacheKey), Mockito.anySet());
 			Mockito.verifyNoMoreInteractions(searchRequestBuilderMock, tested.providerService, tested.indexNamesCache);
 		}
 
@@ -390,10 +394,13 @@ public class SearchServiceTest_setSearchRequestIndicesAndTypes extends SearchSer
 
 			tested.setSearchRequestIndicesAndTypes(querySettings.getFilters(), querySettings.getAggregations(), searchRequestBuilderMock);
 
-			Mockito.verify(tested.providerService).getAll();
+			Mockito.verify(tested.providerService).getRoutingTable();
 			Mockito.verify(searchRequestBuilderMock).setIndices("idx_provider1_issue", "idx_provider1_mailing1",
 					"idx_provider1_mailing2", "idx_provider2_issue1", "idx_provider2_issue2", "idx_provider2_mailing");
-			// NO CACHE USED !!!
+			// cache used with key containing roles of user
+			String cacheKey = SearchService.prepareIndexNamesCacheKey(mockedSecurityContextKey("ROLE2"), null, false);
+			Mockito.verify(tested.indexNamesCache).get(cacheKey);
+			Mockito.verify(tested.indexNamesCache).put(Mockito.eq(cacheKey), Mockito.anySet());
 			Mockito.verifyNoMoreInteractions(searchRequestBuilderMock, tested.providerService, tested.indexNamesCache);
 		}
 
@@ -407,11 +414,14 @@ public class SearchServiceTest_setSearchRequestIndicesAndTypes extends SearchSer
 
 			tested.setSearchRequestIndicesAndTypes(querySettings.getFilters(), querySettings.getAggregations(), searchRequestBuilderMock);
 
-			Mockito.verify(tested.providerService).getAll();
+			Mockito.verify(tested.providerService).getRoutingTable();
 			Mockito.verify(searchRequestBuilderMock).setIndices("idx_provider1_issue", "idx_provider1_mailing1",
 					"idx_provider1_mailing2", "idx_provider1_issue_secure", "idx_provider2_issue1", "idx_provider2_issue2",
 					"idx_provider2_mailing");
-			// NO CACHE USED !!!
+			// cache used with key containing roles of user
+			String cacheKey = SearchService.prepareIndexNamesCacheKey(mockedSecurityContextKey("ROLE1"), null, false);
+			Mockito.verify(tested.indexNamesCache).get(cacheKey);
+			Mockito.verify(tested.indexNamesCache).put(Mockito.eq(cacheKey), Mockito.anySet());
 			Mockito.verifyNoMoreInteractions(searchRequestBuilderMock, tested.providerService, tested.indexNamesCache);
 		}
 
@@ -425,11 +435,14 @@ public class SearchServiceTest_setSearchRequestIndicesAndTypes extends SearchSer
 
 			tested.setSearchRequestIndicesAndTypes(querySettings.getFilters(), querySettings.getAggregations(), searchRequestBuilderMock);
 
-			Mockito.verify(tested.providerService).getAll();
+			Mockito.verify(tested.providerService).getRoutingTable();
 			Mockito.verify(searchRequestBuilderMock).setIndices("idx_provider1_issue", "idx_provider1_mailing1",
 					"idx_provider1_mailing2", "idx_provider1_issue_secure", "idx_provider2_issue1", "idx_provider2_issue2",
 					"idx_provider2_mailing");
-			// NO CACHE USED !!!
+			// cache used with key containing roles of user
+			String cacheKey = SearchService.prepareIndexNamesCacheKey(mockedSecurityContextKey(Role.ADMIN), null, false);
+			Mockito.verify(tested.indexNamesCache).get(cacheKey);
+			Mockito.verify(tested.indexNamesCache).put(Mockito.eq(cacheKey), Mockito.anySet());
 			Mockito.verifyNoMoreInteractions(searchRequestBuilderMock, tested.providerService, tested.indexNamesCache);
 		}
 
@@ -584,10 +597,13 @@ public class SearchServiceTest_setSearchRequestIndicesAndTypes extends SearchSer
 
 			tested.setSearchRequestIndicesAndTypes(querySettings.getFilters(), querySettings.getAggregations(), searchRequestBuilderMock);
 
-			Mockito.verify(tested.providerService).getAll();
+			Mockito.verify(tested.providerService).getRoutingTable();
 			Mockito.verify(searchRequestBuilderMock).setIndices("idx_provider1_issue", "idx_provider2_issue1",
 					"idx_provider2_issue2");
-			// NO CACHE!!!
+			// cache used with key containing roles of user
+			String cacheKey = SearchService.prepareIndexNamesCacheKey(mockedSecurityContextKey("ROLE2"), sysTypesRequested, false);
+			Mockito.verify(tested.indexNamesCache).get(cacheKey);
+			Mockito.verify(tested.indexNamesCache).put(Mockito.eq(cacheKey), Mockito.anySet());
 			Mockito.verifyNoMoreInteractions(searchRequestBuilderMock, tested.indexNamesCache);
 		}
 
@@ -605,10 +621,13 @@ public class SearchServiceTest_setSearchRequestIndicesAndTypes extends SearchSer
 
 			tested.setSearchRequestIndicesAndTypes(querySettings.getFilters(), querySettings.getAggregations(), searchRequestBuilderMock);
 
-			Mockito.verify(tested.providerService).getAll();
+			Mockito.verify(tested.providerService).getRoutingTable();
 			Mockito.verify(searchRequestBuilderMock).setIndices("idx_provider1_issue", "idx_provider1_issue_secure",
 					"idx_provider2_issue1", "idx_provider2_issue2", "idx_provider2_issue_secure");
-			// NO CACHE!!!
+			// cache used with key containing roles of user
+			String cacheKey = SearchService.prepareIndexNamesCacheKey(mockedSecurityContextKey("ROLE1"), sysTypesRequested, false);
+			Mockito.verify(tested.indexNamesCache).get(cacheKey);
+			Mockito.verify(tested.indexNamesCache).put(Mockito.eq(cacheKey), Mockito.anySet());
 			Mockito.verifyNoMoreInteractions(searchRequestBuilderMock, tested.indexNamesCache);
 		}
 
@@ -626,10 +645,13 @@ public class SearchServiceTest_setSearchRequestIndicesAndTypes extends SearchSer
 
 			tested.setSearchRequestIndicesAndTypes(querySettings.getFilters(), querySettings.getAggregations(), searchRequestBuilderMock);
 
-			Mockito.verify(tested.providerService).getAll();
+			Mockito.verify(tested.providerService).getRoutingTable();
 			Mockito.verify(searchRequestBuilderMock).setIndices("idx_provider1_issue", "idx_provider1_issue_secure",
 					"idx_provider2_issue1", "idx_provider2_issue2", "idx_provider2_issue_secure");
-			// NO CACHE!!!
+			// cache used with key containing roles of user
+			String cacheKey = SearchService.prepareIndexNamesCacheKey(mockedSecurityContextKey(Role.ADMIN), sysTypesRequested, false);
+			Mockito.verify(tested.indexNamesCache).get(cacheKey);
+			Mockito.verify(tested.indexNamesCache).put(Mockito.eq(cacheKey), Mockito.anySet());
 			Mockito.verifyNoMoreInteractions(searchRequestBuilderMock, tested.indexNamesCache);
 		}
 
@@ -650,8 +672,10 @@ public class SearchServiceTest_setSearchRequestIndicesAndTypes extends SearchSer
 				Assert.fail("IllegalArgumentException expected");
 			} catch (IllegalArgumentException e) {
 				Assert.assertEquals("Unsupported content sys_type", e.getMessage());
-				Mockito.verify(tested.providerService).getAll();
-				// NO CACHE!!!
+				Mockito.verify(tested.providerService).getRoutingTable();
+				// cache used with key containing roles of user
+				String cacheKey = SearchService.prepareIndexNamesCacheKey(mockedSecurityContextKey(Role.ADMIN), sysTypesRequested, false);
+				Mockito.verify(tested.indexNamesCache).get(cacheKey);
 				Mockito.verifyNoMoreInteractions(searchRequestBuilderMock, tested.providerService, tested.indexNamesCache);
 			}
 		}
@@ -0,0 +1,189 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.searchisko.api.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.ActionFuture;
+import org.elasticsearch.action.ActionRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.unit.TimeValue;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+import org.searchisko.api.model.StatsConfiguration;
+import org.searchisko.api.model.StatsConfiguration.DropPolicy;
+
+/**
+ * Unit test for {@link StatsBulkWriter}.
+ *
+ * @author Vlastimil Elias (velias at redhat dot com)
+ */
+public class StatsBulkWriterTest {
+
+	@Test
+	public void add_dropNewest() {
+		StatsBulkWriter tested = getTested(DropPolicy.DROP_NEWEST, 2);
+
+		Assert.assertTrue(tested.add(createIndexRequest("1")));
+		Assert.assertTrue(tested.add(createIndexRequest("2")));
+		Assert.assertFalse(tested.add(createIndexRequest("3")));
+
+		Assert.assertEquals(2, tested.queue.size());
+		Assert.assertEquals("1", tested.queue.poll().id());
+		Assert.assertEquals("2", tested.queue.poll().id());
+		Map<String, Object> stats = tested.getStatistics();
+		Assert.assertEquals(2L, stats.get("queued_count"));
+		Assert.assertEquals(1L, stats.get("dropped_count"));
+		Assert.assertEquals("DROP_NEWEST", stats.get("drop_policy"));
+	}
+
+	@Test
+	public void add_dropOldest() {
+		StatsBulkWriter tested = getTested(DropPolicy.DROP_OLDEST, 2);
+
+		Assert.assertTrue(tested.add(createIndexRequest("1")));
+		Assert.assertTrue(tested.add(createIndexRequest("2")));
+		Assert.assertTrue(tested.add(createIndexRequest("3")));
+
+		Assert.assertEquals(2, tested.queue.size());
+		Assert.assertEquals("2", tested.queue.poll().id());
+		Assert.assertEquals("3", tested.queue.poll().id());
+		Map<String, Object> stats = tested.getStatistics();
+		Assert.assertEquals(3L, stats.get("queued_count"));
+		Assert.assertEquals(1L, stats.get("dropped_count"));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void flush() {
+		StatsBulkWriter tested = getTested(DropPolicy.DROP_NEWEST, 10);
+		tested.bulkActions = 2;
+
+		final List<Integer> bulkSizes = new ArrayList<>();
+		Mockito.when(tested.client.bulk(Mockito.any(BulkRequest.class))).thenAnswer(
+				new Answer<ActionFuture<BulkResponse>>() {
+					@Override
+					public ActionFuture<BulkResponse> answer(InvocationOnMock invocation) throws Throwable {
+						BulkRequest br = (BulkRequest) invocation.getArguments()[0];
+						bulkSizes.add(br.numberOfActions());
+						for (ActionRequest<?> r : br.requests()) {
+							Assert.assertTrue(r instanceof IndexRequest);
+						}
+						ActionFuture<BulkResponse> f = Mockito.mock(ActionFuture.class);
+						Mockito.when(f.actionGet()).thenReturn(new BulkResponse(new BulkItemResponse[0], 1));
+						return f;
+					}
+				});
+
+		// case - nothing to flush
+		tested.flush();
+		Mockito.verifyZeroInteractions(tested.client);
+
+		// case - flushed in more bulk requests limited by number of actions
+		for (int i = 0; i < 5; i++) {
+			tested.add(createIndexRequest("" + i));
+		}
+		tested.flush();
+		Assert.assertEquals(0, tested.queue.size());
+		Assert.assertEquals("[2, 2, 1]", bulkSizes.toString());
+		Map<String, Object> stats = tested.getStatistics();
+		Assert.assertEquals(5L, stats.get("flushed_count"));
+		Assert.assertEquals(3L, stats.get("bulk_count"));
+		Assert.assertEquals(0L, stats.get("failed_count"));
+
+		// case - bulk request limited by size
+		bulkSizes.clear();
+		tested.bulkActions = 10;
+		tested.bulkSizeBytes = 1;
+		for (int i = 0; i < 3; i++) {
+			tested.add(createIndexRequest("" + i));
+		}
+		tested.flush();
+		Assert.assertEquals("[1, 1, 1]", bulkSizes.toString());
+
+		// case - bulk request failed
+		Mockito.reset(tested.client);
+		Mockito.when(tested.client.bulk(Mockito.any(BulkRequest.class))).thenThrow(new ElasticsearchException("test"));
+		tested.bulkSizeBytes = 1000;
+		tested.add(createIndexRequest("1"));
+		tested.add(createIndexRequest("2"));
+		tested.flush();
+		Assert.assertEquals(0, tested.queue.size());
+		stats = tested.getStatistics();
+		Assert.assertEquals(8L, stats.get("flushed_count"));
+		Assert.assertEquals(2L, stats.get("failed_count"));
+	}
+
+	@Test
+	public void lostRecordListener() {
+		StatsBulkWriter tested = getTested(DropPolicy.DROP_OLDEST, 2);
+		final List<String> lost = new ArrayList<>();
+		tested.setLostRecordListener(new StatsBulkWriter.LostRecordListener() {
+			@Override
+			public void recordLost(IndexRequest ir) {
+				lost.add(ir.id());
+			}
+		});
+
+		// case - oldest record dropped from queue
+		tested.add(createIndexRequest("1"));
+		tested.add(createIndexRequest("2"));
+		tested.add(createIndexRequest("3"));
+		Assert.assertEquals("[1]", lost.toString());
+
+		// case - failed bulk request
+		Mockito.when(tested.client.bulk(Mockito.any(BulkRequest.class))).thenThrow(new ElasticsearchException("test"));
+		tested.flush();
+		Assert.assertEquals("[1, 2, 3]", lost.toString());
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void run_stopFlushesQueue() throws InterruptedException {
+		StatsBulkWriter tested = getTested(DropPolicy.DROP_NEWEST, 10);
+		ActionFuture<BulkResponse> f = Mockito.mock(ActionFuture.class);
+		Mockito.when(f.actionGet()).thenReturn(new BulkResponse(new BulkItemResponse[0], 1));
+		Mockito.when(tested.client.bulk(Mockito.any(BulkRequest.class))).thenReturn(f);
+
+		tested.start();
+		tested.add(createIndexRequest("1"));
+		tested.stopWriter();
+		tested.join(5000);
+
+		Assert.assertFalse(tested.isAlive());
+		Assert.assertEquals(0, tested.queue.size());
+		Assert.assertEquals(1L, tested.getStatistics().get("flushed_count"));
+	}
+
+	private IndexRequest createIndexRequest(String id) {
+		Map<String, Object> source = new HashMap<>();
+		source.put("field", "value");
+		return new IndexRequest("index", "type", id).source(source);
+	}
+
+	private StatsBulkWriter getTested(DropPolicy dropPolicy, int queueSize) {
+		StatsBulkWriter tested = new StatsBulkWriter(Mockito.mock(Client.class), new StatsConfiguration(true),
+				TimeValue.timeValueSeconds(10));
+		tested.dropPolicy = dropPolicy;
+		tested.queueSize = queueSize;
+		tested.queue = new ArrayBlockingQueue<>(queueSize);
+		tested.flushInterval = 60000L;
+		return tested;
+	}
+
+}
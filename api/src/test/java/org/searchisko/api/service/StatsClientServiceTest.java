@@ -7,8 +7,10 @@ package org.searchisko.api.service;
 
 import java.io.IOException;
 import java.text.ParseException;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.logging.Logger;
 
 import org.apache.lucene.document.DateTools;
@@ -22,6 +24,7 @@ import org.elasticsearch.common.joda.time.DateTime;
 import org.elasticsearch.common.joda.time.format.DateTimeFormatter;
 import org.elasticsearch.common.joda.time.format.ISODateTimeFormat;
 import org.elasticsearch.common.text.StringText;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.rest.RestStatus;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.SearchHits;
@@ -31,9 +34,11 @@ import org.junit.Test;
 import org.mockito.Mockito;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
+import org.searchisko.api.cache.RecentSearchResponsesIndex;
 import org.searchisko.api.model.*;
 import org.searchisko.api.model.AppConfiguration.ClientType;
 import org.searchisko.api.model.QuerySettings.Filters;
+import org.searchisko.api.model.StatsConfiguration.DropPolicy;
 import org.searchisko.api.testtools.TestUtils;
 
 /**
@@ -122,6 +127,24 @@ public class StatsClientServiceTest {
 		}
 	}
 
+	@Test
+	public void writeStatisticsRecord_bulk() {
+		final StatsClientService tested = getTested();
+		tested.statsBulkWriter = Mockito.mock(StatsBulkWriter.class);
+
+		// case - async write goes to bulk writer
+		tested.statsConfiguration = new StatsConfiguration(true);
+		tested.writeStatisticsRecord(StatsRecordType.SEARCH, 1000L, null);
+		Mockito.verify(tested.statsBulkWriter).add(Mockito.any(IndexRequest.class));
+		Mockito.verifyZeroInteractions(tested.client);
+
+		// case - statistics disabled
+		Mockito.reset(tested.statsBulkWriter);
+		tested.statsConfiguration = new StatsConfiguration(false);
+		tested.writeStatisticsRecord(StatsRecordType.SEARCH, 1000L, null);
+		Mockito.verifyZeroInteractions(tested.statsBulkWriter, tested.client);
+	}
+
 	@SuppressWarnings("unchecked")
 	@Test
 	public void writeStatisticsRecord_Exception() throws ParseException, IOException {
@@ -382,6 +405,120 @@ public class StatsClientServiceTest {
 		// test case when stats are disabled!
 	}
 
+	@SuppressWarnings("unchecked")
+	@Test
+	public void checkStatisticsRecordExists_recentResponses() {
+		StatsClientService tested = Mockito.spy(getTested());
+		tested.recentSearchResponses = new RecentSearchResponsesIndex(60000L, 100);
+		tested.recentSearchResponses.put("uuid1", Arrays.asList("hit1", "hit2"));
+		Mockito.doReturn(true).when(tested)
+				.searchStatisticsRecordExists(Mockito.any(StatsRecordType.class), Mockito.anyMap());
+
+		// case - statistics disabled
+		tested.statsConfiguration = new StatsConfiguration(false);
+		Assert.assertFalse(tested.checkStatisticsRecordExists(StatsRecordType.SEARCH, hitConditions("uuid1", "hit1")));
+
+		// case - validated in memory
+		tested.statsConfiguration = new StatsConfiguration(true);
+		Assert.assertTrue(tested.checkStatisticsRecordExists(StatsRecordType.SEARCH, hitConditions("uuid1", "hit1")));
+		Assert.assertFalse(tested.checkStatisticsRecordExists(StatsRecordType.SEARCH, hitConditions("uuid1", "hit3")));
+		Mockito.verify(tested, Mockito.never()).searchStatisticsRecordExists(Mockito.any(StatsRecordType.class),
+				Mockito.anyMap());
+
+		// case - unknown response validated in statistics cluster
+		Assert.assertTrue(tested.checkStatisticsRecordExists(StatsRecordType.SEARCH, hitConditions("uuid2", "hit1")));
+		Mockito.verify(tested).searchStatisticsRecordExists(StatsRecordType.SEARCH, hitConditions("uuid2", "hit1"));
+
+		// case - other conditions validated in statistics cluster
+		Map<String, Object> conditions = hitConditions("uuid1", "hit1");
+		conditions.put("session", "s1");
+		Assert.assertTrue(tested.checkStatisticsRecordExists(StatsRecordType.SEARCH, conditions));
+		Mockito.verify(tested).searchStatisticsRecordExists(StatsRecordType.SEARCH, conditions);
+
+		// case - in-memory index not used
+		Mockito.reset(tested);
+		Mockito.doReturn(false).when(tested)
+				.searchStatisticsRecordExists(Mockito.any(StatsRecordType.class), Mockito.anyMap());
+		tested.recentSearchResponses = null;
+		Assert.assertFalse(tested.checkStatisticsRecordExists(StatsRecordType.SEARCH, hitConditions("uuid1", "hit1")));
+		Mockito.verify(tested).searchStatisticsRecordExists(StatsRecordType.SEARCH, hitConditions("uuid1", "hit1"));
+	}
+
+	@Test
+	public void writeStatisticsRecord_recentResponsesRegisteredIfAccepted() {
+		StatsClientService tested = getTested();
+		tested.statsConfiguration = new StatsConfiguration(true);
+		tested.statsBulkWriter = Mockito.mock(StatsBulkWriter.class);
+		tested.recentSearchResponses = new RecentSearchResponsesIndex(60000L, 100);
+
+		SearchResponse searchResponseMock = Mockito.mock(SearchResponse.class);
+		SearchHits hitsMock = Mockito.mock(SearchHits.class);
+		Mockito.when(hitsMock.totalHits()).thenReturn(1l);
+		Mockito.when(hitsMock.getHits()).thenReturn(
+				new SearchHit[] { new InternalSearchHit(1, "hit1", new StringText("type"), null) });
+		Mockito.when(searchResponseMock.getHits()).thenReturn(hitsMock);
+		Mockito.when(searchResponseMock.status()).thenReturn(RestStatus.OK);
+
+		// case - record dropped by bulk writer so response is not registered
+		Mockito.when(tested.statsBulkWriter.add(Mockito.any(IndexRequest.class))).thenReturn(false);
+		tested.writeStatisticsRecord(StatsRecordType.SEARCH, "uuid1", searchResponseMock, 1000L, new QuerySettings());
+		Assert.assertNull(tested.recentSearchResponses.containsHit("uuid1", "hit1"));
+
+		// case - record accepted by bulk writer so response is registered
+		Mockito.when(tested.statsBulkWriter.add(Mockito.any(IndexRequest.class))).thenReturn(true);
+		tested.writeStatisticsRecord(StatsRecordType.SEARCH, "uuid2", searchResponseMock, 1000L, new QuerySettings());
+		Assert.assertTrue(tested.recentSearchResponses.containsHit("uuid2", "hit1"));
+		Mockito.verifyZeroInteractions(tested.client);
+	}
+
+	@Test
+	public void writeStatisticsRecord_recentResponsesRemovedIfRecordLost() {
+		StatsClientService tested = getTested();
+		StatsConfiguration sc = new StatsConfiguration(true);
+		tested.statsConfiguration = sc;
+		tested.recentSearchResponses = new RecentSearchResponsesIndex(60000L, 100);
+		tested.statsBulkWriter = new StatsBulkWriter(tested.client, sc, TimeValue.timeValueSeconds(10));
+		tested.statsBulkWriter.dropPolicy = DropPolicy.DROP_OLDEST;
+		tested.statsBulkWriter.queue = new ArrayBlockingQueue<>(1);
+		final StatsClientService t = tested;
+		tested.statsBulkWriter.setLostRecordListener(new StatsBulkWriter.LostRecordListener() {
+			@Override
+			public void recordLost(IndexRequest ir) {
+				t.removeRecentSearchResponse(ir);
+			}
+		});
+
+		SearchResponse searchResponseMock = Mockito.mock(SearchResponse.class);
+		SearchHits hitsMock = Mockito.mock(SearchHits.class);
+		Mockito.when(hitsMock.totalHits()).thenReturn(1l);
+		Mockito.when(hitsMock.getHits()).thenReturn(
+				new SearchHit[] { new InternalSearchHit(1, "hit1", new StringText("type"), null) });
+		Mockito.when(searchResponseMock.getHits()).thenReturn(hitsMock);
+		Mockito.when(searchResponseMock.status()).thenReturn(RestStatus.OK);
+
+		tested.writeStatisticsRecord(StatsRecordType.SEARCH, "uuid1", searchResponseMock, 1000L, new QuerySettings());
+		Assert.assertTrue(tested.recentSearchResponses.containsHit("uuid1", "hit1"));
+
+		// case - record of registered response evicted from queue by newer one, so response is removed
+		tested.writeStatisticsRecord(StatsRecordType.SEARCH, "uuid2", searchResponseMock, 1000L, new QuerySettings());
+		Assert.assertNull(tested.recentSearchResponses.containsHit("uuid1", "hit1"));
+		Assert.assertTrue(tested.recentSearchResponses.containsHit("uuid2", "hit1"));
+
+		// case - lost record of other type does not remove response
+		Map<String, Object> source = new HashMap<>();
+		source.put(StatsClientService.FIELD_TYPE, StatsRecordType.SEARCH_HIT_USED.getSearchIndexedValue());
+		source.put(StatsClientService.FIELD_RESPONSE_UUID, "uuid2");
+		tested.removeRecentSearchResponse(new IndexRequest("index", "type").source(source));
+		Assert.assertTrue(tested.recentSearchResponses.containsHit("uuid2", "hit1"));
+	}
+
+	private Map<String, Object> hitConditions(String responseUuid, String hitId) {
+		Map<String, Object> conditions = new HashMap<>();
+		conditions.put(StatsClientService.FIELD_RESPONSE_UUID, responseUuid);
+		conditions.put(StatsClientService.FIELD_HITS_ID, hitId);
+		return conditions;
+	}
+
 	@SuppressWarnings("rawtypes")
 	private class TestIndexingAnswer implements Answer {
 
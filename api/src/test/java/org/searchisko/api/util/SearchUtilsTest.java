@@ -12,6 +12,7 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.TimeZone;
@@ -186,6 +187,45 @@ public class SearchUtilsTest {
 
 	}
 
+	@Test
+	public void computeJsonMapHash() throws IOException {
+		Map<String, Object> data1 = new LinkedHashMap<>();
+		data1.put("a", "value");
+		data1.put("b", 10);
+		Map<String, Object> nested1 = new LinkedHashMap<>();
+		nested1.put("x", "1");
+		nested1.put("y", "2");
+		data1.put("n", nested1);
+
+		// case - same content with different order of fields has same hash
+		Map<String, Object> data2 = new LinkedHashMap<>();
+		Map<String, Object> nested2 = new LinkedHashMap<>();
+		nested2.put("y", "2");
+		nested2.put("x", "1");
+		data2.put("n", nested2);
+		data2.put("b", 10);
+		data2.put("a", "value");
+		String hash = SearchUtils.computeJsonMapHash(data1);
+		Assert.assertEquals(40, hash.length());
+		Assert.assertEquals(hash, SearchUtils.computeJsonMapHash(data2));
+
+		// case - changed content has different hash
+		nested2.put("y", "3");
+		Assert.assertFalse(hash.equals(SearchUtils.computeJsonMapHash(data2)));
+
+		// case - order of list items matters
+		List<String> l1 = new ArrayList<>();
+		l1.add("aaa");
+		l1.add("bbb");
+		data1.put("l", l1);
+		List<String> l2 = new ArrayList<>();
+		l2.add("bbb");
+		l2.add("aaa");
+		data2.put("l", l2);
+		nested2.put("y", "2");
+		Assert.assertFalse(SearchUtils.computeJsonMapHash(data1).equals(SearchUtils.computeJsonMapHash(data2)));
+	}
+
 	@Test
 	public void convertJsonMapToString() throws IOException {
 
@@ -487,6 +527,53 @@ public class SearchUtilsTest {
 		}
 	}
 
+	@SuppressWarnings("rawtypes")
+	@Test
+	public void applyJsonMapPatch() {
+
+		// case - call is null safe
+		SearchUtils.applyJsonMapPatch(null, new HashMap<String, Object>());
+		SearchUtils.applyJsonMapPatch(new HashMap<String, Object>(), null);
+
+		Map<String, Object> target = new HashMap<>();
+		target.put("key1", "v1");
+		target.put("key2", "v2");
+		target.put("key3", TestUtils.createListOfStrings("v1", "v3"));
+		Map<String, Object> targetMap = new HashMap<>();
+		targetMap.put("tk1", "tv1");
+		targetMap.put("tk2", "tv2");
+		target.put("key4", targetMap);
+		target.put("key5", "v5");
+
+		Map<String, Object> patch = new HashMap<>();
+		patch.put("key1", "p1");
+		patch.put("key2", null);
+		patch.put("key3", TestUtils.createListOfStrings("p3"));
+		Map<String, Object> patchMap = new HashMap<>();
+		patchMap.put("tk1", "pv1");
+		patchMap.put("tk2", null);
+		patch.put("key4", patchMap);
+		patch.put("key6", "p6");
+
+		SearchUtils.applyJsonMapPatch(patch, target);
+
+		// case - simple value replaced, not merged into List
+		Assert.assertEquals("p1", target.get("key1"));
+		// case - null removes value
+		Assert.assertFalse(target.containsKey("key2"));
+		// case - List replaced
+		Assert.assertEquals(TestUtils.createListOfStrings("p3"), target.get("key3"));
+		// case - Map patched recursively
+		Map tm = (Map) target.get("key4");
+		Assert.assertEquals(1, tm.size());
+		Assert.assertEquals("pv1", tm.get("tk1"));
+		// case - untouched and new values
+		Assert.assertEquals("v5", target.get("key5"));
+		Assert.assertEquals("p6", target.get("key6"));
+		// case - patch is not changed
+		Assert.assertEquals(2, patchMap.size());
+	}
+
 	@Test
 	public void collapseURLParams() {
 
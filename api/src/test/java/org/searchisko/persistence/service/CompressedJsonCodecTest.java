@@ -0,0 +1,62 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.searchisko.persistence.service;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link CompressedJsonCodec}.
+ *
+ * @author Vlastimil Elias (velias at redhat dot com)
+ */
+public class CompressedJsonCodecTest {
+
+	@Test
+	public void encode_decode() throws IOException {
+		CompressedJsonCodec tested = new CompressedJsonCodec();
+
+		StringBuilder sb = new StringBuilder("{\"sys_title\":\"Příliš žluťoučký kůň\",\"items\":[");
+		for (int i = 0; i < 100; i++) {
+			sb.append("{\"value\":\"repeated value ").append(i).append("\"},");
+		}
+		sb.append("{}]}");
+		String json = sb.toString();
+
+		byte[] encoded = tested.encode(json);
+		Assert.assertEquals(CompressedJsonCodec.FORMAT_GZIP_JSON, encoded[0]);
+		Assert.assertTrue(encoded.length < json.length());
+		Assert.assertEquals(json, tested.decode(encoded));
+
+		// case - empty and null
+		Assert.assertEquals("", tested.decode(tested.encode("")));
+		Assert.assertEquals("", tested.decode(tested.encode(null)));
+
+		Map<String, Object> stats = tested.getStatistics();
+		Assert.assertEquals(3L, stats.get("encoded_count"));
+		Assert.assertEquals(3L, stats.get("decoded_count"));
+		Assert.assertTrue((Double) stats.get("compression_ratio") > 1d);
+	}
+
+	@Test(expected = IOException.class)
+	public void decode_unknownFormat() throws IOException {
+		new CompressedJsonCodec().decode(new byte[] { 5, 1, 2 });
+	}
+
+	@Test(expected = IOException.class)
+	public void decode_corrupted() throws IOException {
+		new CompressedJsonCodec().decode(new byte[] { CompressedJsonCodec.FORMAT_GZIP_JSON, 1, 2 });
+	}
+
+	@Test(expected = IOException.class)
+	public void decode_empty() throws IOException {
+		new CompressedJsonCodec().decode(new byte[0]);
+	}
+
+}
@@ -10,8 +10,12 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.logging.Logger;
@@ -25,6 +29,8 @@ import org.mockito.Mockito;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 import org.searchisko.api.ContentObjectFields;
+import org.searchisko.api.model.AppConfiguration;
+import org.searchisko.api.service.AppConfigurationService;
 import org.searchisko.api.testtools.TestUtils;
 import org.searchisko.api.util.SearchUtils;
 
@@ -196,6 +202,211 @@ public class JdbcContentPersistenceServiceTest extends JpaTestBase {
 		clearDatabase();
 	}
 
+	@Test
+	public void getContentHash() throws Exception {
+		JdbcContentPersistenceService tested = getTested();
+		String sysContentType = "testtype_hash";
+		String tableName = tested.getTableName(sysContentType);
+
+		// case - nonexisting table
+		Assert.assertNull(tested.getContentHash("aaa-1", sysContentType));
+		Assert.assertTrue(tested.getContentHashes(Arrays.asList("aaa-1"), sysContentType).isEmpty());
+
+		// case - table created by older version without hash column
+		try (final Connection conn = tested.searchiskoDs.getConnection()) {
+			conn.prepareStatement(
+					"create table " + tableName
+							+ " ( id varchar(200) not null primary key, json_data longtext, sys_content_type varchar(100) not null, updated timestamp )")
+					.execute();
+			conn.prepareStatement("insert into " + tableName + " (id, json_data, sys_content_type) values ('aaa-0', '{}', '"
+					+ sysContentType + "')").execute();
+		}
+		Assert.assertNull(tested.getContentHash("aaa-0", sysContentType));
+
+		// case - column is added when content is stored, old rows have no hash
+		Map<String, Object> content = new HashMap<>();
+		content.put("testkey", "testvalue");
+		content.put(ContentObjectFields.SYS_CONTENT_HASH, "hash1");
+		tested.store("aaa-1", sysContentType, content);
+		Assert.assertEquals("hash1", tested.getContentHash("aaa-1", sysContentType));
+		Assert.assertNull(tested.getContentHash("aaa-0", sysContentType));
+		Assert.assertNull(tested.getContentHash("aaa-2", sysContentType));
+
+		// case - hash is updated, also by batch
+		content.put(ContentObjectFields.SYS_CONTENT_HASH, "hash2");
+		tested.store("aaa-1", sysContentType, content);
+		Assert.assertEquals("hash2", tested.getContentHash("aaa-1", sysContentType));
+		Map<String, Map<String, Object>> contents = new LinkedHashMap<>();
+		Map<String, Object> content2 = new HashMap<>();
+		content2.put(ContentObjectFields.SYS_CONTENT_HASH, "hash3");
+		contents.put("aaa-2", content2);
+		contents.put("aaa-1", new HashMap<String, Object>());
+		tested.storeBatch(sysContentType, contents);
+		Assert.assertEquals("hash3", tested.getContentHash("aaa-2", sysContentType));
+		Assert.assertNull(tested.getContentHash("aaa-1", sysContentType));
+
+		// case - more hashes at once, content without hash is not returned
+		content.put(ContentObjectFields.SYS_CONTENT_HASH, "hash4");
+		tested.store("aaa-3", sysContentType, content);
+		Map<String, String> hashes = tested.getContentHashes(Arrays.asList("aaa-0", "aaa-1", "aaa-2", "aaa-3", "aaa-4"),
+				sysContentType);
+		Assert.assertEquals(2, hashes.size());
+		Assert.assertEquals("hash3", hashes.get("aaa-2"));
+		Assert.assertEquals("hash4", hashes.get("aaa-3"));
+		Assert.assertTrue(tested.getContentHashes(new ArrayList<String>(), sysContentType).isEmpty());
+
+		clearDatabase();
+	}
+
+	@Test
+	public void storeBatch() throws Exception {
+		JdbcContentPersistenceService tested = getTested();
+
+		String sysContentType = "testtype_batch";
+
+		// case - nothing to store
+		tested.storeBatch(sysContentType, null);
+		tested.storeBatch(sysContentType, new HashMap<String, Map<String, Object>>());
+
+		// case - store into nonexisting table
+		Map<String, Map<String, Object>> contents = new LinkedHashMap<>();
+		Map<String, Object> content1 = new HashMap<>();
+		content1.put("testkey", "testvalue1");
+		contents.put("aaa-1", content1);
+		Map<String, Object> content2 = new HashMap<>();
+		content2.put("testkey", "testvalue2");
+		content2.put(ContentObjectFields.SYS_UPDATED, new Date(65463750000l));
+		contents.put("aaa-2", content2);
+		tested.storeBatch(sysContentType, contents);
+		assertRowCount(tested, sysContentType, 2);
+		TestUtils.assertJsonContent("{\"testkey\" : \"testvalue1\"}", tested.get("aaa-1", sysContentType));
+		assertTableContent(tested, sysContentType, "aaa-2",
+				SearchUtils.getISODateFormat().parse("1972-01-28T16:22:30.000+0000"));
+
+		// case - update of existing and insert of new in one batch
+		contents.clear();
+		content2 = new HashMap<>();
+		content2.put("testkey", "testvalue2_updated");
+		contents.put("aaa-2", content2);
+		Map<String, Object> content3 = new HashMap<>();
+		content3.put("testkey", "testvalue3");
+		contents.put("aaa-3", content3);
+		tested.storeBatch(sysContentType, contents);
+		assertRowCount(tested, sysContentType, 3);
+		TestUtils.assertJsonContent("{\"testkey\" : \"testvalue1\"}", tested.get("aaa-1", sysContentType));
+		TestUtils.assertJsonContent("{\"testkey\" : \"testvalue2_updated\"}", tested.get("aaa-2", sysContentType));
+		TestUtils.assertJsonContent("{\"testkey\" : \"testvalue3\"}", tested.get("aaa-3", sysContentType));
+
+		clearDatabase();
+	}
+
+	@Test
+	public void store_get_compressed() throws Exception {
+		JdbcContentPersistenceService tested = getTested();
+		String sysContentType = "testtype_compressed";
+		String tableName = tested.getTableName(sysContentType);
+
+		// case - table created before compression support exists and contains uncompressed data
+		try (final Connection conn = tested.searchiskoDs.getConnection()) {
+			conn.prepareStatement(
+					"create table " + tableName
+							+ " ( id varchar(200) not null primary key, json_data longtext, sys_content_type varchar(100) not null, updated timestamp )")
+					.execute();
+		}
+		Map<String, Object> content = new HashMap<>();
+		content.put("testkey", "testvalue1");
+		tested.store("aaa-1", sysContentType, content);
+		Assert.assertFalse(tested.hasCompressedColumn(tableName));
+		assertStoredData(tested, sysContentType, "aaa-1", true, null);
+
+		// case - compression enabled, read doesn't add column
+		AppConfiguration ac = new AppConfiguration("/tmp");
+		ac.setContentPersistenceCompressionEnabled(true);
+		tested.appConfigurationService = Mockito.mock(AppConfigurationService.class);
+		Mockito.when(tested.appConfigurationService.getAppConfiguration()).thenReturn(ac);
+		TestUtils.assertJsonContent("{\"testkey\" : \"testvalue1\"}", tested.get("aaa-1", sysContentType));
+		Assert.assertEquals(1, tested.listRequestInit(sysContentType).content().size());
+		Assert.assertFalse(tested.checkColumnExists(tableName, JdbcContentPersistenceService.COLUMN_COMPRESSED));
+
+		// case - stored data are compressed, column is added and old data are readable
+		long encodedCount = (Long) tested.getCompressionStatistics().get("encoded_count");
+		content.put("testkey", "testvalue2");
+		content.put(ContentObjectFields.SYS_UPDATED, new Date(65463750000l));
+		tested.store("aaa-2", sysContentType, content);
+		Assert.assertTrue(tested.checkColumnExists(tableName, JdbcContentPersistenceService.COLUMN_COMPRESSED));
+		assertStoredData(tested, sysContentType, "aaa-1", true, false);
+		TestUtils.assertJsonContent("{\"testkey\" : \"testvalue1\"}", tested.get("aaa-1", sysContentType));
+		assertStoredData(tested, sysContentType, "aaa-2", false, true);
+		TestUtils.assertJsonContent(
+				"{\"testkey\" : \"testvalue2\", \"sys_updated\":\"1972-01-28T16:22:30.000Z\"}",
+				tested.get("aaa-2", sysContentType));
+		Assert.assertEquals(encodedCount + 1, tested.getCompressionStatistics().get("encoded_count"));
+		Assert.assertEquals(Boolean.TRUE, tested.getCompressionStatistics().get("enabled"));
+
+		// case - old data are compressed when rewritten, also in batch
+		Map<String, Map<String, Object>> contents = new LinkedHashMap<>();
+		content = new HashMap<>();
+		content.put("testkey", "testvalue1_updated");
+		contents.put("aaa-1", content);
+		content = new HashMap<>();
+		content.put("testkey", "testvalue3");
+		contents.put("aaa-3", content);
+		tested.storeBatch(sysContentType, contents);
+		assertStoredData(tested, sysContentType, "aaa-1", false, true);
+		assertStoredData(tested, sysContentType, "aaa-3", false, true);
+		TestUtils.assertJsonContent("{\"testkey\" : \"testvalue1_updated\"}", tested.get("aaa-1", sysContentType));
+
+		// case - compressed data are readable by listing and streaming
+		ListRequest req = tested.listRequestInit(sysContentType);
+		Assert.assertEquals(3, req.content().size());
+		Assert.assertEquals("testvalue3", req.content().get(2).getContent().get("testkey"));
+		final List<Object> values = new ArrayList<>();
+		tested.streamContent(sysContentType, new ContentStreamHandler() {
+			@Override
+			public boolean handle(ContentTuple<String, Map<String, Object>> content) {
+				values.add(content.getContent().get("testkey"));
+				return true;
+			}
+		});
+		Assert.assertEquals("[testvalue1_updated, testvalue2, testvalue3]", values.toString());
+
+		// case - compression disabled, compressed data are still readable and cleared when rewritten
+		ac.setContentPersistenceCompressionEnabled(false);
+		TestUtils.assertJsonContent("{\"testkey\" : \"testvalue3\"}", tested.get("aaa-3", sysContentType));
+		content.put("testkey", "testvalue3_updated");
+		tested.store("aaa-3", sysContentType, content);
+		assertStoredData(tested, sysContentType, "aaa-3", true, false);
+		TestUtils.assertJsonContent("{\"testkey\" : \"testvalue3_updated\"}", tested.get("aaa-3", sysContentType));
+
+		clearDatabase();
+	}
+
+	/**
+	 * Assert which of data columns are filled for row.
+	 * 
+	 * @param expectedCompressed null if compressed data column is not expected in table
+	 */
+	private void assertStoredData(final JdbcContentPersistenceService tested, final String sysContentType,
+			final String id, boolean expectedJsonData, Boolean expectedCompressed) throws SQLException {
+		try (final Connection conn = tested.searchiskoDs.getConnection();
+				final PreparedStatement statement = conn.prepareStatement(String.format("select * from %s where id = ?",
+						tested.getTableName(sysContentType)))) {
+			statement.setString(1, id);
+			try (final ResultSet rs = statement.executeQuery()) {
+				Assert.assertTrue(rs.next());
+				Assert.assertEquals(expectedJsonData, rs.getString("json_data") != null);
+				if (expectedCompressed == null) {
+					for (int i = 1; i <= rs.getMetaData().getColumnCount(); i++) {
+						Assert.assertFalse(JdbcContentPersistenceService.COLUMN_COMPRESSED.equalsIgnoreCase(rs.getMetaData()
+								.getColumnName(i)));
+					}
+				} else {
+					Assert.assertEquals(expectedCompressed.booleanValue(), rs.getBytes("json_data_compressed") != null);
+				}
+			}
+		}
+	}
+
 	@Test
 	public void listRequest() {
 		JdbcContentPersistenceService tested = getTested();
@@ -228,6 +439,9 @@ public class JdbcContentPersistenceServiceTest extends JpaTestBase {
 			Assert.assertEquals("aaa-2", req.content().get(1).getId());
 			Assert.assertEquals("aaa-3", req.content().get(2).getId());
 
+			// content added before already listed page doesn't shift next pages
+			addContent(tested, sysContentType, "aaa-0");
+
 			req = tested.listRequestNext(req);
 			Assert.assertTrue(req.hasContent());
 			Assert.assertNotNull(req.content());
@@ -249,6 +463,54 @@ public class JdbcContentPersistenceServiceTest extends JpaTestBase {
 		clearDatabase();
 	}
 
+	@Test
+	public void streamContent() {
+		JdbcContentPersistenceService tested = getTested();
+
+		String sysContentType = "testtypestream";
+
+		final List<String> ids = new ArrayList<>();
+		ContentStreamHandler handler = new ContentStreamHandler() {
+			@Override
+			public boolean handle(ContentTuple<String, Map<String, Object>> content) {
+				Assert.assertEquals("value " + content.getId(), content.getContent().get(ContentObjectFields.SYS_DESCRIPTION));
+				ids.add(content.getId());
+				return ids.size() < 4;
+			}
+		};
+
+		// case - no table exists for type
+		Assert.assertEquals(0, tested.streamContent(sysContentType, handler));
+		Assert.assertTrue(ids.isEmpty());
+
+		// case - all content streamed in correct order
+		for (int i = 3; i >= 1; i--)
+			addContent(tested, sysContentType, "aaa-" + i);
+		Assert.assertEquals(3, tested.streamContent(sysContentType, handler));
+		Assert.assertEquals("[aaa-1, aaa-2, aaa-3]", ids.toString());
+
+		// case - streaming stopped by handler
+		ids.clear();
+		for (int i = 4; i <= 7; i++)
+			addContent(tested, sysContentType, "aaa-" + i);
+		Assert.assertEquals(4, tested.streamContent(sysContentType, handler));
+		Assert.assertEquals("[aaa-1, aaa-2, aaa-3, aaa-4]", ids.toString());
+
+		// case - content read in more pages
+		tested.LIST_PAGE_SIZE = 3;
+		final List<String> allIds = new ArrayList<>();
+		Assert.assertEquals(7, tested.streamContent(sysContentType, new ContentStreamHandler() {
+			@Override
+			public boolean handle(ContentTuple<String, Map<String, Object>> content) {
+				allIds.add(content.getId());
+				return true;
+			}
+		}));
+		Assert.assertEquals("[aaa-1, aaa-2, aaa-3, aaa-4, aaa-5, aaa-6, aaa-7]", allIds.toString());
+
+		clearDatabase();
+	}
+
 	@Test
 	public void countRecords() {
 		JdbcContentPersistenceService tested = getTested();
@@ -332,6 +594,7 @@ public class JdbcContentPersistenceServiceTest extends JpaTestBase {
 				}
 			});
 			tested.searchiskoDs = ds;
+			tested.appConfigurationService = null;
 		} catch (Exception e) {
 			e.printStackTrace();
 			Assert.fail(e.getMessage());
@@ -370,6 +633,7 @@ public class JdbcContentPersistenceServiceTest extends JpaTestBase {
 			}
 //			conn.commit();
 			JdbcContentPersistenceService.TABLES_EXISTS.clear();
+			JdbcContentPersistenceService.COLUMNS_EXISTS.clear();
 		} catch (SQLException e) {
 			Assert.fail(e.getMessage());
 		}
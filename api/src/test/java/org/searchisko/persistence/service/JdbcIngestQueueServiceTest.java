@@ -0,0 +1,164 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.searchisko.persistence.service;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/**
+ * Unit test for {@link JdbcIngestQueueService}
+ *
+ * @author Vlastimil Elias (velias at redhat dot com)
+ */
+public class JdbcIngestQueueServiceTest extends JpaTestBase {
+
+	@Test
+	public void enqueue_readBatch_remove() {
+		JdbcIngestQueueService tested = getTested();
+		try {
+			Assert.assertEquals(0, tested.count(null));
+			Assert.assertTrue(tested.readBatch("unknown", 10).isEmpty());
+
+			Map<String, Map<String, Object>> content = new LinkedHashMap<>();
+			content.put("id3", createContent("value3"));
+			content.put("id1", createContent("value1"));
+			content.put("id2", createContent("value2"));
+			String queueId1 = tested.enqueue(content, 10);
+			Assert.assertNotNull(queueId1);
+
+			content.clear();
+			content.put("id1", createContent("valueother"));
+			String queueId2 = tested.enqueue(content, 10);
+			Assert.assertFalse(queueId1.equals(queueId2));
+
+			Assert.assertEquals(4, tested.count(null));
+			Assert.assertEquals(3, tested.count(queueId1));
+			Assert.assertEquals(1, tested.count(queueId2));
+
+			// case - content is read in order it was pushed, limited by size, and stays in queue
+			Map<String, Object> batch = tested.readBatch(queueId1, 2);
+			Assert.assertEquals("[id3, id1]", batch.keySet().toString());
+			Assert.assertEquals(createContent("value3"), batch.get("id3"));
+			Assert.assertEquals(createContent("value1"), batch.get("id1"));
+			Assert.assertEquals(3, tested.count(queueId1));
+
+			// case - removed content is not read again
+			tested.remove(queueId1, batch.keySet());
+			Assert.assertEquals(1, tested.count(queueId1));
+			batch = tested.readBatch(queueId1, 2);
+			Assert.assertEquals("[id2]", batch.keySet().toString());
+			tested.remove(queueId1, Arrays.asList("id2"));
+			Assert.assertTrue(tested.readBatch(queueId1, 2).isEmpty());
+
+			// case - other queue is not affected
+			batch = tested.readBatch(queueId2, 2);
+			Assert.assertEquals(createContent("valueother"), batch.get("id1"));
+
+			// case - list queues
+			Assert.assertTrue(tested.listQueueIds(new Date(System.currentTimeMillis() - 60000)).isEmpty());
+			Assert.assertEquals("[" + queueId2 + "]", tested.listQueueIds(new Date(System.currentTimeMillis() + 60000))
+					.toString());
+
+			// case - remove whole queue
+			tested.removeQueue(queueId2);
+			Assert.assertEquals(0, tested.count(null));
+		} finally {
+			clearDatabase();
+		}
+	}
+
+	@Test
+	public void enqueue_maxSize() {
+		JdbcIngestQueueService tested = getTested();
+		try {
+			Map<String, Map<String, Object>> content = new LinkedHashMap<>();
+			content.put("id1", createContent("value1"));
+			content.put("id2", createContent("value2"));
+			Assert.assertNotNull(tested.enqueue(content, 3));
+
+			// case - content exceeding limit is not put into queue
+			Assert.assertNull(tested.enqueue(content, 3));
+			Assert.assertEquals(2, tested.count(null));
+
+			// case - content fitting into limit exactly
+			content.remove("id2");
+			Assert.assertNotNull(tested.enqueue(content, 3));
+			Assert.assertEquals(3, tested.count(null));
+		} finally {
+			clearDatabase();
+		}
+	}
+
+	@Test
+	public void ensureTableExists() {
+		JdbcIngestQueueService tested = getTested();
+		try {
+			Assert.assertFalse(JdbcIngestQueueService.tableExists);
+			tested.ensureTableExists();
+			Assert.assertTrue(JdbcIngestQueueService.tableExists);
+
+			// case - table created by other cluster node is detected
+			JdbcIngestQueueService.tableExists = false;
+			tested.ensureTableExists();
+			Assert.assertTrue(JdbcIngestQueueService.tableExists);
+			Assert.assertEquals(0, tested.count(null));
+		} finally {
+			clearDatabase();
+		}
+	}
+
+	private Map<String, Object> createContent(String value) {
+		Map<String, Object> ret = new HashMap<>();
+		ret.put("field", value);
+		return ret;
+	}
+
+	protected JdbcIngestQueueService getTested() {
+		JdbcIngestQueueService tested = new JdbcIngestQueueService();
+		tested.log = Logger.getLogger("test logger");
+		try {
+			DataSource ds = Mockito.mock(DataSource.class);
+			Mockito.when(ds.getConnection()).then(new Answer<Connection>() {
+				@Override
+				public Connection answer(InvocationOnMock invocation) throws Throwable {
+					return getConnectionProvider().getConnection();
+				}
+			});
+			tested.searchiskoDs = ds;
+		} catch (Exception e) {
+			e.printStackTrace();
+			Assert.fail(e.getMessage());
+		}
+		return tested;
+	}
+
+	/**
+	 * Drop queue table after each test.
+	 */
+	protected void clearDatabase() {
+		try (final Connection conn = getTested().searchiskoDs.getConnection()) {
+			conn.prepareStatement("drop table if exists " + JdbcIngestQueueService.TABLE_NAME).execute();
+			JdbcIngestQueueService.tableExists = false;
+		} catch (SQLException e) {
+			Assert.fail(e.getMessage());
+		}
+	}
+
+}
@@ -6,7 +6,9 @@
 package org.searchisko.persistence.service;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Logger;
 
 import org.junit.Assert;
@@ -238,6 +240,47 @@ public class JpaCustomTagPersistenceServiceTest extends JpaTestBase {
 		em.getTransaction().commit();
 	}
 
+	@Test
+	public void getTagsByContents_getAllTags() {
+		JpaCustomTagPersistenceService tested = getTested();
+
+		em.getTransaction().begin();
+		// case - empty store
+		Assert.assertTrue(tested.getTagsByContents(Arrays.asList(CONTENT_TYPE_1_ID_1)).isEmpty());
+		Assert.assertTrue(tested.getAllTags().isEmpty());
+		tested.createTag(new Tag(CONTENT_TYPE_1_ID_1, CONTRIB_ID_1, "label1"));
+		tested.createTag(new Tag(CONTENT_TYPE_1_ID_1, CONTRIB_ID_2, "label2"));
+		tested.createTag(new Tag(CONTENT_TYPE_1_ID_2, CONTRIB_ID_2, "label3"));
+		tested.createTag(new Tag(CONTENT_TYPE_2_ID_1, CONTRIB_ID_2, "label4"));
+		em.getTransaction().commit();
+
+		em.getTransaction().begin();
+		// case - null and empty collection
+		Assert.assertTrue(tested.getTagsByContents(null).isEmpty());
+		Assert.assertTrue(tested.getTagsByContents(new ArrayList<String>()).isEmpty());
+
+		// case - content without tags is not in result
+		Map<String, List<Tag>> ret = tested.getTagsByContents(Arrays.asList(CONTENT_TYPE_1_ID_1, CONTENT_TYPE_1_ID_2,
+				CONTENT_TYPE_2_ID_2));
+		Assert.assertEquals(2, ret.size());
+		Assert.assertEquals(2, ret.get(CONTENT_TYPE_1_ID_1).size());
+		Assert.assertEquals(1, ret.get(CONTENT_TYPE_1_ID_2).size());
+		Assert.assertEquals("label3", ret.get(CONTENT_TYPE_1_ID_2).get(0).getTagLabel());
+
+		// case - more ids than used in one query
+		List<String> ids = new ArrayList<>();
+		for (int i = 0; i < JpaCustomTagPersistenceService.MAX_IDS_IN_QUERY + 10; i++) {
+			ids.add("type1-other" + i);
+		}
+		ids.add(CONTENT_TYPE_2_ID_1);
+		ret = tested.getTagsByContents(ids);
+		Assert.assertEquals(1, ret.size());
+		Assert.assertEquals("label4", ret.get(CONTENT_TYPE_2_ID_1).get(0).getTagLabel());
+
+		Assert.assertEquals(4, tested.getAllTags().size());
+		em.getTransaction().commit();
+	}
+
 	protected JpaCustomTagPersistenceService getTested() {
 		JpaCustomTagPersistenceService tested = new JpaCustomTagPersistenceService();
 		tested.em = em;
@@ -87,6 +87,7 @@ public class PersistenceServiceTest extends JpaTestBase {
 				conn.prepareStatement("drop table " + table).execute();
 			}
 			JdbcContentPersistenceService.TABLES_EXISTS.clear();
+			JdbcContentPersistenceService.COLUMNS_EXISTS.clear();
 		} catch (SQLException e) {
 			Assert.fail(e.getMessage());
 		}
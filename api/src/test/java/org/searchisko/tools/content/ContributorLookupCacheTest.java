@@ -0,0 +1,110 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2014 Red Hat Inc. and/or its affiliates and other contributors
+ * as indicated by the @authors tag. All rights reserved.
+ */
+package org.searchisko.tools.content;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit test for {@link ContributorLookupCache}.
+ *
+ * @author Vlastimil Elias (velias at redhat dot com)
+ */
+public class ContributorLookupCacheTest {
+
+	@Test
+	public void disabled() {
+		ContributorLookupCache tested = new ContributorLookupCache();
+
+		Assert.assertFalse(tested.isEnabled());
+		tested.put("a", "code_a", tested.getStamp());
+		Assert.assertNull(tested.get("a"));
+		Assert.assertEquals(0, tested.getStatistics().get("size"));
+		Assert.assertEquals(0L, tested.getStatistics().get("miss_count"));
+
+		// case - ttl 0 disables cache too
+		tested.configure(10, 0);
+		Assert.assertFalse(tested.isEnabled());
+	}
+
+	@Test
+	public void getAndPut() {
+		ContributorLookupCache tested = new ContributorLookupCache();
+		tested.configure(10, 60000L);
+		Assert.assertTrue(tested.isEnabled());
+
+		Assert.assertNull(tested.get("a"));
+		tested.put("a", "code_a", tested.getStamp());
+		Assert.assertEquals("code_a", tested.get("a"));
+
+		// case - negative caching
+		tested.put("b", ContributorLookupCache.MISSING, tested.getStamp());
+		Assert.assertSame(ContributorLookupCache.MISSING, tested.get("b"));
+
+		// case - null key and value ignored
+		tested.put(null, "code", tested.getStamp());
+		tested.put("c", null, tested.getStamp());
+		Assert.assertNull(tested.get(null));
+		Assert.assertNull(tested.get("c"));
+
+		Assert.assertEquals(2, tested.getStatistics().get("size"));
+		Assert.assertEquals(2L, tested.getStatistics().get("hit_count"));
+		Assert.assertEquals(1L, tested.getStatistics().get("negative_hit_count"));
+		Assert.assertEquals(2L, tested.getStatistics().get("miss_count"));
+		Assert.assertEquals(0.5d, tested.getStatistics().get("hit_rate"));
+	}
+
+	@Test
+	public void expiration() throws InterruptedException {
+		ContributorLookupCache tested = new ContributorLookupCache();
+		tested.configure(10, 50L);
+
+		tested.put("a", "code_a", tested.getStamp());
+		Assert.assertEquals("code_a", tested.get("a"));
+		Thread.sleep(100);
+		Assert.assertNull(tested.get("a"));
+		Assert.assertEquals(0, tested.getStatistics().get("size"));
+	}
+
+	@Test
+	public void eviction() {
+		ContributorLookupCache tested = new ContributorLookupCache();
+		tested.configure(2, 60000L);
+
+		tested.put("a", "code_a", tested.getStamp());
+		tested.put("b", "code_b", tested.getStamp());
+		// touch a so b is least recently used
+		tested.get("a");
+		tested.put("c", "code_c", tested.getStamp());
+
+		Assert.assertEquals("code_a", tested.get("a"));
+		Assert.assertNull(tested.get("b"));
+		Assert.assertEquals("code_c", tested.get("c"));
+		Assert.assertEquals(1L, tested.getStatistics().get("eviction_count"));
+	}
+
+	@Test
+	public void flush() {
+		ContributorLookupCache tested = new ContributorLookupCache();
+		tested.configure(10, 60000L);
+
+		tested.put("a", "code_a", tested.getStamp());
+		long stamp = tested.getStamp();
+		tested.flush();
+		Assert.assertNull(tested.get("a"));
+		Assert.assertEquals(1L, tested.getStatistics().get("flush_count"));
+
+		// case - value looked up before flush is not cached
+		tested.put("b", "code_b", stamp);
+		Assert.assertNull(tested.get("b"));
+
+		// case - configure flushes too
+		tested.put("c", "code_c", tested.getStamp());
+		tested.configure(10, 60000L);
+		Assert.assertNull(tested.get("c"));
+	}
+
+}
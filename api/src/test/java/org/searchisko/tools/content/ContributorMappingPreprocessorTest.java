@@ -6,15 +6,19 @@
 package org.searchisko.tools.content;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.elasticsearch.client.Client;
+import org.jboss.elasticsearch.tools.content.PreprocessChainContext;
 import org.jboss.elasticsearch.tools.content.ESLookupValuePreprocessor;
 import org.junit.Assert;
 import org.junit.Test;
 import org.mockito.Mockito;
+import org.searchisko.api.testtools.ESRealClientTestBase;
+import org.searchisko.api.util.PreprocessChainContextImpl;
 import org.searchisko.api.ContentObjectFields;
 import org.searchisko.api.service.ContributorService;
 
@@ -23,7 +27,7 @@ import org.searchisko.api.service.ContributorService;
  * 
  * @author Vlastimil Elias (velias at redhat dot com)
  */
-public class ContributorMappingPreprocessorTest {
+public class ContributorMappingPreprocessorTest extends ESRealClientTestBase {
 
 	@Test
 	public void init_defaults() {
@@ -84,4 +88,166 @@ public class ContributorMappingPreprocessorTest {
 		Assert.assertEquals(rmMock, mr);
 	}
 
+	@Test
+	public void preprocessData_cachedLookup() {
+		final List<String> searched = new ArrayList<>();
+		ContributorMappingPreprocessor tested = new ContributorMappingPreprocessor() {
+			@Override
+			protected String searchContributorCode(String value) {
+				searched.add(value);
+				return "john@doe.org".equals(value) ? "John Doe <john@doe.org>" : null;
+			}
+		};
+		Map<String, Object> settings = new HashMap<>();
+		settings.put("source_field", "email");
+		settings.put("idx_search_field", "email");
+		List<Map<String, String>> rm = new ArrayList<>();
+		Map<String, String> rm_code = new HashMap<>();
+		rm_code.put("idx_result_field", ContributorService.FIELD_CODE);
+		rm_code.put("target_field", ContentObjectFields.SYS_CONTRIBUTORS);
+		rm_code.put("value_default", "{name} <{email}>");
+		rm.add(rm_code);
+		settings.put("result_mapping", rm);
+		tested.init("Contributor mapper", Mockito.mock(Client.class), settings);
+
+		ContributorMappingPreprocessor.getLookupCache().configure(10, 60000L);
+		try {
+			// case - contributor found, second lookup served from cache
+			for (int i = 0; i < 2; i++) {
+				Map<String, Object> data = new HashMap<>();
+				data.put("email", "john@doe.org");
+				PreprocessChainContext context = new PreprocessChainContextImpl();
+				tested.preprocessData(data, context);
+				Assert.assertEquals("John Doe <john@doe.org>", data.get(ContentObjectFields.SYS_CONTRIBUTORS));
+			}
+			Assert.assertEquals(1, searched.size());
+
+			// case - contributor not found, value default used and missing value cached
+			for (int i = 0; i < 2; i++) {
+				Map<String, Object> data = new HashMap<>();
+				data.put("email", "jack@doe.org");
+				data.put("name", "Jack");
+				PreprocessChainContextImpl context = new PreprocessChainContextImpl();
+				tested.preprocessData(data, context);
+				Assert.assertEquals("Jack <jack@doe.org>", data.get(ContentObjectFields.SYS_CONTRIBUTORS));
+				Assert.assertEquals(1, context.warnings.size());
+			}
+			Assert.assertEquals(2, searched.size());
+
+			// case - flush causes new lookup
+			ContributorMappingPreprocessor.getLookupCache().flush();
+			Map<String, Object> data = new HashMap<>();
+			data.put("email", "john@doe.org");
+			tested.preprocessData(data, new PreprocessChainContextImpl());
+			Assert.assertEquals("John Doe <john@doe.org>", data.get(ContentObjectFields.SYS_CONTRIBUTORS));
+			Assert.assertEquals(3, searched.size());
+		} finally {
+			ContributorMappingPreprocessor.getLookupCache().configure(0, 0);
+		}
+	}
+
+	@Test
+	public void preprocessData_cachedLookupSameAsIndexLookup() {
+		try {
+			Client client = prepareESClientForUnitTest("ContributorMappingPreprocessorTest");
+			indexDelete(ContributorService.SEARCH_INDEX_NAME);
+			indexCreate(ContributorService.SEARCH_INDEX_NAME);
+			indexMappingCreate(ContributorService.SEARCH_INDEX_NAME, ContributorService.SEARCH_INDEX_TYPE, "{\""
+					+ ContributorService.SEARCH_INDEX_TYPE + "\":{\"properties\":{"
+					+ "\"code\":{\"type\":\"string\",\"index\":\"not_analyzed\"},"
+					+ "\"email\":{\"type\":\"string\",\"index\":\"not_analyzed\"}}}}");
+			indexInsertDocument(ContributorService.SEARCH_INDEX_NAME, ContributorService.SEARCH_INDEX_TYPE, "c1",
+					"{\"code\":\"John Doe <john@doe.org>\",\"email\":[\"john@doe.org\",\"jd@doe.org\"]}");
+			indexFlushAndRefresh(ContributorService.SEARCH_INDEX_NAME);
+
+			// case - source_field only
+			assertSameResult(client, createSettings(null), createData("john@doe.org", "John"));
+			assertSameResult(client, createSettings(null), createData("jack@doe.org", "Jack"));
+			assertSameResult(client, createSettings(null), createData(null, "Nobody"));
+			assertSameResult(client, createSettings(null), createData("", "Empty"));
+
+			// case - source_bases
+			Map<String, Object> data = new HashMap<>();
+			data.put("authors", Arrays.asList(createData("jd@doe.org", "John"), createData("jack@doe.org", "Jack"),
+					createData(null, "Nobody")));
+			Map<String, Object> reviewer = createData("john@doe.org", "John");
+			data.put("reviewer", reviewer);
+			assertSameResult(client, createSettings(Arrays.asList("authors", "reviewer", "unknown")), data);
+
+			// case - source_bases with value which is not a structure
+			data = new HashMap<>();
+			data.put("authors", Arrays.asList(createData("jd@doe.org", "John"), "string value"));
+			assertSameResult(client, createSettings(Arrays.asList("authors")), data);
+		} finally {
+			ContributorMappingPreprocessor.getLookupCache().configure(0, 0);
+			finalizeESClientForUnitTest();
+		}
+	}
+
+	/**
+	 * Run preprocessor with cache disabled (lookup performed by {@link ESLookupValuePreprocessor}) and enabled (twice
+	 * to use cached values), and check results are same.
+	 */
+	private void assertSameResult(Client client, Map<String, Object> settings, Map<String, Object> data) {
+		ContributorMappingPreprocessor tested = new ContributorMappingPreprocessor();
+		tested.init("Contributor mapper", client, settings);
+
+		ContributorMappingPreprocessor.getLookupCache().configure(0, 0);
+		Map<String, Object> expectedData = copy(data);
+		PreprocessChainContextImpl expectedContext = new PreprocessChainContextImpl();
+		tested.preprocessData(expectedData, expectedContext);
+
+		ContributorMappingPreprocessor.getLookupCache().configure(10, 60000L);
+		for (int i = 0; i < 2; i++) {
+			Map<String, Object> actualData = copy(data);
+			PreprocessChainContextImpl actualContext = new PreprocessChainContextImpl();
+			tested.preprocessData(actualData, actualContext);
+			Assert.assertEquals(expectedData, actualData);
+			Assert.assertEquals(expectedContext.warnings != null ? expectedContext.warnings.size() : 0,
+					actualContext.warnings != null ? actualContext.warnings.size() : 0);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> T copy(T value) {
+		if (value instanceof Map) {
+			Map<String, Object> ret = new HashMap<>();
+			for (Map.Entry<String, Object> e : ((Map<String, Object>) value).entrySet()) {
+				ret.put(e.getKey(), copy(e.getValue()));
+			}
+			return (T) ret;
+		} else if (value instanceof List) {
+			List<Object> ret = new ArrayList<>();
+			for (Object o : (List<Object>) value) {
+				ret.add(copy(o));
+			}
+			return (T) ret;
+		}
+		return value;
+	}
+
+	private Map<String, Object> createSettings(List<String> sourceBases) {
+		Map<String, Object> settings = new HashMap<>();
+		settings.put("source_field", "email");
+		settings.put("idx_search_field", "email");
+		if (sourceBases != null)
+			settings.put("source_bases", sourceBases);
+		List<Map<String, String>> rm = new ArrayList<>();
+		Map<String, String> rm_code = new HashMap<>();
+		rm_code.put("idx_result_field", ContributorService.FIELD_CODE);
+		rm_code.put("target_field", ContentObjectFields.SYS_CONTRIBUTORS);
+		rm_code.put("value_default", "{name} <{email}>");
+		rm.add(rm_code);
+		settings.put("result_mapping", rm);
+		return settings;
+	}
+
+	private Map<String, Object> createData(String email, String name) {
+		Map<String, Object> data = new HashMap<>();
+		if (email != null)
+			data.put("email", email);
+		data.put("name", name);
+		return data;
+	}
+
 }
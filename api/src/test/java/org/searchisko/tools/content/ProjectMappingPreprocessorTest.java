@@ -6,9 +6,11 @@
 package org.searchisko.tools.content;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.logging.Logger;
 
 import org.elasticsearch.client.Client;
 import org.jboss.elasticsearch.tools.content.ESLookupValuePreprocessor;
@@ -16,7 +18,12 @@ import org.junit.Assert;
 import org.junit.Test;
 import org.mockito.Mockito;
 import org.searchisko.api.ContentObjectFields;
+import org.searchisko.api.model.AppConfiguration;
+import org.searchisko.api.service.AppConfigurationService;
 import org.searchisko.api.service.ProjectService;
+import org.searchisko.persistence.service.ContentTuple;
+import org.searchisko.persistence.service.EntityService;
+import org.searchisko.persistence.service.ListRequest;
 
 /**
  * Unit test for {@link ProjectMappingPreprocessor}
@@ -84,4 +91,69 @@ public class ProjectMappingPreprocessorTest {
 		Assert.assertEquals(rmMock, mr);
 	}
 
+	@Test
+	public void preprocessData_fromSnapshot() {
+		final EntityService entityService = Mockito.mock(EntityService.class);
+		final AppConfigurationService appConfigurationService = Mockito.mock(AppConfigurationService.class);
+		AppConfiguration ac = new AppConfiguration("/tmp");
+		ac.setProjectsSnapshotReloadInterval(60);
+		Mockito.when(appConfigurationService.getAppConfiguration()).thenReturn(ac);
+		ProjectService projectService = new ProjectService() {
+			{
+				log = Logger.getLogger("testlogger");
+				this.entityService = entityService;
+				this.appConfigurationService = appConfigurationService;
+			}
+		};
+
+		Map<String, Object> project = new HashMap<>();
+		project.put(ProjectService.FIELD_CODE, "jbossas");
+		project.put(ProjectService.FIELD_NAME, "JBoss AS");
+		Map<String, Object> tsc = new HashMap<>();
+		tsc.put("jbossorg_jira", Arrays.asList("AS7", "WFLY"));
+		project.put(ProjectService.FIELD_TYPE_SPECIFIC_CODE, tsc);
+		List<ContentTuple<String, Map<String, Object>>> content = new ArrayList<>();
+		content.add(new ContentTuple<String, Map<String, Object>>("jbossas", project));
+		ListRequest lr1 = Mockito.mock(ListRequest.class);
+		Mockito.when(lr1.hasContent()).thenReturn(true);
+		Mockito.when(lr1.content()).thenReturn(content);
+		ListRequest lr2 = Mockito.mock(ListRequest.class);
+		Mockito.when(entityService.listRequestInit()).thenReturn(lr1);
+		Mockito.when(entityService.listRequestNext(lr1)).thenReturn(lr2);
+
+		try {
+			projectService.init();
+
+			ProjectMappingPreprocessor tested = new ProjectMappingPreprocessor();
+			Client clientMock = Mockito.mock(Client.class);
+			Map<String, Object> settings = new HashMap<>();
+			settings.put("source_field", "fields.project");
+			settings.put("idx_search_field", "type_specific_code.jbossorg_jira");
+			List<Map<String, String>> rm = new ArrayList<>();
+			Map<String, String> rm_code = new HashMap<>();
+			rm_code.put("idx_result_field", ProjectService.FIELD_CODE);
+			rm_code.put("target_field", ContentObjectFields.SYS_PROJECT);
+			rm.add(rm_code);
+			Map<String, String> rm_name = new HashMap<>();
+			rm_name.put("idx_result_field", ProjectService.FIELD_NAME);
+			rm_name.put("target_field", "project.name");
+			rm.add(rm_name);
+			settings.put("result_mapping", rm);
+			tested.init("Project mapper", clientMock, settings);
+
+			Map<String, Object> data = new HashMap<>();
+			Map<String, Object> fields = new HashMap<>();
+			fields.put("project", "WFLY");
+			data.put("fields", fields);
+			tested.preprocessData(data, null);
+
+			Assert.assertEquals("jbossas", data.get(ContentObjectFields.SYS_PROJECT));
+			Assert.assertEquals("JBoss AS", ((Map<?, ?>) data.get("project")).get("name"));
+			Mockito.verify(clientMock, Mockito.never()).prepareSearch(Mockito.<String> anyVararg());
+		} finally {
+			ac.setProjectsSnapshotReloadInterval(0);
+			projectService.init();
+		}
+	}
+
 }